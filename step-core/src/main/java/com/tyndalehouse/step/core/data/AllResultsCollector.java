@@ -1,21 +1,23 @@
 package com.tyndalehouse.step.core.data;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.Scorer;
 
 /**
- * Simply accepts all results into a list
+ * Simply accepts all results into an array of document numbers, without boxing each hit
  * 
  * @author chrisburrell
  * 
  */
 public class AllResultsCollector extends Collector {
-    private final List<Integer> docIds = new ArrayList<Integer>(32);
+    private static final int INITIAL_CAPACITY = 32;
+    private int[] docIds = new int[INITIAL_CAPACITY];
+    private int size;
+    private int docBase;
 
     @Override
     public void setScorer(final Scorer scorer) throws IOException {
@@ -24,12 +26,15 @@ public class AllResultsCollector extends Collector {
 
     @Override
     public void collect(final int doc) throws IOException {
-        this.docIds.add(doc);
+        if (this.size == this.docIds.length) {
+            this.docIds = Arrays.copyOf(this.docIds, this.size * 2);
+        }
+        this.docIds[this.size++] = this.docBase + doc;
     }
 
     @Override
     public void setNextReader(final IndexReader reader, final int docBase) throws IOException {
-        // not implemented
+        this.docBase = docBase;
     }
 
     @Override
@@ -38,9 +43,16 @@ public class AllResultsCollector extends Collector {
     }
 
     /**
-     * @return the docIds
+     * @return the number of documents collected
      */
-    public List<Integer> getDocIds() {
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * @return the docIds, of which only the first {@link #getSize()} are set
+     */
+    public int[] getDocIds() {
         return this.docIds;
     }
 }
@@ -70,6 +70,8 @@ public class EntityConfiguration {
     private Map<String, FieldConfig> luceneFieldConfiguration;
     private Analyzer analyzerInstance;
     private PostProcessor postProcessorInstance;
+    private IndexDirectoryType directoryType;
+    private boolean warmUp;
     private String path;
     private final String entityHome;
     private final Injector injector;
@@ -117,6 +119,12 @@ public class EntityConfiguration {
                 this.postProcessorInstance = (PostProcessor) this.injector.getInstance(Class
                         .forName(processor));
             }
+
+            final String directory = properties.getProperty("entity.directory");
+            if (isNotBlank(directory)) {
+                this.directoryType = IndexDirectoryType.fromProperty(directory);
+            }
+            this.warmUp = Boolean.parseBoolean(properties.getProperty("entity.warmUp"));
         } catch (final IllegalAccessException e) {
             throw new StepInternalException(UNABLE_TO_PARSE_CONFIGURATION_FILE, e);
         } catch (final ClassNotFoundException e) {
@@ -138,7 +146,7 @@ public class EntityConfiguration {
      * @param properties the set of properties attached to an entity
      */
     private void parseFieldConfigs(final Properties properties) {
-        int initialCapacity = properties.size() - 3;
+        int initialCapacity = properties.size() - 5;
         initialCapacity = initialCapacity > 0 ? initialCapacity : 0;
         this.luceneFieldConfiguration = new HashMap<String, FieldConfig>(initialCapacity);
 
@@ -250,6 +258,22 @@ public class EntityConfiguration {
         return this.postProcessorInstance;
     }
 
+    /**
+     * @param defaultType the type to use if the entity does not specify its own
+     * @return the way in which the index should be opened
+     */
+    public IndexDirectoryType getDirectoryType(final IndexDirectoryType defaultType) {
+        return this.directoryType != null ? this.directoryType : defaultType;
+    }
+
+    /**
+     * @return true if the index should be read through once opened, so that early searches are not slowed down by
+     *         page faults
+     */
+    public boolean isWarmUp() {
+        return this.warmUp;
+    }
+
     /**
      * @param fieldName the name of the field
      * @param fieldValue the value of that field
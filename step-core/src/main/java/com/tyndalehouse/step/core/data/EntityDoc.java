@@ -1,5 +1,6 @@
 package com.tyndalehouse.step.core.data;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
@@ -7,49 +8,115 @@ import java.util.Map;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Fieldable;
-import org.codehaus.jackson.annotate.JsonAnyGetter;
-import org.codehaus.jackson.annotate.JsonIgnore;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.JsonSerializer;
+import org.codehaus.jackson.map.SerializerProvider;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
 
 /**
+ * The stored fields of an entity, kept as two parallel arrays of names and values rather than the Lucene document
+ * itself. Only the fields that were loaded are present, so a document loaded with a field selector is smaller still.
  * 
  * @author chrisburrell
  * 
  */
+@JsonSerialize(using = EntityDoc.Serializer.class)
 public class EntityDoc implements Serializable {
-    private static final long serialVersionUID = -8509022678959062751L;
-    private final Document doc;
+    private static final long serialVersionUID = 3320981547346254713L;
+    private final String[] names;
+    private final String[] values;
 
     /**
-     * If not otherwised specified, then we get all the fields
+     * Takes all the stored fields that have been loaded on the document
      * 
      * @param doc the underlying document
      */
     public EntityDoc(final Document doc) {
-        this.doc = doc;
+        final List<Fieldable> fields = doc.getFields();
+        int count = 0;
+        for (final Fieldable field : fields) {
+            if (!field.isBinary()) {
+                count++;
+            }
+        }
+
+        this.names = new String[count];
+        this.values = new String[count];
+        int ii = 0;
+        for (final Fieldable field : fields) {
+            if (!field.isBinary()) {
+                this.names[ii] = field.name();
+                this.values[ii] = field.stringValue();
+                ii++;
+            }
+        }
     }
 
     /**
      * @param fieldName the name of the field
-     * @return a field value
+     * @return the first value of the field, or null if it was not loaded
      */
-    @JsonIgnore
     public String get(final String fieldName) {
-        return this.doc.get(fieldName);
+        for (int ii = 0; ii < this.names.length; ii++) {
+            if (this.names[ii].equals(fieldName)) {
+                return this.values[ii];
+            }
+        }
+        return null;
     }
 
     /**
-     * Returns all fields as a map
+     * Returns all fields as a map. Where a field holds several values, the last one is kept.
      * 
      * @return the map of values
      */
-    @JsonAnyGetter
     public Map<String, String> getAllFields() {
-        final List<Fieldable> fields = this.doc.getFields();
-        final Map<String, String> allFields = new HashMap<String, String>(fields.size());
-        for (final Fieldable field : fields) {
-            allFields.put(field.name(), field.stringValue());
-
+        final Map<String, String> allFields = new HashMap<String, String>(this.names.length * 2);
+        for (int ii = 0; ii < this.names.length; ii++) {
+            allFields.put(this.names[ii], this.values[ii]);
         }
         return allFields;
     }
+
+    /**
+     * @return the number of characters held in the names and values of the fields, a rough measure of the memory
+     *         the document takes up
+     */
+    public int getWeight() {
+        int weight = 0;
+        for (int ii = 0; ii < this.names.length; ii++) {
+            weight += this.names[ii].length() + (this.values[ii] == null ? 0 : this.values[ii].length());
+        }
+        return weight;
+    }
+
+    /**
+     * @param index the position of a field
+     * @return true if no later field has the same name, i.e. this value is the one that is kept
+     */
+    private boolean isLastValue(final int index) {
+        for (int ii = index + 1; ii < this.names.length; ii++) {
+            if (this.names[ii].equals(this.names[index])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the fields straight out as the properties of a JSON object, without building a map first
+     */
+    public static class Serializer extends JsonSerializer<EntityDoc> {
+        @Override
+        public void serialize(final EntityDoc value, final JsonGenerator generator, final SerializerProvider provider)
+                throws IOException {
+            generator.writeStartObject();
+            for (int ii = 0; ii < value.names.length; ii++) {
+                if (value.isLastValue(ii)) {
+                    generator.writeStringField(value.names[ii], value.values[ii]);
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
 }
@@ -1,12 +1,15 @@
 package com.tyndalehouse.step.core.data;
 
 import java.io.Closeable;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.tyndalehouse.step.core.data.common.TermsAndMaxCount;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.document.FieldSelector;
 import org.apache.lucene.queryParser.QueryParser;
 import org.apache.lucene.queryParser.QueryParser.Operator;
 import org.apache.lucene.search.BooleanQuery;
@@ -33,6 +36,12 @@ public interface EntityIndexReader extends Closeable {
      */
     void refresh();
 
+    /**
+     * @return a number that changes each time a new build of the index is opened, so that data held in memory and
+     *         derived from the index can tell when it needs rebuilding; 0 if there is no index yet
+     */
+    long getGeneration();
+
     /**
      * closes without throwing an exception
      */
@@ -57,6 +66,40 @@ public interface EntityIndexReader extends Closeable {
      */
     EntityDoc[] searchUniqueBySingleField(String fieldName, String... values);
 
+    /**
+     * Searches by a single field for multiple values, expecting each value to return just one result, loading only
+     * the stored fields that the caller needs
+     *
+     * @param fieldName     the field name
+     * @param fieldSelector the stored fields to load, or null for all of them
+     * @param values        the list of values to be retrieved
+     * @return the scored documents
+     */
+    EntityDoc[] searchUniqueBySingleField(String fieldName, FieldSelector fieldSelector, String... values);
+
+    /**
+     * Looks up a batch of values of a single field, expecting each value to return just one result. Values that
+     * do not match any document are kept in the map against a null document, so that a miss can be told apart
+     * from a value that was never looked up.
+     *
+     * @param fieldName the field name
+     * @param values    the values to be retrieved
+     * @return the documents keyed by the value that was looked up
+     */
+    Map<String, EntityDoc> lookupUniqueBySingleField(String fieldName, Collection<String> values);
+
+    /**
+     * Looks up a batch of values of a single field, as {@link #lookupUniqueBySingleField(String, Collection)}, loading
+     * only the stored fields that the caller needs
+     *
+     * @param fieldName     the field name
+     * @param fieldSelector the stored fields to load, or null for all of them
+     * @param values        the values to be retrieved
+     * @return the documents keyed by the value that was looked up
+     */
+    Map<String, EntityDoc> lookupUniqueBySingleField(String fieldName, FieldSelector fieldSelector,
+                                                     Collection<String> values);
+
     /**
      * Searches for a particular value across multiple fields
      *
@@ -171,6 +214,18 @@ public interface EntityIndexReader extends Closeable {
      */
     EntityDoc[] search(Query query, int max, Sort sortField, Filter filter);
 
+    /**
+     * Searches with a given query, loading only the stored fields that the caller needs
+     *
+     * @param query         the query
+     * @param max           the max number of results
+     * @param sortField     the field to sort by
+     * @param filter        the filter to search with
+     * @param fieldSelector the stored fields to load, or null for all of them
+     * @return the entity documents that have been found
+     */
+    EntityDoc[] search(Query query, int max, Sort sortField, Filter filter, FieldSelector fieldSelector);
+
     /**
      * Searches with a given query
      *
@@ -316,6 +371,15 @@ public interface EntityIndexReader extends Closeable {
      */
     EntityDoc[] search(BooleanQuery query, Filter filter, TopFieldCollector collector);
 
+    /**
+     * @param query         the query to be run
+     * @param filter        the filter to search with
+     * @param collector     the collector that collects the data
+     * @param fieldSelector the stored fields to load, or null for all of them
+     * @return the entity documents that have been found
+     */
+    EntityDoc[] search(BooleanQuery query, Filter filter, TopFieldCollector collector, FieldSelector fieldSelector);
+
     /**
      * Returns a query parser using the right analyzer.
      *
@@ -1,5 +1,7 @@
 package com.tyndalehouse.step.core.data;
 
+import java.util.concurrent.ExecutorService;
+
 import com.tyndalehouse.step.core.data.entities.impl.EntityIndexWriterImpl;
 
 /**
@@ -17,10 +19,18 @@ public interface EntityManager {
     EntityConfiguration getConfig(String entityName);
 
     /**
+     * Swaps the reader of the entity onto the newest generation of its index, telling the refresh listeners if it
+     * has changed
+     *
      * @param entity the name of the entity to refresh
      */
     void refresh(String entity);
 
+    /**
+     * @param listener told each time the index of an entity is swapped for a newer generation
+     */
+    void addRefreshListener(EntityRefreshListener listener);
+
     /**
      * @param entity the name of the entity
      * @return the reader of the index
@@ -38,4 +48,11 @@ public interface EntityManager {
      */
     EntityIndexWriterImpl getNewWriter(String entity);
 
+    /**
+     * @param entity           the entity name
+     * @param indexingExecutor the executor on which the documents are indexed
+     * @return entity writer, writing straight to disk
+     */
+    EntityIndexWriterImpl getNewWriter(String entity, ExecutorService indexingExecutor);
+
 }
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.data;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+
+import com.tyndalehouse.step.core.exceptions.StepInternalException;
+import com.tyndalehouse.step.core.utils.IOUtils;
+
+/**
+ * The ways in which an entity index can be opened for reading. Configured globally with app.index.directory, and per
+ * entity with entity.directory.
+ */
+public enum IndexDirectoryType {
+    /**
+     * maps the index files into memory, leaving the OS to page them in
+     */
+    MMAP {
+        @Override
+        public Directory open(final File path) throws IOException {
+            return new MMapDirectory(path);
+        }
+    },
+    /**
+     * reads the index files through NIO channels
+     */
+    NIO {
+        @Override
+        public Directory open(final File path) throws IOException {
+            return new NIOFSDirectory(path);
+        }
+    },
+    /**
+     * copies the whole index onto the heap, only sensible for small indexes
+     */
+    RAM {
+        @Override
+        public Directory open(final File path) throws IOException {
+            final Directory source = FSDirectory.open(path);
+            try {
+                return new RAMDirectory(source);
+            } finally {
+                IOUtils.closeQuietly(source);
+            }
+        }
+    };
+
+    /**
+     * Opens the index directory
+     *
+     * @param path the directory of the index
+     * @return the directory, to be closed by the caller
+     * @throws IOException the directory could not be opened
+     */
+    public abstract Directory open(File path) throws IOException;
+
+    /**
+     * @param value the configured value, e.g. mmap, nio or ram
+     * @return the matching type
+     */
+    public static IndexDirectoryType fromProperty(final String value) {
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (final IllegalArgumentException e) {
+            throw new StepInternalException("Unknown index directory type: " + value, e);
+        }
+    }
+
+    /**
+     * app.index.directory replaced app.index.memoryMapped, which is still honoured for installations that set it
+     *
+     * @param value        the configured value of app.index.directory
+     * @param memoryMapped the value of app.index.memoryMapped, or null if it is not set
+     * @return MMAP or NIO as the old property asks, if it is set, or else the type matching the value
+     */
+    public static IndexDirectoryType fromProperties(final String value, final String memoryMapped) {
+        if (memoryMapped == null || memoryMapped.trim().length() == 0) {
+            return fromProperty(value);
+        }
+        return Boolean.parseBoolean(memoryMapped.trim()) ? MMAP : NIO;
+    }
+}
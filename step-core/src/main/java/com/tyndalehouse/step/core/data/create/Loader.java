@@ -34,7 +34,14 @@ package com.tyndalehouse.step.core.data.create;
 
 import java.util.*;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -42,6 +49,8 @@ import javax.inject.Provider;
 
 import com.tyndalehouse.step.core.exceptions.StepInternalException;
 import com.tyndalehouse.step.core.service.AppManagerService;
+import com.tyndalehouse.step.core.service.helpers.AugmentedStrongTable;
+import com.tyndalehouse.step.core.service.helpers.NaveReferenceBitmaps;
 import com.tyndalehouse.step.core.utils.StringUtils;
 import org.crosswire.common.progress.JobManager;
 import org.crosswire.common.progress.WorkEvent;
@@ -60,17 +69,22 @@ import com.tyndalehouse.step.core.data.loaders.TimelineStreamingCsvModuleLoader;
 import com.tyndalehouse.step.core.models.ClientSession;
 import com.tyndalehouse.step.core.service.jsword.JSwordModuleService;
 import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
+import com.tyndalehouse.step.core.service.jsword.helpers.ChapterStatsTables;
+import com.tyndalehouse.step.core.service.jsword.helpers.StrongFrequencyTables;
 
 /**
  * The object that will be responsible for loading all the data into Lucene and downloading key versions of
  * the Bible.
  * <p/>
- * Note, this object is not thread-safe.
+ * Note, this object is not thread-safe. When app.loader.parallel is set, the entities are loaded alongside each
+ * other on a fork-join pool, and the documents of each are indexed on a shared pool of threads.
  *
  * @author chrisburrell
  */
 public class Loader {
     private static final Logger LOGGER = LoggerFactory.getLogger(Loader.class);
+    private static final String[] ENTITIES = new String[]{"nave", "definition", "specificForm", "morphology",
+            "versionInfo", "alternativeTranslations", "obplace", "hotspot", "timelineEvent", "augmentedStrongs"};
     private final JSwordPassageService jsword;
     private final Properties coreProperties;
     private final JSwordModuleService jswordModule;
@@ -82,10 +96,17 @@ public class Loader {
     private final Provider<ClientSession> clientSessionProvider;
     private String runningAppVersion;
     private AppManagerService appManager;
+    private final StrongFrequencyTables strongFrequencyTables;
+    private final AugmentedStrongTable augmentedStrongTable;
+    private final ChapterStatsTables chapterStatsTables;
+    private final NaveReferenceBitmaps naveReferenceBitmaps;
     private WorkListener workListener;
-    private int totalProgress = 0;
-    private int totalItems = 6;
+    private final AtomicInteger totalProgress = new AtomicInteger();
+    private int totalItems = ENTITIES.length;
     private boolean inProgress = false;
+    private final boolean parallel;
+    private ExecutorService indexingExecutor;
+    private volatile Locale progressLocale;
 
     /**
      * The loader is given a connection source to load the data.
@@ -95,12 +116,20 @@ public class Loader {
      * @param coreProperties        the step core properties
      * @param entityManager         the entity manager
      * @param clientSessionProvider the client session provider
+     * @param strongFrequencyTables the counts of each strong number, rebuilt once the data is loaded
+     * @param augmentedStrongTable  the augmented strongs held in memory, read again once the data is loaded
+     * @param chapterStatsTables    the counts of the words in each chapter, discarded once the data is loaded
+     * @param naveReferenceBitmaps  the references of each nave entry, built once the data is loaded
      */
     @Inject
     public Loader(final JSwordPassageService jsword, final JSwordModuleService jswordModule,
                   @Named("StepCoreProperties") final Properties coreProperties, final EntityManager entityManager,
                   final Provider<ClientSession> clientSessionProvider,
-                  AppManagerService appManager
+                  AppManagerService appManager,
+                  final StrongFrequencyTables strongFrequencyTables,
+                  final AugmentedStrongTable augmentedStrongTable,
+                  final ChapterStatsTables chapterStatsTables,
+                  final NaveReferenceBitmaps naveReferenceBitmaps
     ) {
         this.jsword = jsword;
         this.jswordModule = jswordModule;
@@ -109,6 +138,11 @@ public class Loader {
         this.clientSessionProvider = clientSessionProvider;
         this.runningAppVersion = coreProperties.getProperty(AppManagerService.APP_VERSION);
         this.appManager = appManager;
+        this.strongFrequencyTables = strongFrequencyTables;
+        this.augmentedStrongTable = augmentedStrongTable;
+        this.chapterStatsTables = chapterStatsTables;
+        this.naveReferenceBitmaps = naveReferenceBitmaps;
+        this.parallel = Boolean.parseBoolean(coreProperties.getProperty("app.loader.parallel"));
         String[] specificModules = StringUtils.split(coreProperties.getProperty("app.install.specific.modules"), ",");
         for (String module : specificModules) {
             this.appSpecificModules.add(module);
@@ -122,7 +156,8 @@ public class Loader {
         if (this.inProgress) {
             return;
         }
-        this.totalProgress = 0;
+        this.totalProgress.set(0);
+        this.totalItems = ENTITIES.length;
         try {
             this.inProgress = true;
             listenInJobs();
@@ -189,10 +224,10 @@ public class Loader {
      */
     private void installAndIndex(final String version) {
         syncInstall(version);
-        this.totalProgress += 1;
+        this.totalProgress.incrementAndGet();
         this.addUpdate("install_making_version_searchable", version);
         this.jswordModule.reIndex(version);
-        this.totalProgress += 1;
+        this.totalProgress.incrementAndGet();
     }
 
     /**
@@ -233,31 +268,109 @@ public class Loader {
      */
     private void loadData() {
         LOGGER.info("Loading initial data");
-        loadNave();
-        this.totalProgress += 1;
-        loadLexiconDefinitions();
-        this.totalProgress += 1;
-        loadSpecificForms();
-        this.totalProgress += 1;
-        loadRobinsonMorphology();
-        this.totalProgress += 1;
-        loadVersionInformation();
-        this.totalProgress += 1;
-        loadAlternativeTranslations();
-        this.totalProgress += 1;
-        loadOpenBibleGeography();
-
-        loadHotSpots();
-        loadTimeline();
-        loadAugmentedStrongs();
+        if (this.parallel) {
+            loadDataInParallel();
+        } else {
+            for (final String entity : ENTITIES) {
+                loadEntity(entity);
+                this.totalProgress.incrementAndGet();
+            }
+        }
+
+        // the counts depend on both the indexed books and the augmented strongs
+        this.augmentedStrongTable.rebuild();
+        this.strongFrequencyTables.rebuild();
+        this.chapterStatsTables.rebuild();
+        this.naveReferenceBitmaps.rebuild();
         LOGGER.info("Finished loading...");
     }
 
+    /**
+     * Loads each entity as a separate task on a fork-join pool, with the documents being indexed on a separate pool
+     * so that parsing does not wait on indexing.
+     */
+    private void loadDataInParallel() {
+        final int threads = Runtime.getRuntime().availableProcessors();
+        final ForkJoinPool entityPool = new ForkJoinPool(threads);
+        this.indexingExecutor = Executors.newFixedThreadPool(threads);
+
+        // the client session is not available on the pool's threads
+        this.progressLocale = getLocale();
+        try {
+            final List<Callable<Integer>> loads = new ArrayList<Callable<Integer>>(ENTITIES.length);
+            for (final String entity : ENTITIES) {
+                loads.add(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        final int count = loadEntity(entity);
+                        Loader.this.totalProgress.incrementAndGet();
+                        return count;
+                    }
+                });
+            }
+
+            for (final Future<Integer> load : entityPool.invokeAll(loads)) {
+                load.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StepInternalException("Interrupted while loading data", e);
+        } catch (final ExecutionException e) {
+            throw new StepInternalException("Unable to load data", e.getCause());
+        } finally {
+            entityPool.shutdown();
+            this.indexingExecutor.shutdown();
+            this.indexingExecutor = null;
+            this.progressLocale = null;
+        }
+    }
+
+    /**
+     * @param entity the name of the entity
+     * @return the number of entries loaded
+     */
+    int loadEntity(final String entity) {
+        switch (entity) {
+            case "nave":
+                return loadNave();
+            case "definition":
+                return loadLexiconDefinitions();
+            case "specificForm":
+                return loadSpecificForms();
+            case "morphology":
+                return loadRobinsonMorphology();
+            case "versionInfo":
+                return loadVersionInformation();
+            case "alternativeTranslations":
+                return loadAlternativeTranslations();
+            case "obplace":
+                return loadOpenBibleGeography();
+            case "hotspot":
+                return loadHotSpots();
+            case "timelineEvent":
+                return loadTimeline();
+            case "augmentedStrongs":
+                return loadAugmentedStrongs();
+            default:
+                throw new StepInternalException("Unknown entity: " + entity);
+        }
+    }
+
+    /**
+     * @param entity the name of the entity
+     * @return a writer for the entity, indexing on the shared pool when loading in parallel
+     */
+    private EntityIndexWriterImpl getNewWriter(final String entity) {
+        final ExecutorService executor = this.indexingExecutor;
+        return executor == null ? this.entityManager.getNewWriter(entity)
+                : this.entityManager.getNewWriter(entity, executor);
+    }
+
     int loadAugmentedStrongs() {
         LOGGER.debug("Indexing augmented strongs");
         this.addUpdate("install_augmented_strongs");
 
-        final EntityIndexWriterImpl writer = this.entityManager.getNewWriter("augmentedStrongs");
+        final EntityIndexWriterImpl writer = this.getNewWriter("augmentedStrongs");
 
         final HeadwordLineBasedLoader loader = new HeadwordLineBasedLoader(writer,
                 this.coreProperties.getProperty("test.data.path.augmentedstrongs"));
@@ -278,7 +391,7 @@ public class Loader {
         LOGGER.debug("Indexing Alternative versions");
         this.addUpdate("install_alternative_meanings");
 
-        final EntityIndexWriterImpl writer = this.entityManager.getNewWriter("alternativeTranslations");
+        final EntityIndexWriterImpl writer = this.getNewWriter("alternativeTranslations");
 
         final HeadwordLineBasedLoader loader = new HeadwordLineBasedLoader(writer,
                 this.coreProperties.getProperty("test.data.path.alternatives.translations"));
@@ -301,7 +414,7 @@ public class Loader {
         LOGGER.debug("Indexing nave subjects");
         this.addUpdate("install_subject_search");
 
-        final EntityIndexWriterImpl writer = this.entityManager.getNewWriter("nave");
+        final EntityIndexWriterImpl writer = this.getNewWriter("nave");
 
         final HeadwordLineBasedLoader loader = new HeadwordLineBasedLoader(writer,
                 this.coreProperties.getProperty("test.data.path.subjects.nave"));
@@ -325,7 +438,7 @@ public class Loader {
 
         LOGGER.debug("Loading hotspots");
 
-        final EntityIndexWriterImpl writer = this.entityManager.getNewWriter("hotspot");
+        final EntityIndexWriterImpl writer = this.getNewWriter("hotspot");
         new StreamingCsvModuleLoader(writer,
                 this.coreProperties.getProperty("test.data.path.timeline.hotspots")).init(this);
         return writer.close();
@@ -340,7 +453,7 @@ public class Loader {
         this.addUpdate("install_grammar");
 
         LOGGER.debug("Loading robinson morphology");
-        final EntityIndexWriterImpl writer = this.entityManager.getNewWriter("morphology");
+        final EntityIndexWriterImpl writer = this.getNewWriter("morphology");
         new StreamingCsvModuleLoader(writer,
                 this.coreProperties.getProperty("test.data.path.morphology.robinson")).init(this);
 
@@ -361,7 +474,7 @@ public class Loader {
         this.addUpdate("install_descriptions");
 
         LOGGER.debug("Loading version information");
-        final EntityIndexWriterImpl writer = this.entityManager.getNewWriter("versionInfo");
+        final EntityIndexWriterImpl writer = this.getNewWriter("versionInfo");
         new StreamingCsvModuleLoader(writer, this.coreProperties.getProperty("test.data.path.versions.info"))
                 .init(this);
         final int close = writer.close();
@@ -380,7 +493,7 @@ public class Loader {
         this.addUpdate("install_timeline");
 
         LOGGER.debug("Loading timeline");
-        final EntityIndexWriterImpl writer = this.entityManager.getNewWriter("timelineEvent");
+        final EntityIndexWriterImpl writer = this.getNewWriter("timelineEvent");
 
         new TimelineStreamingCsvModuleLoader(writer,
                 this.coreProperties.getProperty("test.data.path.timeline.events.directory"), this.jsword)
@@ -402,7 +515,7 @@ public class Loader {
 
         LOGGER.debug("Loading Open Bible geography");
 
-        final EntityIndexWriterImpl writer = this.entityManager.getNewWriter("obplace");
+        final EntityIndexWriterImpl writer = this.getNewWriter("obplace");
         new GeoStreamingCsvModuleLoader(writer,
                 this.coreProperties.getProperty("test.data.path.geography.openbible"), this.jsword)
                 .init(this);
@@ -422,7 +535,7 @@ public class Loader {
         this.addUpdate("install_hebrew_definitions");
 
         LOGGER.debug("Indexing lexicon");
-        final EntityIndexWriterImpl writer = this.entityManager.getNewWriter("definition");
+        final EntityIndexWriterImpl writer = this.getNewWriter("definition");
 
         LOGGER.debug("-Indexing greek");
         this.addUpdate("install_greek_definitions");
@@ -458,7 +571,7 @@ public class Loader {
         LOGGER.debug("Loading lexical forms");
         this.addUpdate("install_original_word_forms");
 
-        final EntityIndexWriterImpl writer = this.entityManager.getNewWriter("specificForm");
+        final EntityIndexWriterImpl writer = this.getNewWriter("specificForm");
         new SpecificFormsLoader(writer, this.coreProperties.getProperty("test.data.path.lexicon.forms"))
                 .init(this);
         final int close = writer.close();
@@ -485,7 +598,7 @@ public class Loader {
      * @return the the total amount of progress of the installation so far
      */
     public int getTotalProgress() {
-        return (int) ((double) this.totalProgress / this.totalItems * 100);
+        return (int) ((double) this.totalProgress.get() / this.totalItems * 100);
     }
 
     /**
@@ -495,16 +608,23 @@ public class Loader {
      * @param args the args the arguments to use in the format
      */
     void addUpdate(final String key, final Object... args) {
-        Locale locale;
+        final Locale fixedLocale = this.progressLocale;
+        final Locale locale = fixedLocale != null ? fixedLocale : getLocale();
+        this.progress.offer(String.format(ResourceBundle.getBundle("SetupBundle", locale).getString(key),
+                args));
+    }
+
+    /**
+     * @return the locale of the user installing the data
+     */
+    private Locale getLocale() {
         try {
-            locale = this.clientSessionProvider.get().getLocale();
+            return this.clientSessionProvider.get().getLocale();
         } catch (final ProvisionException ex) {
             LOGGER.debug("Loader can't get client session");
             LOGGER.trace("Unable to provision", ex);
-            locale = Locale.ENGLISH;
+            return Locale.ENGLISH;
         }
-        this.progress.offer(String.format(ResourceBundle.getBundle("SetupBundle", locale).getString(key),
-                args));
     }
 
     /**
@@ -518,7 +638,7 @@ public class Loader {
      * @param totalProgress the total amount of progress so far
      */
     void setTotalProgress(final int totalProgress) {
-        this.totalProgress = totalProgress;
+        this.totalProgress.set(totalProgress);
     }
 
     /**
@@ -5,18 +5,26 @@ import static org.apache.lucene.util.Version.LUCENE_30;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
-import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.tyndalehouse.step.core.data.common.TermsAndMaxCount;
-import com.tyndalehouse.step.core.utils.LuceneUtils;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.tokenattributes.TermAttribute;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
 import org.apache.lucene.queryParser.MultiFieldQueryParser;
 import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.queryParser.QueryParser;
@@ -24,8 +32,6 @@ import org.apache.lucene.queryParser.QueryParser.Operator;
 import org.apache.lucene.search.*;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.store.Directory;
-import org.apache.lucene.store.FSDirectory;
-import org.apache.lucene.store.MMapDirectory;
 import org.slf4j.Logger;
 
 import com.tyndalehouse.step.core.data.AllResultsCollector;
@@ -33,8 +39,10 @@ import com.tyndalehouse.step.core.data.AnalyzedPrefixSearchQueryParser;
 import com.tyndalehouse.step.core.data.EntityConfiguration;
 import com.tyndalehouse.step.core.data.EntityDoc;
 import com.tyndalehouse.step.core.data.EntityIndexReader;
+import com.tyndalehouse.step.core.data.IndexDirectoryType;
 import com.tyndalehouse.step.core.exceptions.StepInternalException;
 import com.tyndalehouse.step.core.utils.IOUtils;
+import com.tyndalehouse.step.core.utils.StepThreadFactory;
 
 /**
  * Reads an entity
@@ -43,20 +51,21 @@ import com.tyndalehouse.step.core.utils.IOUtils;
  */
 public class EntityIndexReaderImpl implements EntityIndexReader {
     private static final Logger LOGGER = org.slf4j.LoggerFactory.getLogger(EntityIndexReaderImpl.class);
-    private IndexSearcher searcher;
-    private Directory directory;
+    private static final ExecutorService WARM_UP_EXECUTOR = Executors.newSingleThreadExecutor(
+            new StepThreadFactory("index-warm-up"));
+    private final AtomicReference<SearcherGeneration> current = new AtomicReference<SearcherGeneration>();
     private final EntityConfiguration config;
-    private boolean memoryMapped;
+    private IndexDirectoryType directoryType;
 
     /**
      * Entity reader
      *
-     * @param config       the config about the reader
-     * @param memoryMapped true to indicate index should be stored in memory
+     * @param config        the config about the reader
+     * @param directoryType the way in which the index is opened, unless the entity specifies its own
      */
-    public EntityIndexReaderImpl(final EntityConfiguration config, final boolean memoryMapped) {
+    public EntityIndexReaderImpl(final EntityConfiguration config, final IndexDirectoryType directoryType) {
         this.config = config;
-        this.memoryMapped = memoryMapped;
+        this.directoryType = config.getDirectoryType(directoryType);
         initialise();
     }
 
@@ -78,48 +87,171 @@ public class EntityIndexReaderImpl implements EntityIndexReader {
      * Initialises the index reader
      */
     private void initialise() {
+        final SearcherGeneration generation = openLatestGeneration();
+        swap(generation);
+        if (generation != null && this.config.isWarmUp()) {
+            warmUpInBackground(generation);
+        }
+    }
+
+    /**
+     * @return a searcher over the latest generation of the index, or null if there is none readable
+     */
+    private SearcherGeneration openLatestGeneration() {
+        final File entityRoot = new File(this.config.getLocation());
+        final File location = IndexGenerations.getLatest(entityRoot);
+        if (location == null) {
+            return null;
+        }
+
+        final Directory directory = openDirectory(location);
         try {
-            openDirectory(this.config, this.memoryMapped);
-            if (this.directory != null) {
-                this.searcher = new IndexSearcher(this.directory, true);
-            }
+            return new SearcherGeneration(new InstrumentedIndexSearcher(directory, this.config.getName()),
+                    directory, entityRoot, location);
         } catch (final IOException e) {
+            IOUtils.closeQuietly(directory);
             LOGGER.warn("Index not readable - it may not yet have been created.");
             LOGGER.trace("Trace for exception:", e);
+            return null;
+        }
+    }
+
+    /**
+     * Makes the generation current, leaving the previous one to close once its searches have finished.
+     *
+     * @param generation the new generation
+     */
+    private void swap(final SearcherGeneration generation) {
+        final SearcherGeneration previous = this.current.getAndSet(generation);
+        if (previous != null) {
+            previous.release();
+        }
+    }
+
+    /**
+     * @return the current generation, which must be released once the search is done
+     */
+    private SearcherGeneration acquire() {
+        while (true) {
+            final SearcherGeneration generation = this.current.get();
+            if (generation == null) {
+                throw new StepInternalException("Index is not available: " + this.config.getName());
+            }
+
+            if (generation.acquire()) {
+                return generation;
+            }
         }
     }
 
     @Override
     public void refresh() {
-        close();
-        initialise();
+        final SearcherGeneration generation = openLatestGeneration();
+        if (generation == null) {
+            LOGGER.warn("Keeping the current index of [{}], as no newer one could be opened", this.config.getName());
+            return;
+        }
+
+        // searches only move across to the new generation once it has been read through
+        if (this.config.isWarmUp()) {
+            warmUp(generation.getSearcher());
+        }
+        swap(generation);
     }
 
     @Override
-    public void close() {
-        IOUtils.closeQuietly(this.searcher);
-        IOUtils.closeQuietly(this.directory);
+    public long getGeneration() {
+        final SearcherGeneration generation = this.current.get();
+        return generation == null ? 0 : generation.getSerial();
+    }
+
+    /**
+     * Warms up the generation on a background thread, so that start-up is not held up by it.
+     *
+     * @param generation the generation, which is kept open until the warm-up has finished
+     */
+    private void warmUpInBackground(final SearcherGeneration generation) {
+        if (!generation.acquire()) {
+            return;
+        }
+
+        WARM_UP_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    warmUp(generation.getSearcher());
+                } finally {
+                    generation.release();
+                }
+            }
+        });
     }
 
     /**
-     * Gets the best implementation of the directory
+     * Reads through the term dictionary and the stored fields of every document, so that the pages of the index are
+     * loaded before the first searches need them.
      *
-     * @param configuration      config
-     * @param memoryMapDirectory memory mapped directories
+     * @param searcher the searcher over the index
      */
-    private void openDirectory(final EntityConfiguration configuration, final boolean memoryMapDirectory) {
+    private void warmUp(final IndexSearcher searcher) {
+        final long start = System.currentTimeMillis();
+        final IndexReader reader = searcher.getIndexReader();
+        TermEnum terms = null;
         try {
-            final URI entityIndexPath = configuration.getLocation();
-            final File path = new File(entityIndexPath);
-            if (!path.exists()) {
-                return;
+            int termCount = 0;
+            terms = reader.terms();
+            while (terms.next()) {
+                termCount++;
             }
 
-            if (memoryMapDirectory) {
-                this.directory = MMapDirectory.open(path);
+            final int maxDoc = reader.maxDoc();
+            for (int i = 0; i < maxDoc; i++) {
+                if (!reader.isDeleted(i)) {
+                    reader.document(i);
+                }
             }
+            LOGGER.info("Warmed up [{}] index ({} terms, {} documents) in {}ms", new Object[] {
+                    this.config.getName(), termCount, maxDoc, System.currentTimeMillis() - start });
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to warm up index of [{}]", this.config.getName());
+            LOGGER.trace("Trace for exception:", e);
+        } catch (final RuntimeException e) {
+            LOGGER.warn("Unable to warm up index of [{}]", this.config.getName());
+            LOGGER.trace("Trace for exception:", e);
+        } finally {
+            closeQuietly(terms);
+        }
+    }
+
+    /**
+     * @param terms the term enumeration to close, may be null
+     */
+    private static void closeQuietly(final TermEnum terms) {
+        if (terms == null) {
+            return;
+        }
 
-            this.directory = FSDirectory.open(path);
+        try {
+            terms.close();
+        } catch (final IOException e) {
+            LOGGER.trace("Unable to close term enumeration", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        swap(null);
+    }
+
+    /**
+     * Opens the directory in the way configured for this entity
+     *
+     * @param path the directory of the index
+     * @return the directory
+     */
+    private Directory openDirectory(final File path) {
+        try {
+            return this.directoryType.open(path);
         } catch (final IOException e) {
             throw new StepInternalException("Unable to read directory", e);
         }
@@ -134,8 +266,50 @@ public class EntityIndexReaderImpl implements EntityIndexReader {
 
     @Override
     public EntityDoc[] searchUniqueBySingleField(final String fieldName, final String... values) {
+        return searchUniqueBySingleField(fieldName, null, values);
+    }
+
+    @Override
+    public EntityDoc[] searchUniqueBySingleField(final String fieldName, final FieldSelector fieldSelector,
+                                                 final String... values) {
         final Query query = getQuery(fieldName, values);
-        return search(query, values.length, null, null);
+        return search(query, values.length, null, null, fieldSelector);
+    }
+
+    @Override
+    public Map<String, EntityDoc> lookupUniqueBySingleField(final String fieldName, final Collection<String> values) {
+        return lookupUniqueBySingleField(fieldName, null, values);
+    }
+
+    @Override
+    public Map<String, EntityDoc> lookupUniqueBySingleField(final String fieldName, final FieldSelector fieldSelector,
+                                                            final Collection<String> values) {
+        final Map<String, EntityDoc> results = new HashMap<String, EntityDoc>(values.size() * 2);
+
+        // each value is sought directly in the terms of the field, so that each document is keyed by the value
+        // that found it, rather than by its stored value, which need not be written the same way
+        final SearcherGeneration generation = acquire();
+        TermDocs termDocs = null;
+        try {
+            final IndexReader reader = generation.getSearcher().getIndexReader();
+            termDocs = reader.termDocs();
+            final Term field = new Term(fieldName);
+            for (final String value : values) {
+                if (results.containsKey(value)) {
+                    continue;
+                }
+
+                termDocs.seek(field.createTerm(value));
+                results.put(value, termDocs.next() ? new EntityDoc(reader.document(termDocs.doc(), fieldSelector))
+                        : null);
+            }
+        } catch (final IOException e) {
+            throw new StepInternalException("Unable to look up " + fieldName, e);
+        } finally {
+            IOUtils.closeQuietly(termDocs);
+            generation.release();
+        }
+        return results;
     }
 
     @Override
@@ -214,15 +388,21 @@ public class EntityIndexReaderImpl implements EntityIndexReader {
 
             LOGGER.debug("Search query is [{}]", parsed);
 
-            if (sort != null) {
-                final TopFieldDocs search = this.searcher.search(parsed, filter,
-                        maxResults == null ? Integer.MAX_VALUE : maxResults, sort);
+            final SearcherGeneration generation = acquire();
+            try {
+                final IndexSearcher searcher = generation.getSearcher();
+                if (sort != null) {
+                    final TopFieldDocs search = searcher.search(parsed, filter,
+                            maxResults == null ? Integer.MAX_VALUE : maxResults, sort);
 
-                return extractDocIds(search);
+                    return extractDocIds(searcher, search, null);
 
-            } else {
-                this.searcher.search(parsed, filter, collector);
-                return extractDocIds(collector);
+                } else {
+                    searcher.search(parsed, filter, collector);
+                    return extractDocIds(searcher, collector, null);
+                }
+            } finally {
+                generation.release();
             }
         } catch (final ParseException e) {
             throw new StepInternalException("Unable to parse query", e);
@@ -245,15 +425,20 @@ public class EntityIndexReaderImpl implements EntityIndexReader {
             return hits;
         }
 
-        if (fieldNames.length == 1) {
-            return LuceneUtils.getAllTermsPrefixedWith(exact, trackMax, this.searcher, fieldNames[0], searchTerm, maxReturned);
-        }
+        final SearcherGeneration generation = acquire();
+        try {
+            if (fieldNames.length == 1) {
+                return generation.getPrefixTermIndex(fieldNames[0]).find(exact, searchTerm, maxReturned);
+            }
 
-        hits.setTerms(new HashSet<String>(32));
-        for (int ii = 0; ii < fieldNames.length; ii++) {
-            final TermsAndMaxCount termsByField = LuceneUtils.getAllTermsPrefixedWith(exact, trackMax, this.searcher, fieldNames[ii], searchTerm, maxReturned);
-            hits.getTerms().addAll(termsByField.getTerms());
-            hits.setTotalCount(hits.getTotalCount() + termsByField.getTotalCount());
+            hits.setTerms(new HashSet<String>(32));
+            for (int ii = 0; ii < fieldNames.length; ii++) {
+                final TermsAndMaxCount termsByField = generation.getPrefixTermIndex(fieldNames[ii]).find(exact, searchTerm, maxReturned);
+                hits.getTerms().addAll(termsByField.getTerms());
+                hits.setTotalCount(hits.getTotalCount() + termsByField.getTotalCount());
+            }
+        } finally {
+            generation.release();
         }
 
         //total count, is count - the existing ters
@@ -264,15 +449,18 @@ public class EntityIndexReaderImpl implements EntityIndexReader {
     /**
      * Extracts all the results
      *
-     * @param results the results that have been collected
+     * @param searcher      the searcher that found the results
+     * @param results       the results that have been collected
+     * @param fieldSelector the stored fields to load, or null for all of them
      * @return the results
      */
-    private EntityDoc[] extractDocIds(final TopDocs results) {
+    private EntityDoc[] extractDocIds(final IndexSearcher searcher, final TopDocs results,
+                                      final FieldSelector fieldSelector) {
         try {
             final ScoreDoc[] scoreDocs = results.scoreDocs;
             final EntityDoc[] docs = new EntityDoc[scoreDocs.length];
             for (int ii = 0; ii < scoreDocs.length; ii++) {
-                docs[ii] = new EntityDoc(this.searcher.doc(scoreDocs[ii].doc));
+                docs[ii] = new EntityDoc(searcher.doc(scoreDocs[ii].doc, fieldSelector));
             }
             return docs;
         } catch (final IOException e) {
@@ -299,27 +487,33 @@ public class EntityIndexReaderImpl implements EntityIndexReader {
     @Override
     public EntityDoc[] search(final Query query) {
         final AllResultsCollector collector = new AllResultsCollector();
+        final SearcherGeneration generation = acquire();
         try {
             LOGGER.debug("Search query is [{}], with filter [{}]", query);
-            this.searcher.search(query, collector);
-            return extractDocIds(collector);
+            generation.getSearcher().search(query, collector);
+            return extractDocIds(generation.getSearcher(), collector, null);
         } catch (final IOException e) {
             throw new StepInternalException("Unable to search", e);
+        } finally {
+            generation.release();
         }
     }
 
     /**
      * Extracts the query results into an entity doc
      *
-     * @param collector the collector with the results
+     * @param searcher      the searcher that found the results
+     * @param collector     the collector with the results
+     * @param fieldSelector the stored fields to load, or null for all of them
      * @return all the entity documents
      */
-    private EntityDoc[] extractDocIds(final AllResultsCollector collector) {
+    private EntityDoc[] extractDocIds(final IndexSearcher searcher, final AllResultsCollector collector,
+                                      final FieldSelector fieldSelector) {
         try {
-            final List<Integer> docIds = collector.getDocIds();
-            final EntityDoc[] docs = new EntityDoc[docIds.size()];
-            for (int ii = 0; ii < docIds.size(); ii++) {
-                docs[ii] = new EntityDoc(this.searcher.doc(docIds.get(ii)));
+            final int[] docIds = collector.getDocIds();
+            final EntityDoc[] docs = new EntityDoc[collector.getSize()];
+            for (int ii = 0; ii < docs.length; ii++) {
+                docs[ii] = new EntityDoc(searcher.doc(docIds[ii], fieldSelector));
             }
             return docs;
         } catch (final IOException e) {
@@ -329,23 +523,28 @@ public class EntityIndexReaderImpl implements EntityIndexReader {
 
     @Override
     public EntityDoc[] search(final Query query, final int max, final Sort sortField, final Filter filter) {
+        return search(query, max, sortField, filter, null);
+    }
+
+    @Override
+    public EntityDoc[] search(final Query query, final int max, final Sort sortField, final Filter filter,
+                              final FieldSelector fieldSelector) {
         LOGGER.debug("Search query is [{}]", query);
+        final SearcherGeneration generation = acquire();
         try {
+            final IndexSearcher searcher = generation.getSearcher();
             final TopDocs search;
             if (sortField != null) {
-                search = this.searcher.search(query, filter, max, sortField);
+                search = searcher.search(query, filter, max, sortField);
             } else {
-                search = this.searcher.search(query, filter, max);
-            }
-
-            final EntityDoc[] results = new EntityDoc[search.scoreDocs.length];
-            for (int ii = 0; ii < search.scoreDocs.length; ii++) {
-                results[ii] = new EntityDoc(this.searcher.doc(search.scoreDocs[ii].doc));
+                search = searcher.search(query, filter, max);
             }
 
-            return results;
+            return extractDocIds(searcher, search, fieldSelector);
         } catch (final IOException e) {
             throw new StepInternalException("Failed to search", e);
+        } finally {
+            generation.release();
         }
     }
 
@@ -456,11 +655,20 @@ public class EntityIndexReaderImpl implements EntityIndexReader {
 
     @Override
     public EntityDoc[] search(BooleanQuery query, Filter filter, TopFieldCollector collector) {
+        return search(query, filter, collector, null);
+    }
+
+    @Override
+    public EntityDoc[] search(final BooleanQuery query, final Filter filter, final TopFieldCollector collector,
+                              final FieldSelector fieldSelector) {
+        final SearcherGeneration generation = acquire();
         try {
-            this.searcher.search(query, filter, collector);
-            return extractDocIds(collector.topDocs());
+            generation.getSearcher().search(query, filter, collector);
+            return extractDocIds(generation.getSearcher(), collector.topDocs(), fieldSelector);
         } catch (IOException e) {
             throw new StepInternalException(e.getMessage(), e);
+        } finally {
+            generation.release();
         }
     }
 
@@ -483,6 +691,6 @@ public class EntityIndexReaderImpl implements EntityIndexReader {
      * @param searcher the searcher to set
      */
     void setSearcher(final IndexSearcher searcher) {
-        this.searcher = searcher;
+        swap(new SearcherGeneration(searcher, null, null, null));
     }
 }
@@ -6,6 +6,9 @@ import java.io.File;
 import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
@@ -27,13 +30,26 @@ import com.tyndalehouse.step.core.exceptions.StepInternalException;
 
 /**
  * Reads a file and creates the equivalent Lucene index for it. This class is not thread safe.
+ * <p/>
+ * If given an executor, documents are post-processed on the executor's threads while the caller carries on parsing,
+ * and the index is written straight to disk rather than copied from memory on close. Documents are still added to the
+ * index in the order in which they were saved, so that entries of equal score come back in the same order however
+ * the index was built.
  * 
  * @author chrisburrell
  * 
  */
 public class EntityIndexWriterImpl {
     private static final Logger LOGGER = LoggerFactory.getLogger(EntityIndexWriterImpl.class);
-    private final Directory ramDirectory;
+    private static final int MAX_PENDING_DOCUMENTS = 1024;
+    private final Directory directory;
+    private File generation;
+    private final ExecutorService indexingExecutor;
+    private final Semaphore pendingDocuments = new Semaphore(MAX_PENDING_DOCUMENTS);
+    private final AtomicReference<Throwable> indexingFailure = new AtomicReference<Throwable>();
+    private final Map<Long, Document> processedDocuments = new HashMap<Long, Document>();
+    private long nextSaved;
+    private long nextToAdd;
     private IndexWriter writer;
     private final Map<String, List<FieldConfig>> luceneFieldConfigurationByRaw;
     private final EntityConfiguration config;
@@ -50,7 +66,23 @@ public class EntityIndexWriterImpl {
     // we specifically allow a method to be overridden for testing purposes.
     @SuppressWarnings("PMD")
     public EntityIndexWriterImpl(final EntityManager entityManager, final String entityName) {
+        this(entityManager, entityName, null);
+    }
+
+    /**
+     * Responsible for writing items to an index, straight to disk, with the documents being indexed on the
+     * executor's threads.
+     *
+     * @param entityManager    the configuration for that entity
+     * @param entityName       the name of the entity
+     * @param indexingExecutor the executor on which documents are indexed, or null to index them on the calling
+     *                         thread, into memory
+     */
+    @SuppressWarnings("PMD")
+    public EntityIndexWriterImpl(final EntityManager entityManager, final String entityName,
+                                 final ExecutorService indexingExecutor) {
         this.manager = entityManager;
+        this.indexingExecutor = indexingExecutor;
         this.config = entityManager.getConfig(entityName);
 
         final Map<String, FieldConfig> luceneFieldConfiguration = this.config.getLuceneFieldConfiguration();
@@ -71,10 +103,18 @@ public class EntityIndexWriterImpl {
             }
         }
 
-        this.ramDirectory = getNewRamDirectory();
         try {
-            this.writer = new IndexWriter(this.ramDirectory, this.config.getAnalyzerInstance(),
-                    MaxFieldLength.UNLIMITED);
+            if (indexingExecutor == null) {
+                this.directory = getNewRamDirectory();
+                this.writer = new IndexWriter(this.directory, this.config.getAnalyzerInstance(),
+                        MaxFieldLength.UNLIMITED);
+            } else {
+                // readers keep searching the current generation until this one is published
+                this.generation = IndexGenerations.createPartial(new File(this.config.getLocation()));
+                this.directory = FSDirectory.open(this.generation);
+                this.writer = new IndexWriter(this.directory, this.config.getAnalyzerInstance(), true,
+                        MaxFieldLength.UNLIMITED);
+            }
         } catch (final IOException e) {
             throw new StepInternalException("Unable to initialise creation of index", e);
         }
@@ -88,32 +128,72 @@ public class EntityIndexWriterImpl {
     }
 
     /**
-     * writes the index to the relevant file location
+     * writes the index to a new generation, and swaps readers over to it
      * 
      * @return the number of entries in the index
      */
     public int close() {
+        if (this.indexingExecutor != null) {
+            return closeDirect();
+        }
+
         final int numEntries = getNumEntriesInIndex();
-        final File file = new File(this.config.getLocation());
+        final File partial = IndexGenerations.createPartial(new File(this.config.getLocation()));
         Directory destination;
         try {
             // we've finished writing entries now, so close our writer
             this.writer.close();
 
             // open up a location on disk
-            destination = FSDirectory.open(file);
+            destination = FSDirectory.open(partial);
 
             final IndexWriter fsWriter = new IndexWriter(destination, this.config.getAnalyzerInstance(),
                     true, IndexWriter.MaxFieldLength.UNLIMITED);
-            fsWriter.addIndexesNoOptimize(new Directory[] { this.ramDirectory });
+            fsWriter.addIndexesNoOptimize(new Directory[] { this.directory });
             fsWriter.optimize();
             fsWriter.close();
             destination.close();
-            this.ramDirectory.close();
-            this.manager.refresh(this.config.getName());
+            this.directory.close();
+        } catch (final IOException e) {
+            IndexGenerations.discard(partial);
+            throw new StepInternalException("Unable to write index", e);
+        }
+
+        IndexGenerations.publish(partial);
+        this.manager.refresh(this.config.getName());
+        return numEntries;
+    }
+
+    /**
+     * Waits for the documents still being indexed, then commits the index that was written straight to disk
+     *
+     * @return the number of entries in the index
+     */
+    private int closeDirect() {
+        this.pendingDocuments.acquireUninterruptibly(MAX_PENDING_DOCUMENTS);
+        this.pendingDocuments.release(MAX_PENDING_DOCUMENTS);
+
+        final int numEntries;
+        try {
+            final Throwable failure = this.indexingFailure.get();
+            if (failure != null) {
+                this.writer.rollback();
+                this.directory.close();
+                IndexGenerations.discard(this.generation);
+                throw new StepInternalException("Unable to index " + this.config.getName(), failure);
+            }
+
+            numEntries = getNumEntriesInIndex();
+            this.writer.optimize();
+            this.writer.close();
+            this.directory.close();
         } catch (final IOException e) {
+            IndexGenerations.discard(this.generation);
             throw new StepInternalException("Unable to write index", e);
         }
+
+        IndexGenerations.publish(this.generation);
+        this.manager.refresh(this.config.getName());
         return numEntries;
     }
 
@@ -228,6 +308,11 @@ public class EntityIndexWriterImpl {
      * saves the current document, by running the processor and adding it to the index
      */
     public void save() {
+        if (this.indexingExecutor != null) {
+            saveInBackground();
+            return;
+        }
+
         final PostProcessor postProcessorInstance = this.config.getPostProcessorInstance();
         if (postProcessorInstance != null && this.doc != null) {
             postProcessorInstance.process(this.config, this.doc);
@@ -235,6 +320,68 @@ public class EntityIndexWriterImpl {
         addDocument();
     }
 
+    /**
+     * hands the current document over to the executor, blocking if too many documents are already waiting
+     */
+    private void saveInBackground() {
+        final Document toIndex = this.doc;
+        if (toIndex == null) {
+            return;
+        }
+        this.doc = null;
+
+        final long sequence = this.nextSaved++;
+        this.pendingDocuments.acquireUninterruptibly();
+        try {
+            this.indexingExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Document processed = toIndex;
+                    try {
+                        final PostProcessor postProcessorInstance = EntityIndexWriterImpl.this.config
+                                .getPostProcessorInstance();
+                        if (postProcessorInstance != null) {
+                            postProcessorInstance.process(EntityIndexWriterImpl.this.config, toIndex);
+                        }
+                    } catch (final Throwable t) {
+                        EntityIndexWriterImpl.this.indexingFailure.compareAndSet(null, t);
+                        processed = null;
+                    }
+                    addInOrder(sequence, processed);
+                }
+            });
+        } catch (final RuntimeException e) {
+            this.indexingFailure.compareAndSet(null, e);
+            addInOrder(sequence, null);
+            throw e;
+        }
+    }
+
+    /**
+     * Adds the document to the index once all those saved before it have been added, along with any saved after it
+     * that were waiting on it. Each document added, or skipped, frees up a place for a new one to be saved.
+     *
+     * @param sequence the order in which the document was saved
+     * @param processed the post-processed document, or null if it is to be skipped
+     */
+    private void addInOrder(final long sequence, final Document processed) {
+        synchronized (this.processedDocuments) {
+            this.processedDocuments.put(sequence, processed);
+            while (this.processedDocuments.containsKey(this.nextToAdd)) {
+                final Document next = this.processedDocuments.remove(this.nextToAdd++);
+                try {
+                    if (next != null) {
+                        this.writer.addDocument(next);
+                    }
+                } catch (final Throwable t) {
+                    this.indexingFailure.compareAndSet(null, t);
+                } finally {
+                    this.pendingDocuments.release();
+                }
+            }
+        }
+    }
+
     /**
      * adds a document to the index
      */
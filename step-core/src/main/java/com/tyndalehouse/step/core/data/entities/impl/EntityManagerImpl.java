@@ -33,17 +33,25 @@
 package com.tyndalehouse.step.core.data.entities.impl;
 
 import java.io.Closeable;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.google.inject.Injector;
 import com.tyndalehouse.step.core.data.EntityConfiguration;
 import com.tyndalehouse.step.core.data.EntityIndexReader;
 import com.tyndalehouse.step.core.data.EntityManager;
+import com.tyndalehouse.step.core.data.EntityRefreshListener;
+import com.tyndalehouse.step.core.data.IndexDirectoryType;
 
 /**
  * @author chrisburrell
@@ -51,27 +59,48 @@ import com.tyndalehouse.step.core.data.EntityManager;
  */
 @Singleton
 public class EntityManagerImpl implements Closeable, EntityManager {
-    private final Map<String, EntityConfiguration> configs = new HashMap<String, EntityConfiguration>();
-    private final boolean memoryMapped;
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityManagerImpl.class);
+    private static final String DIRECTORY_PROPERTY = "app.index.directory";
+    private static final String MEMORY_MAPPED_PROPERTY = "app.index.memoryMapped";
+    private final Map<String, EntityConfiguration> configs = new ConcurrentHashMap<String, EntityConfiguration>();
+    private final IndexDirectoryType directoryType;
     private final String indexPath;
-    private Map<String, EntityIndexReader> indexReaders = new HashMap<String, EntityIndexReader>();
+    private Map<String, EntityIndexReader> indexReaders = new ConcurrentHashMap<String, EntityIndexReader>();
     private final Injector injector;
+    private final List<EntityRefreshListener> refreshListeners = new CopyOnWriteArrayList<EntityRefreshListener>();
 
     /**
      * Constructs the entity manager.
      * 
-     * @param memoryMapped true to indicate indexes should be stored in memory
+     * @param directoryType how indexes are opened: mmap, nio or ram
      * @param indexPath path to index
      * @param injector the injector
      */
     @Inject
-    public EntityManagerImpl(@Named("app.index.memoryMapped") final boolean memoryMapped,
+    public EntityManagerImpl(@Named(DIRECTORY_PROPERTY) final String directoryType,
             @Named("app.index.path") final String indexPath, final Injector injector) {
-        this.memoryMapped = memoryMapped;
+        this.directoryType = IndexDirectoryType.fromProperties(directoryType, getMemoryMapped());
         this.indexPath = indexPath;
         this.injector = injector;
     }
 
+    /**
+     * The old property is no longer in step.core.properties, so is only found on the command line, where it is
+     * ignored if the new property is given too
+     *
+     * @return the value of app.index.memoryMapped, or null if it is not set or superseded
+     */
+    private static String getMemoryMapped() {
+        final String memoryMapped = System.getProperty(MEMORY_MAPPED_PROPERTY);
+        if (memoryMapped == null || System.getProperty(DIRECTORY_PROPERTY) != null) {
+            return null;
+        }
+
+        LOGGER.warn("{} is deprecated, please set {} to mmap, nio or ram instead", MEMORY_MAPPED_PROPERTY,
+                DIRECTORY_PROPERTY);
+        return memoryMapped;
+    }
+
     @Override
     public EntityConfiguration getConfig(final String entityName) {
         EntityConfiguration entityConfiguration = this.configs.get(entityName);
@@ -86,16 +115,29 @@ public class EntityManagerImpl implements Closeable, EntityManager {
     @Override
     public void refresh(final String entity) {
         final EntityIndexReader entityIndexReader = this.indexReaders.get(entity);
-        if (entityIndexReader != null) {
-            entityIndexReader.refresh();
+        if (entityIndexReader == null) {
+            return;
         }
+
+        final long previousGeneration = entityIndexReader.getGeneration();
+        entityIndexReader.refresh();
+        if (entityIndexReader.getGeneration() != previousGeneration) {
+            for (final EntityRefreshListener listener : this.refreshListeners) {
+                listener.entityRefreshed(entity);
+            }
+        }
+    }
+
+    @Override
+    public void addRefreshListener(final EntityRefreshListener listener) {
+        this.refreshListeners.add(listener);
     }
 
     @Override
-    public EntityIndexReader getReader(final String entity) {
+    public synchronized EntityIndexReader getReader(final String entity) {
         EntityIndexReader entityIndexReader = this.indexReaders.get(entity);
         if (entityIndexReader == null) {
-            entityIndexReader = new EntityIndexReaderImpl(getConfig(entity), this.memoryMapped);
+            entityIndexReader = new EntityIndexReaderImpl(getConfig(entity), this.directoryType);
             this.indexReaders.put(entity, entityIndexReader);
         }
         return entityIndexReader;
@@ -106,6 +148,11 @@ public class EntityManagerImpl implements Closeable, EntityManager {
         return new EntityIndexWriterImpl(this, entity);
     }
 
+    @Override
+    public EntityIndexWriterImpl getNewWriter(final String entity, final ExecutorService indexingExecutor) {
+        return new EntityIndexWriterImpl(this, entity, indexingExecutor);
+    }
+
     @Override
     public void close() {
         for (final EntityIndexReader reader : this.indexReaders.values()) {
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.data.entities.impl;
+
+import java.io.File;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tyndalehouse.step.core.exceptions.StepInternalException;
+
+/**
+ * Each build of an entity index is written to its own generation directory, entities/&lt;name&gt;/gen-N, so that
+ * readers can carry on searching the previous generation while the next one is being written. A generation is built
+ * under a ".partial" name and only renamed to gen-N once complete, so readers never pick up a half-written index.
+ */
+final class IndexGenerations {
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexGenerations.class);
+    private static final String GENERATION_PREFIX = "gen-";
+    private static final String PARTIAL_SUFFIX = ".partial";
+    private static final Pattern GENERATION = Pattern.compile("gen-(\\d+)(\\.partial)?");
+
+    /**
+     * no instances
+     */
+    private IndexGenerations() {
+        // no op
+    }
+
+    /**
+     * @param entityRoot the directory of the entity
+     * @return the newest complete generation, the entity directory itself for an index written before generations
+     *         were introduced, or null if there is nothing to read
+     */
+    static File getLatest(final File entityRoot) {
+        final int latest = getLatestNumber(entityRoot);
+        if (latest != -1) {
+            return new File(entityRoot, GENERATION_PREFIX + latest);
+        }
+        return entityRoot.exists() ? entityRoot : null;
+    }
+
+    /**
+     * @param entityRoot the directory of the entity
+     * @return a new, empty directory in which to write the next generation
+     */
+    static File createPartial(final File entityRoot) {
+        // any generation still marked as partial was abandoned by an earlier build
+        final File[] existing = entityRoot.listFiles();
+        if (existing != null) {
+            for (final File f : existing) {
+                if (f.getName().endsWith(PARTIAL_SUFFIX) && getNumber(f.getName(), true) != -1) {
+                    delete(f);
+                }
+            }
+        }
+
+        final File partial = new File(entityRoot, GENERATION_PREFIX + (getLatestNumber(entityRoot) + 1)
+                + PARTIAL_SUFFIX);
+        if (!partial.mkdirs()) {
+            throw new StepInternalException("Unable to create index directory " + partial);
+        }
+        return partial;
+    }
+
+    /**
+     * Makes a generation visible to readers, once it has been completely written
+     *
+     * @param partial the directory in which the generation was written
+     * @return the directory of the generation
+     */
+    static File publish(final File partial) {
+        final String name = partial.getName();
+        final File generation = new File(partial.getParentFile(),
+                name.substring(0, name.length() - PARTIAL_SUFFIX.length()));
+        if (!partial.renameTo(generation)) {
+            throw new StepInternalException("Unable to publish index directory " + partial);
+        }
+        return generation;
+    }
+
+    /**
+     * Deletes a generation that is no longer being read, or the files of an index written before generations were
+     * introduced, as long as a newer generation has taken its place.
+     *
+     * @param entityRoot the directory of the entity
+     * @param retired    the generation that is no longer being read
+     */
+    static void deleteRetired(final File entityRoot, final File retired) {
+        final File latest = getLatest(entityRoot);
+        if (latest == null || latest.equals(entityRoot) || latest.equals(retired)) {
+            return;
+        }
+
+        if (!retired.equals(entityRoot)) {
+            delete(retired);
+            return;
+        }
+
+        final File[] files = entityRoot.listFiles();
+        if (files != null) {
+            for (final File f : files) {
+                if (f.isFile()) {
+                    delete(f);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes a generation that failed to be written
+     *
+     * @param partial the directory in which the generation was being written
+     */
+    static void discard(final File partial) {
+        delete(partial);
+    }
+
+    /**
+     * @param entityRoot the directory of the entity
+     * @return the number of the latest complete generation, or -1 if there are none
+     */
+    private static int getLatestNumber(final File entityRoot) {
+        final String[] names = entityRoot.list();
+        int latest = -1;
+        if (names != null) {
+            for (final String name : names) {
+                latest = Math.max(latest, getNumber(name, false));
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * @param name           the name of a directory
+     * @param includePartial true to include generations still being written
+     * @return the number of the generation, or -1 if it is not one
+     */
+    private static int getNumber(final String name, final boolean includePartial) {
+        final Matcher matcher = GENERATION.matcher(name);
+        if (!matcher.matches() || (!includePartial && matcher.group(2) != null)) {
+            return -1;
+        }
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    /**
+     * @param file the file or directory to delete
+     */
+    private static void delete(final File file) {
+        final File[] children = file.listFiles();
+        if (children != null) {
+            for (final File child : children) {
+                delete(child);
+            }
+        }
+
+        if (!file.delete()) {
+            LOGGER.warn("Unable to delete [{}]", file);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.data.entities.impl;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+
+import com.tyndalehouse.step.core.utils.IOUtils;
+import com.tyndalehouse.step.core.utils.PrefixTermIndex;
+
+/**
+ * A searcher over one generation of an entity index. The reader holds one reference while the generation is current,
+ * and each search holds another for as long as it runs, so the searcher is only closed, and the generation deleted,
+ * once it has been replaced and the last search using it has finished.
+ */
+final class SearcherGeneration {
+    private static final AtomicLong SERIALS = new AtomicLong();
+    private final long serial = SERIALS.incrementAndGet();
+    private final IndexSearcher searcher;
+    private final Directory directory;
+    private final File entityRoot;
+    private final File location;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final ConcurrentMap<String, PrefixTermIndex> prefixIndexes = new ConcurrentHashMap<String, PrefixTermIndex>(4);
+
+    /**
+     * @param searcher   the searcher
+     * @param directory  the directory being searched, or null if it is not owned by this generation
+     * @param entityRoot the directory of the entity, or null if the index is not on disk
+     * @param location   the directory of the generation, or null if the index is not on disk
+     */
+    SearcherGeneration(final IndexSearcher searcher, final Directory directory, final File entityRoot,
+                       final File location) {
+        this.searcher = searcher;
+        this.directory = directory;
+        this.entityRoot = entityRoot;
+        this.location = location;
+    }
+
+    /**
+     * @return true if a reference was taken, false if the generation has already been closed
+     */
+    boolean acquire() {
+        while (true) {
+            final int count = this.references.get();
+            if (count <= 0) {
+                return false;
+            }
+
+            if (this.references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Gives back a reference, closing the generation when it was the last one
+     */
+    void release() {
+        if (this.references.decrementAndGet() != 0) {
+            return;
+        }
+
+        IOUtils.closeQuietly(this.searcher);
+        IOUtils.closeQuietly(this.directory);
+        if (this.location != null) {
+            IndexGenerations.deleteRetired(this.entityRoot, this.location);
+        }
+    }
+
+    /**
+     * @return the searcher, only to be used between {@link #acquire()} and {@link #release()}
+     */
+    IndexSearcher getSearcher() {
+        return this.searcher;
+    }
+
+    /**
+     * The prefix index of a field is built the first time it is needed, and lives as long as the generation
+     *
+     * @param fieldName the field
+     * @return the prefix index of the field's terms, only to be used between {@link #acquire()} and
+     *         {@link #release()}
+     */
+    PrefixTermIndex getPrefixTermIndex(final String fieldName) {
+        final PrefixTermIndex index = this.prefixIndexes.get(fieldName);
+        if (index != null) {
+            return index;
+        }
+
+        final PrefixTermIndex built = PrefixTermIndex.build(this.searcher.getIndexReader(), fieldName);
+        final PrefixTermIndex existing = this.prefixIndexes.putIfAbsent(fieldName, built);
+        return existing != null ? existing : built;
+    }
+
+    /**
+     * @return a number identifying this generation, unique across all entities
+     */
+    long getSerial() {
+        return this.serial;
+    }
+
+    /**
+     * @return the directory of the generation, or null if the index is not on disk
+     */
+    File getLocation() {
+        return this.location;
+    }
+}
@@ -93,6 +93,7 @@ public class StepCoreModule extends AbstractStepGuiceModule {
         bind(AppManagerService.class).to(AppManagerImpl.class).asEagerSingleton();
         bind(SearchService.class).to(SearchServiceImpl.class).asEagerSingleton();
         bind(LanguageService.class).to(LanguageServiceImpl.class).asEagerSingleton();
+        bind(XslTemplatesCache.class).asEagerSingleton();
         bind(JSwordPassageService.class).to(JSwordPassageServiceImpl.class).asEagerSingleton();
         bind(JSwordModuleService.class).to(JSwordModuleServiceImpl.class).asEagerSingleton();
         bind(JSwordMetadataService.class).to(JSwordMetadataServiceImpl.class).asEagerSingleton();
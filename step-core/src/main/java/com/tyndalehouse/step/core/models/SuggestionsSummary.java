@@ -6,8 +6,9 @@ import java.util.List;
  * 
  * @author chrisburrell
  */
-public class SuggestionsSummary {
+public class SuggestionsSummary implements PartialResult {
     private List<SingleSuggestionsSummary> suggestionsSummaries;
+    private boolean partial;
 
     public List<SingleSuggestionsSummary> getSuggestionsSummaries() {
         return suggestionsSummaries;
@@ -16,4 +17,19 @@ public class SuggestionsSummary {
     public void setSuggestionsSummaries(final List<SingleSuggestionsSummary> suggestionsSummaries) {
         this.suggestionsSummaries = suggestionsSummaries;
     }
+
+    /**
+     * @return true if some providers did not return their suggestions in time, so that they are missing
+     */
+    @Override
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * @param partial true if some providers did not return their suggestions in time
+     */
+    public void setPartial(final boolean partial) {
+        this.partial = partial;
+    }
 }
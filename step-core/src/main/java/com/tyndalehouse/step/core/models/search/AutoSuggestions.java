@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.models.search;
+
+import java.util.ArrayList;
+
+import com.tyndalehouse.step.core.models.PartialResult;
+
+/**
+ * The suggestions offered to the user as they type. They are sent to the client as a plain list, but also say
+ * whether some kinds of suggestions are missing because they were not found in time.
+ */
+public class AutoSuggestions extends ArrayList<AutoSuggestion> implements PartialResult {
+    private static final long serialVersionUID = -3520617148356436719L;
+    private boolean partial;
+
+    /**
+     * @param initialCapacity the number of suggestions expected
+     */
+    public AutoSuggestions(final int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * @return true if some suggestions were not found in time, so that they are missing
+     */
+    @Override
+    public boolean isPartial() {
+        return this.partial;
+    }
+
+    /**
+     * @param partial true if some suggestions were not found in time
+     */
+    public void setPartial(final boolean partial) {
+        this.partial = partial;
+    }
+}
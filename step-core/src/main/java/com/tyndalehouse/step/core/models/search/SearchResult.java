@@ -7,13 +7,14 @@ import java.util.SortedSet;
 
 import com.tyndalehouse.step.core.models.AbstractComplexSearch;
 import com.tyndalehouse.step.core.models.LexiconSuggestion;
+import com.tyndalehouse.step.core.models.PartialResult;
 import com.tyndalehouse.step.core.service.impl.SearchType;
 
 /**
  * 
  * @author chrisburrell
  */
-public class SearchResult extends AbstractComplexSearch implements Serializable {
+public class SearchResult extends AbstractComplexSearch implements Serializable, PartialResult {
     private static final long serialVersionUID = 5408141957094432935L;
     private String query;
     private int total;
@@ -26,6 +27,7 @@ public class SearchResult extends AbstractComplexSearch implements Serializable
     private int pageSize;
     private int pageNumber;
     private String searchRestriction;
+    private boolean partial;
 
     /**
      * @return the query
@@ -193,4 +195,19 @@ public class SearchResult extends AbstractComplexSearch implements Serializable
     public void setSearchRestriction(String searchRestriction) {
         this.searchRestriction = searchRestriction;
     }
+
+    /**
+     * @return true if some versions did not return their results in time, so that they are missing
+     */
+    @Override
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * @param partial true if some versions did not return their results in time
+     */
+    public void setPartial(final boolean partial) {
+        this.partial = partial;
+    }
 }
@@ -1,6 +1,5 @@
 package com.tyndalehouse.step.core.service;
 
-import com.tyndalehouse.step.core.data.EntityDoc;
 import org.crosswire.jsword.passage.Key;
 
 /**
@@ -47,15 +46,9 @@ public interface StrongAugmentationService {
 
     public class AugmentedStrongs {
         private final String[] strongList;
-        private final EntityDoc[] entityDocs;
 
-        public AugmentedStrongs(final String[] strongList, final EntityDoc[] entityDocs) {
+        public AugmentedStrongs(final String[] strongList) {
             this.strongList = strongList;
-            this.entityDocs = entityDocs;
-        }
-
-        public EntityDoc[] getEntityDocs() {
-            return entityDocs;
         }
 
         public String[] getStrongList() {
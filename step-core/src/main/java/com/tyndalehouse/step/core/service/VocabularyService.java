@@ -32,6 +32,9 @@
  ******************************************************************************/
 package com.tyndalehouse.step.core.service;
 
+import java.util.Map;
+import java.util.Set;
+
 import com.tyndalehouse.step.core.data.EntityDoc;
 import com.tyndalehouse.step.core.models.VocabResponse;
 
@@ -101,7 +104,8 @@ public interface VocabularyService {
     VocabResponse getQuickDefinitions(final String version, final String reference, String vocabIdentifiers);
 
     /**
-     * returns the lexicon definitions
+     * returns the lexicon definitions, with only the strong number, gloss, original form, transliteration and
+     * alternative tagging loaded
      *
      * @param version the version that ancors the reference
      * @param reference the reference in which the strongs can be found
@@ -109,4 +113,14 @@ public interface VocabularyService {
      * @return the lexicon definitions that were found
      */
     EntityDoc[] getLexiconDefinitions(String vocabIdentifiers, String version, String reference);
+
+    /**
+     * Looks up the lexicon definitions of a whole passage in one go, so that the per-word calls made during the xsl
+     * transformation can be answered from memory
+     *
+     * @param version the version that anchors the references
+     * @param vocabIdentifiersByReference the identifiers found in the passage, keyed by the reference they are in
+     * @return a vocabulary service to be used for the transformation of that passage only
+     */
+    VocabularyService prefetch(String version, Map<String, Set<String>> vocabIdentifiersByReference);
 }
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.helpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.versification.Versification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tyndalehouse.step.core.data.EntityDoc;
+import com.tyndalehouse.step.core.data.EntityIndexReader;
+import com.tyndalehouse.step.core.data.EntityManager;
+import com.tyndalehouse.step.core.service.impl.StrongAugmentationServiceImpl;
+import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
+import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
+
+/**
+ * Holds the augmented strongs data in memory, so that augmenting a Hebrew strong number in a passage is a binary
+ * search rather than a query. For each strong number, the ordinals of the verses in which it is augmented are kept in
+ * ascending order, alongside the suffix used in each of those verses. Ordinals are in the versification of the OT
+ * book, which is the versification of the augmented strongs data.
+ * <p/>
+ * For a single verse, this gives the same suffix as querying the index for the strong number and verse. Where a strong
+ * number has different suffixes over a range of verses, the suffix of the first verse in which it is augmented is
+ * used, whereas the query took whichever matching entry the index returned last. Where the data lists a verse under
+ * more than one suffix, the lowest suffix is used.
+ */
+@Singleton
+public class AugmentedStrongTable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AugmentedStrongTable.class);
+    private static final int[] NO_ORDINALS = new int[0];
+    private final EntityIndexReader augmentedStrongs;
+    private final JSwordVersificationService versificationService;
+    private volatile Table table;
+
+    /**
+     * @param entityManager        the entity manager
+     * @param versificationService the versification service
+     */
+    @Inject
+    public AugmentedStrongTable(final EntityManager entityManager,
+                                final JSwordVersificationService versificationService) {
+        this.augmentedStrongs = entityManager.getReader("augmentedStrongs");
+        this.versificationService = versificationService;
+    }
+
+    /**
+     * @param strongNumber the number of a Hebrew strong number, without its prefix or suffix
+     * @param verses       the verses, in the versification of the OT book
+     * @return the suffix used in the first of the verses in which the strong number is augmented, or 0 if there is
+     *         none
+     */
+    public char getSuffix(final int strongNumber, final VerseBitmap verses) {
+        final Table current = getTable();
+        if (strongNumber < 0 || strongNumber >= current.ordinals.length) {
+            return 0;
+        }
+
+        final int position = verses.firstIn(current.ordinals[strongNumber]);
+        return position == -1 ? 0 : current.suffixes[strongNumber][position];
+    }
+
+    /**
+     * @param strong a Hebrew strong number such as H0430 or H430, without a suffix
+     * @return the number, or -1 if it is not a plain Hebrew strong number
+     */
+    public static int parseStrongNumber(final String strong) {
+        final int length = strong.length();
+        if (length < 2 || strong.charAt(0) != 'H' && strong.charAt(0) != 'h') {
+            return -1;
+        }
+
+        int number = 0;
+        for (int ii = 1; ii < length; ii++) {
+            final char c = strong.charAt(ii);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + c - '0';
+        }
+        return number;
+    }
+
+    /**
+     * Reads the augmented strongs again, for use once they have been reloaded
+     */
+    public synchronized void rebuild() {
+        this.table = build();
+    }
+
+    /**
+     * @return the table, read from the augmented strongs index on first use
+     */
+    private Table getTable() {
+        Table current = this.table;
+        if (current == null) {
+            synchronized (this) {
+                current = this.table;
+                if (current == null) {
+                    current = build();
+                    this.table = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return the table, built from every entry in the augmented strongs index
+     */
+    private Table build() {
+        final long start = System.currentTimeMillis();
+        final Versification v11n = this.versificationService.getVersificationForVersion(JSwordPassageService.OT_BOOK);
+        final EntityDoc[] docs = this.augmentedStrongs.search(new MatchAllDocsQuery());
+
+        // ordinal and suffix packed together, so that sorting orders by verse and then by suffix
+        final Map<Integer, List<Long>> entriesByStrong = new HashMap<Integer, List<Long>>(docs.length * 2);
+        int maxStrong = -1;
+        for (final EntityDoc doc : docs) {
+            final String augmentedStrong = doc.get("augmentedStrong");
+            final int strongNumber = parseStrongNumber(augmentedStrong.substring(0, augmentedStrong.length() - 1));
+            if (strongNumber == -1) {
+                LOGGER.warn("Ignoring augmented strong [{}]", augmentedStrong);
+                continue;
+            }
+
+            final BitSet ordinals;
+            try {
+                ordinals = VerseBitmap.toBitSet(PassageKeyFactory.instance().getKey(v11n,
+                        doc.get(StrongAugmentationServiceImpl.AS_REFERENCES)));
+            } catch (final NoSuchKeyException e) {
+                LOGGER.warn("Ignoring augmented strong [{}], as its references could not be read", augmentedStrong);
+                LOGGER.trace("Unable to read references", e);
+                continue;
+            }
+
+            List<Long> entries = entriesByStrong.get(strongNumber);
+            if (entries == null) {
+                entries = new ArrayList<Long>(ordinals.cardinality());
+                entriesByStrong.put(strongNumber, entries);
+            }
+
+            final char suffix = augmentedStrong.charAt(augmentedStrong.length() - 1);
+            for (int ordinal = ordinals.nextSetBit(0); ordinal != -1; ordinal = ordinals.nextSetBit(ordinal + 1)) {
+                entries.add((long) ordinal << Character.SIZE | suffix);
+            }
+            maxStrong = Math.max(maxStrong, strongNumber);
+        }
+
+        final int[][] ordinals = new int[maxStrong + 1][];
+        final char[][] suffixes = new char[maxStrong + 1][];
+        Arrays.fill(ordinals, NO_ORDINALS);
+        for (final Entry<Integer, List<Long>> strong : entriesByStrong.entrySet()) {
+            final long[] entries = new long[strong.getValue().size()];
+            for (int ii = 0; ii < entries.length; ii++) {
+                entries[ii] = strong.getValue().get(ii);
+            }
+            Arrays.sort(entries);
+
+            // a verse listed under several suffixes keeps the lowest
+            final int[] strongOrdinals = new int[entries.length];
+            final char[] strongSuffixes = new char[entries.length];
+            int size = 0;
+            for (final long entry : entries) {
+                final int ordinal = (int) (entry >>> Character.SIZE);
+                if (size == 0 || strongOrdinals[size - 1] != ordinal) {
+                    strongOrdinals[size] = ordinal;
+                    strongSuffixes[size] = (char) entry;
+                    size++;
+                }
+            }
+            ordinals[strong.getKey()] = Arrays.copyOf(strongOrdinals, size);
+            suffixes[strong.getKey()] = Arrays.copyOf(strongSuffixes, size);
+        }
+
+        LOGGER.info("Read [{}] augmented strongs in [{}]ms", docs.length, System.currentTimeMillis() - start);
+        return new Table(ordinals, suffixes);
+    }
+
+    /**
+     * The ordinals and suffixes of each strong number, indexed by the strong number
+     */
+    private static final class Table {
+        private final int[][] ordinals;
+        private final char[][] suffixes;
+
+        /**
+         * @param ordinals the ordinals of the verses in which each strong number is augmented
+         * @param suffixes the suffix used in each of those verses
+         */
+        private Table(final int[][] ordinals, final char[][] suffixes) {
+            this.ordinals = ordinals;
+            this.suffixes = suffixes;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.helpers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.util.OpenBitSet;
+import org.crosswire.common.util.CWProject;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.KeyUtil;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.VersificationsMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tyndalehouse.step.core.data.EntityDoc;
+import com.tyndalehouse.step.core.data.EntityIndexReader;
+import com.tyndalehouse.step.core.data.EntityManager;
+import com.tyndalehouse.step.core.exceptions.StepInternalException;
+import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
+import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
+import com.tyndalehouse.step.core.utils.IOUtils;
+import com.tyndalehouse.step.core.utils.StringUtils;
+
+/**
+ * Holds the references of each Nave entry as a {@link VerseBitmap} in the KJV versification, so that subject searches
+ * can be restricted to a passage by intersecting ordinals rather than by expanding wildcard queries, and so that the
+ * stored references do not need parsing on each request. Bitmaps are keyed by the stored references themselves, so
+ * the file in which they are kept never goes out of date when the Nave index is rebuilt. The bitmaps are built in full
+ * once the Nave index has been loaded, at which point those of entries that no longer exist are dropped.
+ */
+@Singleton
+public class NaveReferenceBitmaps {
+    public static final String NAVE_STORED_REFERENCES = "references";
+    private static final Logger LOGGER = LoggerFactory.getLogger(NaveReferenceBitmaps.class);
+    private static final String BITMAPS_DIRECTORY = "naveReferences";
+    private static final String BITMAPS_FILE = "nave.bitmaps";
+    private static final int FORMAT_VERSION = 1;
+    private static final String UTF_8 = "UTF-8";
+    private static final FieldSelector REFERENCES_ONLY = new MapFieldSelector(NAVE_STORED_REFERENCES);
+    private final ConcurrentMap<String, VerseBitmap> bitmaps = new ConcurrentHashMap<String, VerseBitmap>(16384);
+    private final Map<Object, VerseBitmap[]> segments = Collections
+            .synchronizedMap(new WeakHashMap<Object, VerseBitmap[]>());
+    private final JSwordVersificationService versificationService;
+    private final EntityIndexReader naves;
+    private final File file;
+    private volatile boolean dirty;
+
+    /**
+     * @param versificationService the versification service
+     * @param entityManager        the entity manager
+     * @param indexPath            the path to the entity indexes, relative to the STEP home directory
+     */
+    @Inject
+    public NaveReferenceBitmaps(final JSwordVersificationService versificationService,
+                                final EntityManager entityManager,
+                                @Named("app.index.path") final String indexPath) {
+        this.versificationService = versificationService;
+        this.naves = entityManager.getReader("nave");
+        this.file = new File(CWProject.instance().getWriteableProjectSubdir(indexPath + BITMAPS_DIRECTORY, true),
+                BITMAPS_FILE);
+        readBitmaps();
+    }
+
+    /**
+     * @return the versification in which all bitmaps are held
+     */
+    public Versification getVersification() {
+        return this.versificationService.getVersificationForVersion(JSwordPassageService.BEST_VERSIFICATION);
+    }
+
+    /**
+     * @param references the references stored against a Nave entry
+     * @return the verses of the references
+     */
+    public VerseBitmap get(final String references) {
+        if (StringUtils.isBlank(references)) {
+            return VerseBitmap.EMPTY;
+        }
+
+        final VerseBitmap bitmap = this.bitmaps.get(references);
+        if (bitmap != null) {
+            return bitmap;
+        }
+
+        this.dirty = true;
+        final VerseBitmap parsed = parse(references);
+        final VerseBitmap existing = this.bitmaps.putIfAbsent(references, parsed);
+        return existing != null ? existing : parsed;
+    }
+
+    /**
+     * Builds the bitmaps of every entry in the Nave index, for use once it has been reloaded. Bitmaps of references
+     * no longer found in the index are dropped, both here and in the file.
+     */
+    public synchronized void rebuild() {
+        final long start = System.currentTimeMillis();
+        final Map<String, VerseBitmap> live = new HashMap<String, VerseBitmap>(this.bitmaps.size());
+        for (final EntityDoc doc : this.naves.search(new MatchAllDocsQuery(), Integer.MAX_VALUE, null, null,
+                REFERENCES_ONLY)) {
+            final String references = doc.get(NAVE_STORED_REFERENCES);
+            if (StringUtils.isBlank(references) || live.containsKey(references)) {
+                continue;
+            }
+
+            final VerseBitmap bitmap = this.bitmaps.get(references);
+            live.put(references, bitmap != null ? bitmap : parse(references));
+        }
+
+        this.bitmaps.keySet().retainAll(live.keySet());
+        this.bitmaps.putAll(live);
+        this.segments.clear();
+        this.dirty = true;
+        writeBitmaps();
+        LOGGER.info("Built [{}] Nave reference bitmaps in [{}]ms", live.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @param references the references stored against a Nave entry
+     * @return the verses of the references
+     */
+    private VerseBitmap parse(final String references) {
+        try {
+            return VerseBitmap.fromKey(this.versificationService.getBookFromVersion(
+                    JSwordPassageService.BEST_VERSIFICATION).getKey(references));
+        } catch (final NoSuchKeyException e) {
+            throw new StepInternalException("Stored references are unparseable in nave module: " + references, e);
+        }
+    }
+
+    /**
+     * @param key a key in any versification
+     * @return the ordinals of the key in the versification of the bitmaps
+     */
+    public BitSet getOrdinals(final Key key) {
+        return VerseBitmap.toBitSet(VersificationsMapper.instance().map(KeyUtil.getPassage(key), getVersification()));
+    }
+
+    /**
+     * @param scopes the ordinals that an entry's references must intersect, all of them
+     * @return a filter that only lets through those Nave entries with references in all the scopes
+     */
+    public Filter getFilter(final BitSet... scopes) {
+        return new ScopeFilter(scopes);
+    }
+
+    /**
+     * @param reader a reader over a segment of the Nave index
+     * @return the bitmaps of each document in the segment
+     * @throws IOException unable to read the index
+     */
+    private VerseBitmap[] getSegmentBitmaps(final IndexReader reader) throws IOException {
+        final Object cacheKey = reader.getFieldCacheKey();
+        VerseBitmap[] docBitmaps = this.segments.get(cacheKey);
+        if (docBitmaps != null) {
+            return docBitmaps;
+        }
+
+        final int maxDoc = reader.maxDoc();
+        docBitmaps = new VerseBitmap[maxDoc];
+        for (int doc = 0; doc < maxDoc; doc++) {
+            docBitmaps[doc] = reader.isDeleted(doc) ? VerseBitmap.EMPTY : get(reader.document(doc, REFERENCES_ONLY)
+                    .get(NAVE_STORED_REFERENCES));
+        }
+        this.segments.put(cacheKey, docBitmaps);
+
+        if (this.dirty) {
+            writeBitmaps();
+        }
+        return docBitmaps;
+    }
+
+    /**
+     * Reads the bitmaps computed on previous runs
+     */
+    private void readBitmaps() {
+        if (!this.file.exists()) {
+            return;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+            if (in.readInt() != FORMAT_VERSION) {
+                return;
+            }
+
+            final int size = in.readInt();
+            for (int ii = 0; ii < size; ii++) {
+                final byte[] references = new byte[in.readInt()];
+                in.readFully(references);
+                this.bitmaps.put(new String(references, UTF_8), VerseBitmap.read(in));
+            }
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to read [{}], so Nave references will be parsed again", this.file);
+            LOGGER.trace("Unable to read bitmaps", e);
+            this.bitmaps.clear();
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Writes the bitmaps, so that the references do not need parsing on the next start-up
+     */
+    private synchronized void writeBitmaps() {
+        if (!this.dirty) {
+            return;
+        }
+        this.dirty = false;
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file)));
+            final Map<String, VerseBitmap> snapshot = new HashMap<String, VerseBitmap>(this.bitmaps);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(snapshot.size());
+            for (final Entry<String, VerseBitmap> entry : snapshot.entrySet()) {
+                final byte[] references = entry.getKey().getBytes(UTF_8);
+                out.writeInt(references.length);
+                out.write(references);
+                entry.getValue().write(out);
+            }
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to write [{}]", this.file);
+            LOGGER.trace("Unable to write bitmaps", e);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * Lets through the Nave entries whose references intersect each of the scopes
+     */
+    private final class ScopeFilter extends Filter {
+        private static final long serialVersionUID = 2938170945235427561L;
+        private final BitSet[] scopes;
+
+        /**
+         * @param scopes the scopes, all of which need to be intersected
+         */
+        private ScopeFilter(final BitSet[] scopes) {
+            this.scopes = scopes;
+        }
+
+        @Override
+        public DocIdSet getDocIdSet(final IndexReader reader) throws IOException {
+            final VerseBitmap[] docBitmaps = getSegmentBitmaps(reader);
+            final OpenBitSet matches = new OpenBitSet(docBitmaps.length);
+            for (int doc = 0; doc < docBitmaps.length; doc++) {
+                if (intersectsAll(docBitmaps[doc])) {
+                    matches.fastSet(doc);
+                }
+            }
+            return matches;
+        }
+
+        /**
+         * @param bitmap the bitmap of the entry
+         * @return true if the bitmap intersects each of the scopes
+         */
+        private boolean intersectsAll(final VerseBitmap bitmap) {
+            for (final BitSet scope : this.scopes) {
+                if (!bitmap.intersects(scope)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.tyndalehouse.step.core.service.helpers;
 
 import com.tyndalehouse.step.core.models.search.SuggestionType;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
@@ -25,6 +27,12 @@ import org.apache.lucene.search.TermQuery;
 public final class OriginalWordUtils {
     /** strong number field */
     public static final String STRONG_NUMBER_FIELD = "strongNumber";
+
+    /**
+     * the stored fields of a definition that {@link #convertToSuggestion(EntityDoc)} reads
+     */
+    public static final FieldSelector SUGGESTION_FIELDS = new MapFieldSelector(STRONG_NUMBER_FIELD, "stepGloss",
+            "accentedUnicode", "stepTransliteration");
     private static final Filter GREEK_FILTER = new CachingWrapperFilter(getStrongFilter("G"));
     private static final Filter HEBREW_FILTER = new CachingWrapperFilter(getStrongFilter("H"));
 
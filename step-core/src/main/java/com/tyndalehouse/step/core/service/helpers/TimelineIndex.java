@@ -0,0 +1,429 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.helpers;
+
+import static com.tyndalehouse.step.core.utils.StringUtils.isBlank;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.versification.Versification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tyndalehouse.step.core.data.EntityDoc;
+
+/**
+ * All timeline events, held in memory so that the timeline can be panned and zoomed without going to the index.
+ * Events in a window of time are found through an interval tree over the events that have a duration, and a sorted
+ * array of the events that happen at a point in time. Events for a passage are found through the list of events of
+ * each verse. The index is immutable once built.
+ */
+public final class TimelineIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TimelineIndex.class);
+    private final EntityDoc[] events;
+
+    // events at a point in time, sorted by date
+    private final int[] points;
+    private final long[] pointDates;
+
+    // events with a duration, sorted by start date, as an implicit tree where each range of the array is rooted at
+    // its middle element, holding the latest end date of the range
+    private final int[] durations;
+    private final long[] durationFrom;
+    private final long[] durationTo;
+    private final long[] maxTo;
+
+    // the position of each event when ordered by start date, undated events last
+    private final int[] dateRanks;
+    private final int[] byDate;
+
+    // the events of each verse, from verseOffsets[ordinal] to verseOffsets[ordinal + 1]
+    private final int[] verseOffsets;
+    private final int[] verseEvents;
+
+    /**
+     * @param events all the timeline events, in the order of the index
+     * @param v11n   the versification in which the references of the events are read
+     */
+    public TimelineIndex(final EntityDoc[] events, final Versification v11n) {
+        this.events = events.clone();
+
+        final long[] from = new long[events.length];
+        final boolean[] hasFrom = new boolean[events.length];
+        final long[] to = new long[events.length];
+        final boolean[] hasTo = new boolean[events.length];
+        int pointCount = 0;
+        int durationCount = 0;
+        for (int ii = 0; ii < events.length; ii++) {
+            hasFrom[ii] = readDate(events[ii], "fromDate", from, ii);
+            hasTo[ii] = readDate(events[ii], "toDate", to, ii);
+            if (hasFrom[ii]) {
+                if (hasTo[ii]) {
+                    durationCount++;
+                } else {
+                    pointCount++;
+                }
+            }
+        }
+
+        this.points = new int[pointCount];
+        this.durations = new int[durationCount];
+        int point = 0;
+        int duration = 0;
+        for (int ii = 0; ii < events.length; ii++) {
+            if (hasFrom[ii]) {
+                if (hasTo[ii]) {
+                    this.durations[duration++] = ii;
+                } else {
+                    this.points[point++] = ii;
+                }
+            }
+        }
+
+        sortByDate(this.points, from);
+        this.pointDates = datesOf(this.points, from);
+        sortByDate(this.durations, from);
+        this.durationFrom = datesOf(this.durations, from);
+        this.durationTo = datesOf(this.durations, to);
+        this.maxTo = new long[durationCount];
+        buildMaxTo(0, durationCount);
+
+        // dated events by start date, then the undated ones, each in the order of the index
+        this.byDate = new int[events.length];
+        int dated = 0;
+        for (int ii = 0; ii < events.length; ii++) {
+            if (hasFrom[ii]) {
+                this.byDate[dated++] = ii;
+            }
+        }
+        sortByDate(Arrays.copyOf(this.byDate, dated), from, this.byDate);
+        int undated = dated;
+        for (int ii = 0; ii < events.length; ii++) {
+            if (!hasFrom[ii]) {
+                this.byDate[undated++] = ii;
+            }
+        }
+        this.dateRanks = new int[events.length];
+        for (int rank = 0; rank < this.byDate.length; rank++) {
+            this.dateRanks[this.byDate[rank]] = rank;
+        }
+
+        final BitSet[] verses = readVerses(events, v11n);
+        int maxOrdinal = 0;
+        int total = 0;
+        for (final BitSet v : verses) {
+            maxOrdinal = Math.max(maxOrdinal, v.length());
+            total += v.cardinality();
+        }
+        this.verseOffsets = new int[maxOrdinal + 1];
+        this.verseEvents = new int[total];
+        for (final BitSet v : verses) {
+            for (int ordinal = v.nextSetBit(0); ordinal >= 0; ordinal = v.nextSetBit(ordinal + 1)) {
+                this.verseOffsets[ordinal + 1]++;
+            }
+        }
+        for (int ordinal = 0; ordinal < maxOrdinal; ordinal++) {
+            this.verseOffsets[ordinal + 1] += this.verseOffsets[ordinal];
+        }
+        final int[] next = Arrays.copyOf(this.verseOffsets, maxOrdinal);
+        for (int ii = 0; ii < verses.length; ii++) {
+            for (int ordinal = verses[ii].nextSetBit(0); ordinal >= 0; ordinal = verses[ii].nextSetBit(ordinal + 1)) {
+                this.verseEvents[next[ordinal]++] = ii;
+            }
+        }
+    }
+
+    /**
+     * Finds the events that happen at a point within the window, or that start before its end and finish after its
+     * start.
+     *
+     * @param startMinutes the start of the window, in minutes since the epoch
+     * @param endMinutes   the end of the window, in minutes since the epoch
+     * @return the events, in the order of the index
+     */
+    public EntityDoc[] getEventsInWindow(final long startMinutes, final long endMinutes) {
+        final int firstPoint = firstAtOrAfter(this.pointDates, startMinutes);
+        final int lastPoint = firstAtOrAfter(this.pointDates, endMinutes == Long.MAX_VALUE ? endMinutes
+                : endMinutes + 1);
+
+        final int[] found = new int[lastPoint - firstPoint + this.durations.length];
+        int count = 0;
+        for (int ii = firstPoint; ii < lastPoint; ii++) {
+            found[count++] = this.points[ii];
+        }
+        count = collectDurations(0, this.durations.length, startMinutes, endMinutes, found, count);
+
+        final int[] positions = Arrays.copyOf(found, count);
+        Arrays.sort(positions);
+        return toEvents(positions);
+    }
+
+    /**
+     * @param passage the passage, in the versification of the index
+     * @return the events referring to any verse of the passage, those referring to most verses first
+     */
+    public EntityDoc[] getEventsForPassage(final Key passage) {
+        final int[] hits = countHits(passage);
+        final long[] ordered = new long[hits.length];
+        int count = 0;
+        for (int ii = 0; ii < hits.length; ii++) {
+            if (hits[ii] != 0) {
+                ordered[count++] = ((long) (Integer.MAX_VALUE - hits[ii]) << Integer.SIZE) | ii;
+            }
+        }
+        Arrays.sort(ordered, 0, count);
+
+        final EntityDoc[] found = new EntityDoc[count];
+        for (int ii = 0; ii < count; ii++) {
+            found[ii] = this.events[(int) ordered[ii]];
+        }
+        return found;
+    }
+
+    /**
+     * @param passage the passage, in the versification of the index
+     * @return the events referring to any verse of the passage, by start date, those without a date last
+     */
+    public EntityDoc[] getEventsForPassageByDate(final Key passage) {
+        final int[] hits = countHits(passage);
+        final int[] ranks = new int[hits.length];
+        int count = 0;
+        for (int ii = 0; ii < hits.length; ii++) {
+            if (hits[ii] != 0) {
+                ranks[count++] = this.dateRanks[ii];
+            }
+        }
+        Arrays.sort(ranks, 0, count);
+
+        final EntityDoc[] found = new EntityDoc[count];
+        for (int ii = 0; ii < count; ii++) {
+            found[ii] = this.events[this.byDate[ranks[ii]]];
+        }
+        return found;
+    }
+
+    /**
+     * @return the number of events
+     */
+    public int size() {
+        return this.events.length;
+    }
+
+    /**
+     * @param passage the passage
+     * @return the number of verses of the passage each event refers to
+     */
+    private int[] countHits(final Key passage) {
+        final int[] hits = new int[this.events.length];
+        final BitSet ordinals = VerseBitmap.toBitSet(passage);
+        final int maxOrdinal = this.verseOffsets.length - 1;
+        for (int ordinal = ordinals.nextSetBit(0); ordinal >= 0 && ordinal < maxOrdinal;
+             ordinal = ordinals.nextSetBit(ordinal + 1)) {
+            for (int ii = this.verseOffsets[ordinal]; ii < this.verseOffsets[ordinal + 1]; ii++) {
+                hits[this.verseEvents[ii]]++;
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Visits the tree rooted at the middle of [lo, hi), skipping any range that ends before the window, and
+     * anything right of an event starting after the window.
+     *
+     * @param lo    the first event of the range
+     * @param hi    the end of the range, exclusive
+     * @param start the start of the window
+     * @param end   the end of the window
+     * @param found receives the events found
+     * @param count the number of events found so far
+     * @return the new number of events found
+     */
+    private int collectDurations(final int lo, final int hi, final long start, final long end,
+                                 final int[] found, final int count) {
+        if (lo >= hi || this.maxTo[(lo + hi) >>> 1] <= start) {
+            return count;
+        }
+
+        final int mid = (lo + hi) >>> 1;
+        int newCount = collectDurations(lo, mid, start, end, found, count);
+        if (this.durationFrom[mid] > end) {
+            return newCount;
+        }
+
+        if (this.durationTo[mid] > start) {
+            found[newCount++] = this.durations[mid];
+        }
+        return collectDurations(mid + 1, hi, start, end, found, newCount);
+    }
+
+    /**
+     * @param lo the first event of the range
+     * @param hi the end of the range, exclusive
+     * @return the latest end date of the events in [lo, hi), stored against the middle of the range
+     */
+    private long buildMaxTo(final int lo, final int hi) {
+        if (lo >= hi) {
+            return Long.MIN_VALUE;
+        }
+
+        final int mid = (lo + hi) >>> 1;
+        final long max = Math.max(this.durationTo[mid], Math.max(buildMaxTo(lo, mid), buildMaxTo(mid + 1, hi)));
+        this.maxTo[mid] = max;
+        return max;
+    }
+
+    /**
+     * @param positions the positions of some events
+     * @return the events
+     */
+    private EntityDoc[] toEvents(final int[] positions) {
+        final EntityDoc[] found = new EntityDoc[positions.length];
+        for (int ii = 0; ii < positions.length; ii++) {
+            found[ii] = this.events[positions[ii]];
+        }
+        return found;
+    }
+
+    /**
+     * @param sortedDates dates in ascending order
+     * @param date        the date
+     * @return the index of the first date at or after the given date
+     */
+    private static int firstAtOrAfter(final long[] sortedDates, final long date) {
+        int lo = 0;
+        int hi = sortedDates.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (sortedDates[mid] < date) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Sorts positions in place by date, keeping the order of the index between events of the same date
+     *
+     * @param positions the positions of events, in the order of the index
+     * @param dates     the date of each event
+     */
+    private static void sortByDate(final int[] positions, final long[] dates) {
+        sortByDate(positions.clone(), dates, positions);
+    }
+
+    /**
+     * @param positions the positions of events, in the order of the index
+     * @param dates     the date of each event
+     * @param sorted    receives the positions by date, the order of the index kept between events of the same date
+     */
+    private static void sortByDate(final int[] positions, final long[] dates, final int[] sorted) {
+        final Integer[] boxed = new Integer[positions.length];
+        for (int ii = 0; ii < positions.length; ii++) {
+            boxed[ii] = positions[ii];
+        }
+        Arrays.sort(boxed, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer o1, final Integer o2) {
+                final long d1 = dates[o1];
+                final long d2 = dates[o2];
+                return d1 < d2 ? -1 : (d1 == d2 ? 0 : 1);
+            }
+        });
+        for (int ii = 0; ii < boxed.length; ii++) {
+            sorted[ii] = boxed[ii];
+        }
+    }
+
+    /**
+     * @param positions the positions of events
+     * @param dates     the date of each event
+     * @return the dates of the given events
+     */
+    private static long[] datesOf(final int[] positions, final long[] dates) {
+        final long[] selected = new long[positions.length];
+        for (int ii = 0; ii < positions.length; ii++) {
+            selected[ii] = dates[positions[ii]];
+        }
+        return selected;
+    }
+
+    /**
+     * @param event    the event
+     * @param field    the date field
+     * @param dates    receives the date, in minutes since the epoch
+     * @param position the position of the event
+     * @return true if the event has the date
+     */
+    private static boolean readDate(final EntityDoc event, final String field, final long[] dates,
+                                    final int position) {
+        final String date = event.get(field);
+        if (isBlank(date)) {
+            return false;
+        }
+
+        dates[position] = Long.parseLong(date);
+        return true;
+    }
+
+    /**
+     * @param events the events
+     * @param v11n   the versification of the references
+     * @return the verses each event refers to
+     */
+    private static BitSet[] readVerses(final EntityDoc[] events, final Versification v11n) {
+        final BitSet[] verses = new BitSet[events.length];
+        for (int ii = 0; ii < events.length; ii++) {
+            final String references = events[ii].get("storedReferences");
+            verses[ii] = new BitSet();
+            if (isBlank(references)) {
+                continue;
+            }
+
+            try {
+                verses[ii] = VerseBitmap.toBitSet(PassageKeyFactory.instance().getKey(v11n, references));
+            } catch (final NoSuchKeyException e) {
+                LOGGER.warn("Unable to read references [{}] of timeline event [{}]", references,
+                        events[ii].get("id"));
+                LOGGER.trace(e.getMessage(), e);
+            }
+        }
+        return verses;
+    }
+}
@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.helpers;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.KeyUtil;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.RangedPassage;
+import org.crosswire.jsword.passage.RestrictionType;
+import org.crosswire.jsword.passage.VerseRange;
+import org.crosswire.jsword.versification.Versification;
+
+/**
+ * A compressed set of verse ordinals, all in the same versification. Verses are held as sorted runs of consecutive
+ * ordinals, which suits the references of subject entries as they are mostly made up of ranges.
+ */
+public final class VerseBitmap {
+    public static final VerseBitmap EMPTY = new VerseBitmap(new int[0]);
+    private final int[] runs;
+
+    /**
+     * @param runs the first and last ordinal of each run, in order
+     */
+    private VerseBitmap(final int[] runs) {
+        this.runs = runs;
+    }
+
+    /**
+     * @param key the key, which must be in the versification of the bitmap
+     * @return the verses of the key
+     */
+    public static VerseBitmap fromKey(final Key key) {
+        return fromBitSet(toBitSet(key));
+    }
+
+    /**
+     * @param key the key
+     * @return the ordinals of the verses of the key
+     */
+    public static BitSet toBitSet(final Key key) {
+        final BitSet ordinals = new BitSet();
+        final Iterator<VerseRange> ranges = KeyUtil.getPassage(key).rangeIterator(RestrictionType.NONE);
+        while (ranges.hasNext()) {
+            final VerseRange range = ranges.next();
+            ordinals.set(range.getStart().getOrdinal(), range.getEnd().getOrdinal() + 1);
+        }
+        return ordinals;
+    }
+
+    /**
+     * @param ordinals the verse ordinals
+     * @return the compressed bitmap
+     */
+    public static VerseBitmap fromBitSet(final BitSet ordinals) {
+        if (ordinals.isEmpty()) {
+            return EMPTY;
+        }
+
+        int numRuns = 0;
+        for (int start = ordinals.nextSetBit(0); start != -1; start = ordinals.nextSetBit(ordinals.nextClearBit(start))) {
+            numRuns++;
+        }
+
+        final int[] runs = new int[numRuns * 2];
+        int next = 0;
+        for (int start = ordinals.nextSetBit(0); start != -1; start = ordinals.nextSetBit(runs[next - 1] + 1)) {
+            runs[next++] = start;
+            runs[next++] = ordinals.nextClearBit(start) - 1;
+        }
+        return new VerseBitmap(runs);
+    }
+
+    /**
+     * @param ordinals the ordinals to test against
+     * @return true if any of the verses are in the ordinals
+     */
+    public boolean intersects(final BitSet ordinals) {
+        for (int ii = 0; ii < this.runs.length; ii += 2) {
+            final int next = ordinals.nextSetBit(this.runs[ii]);
+            if (next == -1) {
+                return false;
+            }
+
+            if (next <= this.runs[ii + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param sortedOrdinals ordinals in ascending order
+     * @return the position of the first of the ordinals that is one of the verses, or -1 if there is none
+     */
+    public int firstIn(final int[] sortedOrdinals) {
+        for (int ii = 0; ii < this.runs.length; ii += 2) {
+            int position = Arrays.binarySearch(sortedOrdinals, this.runs[ii]);
+            if (position < 0) {
+                position = -position - 1;
+            }
+
+            if (position == sortedOrdinals.length) {
+                return -1;
+            }
+
+            if (sortedOrdinals[position] <= this.runs[ii + 1]) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param ordinals the ordinals to keep
+     * @return the verses that are also in the ordinals
+     */
+    public VerseBitmap and(final BitSet ordinals) {
+        final BitSet retained = new BitSet();
+        addTo(retained);
+        retained.and(ordinals);
+        return fromBitSet(retained);
+    }
+
+    /**
+     * @param ordinals the ordinals to which the verses are added
+     */
+    public void addTo(final BitSet ordinals) {
+        for (int ii = 0; ii < this.runs.length; ii += 2) {
+            ordinals.set(this.runs[ii], this.runs[ii + 1] + 1);
+        }
+    }
+
+    /**
+     * @param v11n the versification of the bitmap
+     * @return the verses as a passage
+     */
+    public Passage toPassage(final Versification v11n) {
+        final Passage passage = new RangedPassage(v11n);
+        for (int ii = 0; ii < this.runs.length; ii += 2) {
+            passage.add(new VerseRange(v11n, v11n.decodeOrdinal(this.runs[ii]), v11n.decodeOrdinal(this.runs[ii + 1])));
+        }
+        return passage;
+    }
+
+    /**
+     * @return true if there are no verses
+     */
+    public boolean isEmpty() {
+        return this.runs.length == 0;
+    }
+
+    /**
+     * @return the number of verses
+     */
+    public int getCardinality() {
+        int cardinality = 0;
+        for (int ii = 0; ii < this.runs.length; ii += 2) {
+            cardinality += this.runs[ii + 1] - this.runs[ii] + 1;
+        }
+        return cardinality;
+    }
+
+    /**
+     * @param out the output
+     * @throws IOException unable to write
+     */
+    public void write(final DataOutput out) throws IOException {
+        out.writeInt(this.runs.length);
+        for (final int ordinal : this.runs) {
+            out.writeInt(ordinal);
+        }
+    }
+
+    /**
+     * @param in the input
+     * @return the bitmap
+     * @throws IOException unable to read
+     */
+    public static VerseBitmap read(final DataInput in) throws IOException {
+        final int length = in.readInt();
+        if (length == 0) {
+            return EMPTY;
+        }
+
+        final int[] runs = new int[length];
+        for (int ii = 0; ii < length; ii++) {
+            runs[ii] = in.readInt();
+        }
+        return new VerseBitmap(runs);
+    }
+}
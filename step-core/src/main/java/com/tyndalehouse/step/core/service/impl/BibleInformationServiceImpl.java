@@ -52,9 +52,9 @@ import com.tyndalehouse.step.core.service.helpers.VersionResolver;
 import com.tyndalehouse.step.core.service.jsword.JSwordMetadataService;
 import com.tyndalehouse.step.core.service.jsword.JSwordModuleService;
 import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
-import com.tyndalehouse.step.core.service.jsword.JSwordSearchService;
 import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
 import com.tyndalehouse.step.core.service.jsword.helpers.JSwordStrongNumberHelper;
+import com.tyndalehouse.step.core.service.jsword.helpers.StrongFrequencyTables;
 import com.tyndalehouse.step.core.utils.StringUtils;
 import com.yammer.metrics.annotation.Timed;
 import org.crosswire.jsword.book.Book;
@@ -97,7 +97,7 @@ public class BibleInformationServiceImpl implements BibleInformationService {
     private final JSwordPassageService jswordPassage;
     private final JSwordModuleService jswordModule;
     private final JSwordMetadataService jswordMetadata;
-    private final JSwordSearchService jswordSearch;
+    private final StrongFrequencyTables strongFrequencyTables;
     private final EntityManager entityManager;
     private final JSwordVersificationService jswordVersification;
     private final VersionResolver resolver;
@@ -111,7 +111,7 @@ public class BibleInformationServiceImpl implements BibleInformationService {
      * @param jswordModule              provides information and handles information relating to module installation,
      *                                  etc.
      * @param jswordMetadata            provides metadata on jsword modules
-     * @param jswordSearch
+     * @param strongFrequencyTables     the counts of each strong number
      * @param entityManager             the entity manager
      * @param jswordVersification       the jsword versification
      * @param strongAugmentationService to augment strong numbers
@@ -120,7 +120,7 @@ public class BibleInformationServiceImpl implements BibleInformationService {
     public BibleInformationServiceImpl(@Named("defaultVersions") final List<String> defaultVersions,
                                        final PassageOptionsValidationService optionsValidationService,
                                        final JSwordPassageService jswordPassage, final JSwordModuleService jswordModule,
-                                       final JSwordMetadataService jswordMetadata, final JSwordSearchService jswordSearch,
+                                       final JSwordMetadataService jswordMetadata, final StrongFrequencyTables strongFrequencyTables,
                                        final EntityManager entityManager, final JSwordVersificationService jswordVersification,
                                        final StrongAugmentationService strongAugmentationService,
                                        final VersionResolver resolver) {
@@ -129,7 +129,7 @@ public class BibleInformationServiceImpl implements BibleInformationService {
         this.defaultVersions = defaultVersions;
         this.jswordModule = jswordModule;
         this.jswordMetadata = jswordMetadata;
-        this.jswordSearch = jswordSearch;
+        this.strongFrequencyTables = strongFrequencyTables;
         this.entityManager = entityManager;
         this.jswordVersification = jswordVersification;
         this.strongAugmentationService = strongAugmentationService;
@@ -267,7 +267,7 @@ public class BibleInformationServiceImpl implements BibleInformationService {
         }
 
         final StrongCountsAndSubjects verseStrongs = new JSwordStrongNumberHelper(this.entityManager,
-                key, this.jswordVersification, this.jswordSearch, this.strongAugmentationService).getVerseStrongs();
+                key, this.jswordVersification, this.strongFrequencyTables, this.strongAugmentationService).getVerseStrongs();
         verseStrongs.setVerse(key.getName());
         verseStrongs.setMultipleVerses(true);
         return verseStrongs;
@@ -35,7 +35,9 @@ package com.tyndalehouse.step.core.service.impl;
 import static com.tyndalehouse.step.core.utils.StringUtils.split;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -62,6 +64,7 @@ public class MorphologyServiceImpl implements MorphologyService {
     private static final int ROBINSON_PREFIX_LENGTH = ROBINSON_PREFIX.length();
     private static final String NON_BREAKING_SPACE = "&nbsp;";
     private final EntityIndexReader morphology;
+    private final Map<String, EntityDoc> prefetchedMorphologies;
 
     /**
      * @param manager the entity manager
@@ -69,6 +72,28 @@ public class MorphologyServiceImpl implements MorphologyService {
     @Inject
     public MorphologyServiceImpl(final EntityManager manager) {
         this.morphology = manager.getReader("morphology");
+        this.prefetchedMorphologies = null;
+    }
+
+    /**
+     * A morphology service that answers from entries that have already been looked up
+     *
+     * @param morphology             the reader used for any code that was not prefetched
+     * @param prefetchedMorphologies the morphology entries, keyed by code
+     */
+    private MorphologyServiceImpl(final EntityIndexReader morphology, final Map<String, EntityDoc> prefetchedMorphologies) {
+        this.morphology = morphology;
+        this.prefetchedMorphologies = prefetchedMorphologies;
+    }
+
+    /**
+     * Looks up all the codes of a passage in one go, rather than one code at a time during the xsl transformation
+     *
+     * @param codes the codes found in the passage, without their robinson: prefix
+     * @return a morphology service to be used for the transformation of that passage only
+     */
+    public MorphologyServiceImpl prefetch(final Collection<String> codes) {
+        return new MorphologyServiceImpl(this.morphology, this.morphology.lookupUniqueBySingleField("code", codes));
     }
 
     @Override
@@ -102,6 +127,9 @@ public class MorphologyServiceImpl implements MorphologyService {
     @SuppressWarnings("PMD")
     private EntityDoc retrieveMorphologyByLongName(final String code) {
         final String key = code.startsWith(ROBINSON_PREFIX) ? code.substring(ROBINSON_PREFIX_LENGTH) : code;
+        if (this.prefetchedMorphologies != null && this.prefetchedMorphologies.containsKey(key)) {
+            return this.prefetchedMorphologies.get(key);
+        }
 
         final long currentTimeNanos = System.nanoTime();
         final EntityDoc[] entry = this.morphology.searchExactTermBySingleField("code", 1, key);
@@ -60,6 +60,8 @@ public class SearchQuery {
     private List<EntityDoc> definitions;
     private String interlinearMode;
     private String augmentedRange;
+    private String signature;
+    private boolean partial;
 
     /**
      * @param searchQuery the query to be run
@@ -234,6 +236,15 @@ public class SearchQuery {
         return moreSearches;
     }
 
+    /**
+     * Moves the pointer to a particular search, for searches that are not run in the order given
+     *
+     * @param index the position of the search
+     */
+    public void selectSearch(final int index) {
+        this.currentSearch = index;
+    }
+
     /**
      * increments the pointer to the next search
      */
@@ -329,4 +340,32 @@ public class SearchQuery {
     public void setAugmentedRange(String augmentedRange) {
         this.augmentedRange = augmentedRange;
     }
+
+    /**
+     * @return the signature of the request, identical for every page of the same request, or null if not signed
+     */
+    public String getSignature() {
+        return signature;
+    }
+
+    /**
+     * @param signature the signature of the request, identical for every page of the same request
+     */
+    public void setSignature(final String signature) {
+        this.signature = signature;
+    }
+
+    /**
+     * @return true if any of the searches run so far is missing results, because some versions did not return in time
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * @param partial true if a search is missing results, because some versions did not return in time
+     */
+    public void setPartial(final boolean partial) {
+        this.partial = partial;
+    }
 }
@@ -5,6 +5,8 @@ import com.tyndalehouse.step.core.data.EntityIndexReader;
 import com.tyndalehouse.step.core.data.EntityManager;
 import com.tyndalehouse.step.core.exceptions.StepInternalException;
 import com.tyndalehouse.step.core.service.StrongAugmentationService;
+import com.tyndalehouse.step.core.service.helpers.AugmentedStrongTable;
+import com.tyndalehouse.step.core.service.helpers.VerseBitmap;
 import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
 import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
 import com.tyndalehouse.step.core.service.jsword.impl.JSwordPassageServiceImpl;
@@ -18,7 +20,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -29,10 +31,13 @@ public class StrongAugmentationServiceImpl implements StrongAugmentationService
     private static final Logger LOGGER = LoggerFactory.getLogger(StrongAugmentationServiceImpl.class);
     private final EntityIndexReader augmentedStrongs;
     private final JSwordVersificationService versificationService;
+    private final AugmentedStrongTable augmentedStrongTable;
 
     @Inject
-    public StrongAugmentationServiceImpl(final EntityManager manager, final JSwordVersificationService versificationService) {
+    public StrongAugmentationServiceImpl(final EntityManager manager, final JSwordVersificationService versificationService,
+                                         final AugmentedStrongTable augmentedStrongTable) {
         this.versificationService = versificationService;
+        this.augmentedStrongTable = augmentedStrongTable;
         this.augmentedStrongs = manager.getReader("augmentedStrongs");
     }
 
@@ -43,85 +48,33 @@ public class StrongAugmentationServiceImpl implements StrongAugmentationService
 
     @Override
     public AugmentedStrongs augment(final String version, final String reference, final String[] keys) {
-        final Map<String, String> augmentedStrongs = new HashMap<>((keys.length + 4) * 2);
         if(StringUtils.isBlank(version) || StringUtils.isBlank(reference)) {
             //won't be able to resolve so just return the keys as is
-            for(String k : keys) {
-                augmentedStrongs.put(k, k);
-            }
-            return new AugmentedStrongs(keys, new EntityDoc[0]);
+            return new AugmentedStrongs(keys);
         }
 
-        //for each key, we see if there is an augment strong number
-        final StringBuilder query = new StringBuilder(keys.length * 10 + 16);
-        query.append("(");
-        for (int i = 0; i < keys.length; i++) {
-            //if Hebrew and not augmented
-            if (isNonAugmentedHebrew(keys[i])) {
-                //then we're looking at Hebrew, so look up the augmentedStrongs data
-                //and we're looking for the first of any strong number
-                //build the lucene query...
-                query.append(StringConversionUtils.getStrongPaddedKey(keys[i]));
-                query.append("? ");
-            } else {
+        //keyed by the padded strong number for Hebrew words, so that each is only augmented once
+        final Map<String, String> augmentedStrongs = new LinkedHashMap<>((keys.length + 4) * 2);
+        VerseBitmap verses = null;
+        for (final String key : keys) {
+            if (!isNonAugmentedHebrew(key)) {
                 //add directly to the augmented list
-                augmentedStrongs.put(keys[i], keys[i]);
-            }
-        }
-
-        final EntityDoc[] docs;
-        if (query.length() > 1) {
-
-            //add the reference in the query. We may have several due to versifications mapping, so we're going to look for documents where at least 1 of the verses is in the doc
-            query.append(") AND (");
-            String[] individualVerses = StringUtils.split(this.versificationService.convertReference(reference, version, JSwordPassageService.OT_BOOK).getKey().getOsisID());
-            //a single chapter can be optimized, also JSword returns the key as Gen.1 rather than expanded
-            boolean queryAppended = false;
-            if(individualVerses.length == 1) {
-                int countSeparators = 0;
-                for(int ii = 0; ii < individualVerses[0].length() && countSeparators < 2; ii++) {
-                    if(individualVerses[0].charAt(ii) == '.') {
-                        countSeparators++;
-                    }
-                }
-                if(countSeparators < 2) {
-                    query.append("references:");
-                    query.append(individualVerses[0]);
-                    query.append(".*");
-                    query.append(' ');
-                    queryAppended = true;
-                }
+                augmentedStrongs.put(key, key);
+                continue;
             }
 
-            if(!queryAppended) {
-                for (String v : individualVerses) {
-                    query.append("references:");
-                    query.append(v);
-                    query.append(' ');
-                }
+            //the verses are only worked out if there is a Hebrew word to augment
+            if (verses == null) {
+                verses = VerseBitmap.fromKey(this.versificationService.convertReference(reference, version, JSwordPassageService.OT_BOOK).getKey());
             }
-            query.append(")");
 
-            //run the query for the hebrew words and add them to the list
-            docs = this.augmentedStrongs.search("augmentedStrong", query.toString());
-            for (EntityDoc d : docs) {
-                final String augmentedStrong = d.get("augmentedStrong");
-                augmentedStrongs.put(augmentedStrong.substring(0, augmentedStrong.length() - 1).toLowerCase(), augmentedStrong);
-            }
-
-            //now we need to work out which strongs were not augmented and add them to the list
-            //check which strongs didn't make it
-            for (String k : keys) {
-                final String keyingStrong = StringConversionUtils.getStrongPaddedKey(k).toLowerCase();
-                if (!augmentedStrongs.containsKey(keyingStrong)) {
-                    augmentedStrongs.put(keyingStrong, k);
-                }
-            }
-        } else {
-            docs = new EntityDoc[0];
+            final String paddedKey = StringConversionUtils.getStrongPaddedKey(key);
+            final char suffix = this.augmentedStrongTable.getSuffix(AugmentedStrongTable.parseStrongNumber(paddedKey), verses);
+            augmentedStrongs.put(paddedKey.toLowerCase(), suffix == 0 ? key : paddedKey + suffix);
         }
+
         final String[] augmented = new String[augmentedStrongs.size()];
-        return new AugmentedStrongs(augmentedStrongs.values().toArray(augmented), docs);
+        return new AugmentedStrongs(augmentedStrongs.values().toArray(augmented));
     }
 
     private boolean isNonAugmentedHebrew(final String key) {
@@ -34,19 +34,15 @@ package com.tyndalehouse.step.core.service.impl;
 
 import static com.tyndalehouse.step.core.utils.ConversionUtils.epochMinutesStringToLocalDateTime;
 import static com.tyndalehouse.step.core.utils.ConversionUtils.localDateTimeToEpochMinutes;
-import static com.tyndalehouse.step.core.utils.StringUtils.isBlank;
-import static org.apache.lucene.search.NumericRangeQuery.newLongRange;
-
-import java.util.Arrays;
-import java.util.Comparator;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.apache.lucene.search.BooleanClause.Occur;
-import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.MatchAllDocsQuery;
-import org.apache.lucene.search.NumericRangeQuery;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.versification.Versification;
 import org.joda.time.LocalDateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -55,10 +51,13 @@ import com.tyndalehouse.step.core.data.EntityDoc;
 import com.tyndalehouse.step.core.data.EntityIndexReader;
 import com.tyndalehouse.step.core.data.EntityManager;
 import com.tyndalehouse.step.core.data.entities.aggregations.TimelineEventsAndDate;
+import com.tyndalehouse.step.core.exceptions.TranslatedException;
 import com.tyndalehouse.step.core.models.EnhancedTimelineEvent;
 import com.tyndalehouse.step.core.models.OsisWrapper;
 import com.tyndalehouse.step.core.service.TimelineService;
+import com.tyndalehouse.step.core.service.helpers.TimelineIndex;
 import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
+import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
 import com.tyndalehouse.step.core.utils.StringUtils;
 
 /**
@@ -72,14 +71,19 @@ public class TimelineServiceImpl implements TimelineService {
     private final JSwordPassageService jsword;
     private final EntityIndexReader hotspots;
     private final EntityIndexReader timelineEvents;
+    private final JSwordVersificationService versificationService;
+    private volatile LoadedTimeline timeline;
 
     /**
      * @param manager the entity manager
      * @param jsword the jsword service
+     * @param versificationService the versification service
      */
     @Inject
-    public TimelineServiceImpl(final EntityManager manager, final JSwordPassageService jsword) {
+    public TimelineServiceImpl(final EntityManager manager, final JSwordPassageService jsword,
+            final JSwordVersificationService versificationService) {
         this.jsword = jsword;
+        this.versificationService = versificationService;
         this.hotspots = manager.getReader("hotspot");
         this.timelineEvents = manager.getReader("timelineEvent");
     }
@@ -93,7 +97,9 @@ public class TimelineServiceImpl implements TimelineService {
     public TimelineEventsAndDate getEventsFromScripture(final String reference) {
         final TimelineEventsAndDate timelineEventsAndDate = new TimelineEventsAndDate();
 
-        final EntityDoc[] matchingTimelineEvents = lookupEventsMatchingReference(reference);
+        // events come back by start date, so the median is simply the middle one
+        final EntityDoc[] matchingTimelineEvents = getTimelineIndex().getEventsForPassageByDate(
+                getKey(reference));
         timelineEventsAndDate.setEvents(matchingTimelineEvents);
 
         timelineEventsAndDate.setDateTime(getDateForEvents(matchingTimelineEvents));
@@ -105,7 +111,7 @@ public class TimelineServiceImpl implements TimelineService {
     /**
      * Gets the date which is most appropriate for centering around these events, i.e. the median?
      * 
-     * @param matchingTimelineEvents the number of events
+     * @param matchingTimelineEvents the events, ordered by start date
      * @return the localDateTime of the median event, if a duration, then of the start point
      */
     private LocalDateTime getDateForEvents(final EntityDoc[] matchingTimelineEvents) {
@@ -113,35 +119,6 @@ public class TimelineServiceImpl implements TimelineService {
             return null;
         }
 
-        // copy list to new list that can be sorted
-
-        Arrays.sort(matchingTimelineEvents, new Comparator<EntityDoc>() {
-
-            @Override
-            public int compare(final EntityDoc o1, final EntityDoc o2) {
-                final String o1StartString = o1.get("fromDate");
-                final String o2StartString = o2.get("fromDate");
-                final boolean blankO1 = isBlank(o1StartString);
-                final boolean blankO2 = isBlank(o2StartString);
-
-                if (blankO1 && blankO2) {
-                    return 0;
-                }
-
-                if (blankO1) {
-                    return 1;
-                }
-
-                if (blankO2) {
-                    return -1;
-                }
-
-                final long o1Start = Long.parseLong(o1StartString);
-                final long o2Start = Long.parseLong(o2StartString);
-                return (o1Start < o2Start) ? -1 : ((o1Start == o2Start) ? 0 : 1);
-            }
-        });
-
         // now we simply return the median element
         return epochMinutesStringToLocalDateTime(matchingTimelineEvents[matchingTimelineEvents.length / 2]
                 .get("fromDate"));
@@ -156,54 +133,53 @@ public class TimelineServiceImpl implements TimelineService {
      */
     @Override
     public EntityDoc[] lookupEventsMatchingReference(final String reference) {
-        // first get the kjv reference
-        final String allReferences = this.jsword.getAllReferences(reference, "ESV-THE");
+        LOGGER.debug("Finding events for [{}]", reference);
+        return getTimelineIndex().getEventsForPassage(getKey(reference));
+    }
 
-        if (isBlank(allReferences)) {
-            return new EntityDoc[0];
+    /**
+     * @param reference the reference
+     * @return the key of the reference, in the versification the events were loaded in
+     */
+    private Key getKey(final String reference) {
+        final Versification v11n = this.versificationService.getVersificationForVersion(JSwordPassageService.REFERENCE_BOOK);
+        if (StringUtils.isBlank(reference)) {
+            return PassageKeyFactory.instance().createEmptyKeyList(v11n);
         }
 
-        // let's assume for now we look up all references
-        LOGGER.debug("Finding events for [{}]", allReferences);
-        return this.timelineEvents.searchSingleColumn("references", allReferences);
+        try {
+            return PassageKeyFactory.instance().getKey(v11n, reference);
+        } catch (final NoSuchKeyException e) {
+            throw new TranslatedException(e, "invalid_reference_in_book", reference, JSwordPassageService.REFERENCE_BOOK);
+        }
     }
 
-    @Override
-    public EntityDoc[] getTimelineEvents(final LocalDateTime from, final LocalDateTime to) {
-        final long startMinutes = localDateTimeToEpochMinutes(from);
-        final long endMinutes = localDateTimeToEpochMinutes(to);
-
-        // start within range
-        final NumericRangeQuery<Long> startInRange = newLongRange("fromDate", startMinutes, endMinutes, true,
-                true);
-
-        // events that don't have a to date
-        final NumericRangeQuery<Long> haveToDates = newLongRange("toDate", null, null, false, false);
-
-        // point events should be within range and not have a to date.
-        final BooleanQuery pointEventsInRage = new BooleanQuery();
-        pointEventsInRage.add(startInRange, Occur.MUST);
-        pointEventsInRage.add(haveToDates, Occur.MUST_NOT);
-
-        // we want to match those documents that have a from date before the end of the given range, i.e. if
-        // an event finishes 1299BC we want to include it in the range (1300BC, xyz)
-        final NumericRangeQuery<Long> fromIsBeforeEnd = newLongRange("fromDate", null, endMinutes, false,
-                true);
-
-        // now we also want those that start after the given range
-        final NumericRangeQuery<Long> toIsAfterStart = newLongRange("toDate", startMinutes, null, false, true);
-
-        // combine the above two queries
-        final BooleanQuery durationsInRange = new BooleanQuery();
-        durationsInRange.add(fromIsBeforeEnd, Occur.MUST);
-        durationsInRange.add(toIsAfterStart, Occur.MUST);
+    /**
+     * The events are read into memory on first use, and read again whenever the index has been rebuilt
+     *
+     * @return the in-memory index of all timeline events
+     */
+    private TimelineIndex getTimelineIndex() {
+        final long generation = this.timelineEvents.getGeneration();
+        final LoadedTimeline current = this.timeline;
+        if (current != null && current.generation == generation) {
+            return current.index;
+        }
 
-        // combine the two queries
-        final BooleanQuery docsInRange = new BooleanQuery();
-        docsInRange.add(pointEventsInRage, Occur.SHOULD);
-        docsInRange.add(durationsInRange, Occur.SHOULD);
+        final LoadedTimeline loaded = new LoadedTimeline(generation, new TimelineIndex(
+                this.timelineEvents.search(new MatchAllDocsQuery()),
+                this.versificationService.getVersificationForVersion(JSwordPassageService.REFERENCE_BOOK)));
+        LOGGER.debug("Loaded [{}] timeline events", loaded.index.size());
+        this.timeline = loaded;
+        return loaded.index;
+    }
 
-        return this.timelineEvents.search(docsInRange);
+    @Override
+    public EntityDoc[] getTimelineEvents(final LocalDateTime from, final LocalDateTime to) {
+        // point events within the range, and events with a duration starting before its end and finishing after
+        // its start, i.e. if an event finishes 1299BC we want to include it in the range (1300BC, xyz)
+        return getTimelineIndex().getEventsInWindow(localDateTimeToEpochMinutes(from),
+                localDateTimeToEpochMinutes(to));
     }
 
     @Override
@@ -223,4 +199,21 @@ public class TimelineServiceImpl implements TimelineService {
         }
         return ete;
     }
+
+    /**
+     * The timeline index, along with the generation of the entity index it was read from
+     */
+    private static final class LoadedTimeline {
+        private final long generation;
+        private final TimelineIndex index;
+
+        /**
+         * @param generation the generation of the entity index
+         * @param index the events read from it
+         */
+        private LoadedTimeline(final long generation, final TimelineIndex index) {
+            this.generation = generation;
+            this.index = index;
+        }
+    }
 }
@@ -35,26 +35,36 @@ package com.tyndalehouse.step.core.service.impl;
 import com.tyndalehouse.step.core.data.EntityDoc;
 import com.tyndalehouse.step.core.data.EntityIndexReader;
 import com.tyndalehouse.step.core.data.EntityManager;
+import com.tyndalehouse.step.core.data.EntityRefreshListener;
 import com.tyndalehouse.step.core.exceptions.UserExceptionType;
 import com.tyndalehouse.step.core.models.LexiconSuggestion;
 import com.tyndalehouse.step.core.models.VocabResponse;
 import com.tyndalehouse.step.core.service.StrongAugmentationService;
 import com.tyndalehouse.step.core.service.VocabularyService;
 import com.tyndalehouse.step.core.service.helpers.OriginalWordUtils;
+import com.tyndalehouse.step.core.utils.BoundedConcurrentCache;
 import com.tyndalehouse.step.core.utils.SortingUtils;
 import com.tyndalehouse.step.core.utils.StringConversionUtils;
 import com.tyndalehouse.step.core.utils.StringUtils;
-import org.codehaus.jackson.map.util.LRUMap;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.document.Document;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -75,7 +85,20 @@ public class VocabularyServiceImpl implements VocabularyService {
     private static final String HIGHER_STRONG = "STRONG:";
     private static final String LOWER_STRONG = "strong:";
     private static final int START_STRONG_KEY = HIGHER_STRONG.length();
-    private static final LRUMap<String, EntityDoc[]> DEFINITIION_CACHE = new LRUMap<>(128, 256);
+    private static final int MAX_CACHED_DEFINITIONS = 16384;
+    private static final long MAX_CACHED_DEFINITION_CHARS = 4L * 1024 * 1024;
+    // stands in the cache for a strong number that has no definition
+    private static final EntityDoc NO_DEFINITION = new EntityDoc(new Document());
+    private static final BoundedConcurrentCache.Weigher<EntityDoc> DEFINITION_WEIGHER =
+            new BoundedConcurrentCache.Weigher<EntityDoc>() {
+                @Override
+                public int weigh(final EntityDoc value) {
+                    return value.getWeight();
+                }
+            };
+    // the fields read by the interlinear and the vocab providers below
+    private static final FieldSelector LEXICON_DATA_FIELDS = new MapFieldSelector("strongNumber", "stepGloss",
+            "accentedUnicode", "stepTransliteration", "alternativeTagging");
     private final EntityIndexReader definitions;
 
     // define a few extraction methods
@@ -98,6 +121,8 @@ public class VocabularyServiceImpl implements VocabularyService {
         }
     };
     private final StrongAugmentationService strongAugmentationService;
+    private final Map<String, EntityDoc[]> prefetchedDefinitions;
+    private final BoundedConcurrentCache<String, EntityDoc> definitionCache;
 
     /**
      * @param manager the entity manager
@@ -107,6 +132,32 @@ public class VocabularyServiceImpl implements VocabularyService {
                                  final StrongAugmentationService strongAugmentationService) {
         this.strongAugmentationService = strongAugmentationService;
         this.definitions = manager.getReader("definition");
+        this.prefetchedDefinitions = null;
+        this.definitionCache = new BoundedConcurrentCache<>(VocabularyServiceImpl.class, "definitions",
+                MAX_CACHED_DEFINITIONS, MAX_CACHED_DEFINITION_CHARS, DEFINITION_WEIGHER);
+
+        // cached definitions come from the old index, so must not outlive it
+        manager.addRefreshListener(new EntityRefreshListener() {
+            @Override
+            public void entityRefreshed(final String entityName) {
+                if ("definition".equals(entityName)) {
+                    VocabularyServiceImpl.this.definitionCache.clear();
+                }
+            }
+        });
+    }
+
+    /**
+     * A vocabulary service that answers from definitions that have already been looked up
+     *
+     * @param source                the service from which to take the readers
+     * @param prefetchedDefinitions the definitions, keyed as per {@link #getCacheKey(String, String, String)}
+     */
+    private VocabularyServiceImpl(final VocabularyServiceImpl source, final Map<String, EntityDoc[]> prefetchedDefinitions) {
+        this.strongAugmentationService = source.strongAugmentationService;
+        this.definitions = source.definitions;
+        this.prefetchedDefinitions = prefetchedDefinitions;
+        this.definitionCache = source.definitionCache;
     }
 
     /**
@@ -186,7 +237,7 @@ public class VocabularyServiceImpl implements VocabularyService {
                 // look up related word from index
                 if (shortLexiconDefinition == null) {
                     final EntityDoc[] relatedDoc = this.definitions.searchUniqueBySingleField("strongNumber",
-                            relatedWord);
+                            OriginalWordUtils.SUGGESTION_FIELDS, relatedWord);
                     // assume first doc
                     if (relatedDoc.length > 0) {
                         shortLexiconDefinition = OriginalWordUtils.convertToSuggestion(relatedDoc[0]);
@@ -321,21 +372,119 @@ public class VocabularyServiceImpl implements VocabularyService {
 
     @Override
     public EntityDoc[] getLexiconDefinitions(final String vocabIdentifiers, final String version, final String reference) {
+        if (this.prefetchedDefinitions != null) {
+            final EntityDoc[] prefetched = this.prefetchedDefinitions.get(getCacheKey(version, reference, vocabIdentifiers));
+            if (prefetched != null) {
+                return prefetched;
+            }
+        }
+
         final String[] keys = this.strongAugmentationService.augment(version, reference, getKeys(vocabIdentifiers)).getStrongList();
         if (keys.length == 0) {
             return new EntityDoc[0];
         }
 
-        final String cacheKey = getCacheKey(version, reference, vocabIdentifiers);
+        final Map<String, EntityDoc> definitionsByStrong = getDefinitionsByStrong(Arrays.asList(keys));
+        final List<EntityDoc> docs = new ArrayList<>(definitionsByStrong.size());
+        for (final EntityDoc doc : definitionsByStrong.values()) {
+            if (doc != null) {
+                docs.add(doc);
+            }
+        }
+        return docs.toArray(new EntityDoc[docs.size()]);
+    }
 
-        final EntityDoc[] entityDocs = DEFINITIION_CACHE.get(cacheKey);
-        if (entityDocs != null) {
-            return entityDocs;
+    /**
+     * Looks up definitions from the cache, loading all the ones that are missing from the index in one go.
+     *
+     * @param strongNumbers the strong numbers
+     * @return the definitions, in the order of the strong numbers, against null where there is none
+     */
+    private Map<String, EntityDoc> getDefinitionsByStrong(final Collection<String> strongNumbers) {
+        final Map<String, EntityDoc> definitionsByStrong = new LinkedHashMap<>(strongNumbers.size() * 2);
+        final List<String> misses = new ArrayList<>();
+        for (final String strong : strongNumbers) {
+            if (definitionsByStrong.containsKey(strong)) {
+                continue;
+            }
+
+            final EntityDoc cached = this.definitionCache.get(strong);
+            if (cached == null) {
+                misses.add(strong);
+            }
+            definitionsByStrong.put(strong, cached == NO_DEFINITION ? null : cached);
         }
 
-        final EntityDoc[] strongNumbers = this.definitions.searchUniqueBySingleField("strongNumber", keys);
-        DEFINITIION_CACHE.put(cacheKey, strongNumbers);
-        return strongNumbers;
+        if (!misses.isEmpty()) {
+            final Map<String, EntityDoc> loaded = this.definitions.lookupUniqueBySingleField("strongNumber",
+                    LEXICON_DATA_FIELDS, misses);
+            for (final Entry<String, EntityDoc> definition : loaded.entrySet()) {
+                final EntityDoc doc = definition.getValue();
+                this.definitionCache.put(definition.getKey(), doc == null ? NO_DEFINITION : doc);
+                definitionsByStrong.put(definition.getKey(), doc);
+            }
+        }
+        return definitionsByStrong;
+    }
+
+    @Override
+    public VocabularyService prefetch(final String version, final Map<String, Set<String>> vocabIdentifiersByReference) {
+        // augment each reference once, with all the strong numbers found in it
+        final Map<String, String[]> augmentedKeys = new HashMap<>(vocabIdentifiersByReference.size() * 32);
+        final Set<String> allStrongs = new HashSet<>(vocabIdentifiersByReference.size() * 32);
+        for (final Entry<String, Set<String>> reference : vocabIdentifiersByReference.entrySet()) {
+            final Set<String> referenceKeys = new LinkedHashSet<>();
+            for (final String vocabIdentifiers : reference.getValue()) {
+                for (final String key : getKeys(vocabIdentifiers)) {
+                    referenceKeys.add(key);
+                }
+            }
+
+            final Map<String, String> augmentedByPrefix = getAugmentedStrongsByPrefix(
+                    this.strongAugmentationService.augment(version, reference.getKey(),
+                            referenceKeys.toArray(new String[referenceKeys.size()])).getStrongList());
+
+            for (final String vocabIdentifiers : reference.getValue()) {
+                final String[] keys = getKeys(vocabIdentifiers);
+                for (int ii = 0; ii < keys.length; ii++) {
+                    final String augmented = augmentedByPrefix.get(StringConversionUtils.getStrongPaddedKey(keys[ii]).toLowerCase());
+                    if (augmented != null) {
+                        keys[ii] = augmented;
+                    }
+                    allStrongs.add(keys[ii]);
+                }
+                augmentedKeys.put(getCacheKey(version, reference.getKey(), vocabIdentifiers), keys);
+            }
+        }
+
+        // then look up the definitions for the whole passage at once
+        final Map<String, EntityDoc> definitionsByStrong = getDefinitionsByStrong(allStrongs);
+        final Map<String, EntityDoc[]> prefetched = new HashMap<>(augmentedKeys.size() * 2);
+        for (final Entry<String, String[]> word : augmentedKeys.entrySet()) {
+            final List<EntityDoc> docs = new ArrayList<>(word.getValue().length);
+            for (final String strong : new LinkedHashSet<>(Arrays.asList(word.getValue()))) {
+                final EntityDoc doc = definitionsByStrong.get(strong);
+                if (doc != null) {
+                    docs.add(doc);
+                }
+            }
+            prefetched.put(word.getKey(), docs.toArray(new EntityDoc[docs.size()]));
+        }
+        return new VocabularyServiceImpl(this, prefetched);
+    }
+
+    /**
+     * @param strongList the strong numbers of a reference, once augmented
+     * @return the augmented strong numbers, keyed by the lower-cased strong number they augment
+     */
+    private Map<String, String> getAugmentedStrongsByPrefix(final String[] strongList) {
+        final Map<String, String> augmentedByPrefix = new HashMap<>(strongList.length * 2);
+        for (final String augmentedStrong : strongList) {
+            if (augmentedStrong.charAt(0) == 'H' && Character.isLetter(augmentedStrong.charAt(augmentedStrong.length() - 1))) {
+                augmentedByPrefix.put(augmentedStrong.substring(0, augmentedStrong.length() - 1).toLowerCase(), augmentedStrong);
+            }
+        }
+        return augmentedByPrefix;
     }
 
     /**
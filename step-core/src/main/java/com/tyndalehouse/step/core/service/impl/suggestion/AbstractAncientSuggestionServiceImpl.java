@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Formatter;
 import java.util.List;
 
+import static com.tyndalehouse.step.core.service.helpers.OriginalWordUtils.SUGGESTION_FIELDS;
 import static com.tyndalehouse.step.core.service.helpers.OriginalWordUtils.convertToSuggestion;
 
 /**
@@ -64,7 +65,7 @@ public abstract class AbstractAncientSuggestionServiceImpl implements SingleType
             }
         }
 
-        final EntityDoc[] search = this.reader.search(query, this.filter, collector);
+        final EntityDoc[] search = this.reader.search(query, this.filter, collector, SUGGESTION_FIELDS);
         
         //we're interested in the results if we wanted more, or if we're retrieving a single result (cos we don't want to display grouping)
         if (leftToCollect > 0 || collector.getTotalHits() == 1) {
@@ -87,7 +88,7 @@ public abstract class AbstractAncientSuggestionServiceImpl implements SingleType
     private EntityDoc[] getTerms(final String form, final int max, boolean exact, final boolean popularSort) {
 
         final BooleanQuery masterQuery = getQuery(form, exact);
-        return this.reader.search(masterQuery, max, getSort(popularSort), this.filter);
+        return this.reader.search(masterQuery, max, getSort(popularSort), this.filter, SUGGESTION_FIELDS);
     }
 
     protected Query getExactOrPrefixQuery(final boolean exact, final Term stepGlossTerm) {
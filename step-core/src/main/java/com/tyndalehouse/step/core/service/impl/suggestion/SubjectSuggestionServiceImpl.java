@@ -3,13 +3,17 @@ package com.tyndalehouse.step.core.service.impl.suggestion;
 import com.tyndalehouse.step.core.data.EntityIndexReader;
 import com.tyndalehouse.step.core.data.EntityManager;
 import com.tyndalehouse.step.core.data.common.TermsAndMaxCount;
+import com.tyndalehouse.step.core.exceptions.StepInternalException;
 import com.tyndalehouse.step.core.models.search.SubjectSuggestion;
 import com.tyndalehouse.step.core.service.helpers.SuggestionContext;
 import com.tyndalehouse.step.core.service.impl.SearchType;
 import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
 import com.tyndalehouse.step.core.service.jsword.JSwordSearchService;
-import com.tyndalehouse.step.core.utils.LuceneUtils;
+import com.tyndalehouse.step.core.utils.PrefixTermIndex;
+import org.apache.lucene.index.IndexReader;
 import org.crosswire.jsword.index.lucene.LuceneIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.tartarus.snowball.ext.PorterStemmer;
 
 import javax.inject.Inject;
@@ -19,29 +23,42 @@ import java.util.Map;
 import java.util.TreeMap;
 
 /**
+ * Suggests subjects from the headings of the reference book and the Nave topics. The terms of the headings are
+ * held in a {@link PrefixTermIndex}, which is built on start-up so that the first suggestion does not pay for it, and
+ * built again whenever the reference book is re-indexed.
+ *
  * @author chrisburrell
  */
 public class SubjectSuggestionServiceImpl extends AbstractIgnoreMergedListSuggestionServiceImpl<SubjectSuggestion> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SubjectSuggestionServiceImpl.class);
     private final EntityIndexReader naves;
     private final JSwordSearchService jSwordSearchService;
+    private volatile HeadingTerms headingTerms;
 
     @Inject
     public SubjectSuggestionServiceImpl(final EntityManager entityManager, JSwordSearchService jSwordSearchService) {
         this.jSwordSearchService = jSwordSearchService;
         naves = entityManager.getReader("nave");
+
+        try {
+            getHeadingTerms();
+        } catch (final StepInternalException ex) {
+            // the reference book may not be installed yet, in which case the terms are built on first use
+            LOGGER.warn("Unable to read the headings of " + JSwordPassageService.REFERENCE_BOOK, ex);
+        }
     }
 
     @Override
     public SubjectSuggestion[] getExactTerms(final SuggestionContext context, final int max, final boolean popularSort) {
         final Map<String, SubjectSuggestion> suggestions = new TreeMap<String, SubjectSuggestion>();
+        final PrefixTermIndex headings = getHeadingTerms();
         final PorterStemmer stemmer = new PorterStemmer();
 
         //add the full term
         final String input = context.getInput();
-        addSubjectTerms(suggestions, stemmer, LuceneUtils.getAllTermsPrefixedWith(true, false, this.jSwordSearchService.getIndexSearcher(JSwordPassageService.REFERENCE_BOOK),
-                LuceneIndex.FIELD_HEADING, input, max).getTerms(), SearchType.SUBJECT_SIMPLE);
-        addSubjectTerms(suggestions, stemmer, this.naves.findSetOfTerms(true, input, max, "root"), SearchType.SUBJECT_EXTENDED);
-        addSubjectTerms(suggestions, stemmer, this.naves.findSetOfTerms(true, input, max, "fullTerm"), SearchType.SUBJECT_FULL);
+        addSubjectTerms(suggestions, headings, stemmer, headings.find(true, input, max).getTerms(), SearchType.SUBJECT_SIMPLE);
+        addSubjectTerms(suggestions, headings, stemmer, this.naves.findSetOfTerms(true, input, max, "root"), SearchType.SUBJECT_EXTENDED);
+        addSubjectTerms(suggestions, headings, stemmer, this.naves.findSetOfTerms(true, input, max, "fullTerm"), SearchType.SUBJECT_FULL);
         return suggestions.values().toArray(new SubjectSuggestion[suggestions.size()]);
     }
 
@@ -51,20 +68,20 @@ public class SubjectSuggestionServiceImpl extends AbstractIgnoreMergedListSugges
                                                       final SubjectSuggestion[] alreadyRetrieved,
                                                       final int leftToCollect) {
         final Map<String, SubjectSuggestion> suggestions = new TreeMap<String, SubjectSuggestion>();
+        final PrefixTermIndex headings = getHeadingTerms();
         final PorterStemmer stemmer = new PorterStemmer();
-        addExistingMappings(suggestions, stemmer, alreadyRetrieved);
+        addExistingMappings(suggestions, headings, stemmer, alreadyRetrieved);
 
         final String input = context.getInput();
-        final TermsAndMaxCount termsFromHeadings = LuceneUtils.getAllTermsPrefixedWith(false, false, this.jSwordSearchService.getIndexSearcher(JSwordPassageService.REFERENCE_BOOK),
-                LuceneIndex.FIELD_HEADING, input, leftToCollect);
+        final TermsAndMaxCount termsFromHeadings = headings.find(false, input, leftToCollect);
         final TermsAndMaxCount termsFromSimpleNave = this.naves.findSetOfTermsWithCounts(false, true, input, leftToCollect, "root");
         final TermsAndMaxCount termsFromFullNave = this.naves.findSetOfTermsWithCounts(false, true, input, leftToCollect, "fullTerm");
 
 
 
-        addSubjectTerms(suggestions, stemmer, termsFromHeadings.getTerms(), SearchType.SUBJECT_SIMPLE);
-        addSubjectTerms(suggestions, stemmer, termsFromSimpleNave.getTerms(), SearchType.SUBJECT_EXTENDED);
-        addSubjectTerms(suggestions, stemmer, termsFromFullNave.getTerms(), SearchType.SUBJECT_FULL);
+        addSubjectTerms(suggestions, headings, stemmer, termsFromHeadings.getTerms(), SearchType.SUBJECT_SIMPLE);
+        addSubjectTerms(suggestions, headings, stemmer, termsFromSimpleNave.getTerms(), SearchType.SUBJECT_EXTENDED);
+        addSubjectTerms(suggestions, headings, stemmer, termsFromFullNave.getTerms(), SearchType.SUBJECT_FULL);
 
 
 
@@ -79,41 +96,56 @@ public class SubjectSuggestionServiceImpl extends AbstractIgnoreMergedListSugges
         return suggestions.values().toArray(new SubjectSuggestion[countsAndResults.getTerms().size()]);
     }
 
+    /**
+     * @return the terms of the headings of the reference book, built again if the book has been re-indexed
+     */
+    private PrefixTermIndex getHeadingTerms() {
+        final IndexReader reader = this.jSwordSearchService.getIndexSearcher(JSwordPassageService.REFERENCE_BOOK).getIndexReader();
+        final HeadingTerms current = this.headingTerms;
+        if (current != null && current.reader == reader) {
+            return current.terms;
+        }
+
+        final HeadingTerms built = new HeadingTerms(reader, PrefixTermIndex.build(reader, LuceneIndex.FIELD_HEADING));
+        this.headingTerms = built;
+        return built.terms;
+    }
+
     /**
      * Adds the existing mappings back in
      * @param suggestions a list of suggestions
-     * @param stemmer the stemmer itself
+     * @param headings the heading terms, which also give the stems of terms
+     * @param stemmer the stemmer for terms that are not headings
      * @param alreadyRetrieved the existing entries
      */
-    private void addExistingMappings(final Map<String, SubjectSuggestion> suggestions, final PorterStemmer stemmer, final SubjectSuggestion[] alreadyRetrieved) {
+    private void addExistingMappings(final Map<String, SubjectSuggestion> suggestions, final PrefixTermIndex headings,
+                                     final PorterStemmer stemmer, final SubjectSuggestion[] alreadyRetrieved) {
         if(alreadyRetrieved == null) {
             return;
         }
         
         for(SubjectSuggestion s : alreadyRetrieved) {
-            stemmer.setCurrent(s.getValue());
-            stemmer.stem();
-            String stem = stemmer.getCurrent();
+            String stem = headings.getStem(stemmer, s.getValue());
             suggestions.put(stem, s);
         }
     }
     
     /**
      * @param suggestions the suggestions
-     * @param stemmer     the stemmer
+     * @param headings    the heading terms, which also give the stems of terms
+     * @param stemmer     the stemmer for terms that are not headings
      * @param naveTerms   the nave terms
      * @param searchType  the search type
      * @return the actual number that was added, rather than marked as also available in a different search
      */
     private int addSubjectTerms(final Map<String, SubjectSuggestion> suggestions,
+                                final PrefixTermIndex headings,
                                 final PorterStemmer stemmer,
                                 final Collection<String> naveTerms,
                                 final SearchType searchType) {
         int added = 0;
         for (String s : naveTerms) {
-            stemmer.setCurrent(s);
-            stemmer.stem();
-            String stem = stemmer.getCurrent();
+            String stem = headings.getStem(stemmer, s);
 
             SubjectSuggestion suggestion = suggestions.get(stem);
             if (suggestion == null) {
@@ -133,4 +165,21 @@ public class SubjectSuggestionServiceImpl extends AbstractIgnoreMergedListSugges
         }
         return added;
     }
+
+    /**
+     * The terms of the headings, along with the index reader they were read from
+     */
+    private static final class HeadingTerms {
+        private final IndexReader reader;
+        private final PrefixTermIndex terms;
+
+        /**
+         * @param reader the reader of the reference book's index
+         * @param terms  the terms of the headings
+         */
+        private HeadingTerms(final IndexReader reader, final PrefixTermIndex terms) {
+            this.reader = reader;
+            this.terms = terms;
+        }
+    }
 }
@@ -10,33 +10,58 @@ import com.tyndalehouse.step.core.models.search.PopularSuggestion;
 import com.tyndalehouse.step.core.service.SingleTypeSuggestionService;
 import com.tyndalehouse.step.core.service.SuggestionService;
 import com.tyndalehouse.step.core.service.helpers.SuggestionContext;
+import com.tyndalehouse.step.core.utils.StepThreadFactory;
 import org.apache.lucene.search.TopFieldCollector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Suggestion service, helping the auto suggestion search dropdown.
+ * <p/>
+ * Providers that depend on each other's results are grouped together and run one after the other, in the order in
+ * which they are declared. When app.suggestions.threads is more than 1, the groups run alongside each other, and
+ * any group that has not finished by the deadline is left out of the suggestions, which are then marked as partial.
  *
  * @author chrisburrell
  */
-public class SuggestionServiceImpl implements SuggestionService {
+public class SuggestionServiceImpl implements SuggestionService, Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(SuggestionServiceImpl.class);
 
     //show the total number of ungrouped results at any one time.
     private static final int MAX_RESULTS = 3;
     //determines how many values are shown on expanding line 'see 7 more, e.g. abc def'
     private static final int PREVIEW_GROUP = 2;
+    private static final int MAX_QUEUED_GROUPS = 64;
     private final Map<String, SingleTypeSuggestionService> queryProviders = new LinkedHashMap<String, SingleTypeSuggestionService>();
     private final Map<String, String[]> dependencies = new HashMap<String, String[]>(8);
     private final Map<String, Integer> extraSlots = new HashMap<String, Integer>(4);
+    private final List<List<String>> providerGroups;
+    private final ExecutorService suggestionExecutor;
+    private final long deadline;
 
+    /**
+     * @param suggestionThreads the number of groups of providers run concurrently, 1 or less to run the providers
+     *                          one after the other on the request thread
+     * @param deadline          the maximum time in ms to wait for the suggestions, 0 or less to wait indefinitely
+     */
     @Inject
     public SuggestionServiceImpl(final HebrewAncientMeaningServiceImpl hebrewAncientMeaningService,
                                  final GreekAncientMeaningServiceImpl greekAncientMeaningService,
@@ -45,7 +70,9 @@ public class SuggestionServiceImpl implements SuggestionService {
                                  final MeaningSuggestionServiceImpl meaningSuggestionService,
                                  final SubjectSuggestionServiceImpl subjectSuggestionService,
                                  final ReferenceSuggestionServiceImpl referenceSuggestionService,
-                                 final TextSuggestionServiceImpl textSuggestionService
+                                 final TextSuggestionServiceImpl textSuggestionService,
+                                 @Named("app.suggestions.threads") final int suggestionThreads,
+                                 @Named("app.suggestions.deadline") final long deadline
     ) {
         queryProviders.put(SearchToken.REFERENCE, referenceSuggestionService);
         queryProviders.put(SearchToken.GREEK_MEANINGS, greekAncientMeaningService);
@@ -72,43 +99,211 @@ public class SuggestionServiceImpl implements SuggestionService {
         // for GREEK and Hebrew, we can attempt to retrieve one more, but these won't show if the slots have been taken above
         extraSlots.put(SearchToken.GREEK, 1);
         extraSlots.put(SearchToken.HEBREW, 1);
+
+        this.providerGroups = groupProviders();
+        this.deadline = deadline;
+        if (suggestionThreads > 1) {
+            // when the queue is full, the request thread runs the group itself, rather than failing
+            this.suggestionExecutor = new ThreadPoolExecutor(suggestionThreads, suggestionThreads, 0L,
+                    TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(MAX_QUEUED_GROUPS),
+                    new StepThreadFactory("suggestions"), new ThreadPoolExecutor.CallerRunsPolicy());
+        } else {
+            this.suggestionExecutor = null;
+        }
+    }
+
+    /**
+     * Groups the providers that depend on each other, keeping each group in the order the providers were declared
+     *
+     * @return the groups of providers
+     */
+    List<List<String>> groupProviders() {
+        final List<String> searchTypes = new ArrayList<String>(queryProviders.keySet());
+        final int[] parents = new int[searchTypes.size()];
+        for (int ii = 0; ii < parents.length; ii++) {
+            parents[ii] = ii;
+        }
+
+        for (int ii = 0; ii < parents.length; ii++) {
+            final String[] dependents = this.dependencies.get(searchTypes.get(ii));
+            if (dependents == null) {
+                continue;
+            }
+
+            for (final String d : dependents) {
+                final int dependent = searchTypes.indexOf(d);
+                if (dependent != -1) {
+                    parents[findRoot(parents, ii)] = findRoot(parents, dependent);
+                }
+            }
+        }
+
+        final Map<Integer, List<String>> groups = new LinkedHashMap<Integer, List<String>>();
+        for (int ii = 0; ii < parents.length; ii++) {
+            final int root = findRoot(parents, ii);
+            List<String> group = groups.get(root);
+            if (group == null) {
+                group = new ArrayList<String>(4);
+                groups.put(root, group);
+            }
+            group.add(searchTypes.get(ii));
+        }
+        return new ArrayList<List<String>>(groups.values());
+    }
+
+    /**
+     * @param parents the parent of each provider
+     * @param index   the provider
+     * @return the first provider of the provider's group
+     */
+    private static int findRoot(final int[] parents, final int index) {
+        int root = index;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        return root;
+    }
+
+    /**
+     * Stops the suggestion threads. Groups that are still running are left to finish rather than interrupted.
+     */
+    @Override
+    public void close() {
+        if (this.suggestionExecutor != null) {
+            this.suggestionExecutor.shutdown();
+        }
     }
 
-    @SuppressWarnings("unchecked")
     @Override
     public SuggestionsSummary getTopSuggestions(final SuggestionContext context) {
+        final Map<String, SingleSuggestionsSummary> results = new ConcurrentHashMap<String, SingleSuggestionsSummary>();
+        boolean partial = false;
+        if (this.suggestionExecutor == null) {
+            for (final String searchType : queryProviders.keySet()) {
+                suggest(searchType, context, results);
+            }
+        } else {
+            partial = suggestConcurrently(context, results);
+        }
+
+        //return results, in the order of the providers
+        final List<SingleSuggestionsSummary> orderedResults = new ArrayList<SingleSuggestionsSummary>(results.size());
+        for (final String searchType : queryProviders.keySet()) {
+            final SingleSuggestionsSummary singleTypeSummary = results.get(searchType);
+            if (singleTypeSummary != null) {
+                orderedResults.add(singleTypeSummary);
+            }
+        }
+
         final SuggestionsSummary summary = new SuggestionsSummary();
-        final Map<String, SingleSuggestionsSummary> results = new LinkedHashMap<String, SingleSuggestionsSummary>();
+        summary.setSuggestionsSummaries(orderedResults);
+        summary.setPartial(partial);
+        return summary;
+    }
 
-        //go through each search type
-        for (Map.Entry<String, SingleTypeSuggestionService> query : queryProviders.entrySet()) {
-            final SingleTypeSuggestionService searchService = query.getValue();
+    /**
+     * Runs each group of providers on the suggestion threads, waiting for them until the deadline. Groups that are
+     * still running at the deadline are told to stop before their next provider, rather than interrupted, since an
+     * interrupt would close the channels of NIO index directories.
+     *
+     * @param context the suggestion context
+     * @param results the results, to which each provider adds its own as it finishes
+     * @return true if any group did not finish by the deadline
+     */
+    private boolean suggestConcurrently(final SuggestionContext context,
+                                     final Map<String, SingleSuggestionsSummary> results) {
+        final AtomicBoolean abandoned = new AtomicBoolean();
+        final List<Future<?>> futures = new ArrayList<Future<?>>(this.providerGroups.size());
+        for (final List<String> group : this.providerGroups) {
+            futures.add(this.suggestionExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (final String searchType : group) {
+                        if (abandoned.get()) {
+                            return;
+                        }
+                        suggest(searchType, context, results);
+                    }
+                }
+            }));
+        }
+
+        final long endTime = System.currentTimeMillis() + this.deadline;
+        boolean partial = false;
+        try {
+            for (int ii = 0; ii < futures.size(); ii++) {
+                partial |= !waitForGroup(futures.get(ii), this.providerGroups.get(ii), context, endTime);
+            }
+            return partial;
+        } finally {
+            abandoned.set(true);
+        }
+    }
+
+    /**
+     * @param future  the pending group of providers
+     * @param group   the providers in the group
+     * @param context the suggestion context
+     * @param endTime the time by which all groups should have finished
+     * @return false if the group did not finish in time
+     */
+    private boolean waitForGroup(final Future<?> future, final List<String> group, final SuggestionContext context,
+                              final long endTime) {
+        try {
+            if (this.deadline <= 0) {
+                future.get();
+            } else {
+                future.get(Math.max(0, endTime - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+            return true;
+        } catch (final TimeoutException e) {
+            future.cancel(false);
+            LOGGER.warn("Suggestions for [{}] from {} timed out, so any not yet found are left out",
+                    context.getInput(), group);
+            return false;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StepInternalException("Interrupted whilst suggesting " + context.getInput(), e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new StepInternalException("Unable to suggest " + context.getInput(), e.getCause());
+        }
+    }
 
-            //run exact query against index
-            final int groupTotal = this.getGroupTotal(query.getKey(), results);
-            final int totalGroupLeftToRetrieve = MAX_RESULTS - groupTotal + PREVIEW_GROUP;
-            Object[] docs = totalGroupLeftToRetrieve > 0 ? searchService.getExactTerms(context, totalGroupLeftToRetrieve, true) : null;
-            int docLength = docs != null ? docs.length : 0;
+    /**
+     * Retrieves the suggestions of a single provider
+     *
+     * @param searchType the type of search, identifying the provider
+     * @param context    the suggestion context
+     * @param results    the results so far, including those of any providers this one depends on
+     */
+    @SuppressWarnings("unchecked")
+    private void suggest(final String searchType, final SuggestionContext context,
+                         final Map<String, SingleSuggestionsSummary> results) {
+        final SingleTypeSuggestionService searchService = queryProviders.get(searchType);
 
-            //how many do we need to collect
-            int leftToCollect = docLength < totalGroupLeftToRetrieve ? totalGroupLeftToRetrieve - docLength : 0;
+        //run exact query against index
+        final int groupTotal = this.getGroupTotal(searchType, results);
+        final int totalGroupLeftToRetrieve = MAX_RESULTS - groupTotal + PREVIEW_GROUP;
+        Object[] docs = totalGroupLeftToRetrieve > 0 ? searchService.getExactTerms(context, totalGroupLeftToRetrieve, true) : null;
+        int docLength = docs != null ? docs.length : 0;
 
-            //create collector to collect some more results, if required, but also the total hit count
-            Object o = searchService.getNewCollector(leftToCollect, true);
-            final Object[] extraDocs = searchService.collectNonExactMatches(o, context, docs, leftToCollect);
-            final List<? extends PopularSuggestion> suggestions = searchService.convertToSuggestions(docs, extraDocs);
+        //how many do we need to collect
+        int leftToCollect = docLength < totalGroupLeftToRetrieve ? totalGroupLeftToRetrieve - docLength : 0;
 
-            final SingleSuggestionsSummary singleTypeSummary = new SingleSuggestionsSummary();
-            setSuggestionsAndExamples(singleTypeSummary, suggestions, groupTotal);
-            fillInTotalHits(o, extraDocs.length, singleTypeSummary);
+        //create collector to collect some more results, if required, but also the total hit count
+        Object o = searchService.getNewCollector(leftToCollect, true);
+        final Object[] extraDocs = searchService.collectNonExactMatches(o, context, docs, leftToCollect);
+        final List<? extends PopularSuggestion> suggestions = searchService.convertToSuggestions(docs, extraDocs);
 
-            singleTypeSummary.setSearchType(query.getKey());
-            results.put(query.getKey(), singleTypeSummary);
-        }
+        final SingleSuggestionsSummary singleTypeSummary = new SingleSuggestionsSummary();
+        setSuggestionsAndExamples(singleTypeSummary, suggestions, groupTotal);
+        fillInTotalHits(o, extraDocs.length, singleTypeSummary);
 
-        //return results
-        summary.setSuggestionsSummaries(new ArrayList<SingleSuggestionsSummary>(results.values()));
-        return summary;
+        singleTypeSummary.setSearchType(searchType);
+        results.put(searchType, singleTypeSummary);
     }
 
     /**
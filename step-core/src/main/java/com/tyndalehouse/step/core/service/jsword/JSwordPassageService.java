@@ -108,6 +108,20 @@ public interface JSwordPassageService {
      * @return the right passage
      */
     OsisWrapper peakOsisText(String[] versions, Key lookupKey, List<LookupOption> options, String interlinearMode);
+
+    /**
+     * Looks up several passages from the same version, reading the module once and running a single
+     * transformation for all of them, e.g. for a page of search results.
+     *
+     * @param version         the version to retrieve
+     * @param lookupKeys      the key(s), one per passage
+     * @param options         the options to use
+     * @param interlinearMode the interlinear mode
+     * @return one passage per key, in the same order, or null if the passages cannot be rendered together and
+     *         should be retrieved one at a time
+     */
+    List<OsisWrapper> peakOsisTexts(String version, List<Key> lookupKeys, List<LookupOption> options,
+                                    String interlinearMode);
     
     /**
      * Looks up a very short starter for ten
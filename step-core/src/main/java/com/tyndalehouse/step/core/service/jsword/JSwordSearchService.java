@@ -6,6 +6,7 @@ import org.crosswire.jsword.passage.Key;
 import com.tyndalehouse.step.core.models.LookupOption;
 import com.tyndalehouse.step.core.models.search.SearchResult;
 import com.tyndalehouse.step.core.service.impl.SearchQuery;
+import com.tyndalehouse.step.core.service.jsword.helpers.ResultCursor;
 
 /**
  * Searches across jsword modules
@@ -13,15 +14,28 @@ import com.tyndalehouse.step.core.service.impl.SearchQuery;
  * @author chrisburrell
  */
 public interface JSwordSearchService {
+    /**
+     * The number of results after which estimates stop counting
+     */
+    int ESTIMATE_CAP = 5000;
 
     /**
-     * estimates the number of results returned
+     * estimates the number of results returned, up to {@link #ESTIMATE_CAP}
      *
      * @param sq the search query
-     * @return the number of results returned by the query
+     * @return the number of results returned by the query, or ESTIMATE_CAP + 1 if there are more
      */
     int estimateSearchResults(SearchQuery sq);
 
+    /**
+     * Counts the results straight from the index, where the query allows, without building the key of the results
+     *
+     * @param sq  the search query
+     * @param cap the number of results after which counting stops
+     * @return the number of results returned by the query, or cap + 1 if there are more than cap
+     */
+    int estimateSearchResults(SearchQuery sq, int cap);
+
     /**
      * Returns the total number of results in the search
      *
@@ -70,6 +84,14 @@ public interface JSwordSearchService {
      */
     Key rankAndTrimResults(SearchQuery sq, Key results);
 
+    /**
+     * Looks up the results left by an earlier page of the same request, before any search is run
+     *
+     * @param sq the search criteria, signed by the request
+     * @return the cursor over the results, in page order, or null if the search needs to be run
+     */
+    ResultCursor getCursor(SearchQuery sq);
+
     /**
      * Can be called if we have already trimmed down the key - used in multi-version searches
      *
@@ -0,0 +1,246 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.jsword.helpers;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+
+import com.tyndalehouse.step.core.models.stats.PassageStat;
+
+/**
+ * The number of occurrences of each word (or strong number) in each chapter of a Bible, so that the statistics of
+ * whole chapters and books can be added up rather than read from the text. The words are numbered once for the whole
+ * Bible, and each chapter holds alternating (word, count) pairs for the words it contains.
+ */
+public class ChapterStatsTable implements TableFiles.Table {
+    private static final int FORMAT_VERSION = 1;
+    private static final int[] EMPTY_CHAPTER = new int[0];
+    private final String sourceVersion;
+    private final String[] words;
+    private final Map<String, int[][]> chaptersByBook;
+
+    /**
+     * Decides whether a word is counted
+     */
+    public interface WordFilter {
+        /**
+         * @param word the word
+         * @return true to count the word
+         */
+        boolean accept(String word);
+    }
+
+    /**
+     * @param sourceVersion  the version of the module from which the counts were taken
+     * @param words          the words, numbered by their position
+     * @param chaptersByBook for each book, keyed by OSIS name, the (word, count) pairs of each chapter
+     */
+    public ChapterStatsTable(final String sourceVersion, final String[] words,
+                             final Map<String, int[][]> chaptersByBook) {
+        this.sourceVersion = sourceVersion;
+        this.words = words;
+        this.chaptersByBook = chaptersByBook;
+    }
+
+    /**
+     * Adds up the counts of whole chapters
+     *
+     * @param v11n         the versification of the Bible
+     * @param firstBook    the book of the first chapter
+     * @param firstChapter the first chapter
+     * @param lastBook     the book of the last chapter
+     * @param lastChapter  the last chapter
+     * @param filter       decides which words are counted
+     * @return the counts of the words in the chapters
+     */
+    public PassageStat getStats(final Versification v11n, final BibleBook firstBook, final int firstChapter,
+                                final BibleBook lastBook, final int lastChapter, final WordFilter filter) {
+        final int[] totals = new int[this.words.length];
+        BibleBook book = firstBook;
+        while (book != null) {
+            final int from = book == firstBook ? firstChapter : 1;
+            final int to = book == lastBook ? lastChapter : v11n.getLastChapter(book);
+            addChapters(book, from, to, totals);
+
+            if (book == lastBook) {
+                break;
+            }
+            book = v11n.getNextBook(book);
+        }
+
+        final Map<String, Integer> stats = new HashMap<String, Integer>(128);
+        for (int ii = 0; ii < totals.length; ii++) {
+            if (totals[ii] != 0 && filter.accept(this.words[ii])) {
+                stats.put(this.words[ii], totals[ii]);
+            }
+        }
+
+        final PassageStat stat = new PassageStat();
+        stat.setStats(stats);
+        return stat;
+    }
+
+    /**
+     * @param book   the book
+     * @param from   the first chapter
+     * @param to     the last chapter
+     * @param totals the counts of each word, to which the chapters are added
+     */
+    private void addChapters(final BibleBook book, final int from, final int to, final int[] totals) {
+        final int[][] chapters = this.chaptersByBook.get(book.getOSIS());
+        if (chapters == null) {
+            return;
+        }
+
+        for (int chapter = Math.max(from, 0); chapter <= to && chapter < chapters.length; chapter++) {
+            final int[] pairs = chapters[chapter];
+            for (int ii = 0; ii < pairs.length; ii += 2) {
+                totals[pairs[ii]] += pairs[ii + 1];
+            }
+        }
+    }
+
+    /**
+     * @param counts the number of occurrences of each word in a chapter
+     * @param wordNumbers the number given to each word so far, to which new words are added
+     * @return the (word, count) pairs of the chapter
+     */
+    public static int[] compress(final Map<String, Integer> counts, final Map<String, Integer> wordNumbers) {
+        if (counts.isEmpty()) {
+            return EMPTY_CHAPTER;
+        }
+
+        final int[] pairs = new int[counts.size() * 2];
+        int next = 0;
+        for (final Entry<String, Integer> count : counts.entrySet()) {
+            Integer wordNumber = wordNumbers.get(count.getKey());
+            if (wordNumber == null) {
+                wordNumber = wordNumbers.size();
+                wordNumbers.put(count.getKey(), wordNumber);
+            }
+            pairs[next++] = wordNumber;
+            pairs[next++] = count.getValue();
+        }
+        return pairs;
+    }
+
+    /**
+     * @return the version of the module from which the counts were taken
+     */
+    public String getSourceVersion() {
+        return this.sourceVersion;
+    }
+
+    /**
+     * @return roughly the number of ints and characters held by the table
+     */
+    public int getWeight() {
+        int weight = 0;
+        for (final String word : this.words) {
+            weight += word.length();
+        }
+
+        for (final int[][] chapters : this.chaptersByBook.values()) {
+            for (final int[] chapter : chapters) {
+                weight += chapter.length;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * @param out the output
+     * @throws IOException unable to write
+     */
+    @Override
+    public void write(final DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(this.sourceVersion);
+        out.writeInt(this.words.length);
+        for (final String word : this.words) {
+            out.writeUTF(word);
+        }
+
+        out.writeInt(this.chaptersByBook.size());
+        for (final Entry<String, int[][]> book : this.chaptersByBook.entrySet()) {
+            out.writeUTF(book.getKey());
+            out.writeInt(book.getValue().length);
+            for (final int[] chapter : book.getValue()) {
+                out.writeInt(chapter.length);
+                for (final int value : chapter) {
+                    out.writeInt(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param in the input
+     * @return the table, or null if it was written in a different format
+     * @throws IOException unable to read the table
+     */
+    public static ChapterStatsTable read(final DataInput in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+
+        final String sourceVersion = in.readUTF();
+        final String[] words = new String[in.readInt()];
+        for (int ii = 0; ii < words.length; ii++) {
+            words[ii] = in.readUTF();
+        }
+
+        final int numBooks = in.readInt();
+        final Map<String, int[][]> chaptersByBook = new HashMap<String, int[][]>(numBooks * 2);
+        for (int ii = 0; ii < numBooks; ii++) {
+            final String book = in.readUTF();
+            final int[][] chapters = new int[in.readInt()][];
+            for (int jj = 0; jj < chapters.length; jj++) {
+                final int[] chapter = new int[in.readInt()];
+                for (int kk = 0; kk < chapter.length; kk++) {
+                    chapter[kk] = in.readInt();
+                }
+                chapters[jj] = chapter.length == 0 ? EMPTY_CHAPTER : chapter;
+            }
+            chaptersByBook.put(book, chapters);
+        }
+        return new ChapterStatsTable(sourceVersion, words, chaptersByBook);
+    }
+}
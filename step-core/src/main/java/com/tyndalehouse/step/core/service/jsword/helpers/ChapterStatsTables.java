@@ -0,0 +1,340 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.jsword.helpers;
+
+import static com.tyndalehouse.step.core.utils.StringUtils.split;
+
+import java.io.DataInput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookData;
+import org.crosswire.jsword.book.BookException;
+import org.crosswire.jsword.book.OSISUtil;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseRange;
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.jdom2.Element;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tyndalehouse.step.core.exceptions.StepInternalException;
+import com.tyndalehouse.step.core.service.StrongAugmentationService;
+import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
+import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
+import com.tyndalehouse.step.core.service.jsword.impl.JSwordAnalysisServiceImpl;
+import com.tyndalehouse.step.core.utils.BoundedConcurrentCache;
+import com.tyndalehouse.step.core.utils.JSwordUtils;
+import com.tyndalehouse.step.core.utils.StepThreadFactory;
+import com.tyndalehouse.step.core.utils.StringConversionUtils;
+
+/**
+ * Holds a {@link ChapterStatsTable} of the strong numbers in the reference book, and one of the words of each version
+ * that has been analysed. A table is built in the background the first time it is asked for, and is kept next to the
+ * entity indexes so that it is only built again when the module changes or the augmented strongs are reloaded. Until
+ * a table is ready, callers count the words from the text themselves. Modules without a version are counted again on
+ * each start-up, since nothing would tell us that their text had changed.
+ * <p/>
+ * Strong numbers are augmented verse by verse, so each takes the suffix of the verse it is in. Counting a range from
+ * the text augments each strong number once for the whole range instead, taking the suffix of the first verse of the
+ * range in which the strong number is augmented. Where a strong number has different suffixes within a range, the
+ * table therefore splits its count between them, where counting from the text gives it all to one.
+ */
+@Singleton
+public class ChapterStatsTables {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChapterStatsTables.class);
+    private static final String TABLES_DIRECTORY = "chapterStats";
+    private static final String STRONG_EXTENSION = ".strongs";
+    private static final String TEXT_EXTENSION = ".words";
+    private static final int MAX_TABLES = 32;
+    private static final long MAX_WEIGHT = 32L * 1024 * 1024;
+    private static final ExecutorService BUILD_EXECUTOR = Executors.newSingleThreadExecutor(
+            new StepThreadFactory("chapter-stats"));
+    private static final TableFiles.Reader<ChapterStatsTable> READER = new TableFiles.Reader<ChapterStatsTable>() {
+        @Override
+        public ChapterStatsTable read(final DataInput in) throws IOException {
+            return ChapterStatsTable.read(in);
+        }
+    };
+    private final BoundedConcurrentCache<String, ChapterStatsTable> tables =
+            new BoundedConcurrentCache<String, ChapterStatsTable>(ChapterStatsTables.class, "chapterStats",
+                    MAX_TABLES, MAX_WEIGHT, new BoundedConcurrentCache.Weigher<ChapterStatsTable>() {
+                @Override
+                public int weigh(final ChapterStatsTable value) {
+                    return value.getWeight();
+                }
+            });
+    private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final JSwordVersificationService versificationService;
+    private final StrongAugmentationService strongAugmentationService;
+    private final TableFiles files;
+    // bumped each time the counts of strong numbers are discarded, so that builds started before then are dropped
+    private volatile long strongGeneration;
+
+    /**
+     * @param versificationService      the versification service
+     * @param strongAugmentationService the strong augmentation service
+     * @param indexPath                 the path to the entity indexes, relative to the STEP home directory
+     */
+    @Inject
+    public ChapterStatsTables(final JSwordVersificationService versificationService,
+                              final StrongAugmentationService strongAugmentationService,
+                              @Named("app.index.path") final String indexPath) {
+        this.versificationService = versificationService;
+        this.strongAugmentationService = strongAugmentationService;
+        this.files = new TableFiles(indexPath, TABLES_DIRECTORY);
+    }
+
+    /**
+     * @return the counts of the strong numbers in each chapter of the reference book, or null if they are not ready
+     */
+    public ChapterStatsTable getStrongTable() {
+        return getTable(JSwordPassageService.REFERENCE_BOOK, STRONG_EXTENSION);
+    }
+
+    /**
+     * @param version the initials of the version
+     * @return the counts of the words in each chapter of the version, or null if they are not ready
+     */
+    public ChapterStatsTable getTextTable(final String version) {
+        return getTable(version, TEXT_EXTENSION);
+    }
+
+    /**
+     * Discards the counts of strong numbers, which depend on the augmented strongs, so that they are built again
+     * the next time they are needed.
+     */
+    public synchronized void rebuild() {
+        this.strongGeneration++;
+        this.files.delete(this.files.getFile(JSwordPassageService.REFERENCE_BOOK + STRONG_EXTENSION));
+        this.tables.clear();
+    }
+
+    /**
+     * @param initials  the initials of the book
+     * @param extension the kind of table
+     * @return the table, or null if it is being read or built in the background
+     */
+    private ChapterStatsTable getTable(final String initials, final String extension) {
+        final String name = initials + extension;
+        final ChapterStatsTable table = this.tables.get(name);
+        if (table != null || !this.pending.add(name)) {
+            return table;
+        }
+
+        final long generation = this.strongGeneration;
+        BUILD_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    loadOrBuild(initials, extension, generation);
+                } catch (final StepInternalException e) {
+                    LOGGER.warn("Unable to count the words of [{}]", name);
+                    LOGGER.trace("Unable to count words", e);
+                } finally {
+                    ChapterStatsTables.this.pending.remove(name);
+                }
+            }
+        });
+        return null;
+    }
+
+    /**
+     * @param initials   the initials of the book
+     * @param extension  the kind of table
+     * @param generation the generation of the counts of strong numbers when the table was asked for
+     */
+    private void loadOrBuild(final String initials, final String extension, final long generation) {
+        final String name = initials + extension;
+        final Book book = this.versificationService.getBookFromVersion(initials);
+        final String sourceVersion = getSourceVersion(book);
+        final File file = sourceVersion == null ? null : this.files.getFile(name);
+
+        ChapterStatsTable table = file == null ? null : this.files.read(file, READER);
+        if (table != null && sourceVersion.equals(table.getSourceVersion())) {
+            publish(name, extension, generation, table, null);
+            return;
+        }
+
+        final long start = System.currentTimeMillis();
+        try {
+            table = buildTable(book, sourceVersion == null ? "" : sourceVersion, STRONG_EXTENSION.equals(extension));
+        } catch (final BookException e) {
+            throw new StepInternalException("Unable to read the text of " + initials, e);
+        } catch (final NoSuchKeyException e) {
+            throw new StepInternalException("Unable to read the text of " + initials, e);
+        }
+        LOGGER.info("Counted the words of [{}] in [{}]ms", name, System.currentTimeMillis() - start);
+        publish(name, extension, generation, table, file);
+    }
+
+    /**
+     * Makes the table available, and writes it if given a file, unless it counts strong numbers and those counts
+     * were discarded while it was being read or built
+     *
+     * @param name       the name of the table
+     * @param extension  the kind of table
+     * @param generation the generation of the counts of strong numbers when the table was asked for
+     * @param table      the table
+     * @param file       the file to write the table to, or null if it is not to be written
+     */
+    private synchronized void publish(final String name, final String extension, final long generation,
+                                      final ChapterStatsTable table, final File file) {
+        if (STRONG_EXTENSION.equals(extension) && generation != this.strongGeneration) {
+            LOGGER.debug("Dropping [{}], as the augmented strongs were reloaded while it was built", name);
+            return;
+        }
+
+        if (file != null) {
+            this.files.write(file, table);
+        }
+        this.tables.put(name, table);
+    }
+
+    /**
+     * Counts the strong numbers or words of each chapter, a chapter at a time
+     *
+     * @param book          the book
+     * @param sourceVersion the version of the module
+     * @param strongs       true to count strong numbers, false to count words
+     * @return the table
+     * @throws BookException      unable to read the text
+     * @throws NoSuchKeyException unable to read the text
+     */
+    private ChapterStatsTable buildTable(final Book book, final String sourceVersion, final boolean strongs)
+            throws BookException, NoSuchKeyException {
+        final Versification v11n = this.versificationService.getVersificationForVersion(book);
+        final Map<String, Integer> wordNumbers = new HashMap<String, Integer>(16384);
+        final Map<String, int[][]> chaptersByBook = new HashMap<String, int[][]>(128);
+        final Map<String, Integer> counts = new HashMap<String, Integer>(1024);
+
+        BibleBook bibleBook = v11n.getFirstBook();
+        while (bibleBook != null) {
+            final int lastChapter = v11n.getLastChapter(bibleBook);
+            if (lastChapter > 0) {
+                final int[][] chapters = new int[lastChapter + 1][];
+                counts.clear();
+                chapters[0] = ChapterStatsTable.compress(counts, wordNumbers);
+                for (int chapter = 1; chapter <= lastChapter; chapter++) {
+                    counts.clear();
+                    final BookData data = new BookData(book, new VerseRange(v11n,
+                            new Verse(v11n, bibleBook, chapter, 1),
+                            new Verse(v11n, bibleBook, chapter, v11n.getLastVerse(bibleBook, chapter))));
+                    if (strongs) {
+                        countStrongs(book.getInitials(), data, counts);
+                    } else {
+                        countWords(data, counts);
+                    }
+                    chapters[chapter] = ChapterStatsTable.compress(counts, wordNumbers);
+                }
+                chaptersByBook.put(bibleBook.getOSIS(), chapters);
+            }
+            bibleBook = v11n.getNextBook(bibleBook);
+        }
+
+        final String[] words = new String[wordNumbers.size()];
+        for (final Map.Entry<String, Integer> word : wordNumbers.entrySet()) {
+            words[word.getValue()] = word.getKey();
+        }
+        return new ChapterStatsTable(sourceVersion, words, chaptersByBook);
+    }
+
+    /**
+     * Counts the strong numbers of a chapter, augmenting each against the verse it is in
+     *
+     * @param initials the initials of the book
+     * @param data     the chapter
+     * @param counts   the counts, to which the strong numbers are added
+     * @throws BookException      unable to read the text
+     * @throws NoSuchKeyException unable to read the text
+     */
+    void countStrongs(final String initials, final BookData data, final Map<String, Integer> counts)
+            throws BookException, NoSuchKeyException {
+        final List<Element> verses = JSwordUtils.getOsisElements(data);
+        for (final Element verse : verses) {
+            final String osisID = verse.getAttributeValue(OSISUtil.OSIS_ATTR_OSISID);
+            for (final String strong : split(OSISUtil.getStrongsNumbers(verse))) {
+                final StrongAugmentationService.AugmentedStrongs augmented =
+                        this.strongAugmentationService.augment(initials, osisID, strong);
+                for (final String word : augmented.getStrongList()) {
+                    increment(counts, StringConversionUtils.getStrongPaddedKey(word));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param data   the chapter
+     * @param counts the counts, to which the words are added
+     * @throws BookException unable to read the text
+     */
+    private void countWords(final BookData data, final Map<String, Integer> counts) throws BookException {
+        for (final String word : split(OSISUtil.getCanonicalText(data.getOsisFragment()),
+                JSwordAnalysisServiceImpl.WORD_SPLIT)) {
+            increment(counts, word);
+        }
+    }
+
+    /**
+     * @param counts the counts
+     * @param word   the word to count once more
+     */
+    private static void increment(final Map<String, Integer> counts, final String word) {
+        final Integer count = counts.get(word);
+        counts.put(word, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * @param book the book
+     * @return the version of the module, which changes whenever its text does, or null if it has none
+     */
+    private static String getSourceVersion(final Book book) {
+        final Object version = book.getBookMetaData().getProperty("Version");
+        return version == null || version.toString().isEmpty() ? null : version.toString();
+    }
+}
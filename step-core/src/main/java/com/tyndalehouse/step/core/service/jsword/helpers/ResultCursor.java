@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.jsword.helpers;
+
+import java.util.Iterator;
+
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.versification.Versification;
+
+/**
+ * The results of a search, as verse ordinals in the order in which they are paged through. Any page can then be read
+ * by offset, without walking the results from the start.
+ */
+public final class ResultCursor {
+    private final Versification v11n;
+    private final int[] ordinals;
+    private final long created;
+
+    /**
+     * @param v11n     the versification of the ordinals
+     * @param ordinals the ordinals, in page order
+     */
+    private ResultCursor(final Versification v11n, final int[] ordinals) {
+        this.v11n = v11n;
+        this.ordinals = ordinals;
+        this.created = System.currentTimeMillis();
+    }
+
+    /**
+     * Walks the results once, in the order of their iterator, so ranked results need to have their ordering set first
+     *
+     * @param results the results of the search
+     * @return the cursor over the results
+     */
+    public static ResultCursor fromPassage(final Passage results) {
+        final int[] ordinals = new int[results.getCardinality()];
+        int size = 0;
+        final Iterator<Key> keys = results.iterator();
+        while (keys.hasNext() && size < ordinals.length) {
+            final Key key = keys.next();
+            if (key instanceof Verse) {
+                ordinals[size++] = ((Verse) key).getOrdinal();
+                continue;
+            }
+
+            for (final Key verse : key) {
+                if (size < ordinals.length) {
+                    ordinals[size++] = ((Verse) verse).getOrdinal();
+                }
+            }
+        }
+        return new ResultCursor(results.getVersification(), ordinals);
+    }
+
+    /**
+     * @param pageNumber the page number, 1 indexed
+     * @param pageSize   the size of the page
+     * @return the verses on the page, empty if the page is beyond the results
+     */
+    public Passage getPage(final int pageNumber, final int pageSize) {
+        final Passage page = (Passage) PassageKeyFactory.instance().createEmptyKeyList(this.v11n);
+
+        //page 1 = 0-59
+        //page 2 = 60-119
+        final int from = Math.max(0, (pageNumber - 1) * pageSize);
+        final int to = Math.min(this.ordinals.length, from + pageSize);
+        for (int ii = from; ii < to; ii++) {
+            page.add(this.v11n.decodeOrdinal(this.ordinals[ii]));
+        }
+        return page;
+    }
+
+    /**
+     * @param maxAge the age in ms after which the cursor should no longer be used
+     * @return true if the cursor is older than maxAge
+     */
+    public boolean isOlderThan(final long maxAge) {
+        return System.currentTimeMillis() - this.created > maxAge;
+    }
+
+    /**
+     * @return the number of verses in the results
+     */
+    public int size() {
+        return this.ordinals.length;
+    }
+}
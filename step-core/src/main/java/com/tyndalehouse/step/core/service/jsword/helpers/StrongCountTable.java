@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.jsword.helpers;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The number of occurrences of each strong number in a Bible, both overall and per book. Counts are held as compact
+ * arrays of ints: the whole-Bible count first, followed by a (book, count) pair for each book in which the strong
+ * number occurs.
+ */
+public class StrongCountTable implements TableFiles.Table {
+    private static final int FORMAT_VERSION = 1;
+    private final long indexVersion;
+    private final String[] books;
+    private final Map<String, Integer> bookIndexes;
+    private final Map<String, int[]> counts;
+
+    /**
+     * @param indexVersion the version of the index from which the counts were taken
+     * @param books        the OSIS names of the books, in the order in which they are referred to by the counts
+     * @param counts       the compressed counts of each strong number, see {@link #compress(int[])}
+     */
+    public StrongCountTable(final long indexVersion, final String[] books, final Map<String, int[]> counts) {
+        this.indexVersion = indexVersion;
+        this.books = books;
+        this.counts = counts;
+        this.bookIndexes = new HashMap<String, Integer>(books.length * 2);
+        for (int ii = 0; ii < books.length; ii++) {
+            this.bookIndexes.put(books[ii], ii);
+        }
+    }
+
+    /**
+     * @param perBook the number of occurrences in each book
+     * @return the whole-Bible count, followed by a (book, count) pair for each book with occurrences
+     */
+    public static int[] compress(final int[] perBook) {
+        int total = 0;
+        int booksWithCounts = 0;
+        for (final int count : perBook) {
+            total += count;
+            if (count != 0) {
+                booksWithCounts++;
+            }
+        }
+
+        final int[] compressed = new int[1 + 2 * booksWithCounts];
+        compressed[0] = total;
+        int next = 1;
+        for (int ii = 0; ii < perBook.length; ii++) {
+            if (perBook[ii] != 0) {
+                compressed[next++] = ii;
+                compressed[next++] = perBook[ii];
+            }
+        }
+        return compressed;
+    }
+
+    /**
+     * @param strong the strong number
+     * @return true if the strong number has its own counts
+     */
+    public boolean contains(final String strong) {
+        return this.counts.containsKey(strong);
+    }
+
+    /**
+     * @param strong the strong number
+     * @return the number of occurrences in the whole Bible
+     */
+    public int getBibleCount(final String strong) {
+        final int[] strongCounts = this.counts.get(strong);
+        return strongCounts == null ? 0 : strongCounts[0];
+    }
+
+    /**
+     * @param strong   the strong number
+     * @param bookName the OSIS name of the book
+     * @return the number of occurrences in the book
+     */
+    public int getBookCount(final String strong, final String bookName) {
+        final int[] strongCounts = this.counts.get(strong);
+        final Integer book = this.bookIndexes.get(bookName);
+        if (strongCounts == null || book == null) {
+            return 0;
+        }
+
+        for (int ii = 1; ii < strongCounts.length; ii += 2) {
+            if (strongCounts[ii] == book) {
+                return strongCounts[ii + 1];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the version of the index from which the counts were taken
+     */
+    public long getIndexVersion() {
+        return this.indexVersion;
+    }
+
+    /**
+     * @param out the output
+     * @throws IOException unable to write the table
+     */
+    @Override
+    public void write(final DataOutput out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(this.indexVersion);
+        out.writeInt(this.books.length);
+        for (final String book : this.books) {
+            out.writeUTF(book);
+        }
+
+        out.writeInt(this.counts.size());
+        for (final Entry<String, int[]> strong : this.counts.entrySet()) {
+            out.writeUTF(strong.getKey());
+            final int[] strongCounts = strong.getValue();
+            out.writeShort(strongCounts.length);
+            for (final int count : strongCounts) {
+                out.writeInt(count);
+            }
+        }
+    }
+
+    /**
+     * @param in the input
+     * @return the table, or null if it was written in a different format
+     * @throws IOException unable to read the table
+     */
+    public static StrongCountTable read(final DataInput in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+
+        final long indexVersion = in.readLong();
+        final String[] books = new String[in.readInt()];
+        for (int ii = 0; ii < books.length; ii++) {
+            books[ii] = in.readUTF();
+        }
+
+        final int numStrongs = in.readInt();
+        final Map<String, int[]> counts = new HashMap<String, int[]>(numStrongs * 2);
+        for (int ii = 0; ii < numStrongs; ii++) {
+            final String strong = in.readUTF();
+            final int[] strongCounts = new int[in.readUnsignedShort()];
+            for (int jj = 0; jj < strongCounts.length; jj++) {
+                strongCounts[jj] = in.readInt();
+            }
+            counts.put(strong, strongCounts);
+        }
+        return new StrongCountTable(indexVersion, books, counts);
+    }
+}
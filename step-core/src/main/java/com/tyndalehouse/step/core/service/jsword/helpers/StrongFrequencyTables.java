@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.jsword.helpers;
+
+import java.io.DataInput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.index.lucene.LuceneIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tyndalehouse.step.core.data.EntityDoc;
+import com.tyndalehouse.step.core.data.EntityIndexReader;
+import com.tyndalehouse.step.core.data.EntityManager;
+import com.tyndalehouse.step.core.exceptions.StepInternalException;
+import com.tyndalehouse.step.core.service.StrongAugmentationService;
+import com.tyndalehouse.step.core.service.impl.StrongAugmentationServiceImpl;
+import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
+import com.tyndalehouse.step.core.service.jsword.JSwordSearchService;
+import com.tyndalehouse.step.core.utils.IOUtils;
+import com.tyndalehouse.step.core.utils.StringUtils;
+
+/**
+ * Holds a {@link StrongCountTable} for each of the books used to count strong numbers. A table is built with a single
+ * pass over the postings of the book's index, and is kept next to the entity indexes so that it is only built again
+ * when the book is re-indexed or the augmented strongs are reloaded.
+ */
+@Singleton
+public class StrongFrequencyTables {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StrongFrequencyTables.class);
+    private static final String TABLES_DIRECTORY = "strongCounts";
+    private static final String TABLE_EXTENSION = ".counts";
+    private static final TableFiles.Reader<StrongCountTable> READER = new TableFiles.Reader<StrongCountTable>() {
+        @Override
+        public StrongCountTable read(final DataInput in) throws IOException {
+            return StrongCountTable.read(in);
+        }
+    };
+    private final Map<String, StrongCountTable> tables = new ConcurrentHashMap<String, StrongCountTable>();
+    private final JSwordSearchService searchService;
+    private final StrongAugmentationService strongAugmentationService;
+    private final EntityIndexReader augmentedStrongs;
+    private final TableFiles files;
+
+    /**
+     * @param searchService             gives access to the indexes of the books
+     * @param entityManager             the entity manager
+     * @param strongAugmentationService the strong augmentation service
+     * @param indexPath                 the path to the entity indexes, relative to the STEP home directory
+     */
+    @Inject
+    public StrongFrequencyTables(final JSwordSearchService searchService, final EntityManager entityManager,
+                                 final StrongAugmentationService strongAugmentationService,
+                                 @Named("app.index.path") final String indexPath) {
+        this.searchService = searchService;
+        this.strongAugmentationService = strongAugmentationService;
+        this.augmentedStrongs = entityManager.getReader("augmentedStrongs");
+        this.files = new TableFiles(indexPath, TABLES_DIRECTORY);
+    }
+
+    /**
+     * @param countBookInitials the initials of the book used for counting
+     * @return the counts of the strong numbers in the book
+     */
+    public StrongCountTable getTable(final String countBookInitials) {
+        final StrongCountTable table = this.tables.get(countBookInitials);
+        return table != null ? table : loadOrBuild(countBookInitials);
+    }
+
+    /**
+     * Discards all tables and builds them again, for use once the books have been indexed and the augmented strongs
+     * loaded.
+     */
+    public synchronized void rebuild() {
+        this.tables.clear();
+        for (final String initials : new String[]{JSwordPassageService.REFERENCE_BOOK, JSwordPassageService.OT_BOOK}) {
+            this.files.delete(this.files.getFile(initials + TABLE_EXTENSION));
+
+            if (Books.installed().getBook(initials) != null) {
+                try {
+                    loadOrBuild(initials);
+                } catch (final StepInternalException e) {
+                    LOGGER.warn("Unable to count strong numbers in [{}], they will be counted on first use", initials);
+                    LOGGER.trace("Unable to count strong numbers", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param initials the initials of the book
+     * @return the table, read from disk if it is still current, or built otherwise
+     */
+    private synchronized StrongCountTable loadOrBuild(final String initials) {
+        StrongCountTable table = this.tables.get(initials);
+        if (table != null) {
+            return table;
+        }
+
+        final IndexReader reader = this.searchService.getIndexSearcher(initials).getIndexReader();
+        final File file = this.files.getFile(initials + TABLE_EXTENSION);
+        table = this.files.read(file, READER);
+        if (table == null || table.getIndexVersion() != reader.getVersion()) {
+            final long start = System.currentTimeMillis();
+            try {
+                table = buildTable(reader);
+            } catch (final IOException e) {
+                throw new StepInternalException("Unable to count strong numbers in " + initials, e);
+            }
+            LOGGER.info("Counted strong numbers in [{}] in [{}]ms", initials, System.currentTimeMillis() - start);
+            this.files.write(file, table);
+        }
+
+        this.tables.put(initials, table);
+        return table;
+    }
+
+    /**
+     * Counts every strong number in the index, and every augmented strong number based on them
+     *
+     * @param reader the reader of the book's index
+     * @return the table of counts
+     * @throws IOException unable to read the index
+     */
+    StrongCountTable buildTable(final IndexReader reader) throws IOException {
+        // work out the book of each verse, once
+        final int maxDoc = reader.maxDoc();
+        final String[] docKeys = new String[maxDoc];
+        final int[] docBooks = new int[maxDoc];
+        final Map<String, Integer> bookIndexes = new LinkedHashMap<String, Integer>(128);
+        final FieldSelector keyOnly = new MapFieldSelector(LuceneIndex.FIELD_KEY);
+        for (int doc = 0; doc < maxDoc; doc++) {
+            docBooks[doc] = -1;
+            if (reader.isDeleted(doc)) {
+                continue;
+            }
+
+            final String key = reader.document(doc, keyOnly).get(LuceneIndex.FIELD_KEY);
+            if (key == null) {
+                continue;
+            }
+
+            final int bookEnd = key.indexOf('.');
+            final String bookName = bookEnd == -1 ? key : key.substring(0, bookEnd);
+            Integer bookIndex = bookIndexes.get(bookName);
+            if (bookIndex == null) {
+                bookIndex = bookIndexes.size();
+                bookIndexes.put(bookName, bookIndex);
+            }
+            docKeys[doc] = key;
+            docBooks[doc] = bookIndex;
+        }
+
+        final int numBooks = bookIndexes.size();
+        final Map<String, List<AugmentedCounts>> augmentedByStrong = getAugmentedStrongs(numBooks);
+        final Map<String, int[]> counts = new HashMap<String, int[]>(16384);
+        final int[] perBook = new int[numBooks];
+
+        final TermEnum terms = reader.terms(new Term(LuceneIndex.FIELD_STRONG, ""));
+        final TermDocs termDocs = reader.termDocs();
+        try {
+            do {
+                final Term term = terms.term();
+                if (term == null || !LuceneIndex.FIELD_STRONG.equals(term.field())) {
+                    break;
+                }
+
+                final List<AugmentedCounts> augmented = augmentedByStrong.get(term.text());
+                Arrays.fill(perBook, 0);
+                termDocs.seek(terms);
+                while (termDocs.next()) {
+                    final int doc = termDocs.doc();
+                    final int book = docBooks[doc];
+                    if (book == -1) {
+                        continue;
+                    }
+
+                    final int freq = termDocs.freq();
+                    perBook[book] += freq;
+                    if (augmented != null) {
+                        for (final AugmentedCounts a : augmented) {
+                            if (a.references.contains(docKeys[doc])) {
+                                a.perBook[book] += freq;
+                            }
+                        }
+                    }
+                }
+
+                counts.put(term.text(), StrongCountTable.compress(perBook));
+                if (augmented != null) {
+                    for (final AugmentedCounts a : augmented) {
+                        counts.put(a.augmentedStrong, StrongCountTable.compress(a.perBook));
+                    }
+                }
+            } while (terms.next());
+        } finally {
+            IOUtils.closeQuietly(termDocs);
+            IOUtils.closeQuietly(terms);
+        }
+
+        return new StrongCountTable(reader.getVersion(), bookIndexes.keySet().toArray(new String[numBooks]), counts);
+    }
+
+    /**
+     * @param numBooks the number of books in the index
+     * @return the augmented strong numbers, keyed by the strong number they augment
+     */
+    private Map<String, List<AugmentedCounts>> getAugmentedStrongs(final int numBooks) {
+        final EntityDoc[] docs = this.augmentedStrongs.search(new MatchAllDocsQuery());
+        final Map<String, List<AugmentedCounts>> augmentedByStrong = new HashMap<String, List<AugmentedCounts>>(
+                docs.length * 2);
+        for (final EntityDoc doc : docs) {
+            final String augmentedStrong = doc.get("augmentedStrong");
+            final String strong = this.strongAugmentationService.reduce(augmentedStrong);
+            List<AugmentedCounts> augmented = augmentedByStrong.get(strong);
+            if (augmented == null) {
+                augmented = new ArrayList<AugmentedCounts>(4);
+                augmentedByStrong.put(strong, augmented);
+            }
+            augmented.add(new AugmentedCounts(augmentedStrong,
+                    doc.get(StrongAugmentationServiceImpl.AS_REFERENCES), numBooks));
+        }
+        return augmentedByStrong;
+    }
+
+    /**
+     * The counts of an augmented strong number, which only occurs in the verses it lists
+     */
+    private static final class AugmentedCounts {
+        private final String augmentedStrong;
+        private final Set<String> references;
+        private final int[] perBook;
+
+        /**
+         * @param augmentedStrong the augmented strong number
+         * @param references      the verses in which the augmented strong number occurs
+         * @param numBooks        the number of books in the index
+         */
+        private AugmentedCounts(final String augmentedStrong, final String references, final int numBooks) {
+            this.augmentedStrong = augmentedStrong;
+            this.references = new HashSet<String>(Arrays.asList(StringUtils.split(references)));
+            this.perBook = new int[numBooks];
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.jsword.helpers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import org.crosswire.common.util.CWProject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tyndalehouse.step.core.utils.IOUtils;
+
+/**
+ * The files in which tables of counts are kept next to the entity indexes, so that they need not be built on each
+ * start-up. A table that cannot be read is treated as missing, so that it is built again, and one that cannot be
+ * written is simply built again on the next start-up.
+ */
+final class TableFiles {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableFiles.class);
+    private final String path;
+
+    /**
+     * A table that can be kept in a file
+     */
+    interface Table {
+        /**
+         * @param out the output
+         * @throws IOException unable to write the table
+         */
+        void write(DataOutput out) throws IOException;
+    }
+
+    /**
+     * Reads a table written by {@link Table#write(DataOutput)}
+     *
+     * @param <T> the type of the table
+     */
+    interface Reader<T> {
+        /**
+         * @param in the input
+         * @return the table, or null if it was written in a different format
+         * @throws IOException unable to read the table
+         */
+        T read(DataInput in) throws IOException;
+    }
+
+    /**
+     * @param indexPath the path to the entity indexes, relative to the STEP home directory
+     * @param directory the directory holding this kind of table
+     */
+    TableFiles(final String indexPath, final String directory) {
+        this.path = indexPath + directory;
+    }
+
+    /**
+     * @param name the name of the table
+     * @return the file holding the table
+     */
+    File getFile(final String name) {
+        return new File(new File(CWProject.instance().getWriteableProjectSubdir(this.path, true)), name);
+    }
+
+    /**
+     * @param file   the file
+     * @param reader reads the table
+     * @param <T>    the type of the table
+     * @return the table, or null if there is none or it cannot be read
+     */
+    <T> T read(final File file, final Reader<T> reader) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            return reader.read(in);
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to read [{}], so it will be built again", file);
+            LOGGER.trace("Unable to read table", e);
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * @param file  the file
+     * @param table the table
+     */
+    void write(final File file, final Table table) {
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            table.write(out);
+        } catch (final IOException e) {
+            LOGGER.warn("Unable to write [{}]", file);
+            LOGGER.trace("Unable to write table", e);
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+    }
+
+    /**
+     * @param file the file of a table that is out of date
+     */
+    void delete(final File file) {
+        if (file.exists() && !file.delete()) {
+            LOGGER.warn("Unable to delete [{}]", file);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.jsword.helpers;
+
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.Scorer;
+import org.crosswire.jsword.index.lucene.LuceneIndex;
+import org.crosswire.jsword.passage.NoSuchVerseException;
+import org.crosswire.jsword.passage.VerseFactory;
+import org.crosswire.jsword.versification.Versification;
+
+import com.tyndalehouse.step.core.exceptions.StepInternalException;
+
+/**
+ * Counts the verses matching a query against the index of a Bible, without building a key. When several Bibles of
+ * the same versification are counted, each verse is only counted once, and collection stops as soon as more verses
+ * than the cap have been found.
+ */
+public class VerseCountCollector extends Collector {
+    private static final Map<IndexReader, int[]> DOC_ORDINALS = new WeakHashMap<IndexReader, int[]>();
+    private static final FieldSelector KEY_ONLY = new MapFieldSelector(LuceneIndex.FIELD_KEY);
+    private final int cap;
+    private final BitSet ordinals = new BitSet();
+    private int[] docOrdinals;
+    private int docBase;
+    private int count;
+
+    /**
+     * Thrown to stop collecting once the cap has been exceeded, as Lucene offers no other way of doing so
+     */
+    public static final class CapExceededException extends RuntimeException {
+        private static final long serialVersionUID = -2416709352087212474L;
+
+        /**
+         * Creates the exception without a stack trace, since it is thrown in the normal course of counting
+         */
+        private CapExceededException() {
+            super("More verses than the cap", null, false, false);
+        }
+    }
+
+    /**
+     * @param cap the number of verses after which counting stops
+     */
+    public VerseCountCollector(final int cap) {
+        this.cap = cap;
+    }
+
+    /**
+     * Prepares to count the verses of another Bible, in the same versification as the previous ones
+     *
+     * @param reader the top-level reader of the Bible's index, whose documents are numbered from 0
+     * @param v11n   the versification of the Bible
+     */
+    public void startBible(final IndexReader reader, final Versification v11n) {
+        this.docOrdinals = getDocOrdinals(reader, v11n);
+    }
+
+    @Override
+    public void setScorer(final Scorer scorer) {
+        // scores are not needed for counting
+    }
+
+    @Override
+    public void collect(final int doc) {
+        final int ordinal = this.docOrdinals[this.docBase + doc];
+        if (ordinal == -1 || this.ordinals.get(ordinal)) {
+            return;
+        }
+
+        this.ordinals.set(ordinal);
+        if (++this.count > this.cap) {
+            throw new CapExceededException();
+        }
+    }
+
+    @Override
+    public void setNextReader(final IndexReader reader, final int docBase) {
+        this.docBase = docBase;
+    }
+
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+        return true;
+    }
+
+    /**
+     * @return the number of distinct verses found, at most one more than the cap
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * The verse of each document is read once per index, and kept for as long as the index is open
+     *
+     * @param reader the top-level reader of the index
+     * @param v11n   the versification of the Bible
+     * @return the ordinal of the verse held by each document, or -1 if it is not a verse
+     */
+    private static int[] getDocOrdinals(final IndexReader reader, final Versification v11n) {
+        synchronized (DOC_ORDINALS) {
+            final int[] docOrdinals = DOC_ORDINALS.get(reader);
+            if (docOrdinals != null) {
+                return docOrdinals;
+            }
+        }
+
+        final int[] docOrdinals = new int[reader.maxDoc()];
+        try {
+            for (int doc = 0; doc < docOrdinals.length; doc++) {
+                docOrdinals[doc] = reader.isDeleted(doc) ? -1
+                        : getOrdinal(v11n, reader.document(doc, KEY_ONLY).get(LuceneIndex.FIELD_KEY));
+            }
+        } catch (final IOException e) {
+            throw new StepInternalException("Unable to read the verses of the index", e);
+        }
+
+        synchronized (DOC_ORDINALS) {
+            DOC_ORDINALS.put(reader, docOrdinals);
+        }
+        return docOrdinals;
+    }
+
+    /**
+     * @param v11n the versification
+     * @param key  the OSIS reference of a document
+     * @return the ordinal of the verse, or -1 if the document does not hold a single verse
+     */
+    private static int getOrdinal(final Versification v11n, final String key) {
+        if (key == null) {
+            return -1;
+        }
+
+        try {
+            return VerseFactory.fromString(v11n, key).getOrdinal();
+        } catch (final NoSuchVerseException e) {
+            return -1;
+        }
+    }
+}
@@ -41,6 +41,8 @@ import com.tyndalehouse.step.core.models.stats.ScopeType;
 import com.tyndalehouse.step.core.service.StrongAugmentationService;
 import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
 import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
+import com.tyndalehouse.step.core.service.jsword.helpers.ChapterStatsTable;
+import com.tyndalehouse.step.core.service.jsword.helpers.ChapterStatsTables;
 import com.tyndalehouse.step.core.utils.StringConversionUtils;
 import com.tyndalehouse.step.core.utils.StringUtils;
 import org.crosswire.jsword.book.Book;
@@ -62,7 +64,7 @@ import java.util.*;
  * @author chrisburrell
  */
 public class JSwordAnalysisServiceImpl implements JSwordAnalysisService {
-    static final String WORD_SPLIT = "[,./<>?!;:'\\[\\]\\{\\}!\"\\-\u2013 ()]+";
+    public static final String WORD_SPLIT = "[,./<>?!;:'\\[\\]\\{\\}!\"\\-\u2013 ()]+";
     private static final String LANGUAGE_STOP_LIST = "analysis.stopWords.%s";
     private final JSwordVersificationService versification;
     private final Map<String, Set<String>> stopWords = new HashMap<String, Set<String>>(32);
@@ -71,20 +73,24 @@ public class JSwordAnalysisServiceImpl implements JSwordAnalysisService {
     private final Book strongsBook;
     private final Properties stopWordsProperties;
     private StrongAugmentationService strongAugmentationService;
+    private final ChapterStatsTables chapterStatsTables;
 
     /**
      * Instantiates a new jsword analysis service impl.
      *
-     * @param versification the versification
+     * @param versification      the versification
+     * @param chapterStatsTables the counts of the words in each chapter, used for anything larger than a passage
      */
     @Inject
     public JSwordAnalysisServiceImpl(final JSwordVersificationService versification,
                                      @Named("StepCoreProperties") final Properties stopWordsProperties,
                                      @Named("analysis.stopStrongs") final String configuredStopStrongs,
-                                     final StrongAugmentationService strongAugmentationService) {
+                                     final StrongAugmentationService strongAugmentationService,
+                                     final ChapterStatsTables chapterStatsTables) {
         this.versification = versification;
         this.stopWordsProperties = stopWordsProperties;
         this.strongAugmentationService = strongAugmentationService;
+        this.chapterStatsTables = chapterStatsTables;
         stopStrongs = StringUtils.createSet(configuredStopStrongs);
         strongsBook = this.versification.getBookFromVersion(JSwordPassageService.REFERENCE_BOOK);
         strongsV11n = this.versification.getVersificationForVersion(strongsBook);
@@ -92,6 +98,18 @@ public class JSwordAnalysisServiceImpl implements JSwordAnalysisService {
 
     @Override
     public PassageStat getWordStats(final Key reference, final ScopeType scopeType) {
+        if (scopeType != ScopeType.PASSAGE) {
+            final ChapterStatsTable table = this.chapterStatsTables.getStrongTable();
+            if (table != null) {
+                return getStatsFromTable(table, reference, scopeType, strongsV11n, new ChapterStatsTable.WordFilter() {
+                    @Override
+                    public boolean accept(final String word) {
+                        return !stopStrongs.contains(word.toUpperCase());
+                    }
+                });
+            }
+        }
+
         try {
             //change the reference to match what we need
             final BookData expandedBook = getExpandedBookData(reference, scopeType, strongsV11n, strongsBook);
@@ -106,13 +124,24 @@ public class JSwordAnalysisServiceImpl implements JSwordAnalysisService {
         try {
             final Book book = this.versification.getBookFromVersion(version);
             final Versification av11n = this.versification.getVersificationForVersion(book);
+            final Set<String> languageStopWords = getLanguageStopList(book);
+            if (scopeType != ScopeType.PASSAGE) {
+                final ChapterStatsTable table = this.chapterStatsTables.getTextTable(book.getInitials());
+                if (table != null) {
+                    return getStatsFromTable(table, reference, scopeType, av11n, new ChapterStatsTable.WordFilter() {
+                        @Override
+                        public boolean accept(final String word) {
+                            return !languageStopWords.contains(StringConversionUtils.unAccent(word.toUpperCase(), true));
+                        }
+                    });
+                }
+            }
+
             final BookData bookData = getExpandedBookData(reference, scopeType, av11n, book);
 
             final String canonicalText = OSISUtil.getCanonicalText(bookData.getOsisFragment());
             final String[] words = split(canonicalText, WORD_SPLIT);
 
-            Set<String> languageStopWords = getLanguageStopList(book);
-
             final PassageStat stat = new PassageStat();
             for (final String word : words) {
                 //only add word if not in STOP list
@@ -164,6 +193,45 @@ public class JSwordAnalysisServiceImpl implements JSwordAnalysisService {
             return new BookData(bookFromVersion, key);
         }
 
+        final VerseRange range = getExpandedRange(key, scopeType, v11n);
+        if (range == null) {
+            //there is no data
+            return new BookData(bookFromVersion, new RangedPassage(v11n));
+        }
+        return new BookData(bookFromVersion, range);
+    }
+
+    /**
+     * Adds up the counts of the chapters covered by the scope
+     *
+     * @param table     the counts of each chapter
+     * @param key       the key
+     * @param scopeType the scope type, other than a passage
+     * @param v11n      the v11n of the book from which the table was built
+     * @param filter    decides which words are counted
+     * @return the stats
+     */
+    private PassageStat getStatsFromTable(final ChapterStatsTable table, final Key key, final ScopeType scopeType,
+                                          final Versification v11n, final ChapterStatsTable.WordFilter filter) {
+        final VerseRange range = getExpandedRange(key, scopeType, v11n);
+        if (range == null) {
+            return new PassageStat();
+        }
+
+        final Verse start = range.getStart();
+        final Verse end = range.getEnd();
+        return table.getStats(v11n, start.getBook(), start.getChapter(), end.getBook(), end.getChapter(), filter);
+    }
+
+    /**
+     * Expands the key to whole chapters, or the whole book
+     *
+     * @param key       the key
+     * @param scopeType the scope type, other than a passage
+     * @param v11n      the v11n for the book we are looking up
+     * @return the expanded range, or null if the key is empty
+     */
+    private VerseRange getExpandedRange(final Key key, final ScopeType scopeType, final Versification v11n) {
         //validate the key is a verse key
         if (!(key instanceof VerseKey)) {
             throw new StepInternalException("Unable to identify verses in this passage");
@@ -171,8 +239,7 @@ public class JSwordAnalysisServiceImpl implements JSwordAnalysisService {
 
         //if we have no data, then no point in continuing
         if (!key.iterator().hasNext()) {
-            //there is no data
-            return new BookData(bookFromVersion, new RangedPassage(v11n));
+            return null;
         }
 
         Verse firstVerse = KeyUtil.getVerse(key);
@@ -225,8 +292,7 @@ public class JSwordAnalysisServiceImpl implements JSwordAnalysisService {
             default:
                 throw new StepInternalException("Unable to recognise passed-in scope type.");
         }
-        return new BookData(bookFromVersion, new VerseRange(v11n, start, end));
-
+        return new VerseRange(v11n, start, end);
     }
 
     /**
@@ -55,10 +55,8 @@ import com.tyndalehouse.step.core.xsl.XslConversionType;
 import com.tyndalehouse.step.core.xsl.impl.ColorCoderProviderImpl;
 import com.tyndalehouse.step.core.xsl.impl.InterleavingProviderImpl;
 import com.tyndalehouse.step.core.xsl.impl.MultiInterlinearProviderImpl;
-import org.crosswire.common.xml.Converter;
 import org.crosswire.common.xml.JDOMSAXEventProvider;
 import org.crosswire.common.xml.SAXEventProvider;
-import org.crosswire.common.xml.TransformingSAXEventProvider;
 import org.crosswire.jsword.book.Book;
 import org.crosswire.jsword.book.BookData;
 import org.crosswire.jsword.book.BookException;
@@ -73,10 +71,13 @@ import org.crosswire.jsword.passage.PassageKeyFactory;
 import org.crosswire.jsword.passage.RestrictionType;
 import org.crosswire.jsword.passage.RocketPassage;
 import org.crosswire.jsword.passage.Verse;
+import org.crosswire.jsword.passage.VerseKey;
 import org.crosswire.jsword.passage.VerseRange;
 import org.crosswire.jsword.versification.BibleBook;
 import org.crosswire.jsword.versification.Testament;
 import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.VersificationsMapper;
+import org.jdom2.Content;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.filter.ElementFilter;
@@ -89,16 +90,15 @@ import org.xml.sax.SAXException;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import javax.xml.transform.TransformerException;
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 
 import static com.tyndalehouse.step.core.models.InterlinearMode.COLUMN_COMPARE;
 import static com.tyndalehouse.step.core.models.InterlinearMode.INTERLEAVED;
@@ -110,7 +110,6 @@ import static com.tyndalehouse.step.core.utils.StringUtils.isNotBlank;
 import static com.tyndalehouse.step.core.utils.ValidateUtils.notNull;
 import static java.lang.Integer.parseInt;
 import static java.lang.String.format;
-import static org.crosswire.common.xml.XMLUtil.writeToString;
 import static org.crosswire.jsword.book.OSISUtil.OSIS_ATTR_OSISID;
 import static org.crosswire.jsword.book.OSISUtil.OSIS_ELEMENT_VERSE;
 
@@ -125,6 +124,11 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
     private static final String OSIS_ID_BOOK_CHAPTER = "%s.%s";
     private static final String OSIS_CHAPTER_FORMAT = "%s.%d";
     private static final String OSIS_CHAPTER_VERSE_FORMAT = "%s.%s.%d";
+    private static final String SEARCH_RESULT_DIV_TYPE = "x-step-search-result";
+    private static final String CLOSING_DIV = "</div>";
+    private static final Pattern SEARCH_RESULT_BOUNDARY = Pattern.compile(
+            "<span class=[\"']searchResultBoundary[\"']\\s*(/>|>\\s*</span>)");
+    private static final Pattern ROBINSON_PREFIX = Pattern.compile("^robinson:", Pattern.CASE_INSENSITIVE);
     private static final Logger LOGGER = LoggerFactory.getLogger(JSwordPassageServiceImpl.class);
     private final MorphologyServiceImpl morphologyProvider;
     private final JSwordVersificationService versificationService;
@@ -132,6 +136,7 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
     private final ColorCoderProviderImpl colorCoder;
     private final VersionResolver resolver;
     private final PassageOptionsValidationService optionsValidationService;
+    private final XslTemplatesCache templatesCache;
     private final Book kjvaBook;
     private final Book esvBook;
 
@@ -144,18 +149,21 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
      * @param colorCoder               the service to color code a passage
      * @param resolver                 the resolver
      * @param optionsValidationService
+     * @param templatesCache           the compiled stylesheets
      */
     @Inject
     public JSwordPassageServiceImpl(final JSwordVersificationService versificationService,
                                     final MorphologyServiceImpl morphologyProvider, final VocabularyService vocabProvider,
                                     final ColorCoderProviderImpl colorCoder, final VersionResolver resolver,
-                                    final PassageOptionsValidationService optionsValidationService) {
+                                    final PassageOptionsValidationService optionsValidationService,
+                                    final XslTemplatesCache templatesCache) {
         this.versificationService = versificationService;
         this.morphologyProvider = morphologyProvider;
         this.vocabProvider = vocabProvider;
         this.colorCoder = colorCoder;
         this.resolver = resolver;
         this.optionsValidationService = optionsValidationService;
+        this.templatesCache = templatesCache;
 
         kjvaBook = Books.installed().getBook("KJVA");
         esvBook = Books.installed().getBook(JSwordPassageService.REFERENCE_BOOK);
@@ -520,6 +528,226 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
         return this.getPassageByDisplayMode(Arrays.asList(versions), lookupKey, lookupOptions, interlinearMode);
     }
 
+    @Override
+    public List<OsisWrapper> peakOsisTexts(final String version, final List<Key> lookupKeys,
+                                           final List<LookupOption> options, final String interlinearMode) {
+        final List<String> noExtraVersions = new ArrayList<String>(0);
+        final InterlinearMode desiredModeOfDisplay = this.optionsValidationService.getDisplayMode(interlinearMode, version, noExtraVersions);
+        if (desiredModeOfDisplay != NONE || lookupKeys.isEmpty()) {
+            return null;
+        }
+
+        final List<LookupOption> lookupOptions = new ArrayList<LookupOption>(options);
+        lookupOptions.add(LookupOption.HIDE_XGEN);
+        final InterlinearMode realModeOfDisplay = this.optionsValidationService.determineDisplayMode(lookupOptions, desiredModeOfDisplay, true);
+        final Set<LookupOption> trimmedOptions = this.optionsValidationService.trim(
+                lookupOptions, version, noExtraVersions, desiredModeOfDisplay, null);
+        final List<LookupOption> transformOptions = new ArrayList<LookupOption>(trimmedOptions);
+
+        // notes are collated for the whole document, and the other stylesheets need a provider per passage
+        if (trimmedOptions.contains(LookupOption.NOTES)
+                || identifyStyleSheet(transformOptions, desiredModeOfDisplay) != XslConversionType.DEFAULT) {
+            return null;
+        }
+
+        final Book book = this.versificationService.getBookFromVersion(version);
+        final Versification v11n = this.versificationService.getVersificationForVersion(book);
+        try {
+            // read all passages from the module in one go
+            final List<Key> normalizedKeys = new ArrayList<Key>(lookupKeys.size());
+            final Key allKeys = PassageKeyFactory.instance().createEmptyKeyList(v11n);
+            for (final Key key : lookupKeys) {
+                final Key normalizedKey = normalize(key, v11n);
+                normalizedKeys.add(normalizedKey);
+                allKeys.addAll(toVersification(normalizedKey, v11n));
+            }
+
+            final BookData bookData = new BookData(book, allKeys);
+            final List<Key> mappedKeys = new ArrayList<Key>(normalizedKeys.size());
+            for (final Key key : normalizedKeys) {
+                mappedKeys.add(toVersification(key, v11n));
+            }
+
+            // and re-assemble them, one div per passage
+            final Element osis = OSISUtil.createOsisFramework(book.getBookMetaData());
+            final Element passages = OSISUtil.factory().createDiv();
+            passages.addContent(createSearchResultDivs(bookData.getOsisFragment(), mappedKeys));
+            osis.getChild(OSISUtil.OSIS_ELEMENT_OSISTEXT).addContent(passages);
+
+            final TemplatesSAXEventProvider htmlsep = executeStyleSheet(v11n, transformOptions, null,
+                    bookData, new JDOMSAXEventProvider(new Document(osis)), desiredModeOfDisplay);
+            final String[] htmlPerPassage = splitSearchResults(htmlsep.transformToString(), normalizedKeys.size());
+            if (htmlPerPassage == null) {
+                LOGGER.warn("Unable to split batch of passages from [{}], looking up one at a time", version);
+                return null;
+            }
+
+            final String[] languages = new String[]{book.getLanguage().getCode()};
+            final String shortName = this.resolver.getShortName(version);
+            final String availableOptions = this.optionsValidationService.optionsToString(
+                    this.optionsValidationService.getAvailableFeaturesForVersion(version, noExtraVersions, interlinearMode, realModeOfDisplay).getOptions());
+            final String selectedOptions = this.optionsValidationService.optionsToString(trimmedOptions);
+
+            final List<OsisWrapper> passageTexts = new ArrayList<OsisWrapper>(normalizedKeys.size());
+            for (int ii = 0; ii < htmlPerPassage.length; ii++) {
+                final OsisWrapper passageText = new OsisWrapper(htmlPerPassage[ii], normalizedKeys.get(ii),
+                        languages, v11n, shortName, desiredModeOfDisplay, "");
+                passageText.setOptions(availableOptions);
+                passageText.setSelectedOptions(selectedOptions);
+                passageTexts.add(passageText);
+            }
+            return passageTexts;
+        } catch (final BookException e) {
+            throw new LocalisedException(e, e.getMessage());
+        } catch (final SAXException e) {
+            throw new StepInternalException(e.getMessage(), e);
+        } catch (final NoSuchKeyException e) {
+            throw new TranslatedException(e, "invalid_reference_in_book", e.getMessage(), version);
+        }
+    }
+
+    /**
+     * @param key  the key
+     * @param v11n the versification we want the key in
+     * @return the key, mapped to the given versification if it is in another one
+     */
+    private Key toVersification(final Key key, final Versification v11n) {
+        if (key instanceof VerseKey && !v11n.equals(((VerseKey) key).getVersification())) {
+            return VersificationsMapper.instance().map(KeyUtil.getPassage(key), v11n);
+        }
+        return key;
+    }
+
+    /**
+     * Splits the OSIS read for a batch of passages into one div per passage. Anything that is not part of a verse, such
+     * as a heading, goes with the verse that follows it, as it would have done had the passage been read on its own.
+     * Anything after the last verse goes with the last verse.
+     *
+     * @param fragment the OSIS fragment read for all the passages
+     * @param keys     the keys to each of the passages
+     * @return a div for each passage, containing a copy of its part of the fragment
+     */
+    List<Element> createSearchResultDivs(final Element fragment, final List<Key> keys) {
+        final List<Element> divs = new ArrayList<Element>(keys.size());
+        final Map<String, List<Element>> divsByOsisId = new HashMap<String, List<Element>>(128);
+        for (final Key key : keys) {
+            final Element div = OSISUtil.factory().createDiv();
+            div.setAttribute(OSISUtil.OSIS_ATTR_TYPE, SEARCH_RESULT_DIV_TYPE);
+            divs.add(div);
+
+            final Iterator<Key> verses = key.iterator();
+            while (verses.hasNext()) {
+                final String osisId = verses.next().getOsisID();
+                List<Element> divsForVerse = divsByOsisId.get(osisId);
+                if (divsForVerse == null) {
+                    divsForVerse = new ArrayList<Element>(1);
+                    divsByOsisId.put(osisId, divsForVerse);
+                }
+                if (!divsForVerse.contains(div)) {
+                    divsForVerse.add(div);
+                }
+            }
+        }
+
+        final List<Content> pending = new ArrayList<Content>();
+        List<Element> lastDivs = new ArrayList<Element>(0);
+        for (final Content content : fragment.getContent()) {
+            pending.add(content);
+            final List<Element> divsForContent = getDivsForContent(content, divsByOsisId);
+            if (divsForContent != null) {
+                addContent(divsForContent, pending);
+                pending.clear();
+                lastDivs = divsForContent;
+            }
+        }
+        addContent(lastDivs, pending);
+        return divs;
+    }
+
+    /**
+     * @param content      a piece of the OSIS fragment
+     * @param divsByOsisId the divs that each verse goes into
+     * @return the divs that the verses in this content go into, or null if the content contains no verse
+     */
+    private List<Element> getDivsForContent(final Content content, final Map<String, List<Element>> divsByOsisId) {
+        if (!(content instanceof Element)) {
+            return null;
+        }
+
+        final Element element = (Element) content;
+        final Element verse;
+        if (OSIS_ELEMENT_VERSE.equals(element.getName())) {
+            verse = element;
+        } else {
+            final Iterator<Element> verses = element.getDescendants(new ElementFilter(OSIS_ELEMENT_VERSE));
+            if (!verses.hasNext()) {
+                return null;
+            }
+            verse = verses.next();
+        }
+
+        // an osisID can be a space separated list of them
+        final List<Element> divs = new ArrayList<Element>(1);
+        final String osisIds = verse.getAttributeValue(OSIS_ATTR_OSISID);
+        if (osisIds != null) {
+            for (final String osisId : StringUtils.split(osisIds, " ")) {
+                final List<Element> divsForVerse = divsByOsisId.get(osisId);
+                if (divsForVerse == null) {
+                    continue;
+                }
+                for (final Element div : divsForVerse) {
+                    if (!divs.contains(div)) {
+                        divs.add(div);
+                    }
+                }
+            }
+        }
+        return divs;
+    }
+
+    /**
+     * @param divs     the divs to add to
+     * @param contents the content to add a copy of to each div
+     */
+    private void addContent(final List<Element> divs, final List<Content> contents) {
+        for (final Element div : divs) {
+            for (final Content content : contents) {
+                div.addContent(content.clone());
+            }
+        }
+    }
+
+    /**
+     * Splits the html for a batch of passages back into one document per passage, each wrapped in the same
+     * container as the whole batch.
+     *
+     * @param html            the html for all passages
+     * @param expectedResults the number of passages in the batch
+     * @return the html for each passage, or null if the html does not contain the expected number of passages
+     */
+    String[] splitSearchResults(final String html, final int expectedResults) {
+        final String[] parts = SEARCH_RESULT_BOUNDARY.split(html, -1);
+        if (parts.length != expectedResults + 1) {
+            return null;
+        }
+
+        // the first part opens the container, the last passage is followed by its closing tag
+        final String lastPart = parts[expectedResults];
+        final int closingTag = lastPart.lastIndexOf(CLOSING_DIV);
+        if (closingTag == -1) {
+            return null;
+        }
+        final String opening = parts[0];
+        final String closing = lastPart.substring(closingTag);
+        parts[expectedResults] = lastPart.substring(0, closingTag);
+
+        final String[] htmlPerPassage = new String[expectedResults];
+        for (int ii = 0; ii < expectedResults; ii++) {
+            htmlPerPassage[ii] = opening + parts[ii + 1] + closing;
+        }
+        return htmlPerPassage;
+    }
+
     public OsisWrapper getPassageByDisplayMode(List<String> versionsInput, Key reference, List<LookupOption> options, final String interlinearMode) {
         if (versionsInput.size() == 0) {
             throw new StepInternalException("No versions specified - app error?");
@@ -794,10 +1022,10 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
             key = normalize(key, versification);
             final SAXEventProvider osissep = bookData.getSAXEventProvider();
 
-            final TransformingSAXEventProvider htmlsep = executeStyleSheet(versification, options, interlinearVersion,
+            final TemplatesSAXEventProvider htmlsep = executeStyleSheet(versification, options, interlinearVersion,
                     bookData, osissep, displayMode);
 
-            final OsisWrapper osisWrapper = new OsisWrapper(writeToString(htmlsep), key,
+            final OsisWrapper osisWrapper = new OsisWrapper(htmlsep.transformToString(), key,
                     getLanguages(book, displayMode, htmlsep, options), versification,
                     resolver.getShortName(bookData.getFirstBook().getInitials()), displayMode,
                     interlinearVersion);
@@ -845,8 +1073,6 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
             throw new LocalisedException(e, e.getMessage());
         } catch (final SAXException e) {
             throw new StepInternalException(e.getMessage(), e);
-        } catch (final TransformerException e) {
-            throw new StepInternalException(e.getMessage(), e);
         } catch (final NoSuchKeyException e) {
             throw new TranslatedException(e, "invalid_reference_in_book", bookData.getKey().getName(), book.getInitials());
         }
@@ -859,7 +1085,7 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
      * @param mode     the mode of interlinear used
      * @param htmlsep  the transformer
      */
-    private String[] getLanguages(final Book mainBook, final InterlinearMode mode, final TransformingSAXEventProvider htmlsep, List<LookupOption> options) {
+    private String[] getLanguages(final Book mainBook, final InterlinearMode mode, final TemplatesSAXEventProvider htmlsep, List<LookupOption> options) {
         if (mode == InterlinearMode.INTERLINEAR) {
             return getLanguagesForInterlinear(mainBook, htmlsep);
         } else {
@@ -873,7 +1099,7 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
      * @param htmlsep the transformer
      * @return the list of language codes
      */
-    private String[] getLanguagesForInterleaved(final Book mainBook, final TransformingSAXEventProvider htmlsep) {
+    private String[] getLanguagesForInterleaved(final Book mainBook, final TemplatesSAXEventProvider htmlsep) {
         final InterleavingProviderImpl interleavingProvider = (InterleavingProviderImpl) htmlsep.getParameter("interleavingProvider");
         if (interleavingProvider == null) {
             return new String[]{mainBook.getLanguage().getCode()};
@@ -894,7 +1120,7 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
      * @param transformer the transforer
      * @return the array of languages
      */
-    private String[] getLanguagesForInterlinear(final Book mainBook, final TransformingSAXEventProvider transformer) {
+    private String[] getLanguagesForInterlinear(final Book mainBook, final TemplatesSAXEventProvider transformer) {
         final String interlinearVersion = (String) transformer.getParameter("interlinearVersion");
         final String[] versions = StringUtils.split(interlinearVersion, ", ?");
         final String[] totalVersions = new String[versions.length + 1];
@@ -947,7 +1173,7 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
         try {
             setUnaccenter(data, displayMode);
 
-            final TransformingSAXEventProvider transformer = executeStyleSheet(v11n, options, null, data,
+            final TemplatesSAXEventProvider transformer = executeStyleSheet(v11n, options, null, data,
                     data.getSAXEventProvider(), displayMode);
 
             String[] languages = new String[books.length];
@@ -956,12 +1182,10 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
             }
 
             final Key key = data.getKey();
-            return new OsisWrapper(writeToString(transformer), key,
+            return new OsisWrapper(transformer.transformToString(), key,
                     languages, v11n, resolver.getShortName(versions[0]), displayMode,
                     StringUtils.join(versions, 1)
             );
-        } catch (final TransformerException e) {
-            throw new StepInternalException(e.getMessage(), e);
         } catch (final SAXException e) {
             throw new StepInternalException(e.getMessage(), e);
         } catch (final BookException e) {
@@ -1162,41 +1386,102 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
      * @param osissep             the XML SAX provider
      * @param displayMode         the display mode
      * @return a Transforming SAX event provider, from which can be transformed into HTML
-     * @throws TransformerException an exception in the stylesheet that is being executed
      */
-    private TransformingSAXEventProvider executeStyleSheet(
+    private TemplatesSAXEventProvider executeStyleSheet(
             final Versification masterVersification,
             final List<LookupOption> options,
             final String interlinearVersion, final BookData bookData, final SAXEventProvider osissep,
-            final InterlinearMode displayMode) throws TransformerException {
+            final InterlinearMode displayMode) {
         final XslConversionType requiredTransformation = identifyStyleSheet(options, displayMode);
+        final TemplatesSAXEventProvider tsep = new TemplatesSAXEventProvider(this.templatesCache,
+                requiredTransformation, osissep);
+
+        // set parameters here
+        setOptions(tsep, options, bookData.getBooks());
+        prefetchLexiconData(tsep, bookData);
+        setInterlinearOptions(tsep,
+                bookData.getBooks()[0].getInitials(),
+                masterVersification,
+                getInterlinearVersion(interlinearVersion),
+                bookData.getKey()
+                        .getOsisID(), displayMode, bookData.getKey(), options);
+        setInterleavingOptions(tsep, displayMode, bookData);
+        return tsep;
+    }
 
-        return (TransformingSAXEventProvider) new Converter() {
-            @Override
-            public SAXEventProvider convert(final SAXEventProvider provider) throws TransformerException {
-                try {
-                    final String file = requiredTransformation.getFile();
-                    final URI resourceURI = getClass().getResource(file).toURI();
-
-                    final TransformingSAXEventProvider tsep = new TransformingSAXEventProvider(resourceURI,
-                            osissep);
-
-                    // set parameters here
-                    setOptions(tsep, options, bookData.getBooks());
-                    setInterlinearOptions(tsep,
-                            bookData.getBooks()[0].getInitials(),
-                            masterVersification,
-                            getInterlinearVersion(interlinearVersion),
-                            bookData.getKey()
-                                    .getOsisID(), displayMode, bookData.getKey(), options);
-                    setInterleavingOptions(tsep, displayMode, bookData);
-                    return tsep;
-                } catch (final URISyntaxException e) {
-                    throw new StepInternalException("Failed to load resource correctly", e);
+    /**
+     * The stylesheets call back into the morphology, vocabulary and colour coding providers for every word, each call
+     * costing an index lookup. Instead, we scan the passage for all its lemmas and morphs up front, look them up in a
+     * few batched queries and give the stylesheet providers that answer from memory.
+     *
+     * @param tsep     the xslt transformer, with its options already set
+     * @param bookData the book data that is being transformed
+     */
+    private void prefetchLexiconData(final TemplatesSAXEventProvider tsep, final BookData bookData) {
+        final boolean morphology = tsep.getParameter("morphologyProvider") != null;
+        final boolean vocab = tsep.getParameter("vocabProvider") != null;
+        final boolean colorCoding = tsep.getParameter("colorCodingProvider") != null;
+        if (!morphology && !vocab && !colorCoding) {
+            return;
+        }
+
+        final Map<String, Set<String>> lemmasByReference = new HashMap<String, Set<String>>();
+        final Set<String> morphCodes = new HashSet<String>();
+        try {
+            collectLexiconKeys(bookData.getOsisFragment(), null, lemmasByReference, morphCodes);
+        } catch (final BookException e) {
+            // the stylesheet will simply look each word up as it goes
+            LOGGER.warn("Unable to prefetch lexicon data for [{}]", bookData.getKey().getOsisRef());
+            LOGGER.trace("Trace for exception:", e);
+            return;
+        }
+
+        if (morphology) {
+            tsep.setParameter("morphologyProvider", this.morphologyProvider.prefetch(morphCodes));
+        }
+        if (vocab) {
+            tsep.setParameter("vocabProvider", this.vocabProvider.prefetch(
+                    (String) tsep.getParameter("baseVersion"), lemmasByReference));
+        }
+        if (colorCoding) {
+            tsep.setParameter("colorCodingProvider", this.colorCoder.prefetch(morphCodes));
+        }
+    }
+
+    /**
+     * Collects the lemmas and morphology codes of all the words in the passage. Lemmas are keyed by the same reference
+     * the stylesheet passes in, i.e. the osisID of the outer-most ancestor that has one.
+     *
+     * @param element           the current element
+     * @param reference         the reference of the current element, or null if we are not yet within one
+     * @param lemmasByReference the lemmas found so far
+     * @param morphCodes        the morphology codes found so far, without their robinson: prefix
+     */
+    private void collectLexiconKeys(final Element element, final String reference,
+                                    final Map<String, Set<String>> lemmasByReference, final Set<String> morphCodes) {
+        if (OSISUtil.OSIS_ELEMENT_W.equals(element.getName())) {
+            final String lemma = element.getAttributeValue(OSISUtil.ATTRIBUTE_W_LEMMA);
+            if (isNotBlank(lemma) && reference != null) {
+                Set<String> lemmas = lemmasByReference.get(reference);
+                if (lemmas == null) {
+                    lemmas = new HashSet<String>();
+                    lemmasByReference.put(reference, lemmas);
+                }
+                lemmas.add(lemma);
+            }
+
+            final String morph = element.getAttributeValue(OSISUtil.ATTRIBUTE_W_MORPH);
+            if (isNotBlank(morph)) {
+                for (final String code : StringUtils.split(morph)) {
+                    morphCodes.add(ROBINSON_PREFIX.matcher(code).replaceFirst(""));
                 }
             }
-        }.convert(osissep);
+        }
 
+        final String childReference = reference != null ? reference : element.getAttributeValue(OSIS_ATTR_OSISID);
+        for (final Element child : element.getChildren()) {
+            collectLexiconKeys(child, childReference, lemmasByReference, morphCodes);
+        }
     }
 
     /**
@@ -1244,7 +1529,7 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
      * @param key                 the key to the passage
      * @param options             the list of options to be applied (used to determine accenting
      */
-    private MultiInterlinearProvider setInterlinearOptions(final TransformingSAXEventProvider tsep,
+    private MultiInterlinearProvider setInterlinearOptions(final TemplatesSAXEventProvider tsep,
                                                            final String masterVersion,
                                                            final Versification masterVersification,
                                                            final String interlinearVersion,
@@ -1295,7 +1580,7 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
      * @param bookData    the book data object containing the list of books we are interested in.
      * @param displayMode the display mode that we are interested in
      */
-    private void setInterleavingOptions(final TransformingSAXEventProvider tsep,
+    private void setInterleavingOptions(final TemplatesSAXEventProvider tsep,
                                         final InterlinearMode displayMode, final BookData bookData) {
         // so long as we're not NONE or INTERLINEAR, we almost always need an InterlinearProvider
         final Book[] books = bookData.getBooks();
@@ -1329,7 +1614,7 @@ public class JSwordPassageServiceImpl implements JSwordPassageService {
      * @param options the options available
      * @param books   the version to initialise a potential interlinear with
      */
-    protected void setOptions(final TransformingSAXEventProvider tsep, final List<LookupOption> options,
+    protected void setOptions(final TemplatesSAXEventProvider tsep, final List<LookupOption> options,
                               final Book[] books) {
         final boolean isHebrew = JSwordUtils.isAncientHebrewBook(books);
         final boolean isGreek = JSwordUtils.isAncientGreekBook(books);
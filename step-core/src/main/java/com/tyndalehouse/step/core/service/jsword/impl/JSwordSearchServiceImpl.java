@@ -33,17 +33,32 @@
 package com.tyndalehouse.step.core.service.jsword.impl;
 
 import java.awt.image.LookupOp;
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 import com.tyndalehouse.step.core.exceptions.LuceneSearchException;
 import com.tyndalehouse.step.core.models.InterlinearMode;
 import com.tyndalehouse.step.core.service.jsword.JSwordMetadataService;
+import org.apache.lucene.queryParser.ParseException;
+import org.apache.lucene.queryParser.QueryParser;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.Version;
 import org.crosswire.jsword.book.Book;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.index.Index;
@@ -51,6 +66,7 @@ import org.crosswire.jsword.index.IndexManager;
 import org.crosswire.jsword.index.IndexManagerFactory;
 import org.crosswire.jsword.index.IndexStatus;
 import org.crosswire.jsword.index.lucene.LuceneIndex;
+import org.crosswire.jsword.index.lucene.analysis.LuceneAnalyzer;
 import org.crosswire.jsword.index.search.DefaultSearchModifier;
 import org.crosswire.jsword.index.search.DefaultSearchRequest;
 import org.crosswire.jsword.passage.*;
@@ -71,6 +87,10 @@ import com.tyndalehouse.step.core.service.impl.SearchQuery;
 import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
 import com.tyndalehouse.step.core.service.jsword.JSwordSearchService;
 import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
+import com.tyndalehouse.step.core.service.jsword.helpers.ResultCursor;
+import com.tyndalehouse.step.core.service.jsword.helpers.VerseCountCollector;
+import com.tyndalehouse.step.core.utils.BoundedConcurrentCache;
+import com.tyndalehouse.step.core.utils.StepThreadFactory;
 
 /**
  * API to search across the data
@@ -78,45 +98,162 @@ import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
  * @author chrisburrell
  */
 @Singleton
-public class JSwordSearchServiceImpl implements JSwordSearchService {
+public class JSwordSearchServiceImpl implements JSwordSearchService, Closeable {
     private static final Logger LOGGER = LoggerFactory.getLogger(JSwordSearchServiceImpl.class);
     private static final int MAX_RESULTS = 50000;
+    private static final int MAX_QUEUED_SEARCHES = 100;
     private static final Pattern GEN_REV_RANGE = Pattern.compile("(\\+)\\[Gen-Rev\\]");
+    private static final Pattern JSWORD_ONLY_SYNTAX = Pattern.compile("[\\[~]");
+    private static final int MAX_CURSORS = 256;
+    private static final long MAX_CURSOR_VERSES = 4L * MAX_RESULTS;
+    private static final long CURSOR_EXPIRY = 10L * 60 * 1000;
+    private static final BoundedConcurrentCache.Weigher<ResultCursor> CURSOR_WEIGHER =
+            new BoundedConcurrentCache.Weigher<ResultCursor>() {
+                @Override
+                public int weigh(final ResultCursor value) {
+                    return value.size();
+                }
+            };
     private final JSwordVersificationService av11nService;
     private final JSwordMetadataService metadataService;
     private final JSwordPassageService jsword;
+    private final ExecutorService searchExecutor;
+    private final long versionTimeout;
+    // the results of recent searches, keyed by the signature of the request, so that further pages are read by offset
+    private final BoundedConcurrentCache<String, ResultCursor> cursors = new BoundedConcurrentCache<>(
+            JSwordSearchServiceImpl.class, "resultCursors", MAX_CURSORS, MAX_CURSOR_VERSES, CURSOR_WEIGHER);
 
     /**
-     * @param av11nService the versification service
-     * @param jsword       the jsword lookup service to retrieve the references
+     * Creates a search service that searches each version one after the other
+     *
+     * @param av11nService    the versification service
+     * @param metadataService the metadata service
+     * @param jsword          the jsword lookup service to retrieve the references
      */
-    @Inject
     public JSwordSearchServiceImpl(final JSwordVersificationService av11nService,
                                    final JSwordMetadataService metadataService,
                                    final JSwordPassageService jsword) {
+        this(av11nService, metadataService, jsword, 1, 0);
+    }
+
+    /**
+     * @param av11nService    the versification service
+     * @param metadataService the metadata service
+     * @param jsword          the jsword lookup service to retrieve the references
+     * @param searchThreads   the number of versions that can be searched concurrently, 1 or less to search
+     *                        versions one after the other
+     * @param versionTimeout  the maximum time in ms to wait for a single version's results, 0 or less to wait
+     *                        indefinitely
+     */
+    @Inject
+    public JSwordSearchServiceImpl(final JSwordVersificationService av11nService,
+                                   final JSwordMetadataService metadataService,
+                                   final JSwordPassageService jsword,
+                                   @Named("app.search.threads") final int searchThreads,
+                                   @Named("app.search.versionTimeout") final long versionTimeout) {
         this.av11nService = av11nService;
         this.metadataService = metadataService;
         this.jsword = jsword;
+        this.versionTimeout = versionTimeout;
+
+        if (searchThreads > 1) {
+            // when the queue is full, the request thread runs the search itself, rather than failing
+            this.searchExecutor = new ThreadPoolExecutor(searchThreads, searchThreads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(MAX_QUEUED_SEARCHES), new StepThreadFactory("search"),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+        } else {
+            this.searchExecutor = null;
+        }
+    }
 
+    /**
+     * Stops the search threads. Searches that are still running are left to finish rather than interrupted.
+     */
+    @Override
+    public void close() {
+        if (this.searchExecutor != null) {
+            this.searchExecutor.shutdown();
+        }
     }
 
     @Override
     public int estimateSearchResults(final SearchQuery sq) {
+        return estimateSearchResults(sq, ESTIMATE_CAP);
+    }
+
+    @Override
+    public int estimateSearchResults(final SearchQuery sq, final int cap) {
         final long start = System.currentTimeMillis();
 
-        final Key k = searchKeys(sq);
+        final IndividualSearch currentSearch = sq.getCurrentSearch();
+        final String query = GEN_REV_RANGE.matcher(currentSearch.getQuery()).replaceAll("").trim();
+        int count;
+        if (JSWORD_ONLY_SYNTAX.matcher(query).find()) {
+            // ranges and blurring are only understood by JSword, so we run the full search
+            count = Math.min(searchKeys(sq).getCardinality(), cap + 1);
+        } else {
+            try {
+                count = countVerses(query, getBiblesToSearch(currentSearch), cap);
+            } catch (final ParseException e) {
+                LOGGER.debug("Unable to count [{}] from the index directly, so running the full search", query);
+                count = Math.min(searchKeys(sq).getCardinality(), cap + 1);
+            }
+        }
         LOGGER.trace("Took [{}]ms", System.currentTimeMillis() - start);
 
-        return k.getCardinality();
+        return count;
     }
-    
+
+    /**
+     * Counts the verses matching the query straight from the index of each bible, without building a key. Bibles
+     * sharing a versification are counted together, so that each verse is only counted once. Bibles in different
+     * versifications cannot be compared verse by verse without mapping their keys, so the largest of their counts
+     * is kept instead.
+     *
+     * @param query  the lucene query
+     * @param bibles the bibles to search
+     * @param cap    the number of verses after which counting stops
+     * @return the number of verses, or cap + 1 if there are more than cap
+     * @throws ParseException the query is not in a form that lucene understands
+     */
+    private int countVerses(final String query, final List<Book> bibles, final int cap) throws ParseException {
+        final Map<Versification, VerseCountCollector> collectors = new HashMap<Versification, VerseCountCollector>(4);
+        int count = 0;
+        for (final Book bible : bibles) {
+            if (!bible.getIndexStatus().equals(IndexStatus.DONE)) {
+                LOGGER.error("Module [{}] is not indexed.", bible.getInitials());
+                continue;
+            }
+
+            final Versification v11n = this.av11nService.getVersificationForVersion(bible);
+            VerseCountCollector collector = collectors.get(v11n);
+            if (collector == null) {
+                collector = new VerseCountCollector(cap);
+                collectors.put(v11n, collector);
+            }
+
+            final IndexSearcher searcher = getIndexSearcher(bible.getInitials());
+            final QueryParser parser = new QueryParser(Version.LUCENE_30, LuceneIndex.FIELD_BODY,
+                    new LuceneAnalyzer(bible));
+            parser.setAllowLeadingWildcard(true);
+            final Query parsed = parser.parse(query);
+            try {
+                collector.startBible(searcher.getIndexReader(), v11n);
+                searcher.search(parsed, collector);
+            } catch (final VerseCountCollector.CapExceededException e) {
+                return cap + 1;
+            } catch (final IOException e) {
+                throw new LuceneSearchException("Unable to search for " + query + " with Bible "
+                        + bible.getInitials(), e);
+            }
+            count = Math.max(count, collector.getCount());
+        }
+        return count;
+    }
+
     @Override
     public Key searchKeys(final SearchQuery sq) {
         final DefaultSearchModifier modifier = new DefaultSearchModifier();
-
-        // we have a linked hashmap, because we want to preserve the order of the versions we're looking up
-        // this was we end up with the results in the correct versification
-        final Map<String, Key> resultsPerVersion = new LinkedHashMap<String, Key>();
         modifier.setRanked(sq.isRanked());
 
         // need to set to something sensible, other we may experience a
@@ -124,70 +261,177 @@ public class JSwordSearchServiceImpl implements JSwordSearchService {
         modifier.setMaxResults(MAX_RESULTS);
 
         final IndividualSearch currentSearch = sq.getCurrentSearch();
+        final List<Book> bibles = getBiblesToSearch(currentSearch);
+        final Map<String, Key> resultsPerVersion = runSearches(modifier, currentSearch, bibles);
+        if (resultsPerVersion.size() < bibles.size()) {
+            // some versions did not return in time
+            sq.setPartial(true);
+        }
+
+        // we then need to merge the keys together
+        // otherwise, we are into the realm of searching across multiple versions
+        // no need to rank, since it won't be possible to rank accurately across versions
+        final Key results = mergeSearches(resultsPerVersion);
+        if (results == null && !bibles.isEmpty()) {
+            // no version returned in time, so there are simply no results to show
+            return PassageKeyFactory.instance().createEmptyKeyList(
+                    this.av11nService.getVersificationForVersion(bibles.get(0)));
+        }
+        return results;
+    }
+
+    /**
+     * @param currentSearch the current search
+     * @return the bibles to search, in order of preference
+     */
+    private List<Book> getBiblesToSearch(final IndividualSearch currentSearch) {
         final boolean searchOnTaggedText = currentSearch.getType().isOriginalSearch();
         
-        
-        boolean searchExecuted = false;
+        // we keep the order of the versions we're looking up,
+        // this way we end up with the results in the correct versification
+        final List<Book> bibles = new ArrayList<Book>();
         for (final String version : currentSearch.getVersions()) {
-            // now for each version, we do the search and store it in a map
             final Book bible = this.av11nService.getBookFromVersion(version);
         
             //if we're looking at only running searches on tagged texts, then we skip those 
             //that don't have strong numbers (admitedly it could be faster to do it and have nothing
-            //TODO: improvement investigate which is faster
             if(searchOnTaggedText) {
                 //then we only do the search if the bible is tagged
                 if(!this.metadataService.supportsStrongs(bible)) {
                     continue;
                 }
             }
-
-            doSearch(modifier, resultsPerVersion, currentSearch, bible);
-            searchExecuted = true;
+            bibles.add(bible);
         }
         
-        if(searchOnTaggedText && !searchExecuted) {
-            Book bible = this.av11nService.getBookFromVersion(JSwordPassageService.REFERENCE_BOOK);
-            doSearch(modifier, resultsPerVersion, currentSearch, bible);
+        if(searchOnTaggedText && bibles.isEmpty()) {
+            bibles.add(this.av11nService.getBookFromVersion(JSwordPassageService.REFERENCE_BOOK));
         }
+        return bibles;
+    }
 
-        // we then need to merge the keys together
-        // otherwise, we are into the realm of searching across multiple versions
-        // no need to rank, since it won't be possible to rank accurately across versions
-        return mergeSearches(resultsPerVersion);
+    /**
+     * Runs the search against each of the bibles, concurrently if a search executor has been configured. Each
+     * result after the first is mapped to the versification of the first bible as part of its own task.
+     *
+     * @param modifier      the search modifier
+     * @param currentSearch the current search
+     * @param bibles        the bibles to search, in order of preference
+     * @return the results per version, in the same order as the bibles
+     */
+    private Map<String, Key> runSearches(final DefaultSearchModifier modifier, final IndividualSearch currentSearch,
+                                         final List<Book> bibles) {
+        final Map<String, Key> resultsPerVersion = new LinkedHashMap<String, Key>();
+        if (bibles.isEmpty()) {
+            return resultsPerVersion;
+        }
+
+        final Versification targetVersification = this.av11nService.getVersificationForVersion(bibles.get(0));
+        if (this.searchExecutor == null || bibles.size() == 1) {
+            for (int i = 0; i < bibles.size(); i++) {
+                final Book bible = bibles.get(i);
+                resultsPerVersion.put(bible.getInitials(),
+                        doSearch(modifier, currentSearch, bible, i == 0 ? null : targetVersification));
+            }
+            return resultsPerVersion;
+        }
+
+        final List<Future<Key>> futures = new ArrayList<Future<Key>>(bibles.size());
+        for (int i = 0; i < bibles.size(); i++) {
+            futures.add(this.searchExecutor.submit(new VersionSearch(modifier, currentSearch, bibles.get(i),
+                    i == 0 ? null : targetVersification)));
+        }
+
+        final long deadline = System.currentTimeMillis() + this.versionTimeout;
+        for (int i = 0; i < bibles.size(); i++) {
+            final String version = bibles.get(i).getInitials();
+            final Key results = waitForSearch(futures.get(i), version, currentSearch, deadline);
+            if (results != null) {
+                resultsPerVersion.put(version, results);
+            }
+        }
+        return resultsPerVersion;
     }
 
-    private void doSearch(final DefaultSearchModifier modifier, final Map<String, Key> resultsPerVersion, 
-                          final IndividualSearch currentSearch, final Book bible) {
-        String version = bible.getInitials();
-        if (bible.getIndexStatus().equals(IndexStatus.DONE)) {
-            final Key luceneSearchResults;
-            try {
-                String query = currentSearch.getQuery();
-                //small optimization and cater for versions that don't support Gen-Rev as a range:
-                query = GEN_REV_RANGE.matcher(query).replaceAll("");
-                luceneSearchResults = bible.find(new DefaultSearchRequest(query, modifier));
-            } catch (final BookException e) {
-                throw new LuceneSearchException("Unable to search for " + currentSearch.getQuery()
-                        + " with Bible " + version, e);
+    /**
+     * Waits for the search against a single version to complete
+     *
+     * @param future        the pending search
+     * @param version       the version being searched
+     * @param currentSearch the current search
+     * @param deadline      the time by which all versions should have returned
+     * @return the key, or null if the version did not return in time
+     */
+    private Key waitForSearch(final Future<Key> future, final String version,
+                              final IndividualSearch currentSearch, final long deadline) {
+        try {
+            if (this.versionTimeout <= 0) {
+                return future.get();
+            }
+            return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            // the search is left to finish rather than interrupted, since an interrupt would close the channels of
+            // NIO index directories, breaking the index for every later search
+            future.cancel(false);
+            LOGGER.warn("Search for [{}] in [{}] timed out and has been excluded from the results",
+                    currentSearch.getQuery(), version);
+            return null;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new StepInternalException("Interrupted whilst searching " + version, e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw new LuceneSearchException("Unable to search for " + currentSearch.getQuery()
+                    + " with Bible " + version, e.getCause());
+        }
+    }
 
-            resultsPerVersion.put(version, luceneSearchResults);
-        } else {
+    /**
+     * Searches a single bible
+     *
+     * @param modifier            the search modifier
+     * @param currentSearch       the current search
+     * @param bible               the bible to search
+     * @param targetVersification the versification to map the results to, or null to leave them as they are
+     * @return the results
+     */
+    private Key doSearch(final DefaultSearchModifier modifier, final IndividualSearch currentSearch,
+                         final Book bible, final Versification targetVersification) {
+        String version = bible.getInitials();
+        if (!bible.getIndexStatus().equals(IndexStatus.DONE)) {
             LOGGER.error("Module [{}] is not indexed.", version);
-            resultsPerVersion.put(version, PassageKeyFactory.instance().createEmptyKeyList(av11nService.getVersificationForVersion(bible)));
+            return PassageKeyFactory.instance().createEmptyKeyList(av11nService.getVersificationForVersion(bible));
+        }
+
+        final Key luceneSearchResults;
+        try {
+            String query = currentSearch.getQuery();
+            //small optimization and cater for versions that don't support Gen-Rev as a range:
+            query = GEN_REV_RANGE.matcher(query).replaceAll("");
+            luceneSearchResults = bible.find(new DefaultSearchRequest(query, modifier));
+        } catch (final BookException e) {
+            throw new LuceneSearchException("Unable to search for " + currentSearch.getQuery()
+                    + " with Bible " + version, e);
+        }
+
+        if (targetVersification != null && luceneSearchResults instanceof VerseKey) {
+            final Passage versifiedPassageResults = KeyUtil.getPassage(luceneSearchResults);
+            return VersificationsMapper.instance().map(versifiedPassageResults, targetVersification);
         }
+        return luceneSearchResults;
     }
 
     /**
-     * merges all search results together
+     * merges all search results together. All but the first result set are expected to have already been mapped
+     * to the versification of the first.
      *
      * @param resultsPerVersion the results per version
      * @return the list of results
      */
     private Key mergeSearches(final Map<String, Key> resultsPerVersion) {
         Key all = null;
-        Versification allVersification = null;
 
         for (final Entry<String, Key> entry : resultsPerVersion.entrySet()) {
             final Key value = entry.getValue();
@@ -195,31 +439,47 @@ public class JSwordSearchServiceImpl implements JSwordSearchService {
 
             if (all == null) {
                 all = value;
-
-                if(all instanceof VerseKey) {
-                    allVersification = ((VerseKey) all).getVersification();
-                }
             } else {
-                boolean valueIsVerseKey = value instanceof VerseKey;
-                if(valueIsVerseKey && allVersification == null) {
+                if(value instanceof VerseKey && !(all instanceof VerseKey)) {
                     throw new StepInternalException("Trying to combine versified key with non-versified key.");
                 }
-
-                //i.e. and allVersification != null
-                Key convertedKey = value;
-                if(valueIsVerseKey) {
-                    final VerseKey versifiedResults = (VerseKey) value;
-                    final Passage versifiedPassageResults = KeyUtil.getPassage(versifiedResults);
-                    convertedKey = VersificationsMapper.instance().map(versifiedPassageResults, allVersification);
-                }
-
-                all.addAll(convertedKey);
+                all.addAll(value);
             }
             LOGGER.debug("Combined result-set has [{}] entries", all.getCardinality());
         }
 
         return all;
     }
+
+    /**
+     * Searches a single version, as a task for the search executor
+     */
+    private final class VersionSearch implements Callable<Key> {
+        private final DefaultSearchModifier modifier;
+        private final IndividualSearch currentSearch;
+        private final Book bible;
+        private final Versification targetVersification;
+
+        /**
+         * @param modifier            the search modifier
+         * @param currentSearch       the current search
+         * @param bible               the bible to search
+         * @param targetVersification the versification to map the results to, or null to leave them as they are
+         */
+        private VersionSearch(final DefaultSearchModifier modifier, final IndividualSearch currentSearch,
+                              final Book bible, final Versification targetVersification) {
+            this.modifier = modifier;
+            this.currentSearch = currentSearch;
+            this.bible = bible;
+            this.targetVersification = targetVersification;
+        }
+
+        @Override
+        public Key call() {
+            return doSearch(this.modifier, this.currentSearch, this.bible, this.targetVersification);
+        }
+    }
+
     @Override
     public SearchResult search(final SearchQuery sq, final String version,  
                                final LookupOption... options) {
@@ -306,42 +566,49 @@ public class JSwordSearchServiceImpl implements JSwordSearchService {
      */
     private void getPassagesForResults(SearchResult result, String[] versions, final Key results, final int context,
                                                     final List<LookupOption> options, String interlinearMode) {
-        final List<SearchEntry> resultPassages = new ArrayList<SearchEntry>();
+        final List<Key> lookupKeys = new ArrayList<Key>();
         final Iterator<Key> iterator = ((Passage) results).iterator();
-        boolean interlinearModeCaptured = false;
-        int count = 0;
         while (iterator.hasNext()) {
             final Key verse = iterator.next();
-            final Key lookupKey;
 
             if (verse instanceof Verse) {
                 // then we need to make it into a verse range
                 final Verse verseAsVerse = (Verse) verse;
                 final VerseRange vr = new VerseRange(verseAsVerse.getVersification(), verseAsVerse);
                 vr.blur(context, RestrictionType.NONE);
-                lookupKey = vr;
+                lookupKeys.add(vr);
             } else {
                 // assume blur is supported
                 verse.blur(context, RestrictionType.NONE);
-                lookupKey = verse;
+                lookupKeys.add(verse);
             }
+        }
 
-            if(count == 1) {
-                options.add(LookupOption.HIDE_COMPARE_HEADERS);
+        // a single version can be rendered for the whole page at once
+        List<OsisWrapper> passages = null;
+        if (versions.length == 1) {
+            passages = this.jsword.peakOsisTexts(versions[0], lookupKeys, options, interlinearMode);
+        }
+
+        if (passages == null) {
+            passages = new ArrayList<OsisWrapper>(lookupKeys.size());
+            for (int count = 0; count < lookupKeys.size(); count++) {
+                if (count == 1) {
+                    options.add(LookupOption.HIDE_COMPARE_HEADERS);
+                }
+                passages.add(this.jsword.peakOsisText(versions, lookupKeys.get(count), options, interlinearMode));
             }
-            
-            // TODO this is not very efficient so requires refactoring
-            final OsisWrapper peakOsisText = this.jsword.peakOsisText(versions, lookupKey, options, interlinearMode);
+        }
+
+        final List<SearchEntry> resultPassages = new ArrayList<SearchEntry>(passages.size());
+        for (final OsisWrapper peakOsisText : passages) {
             resultPassages.add(new VerseSearchEntry(peakOsisText.getReference(), peakOsisText.getValue(),
                     peakOsisText.getOsisId()));
-
-            if(!interlinearModeCaptured) {
-                result.setInterlinearMode(peakOsisText.getInterlinearMode());
-                interlinearModeCaptured = true;
-            }
-            count++;
         }
 
+        if (!passages.isEmpty()) {
+            result.setInterlinearMode(passages.get(0).getInterlinearMode());
+        }
         result.setResults(resultPassages);
     }
 
@@ -356,35 +623,52 @@ public class JSwordSearchServiceImpl implements JSwordSearchService {
         final Passage passage = (Passage) results;
         if (!sq.isAllKeys()) {
             // we need the first pageNumber*PAGE_SIZE results, so remove anything beyond that.
-            return getPage(sq.getPageNumber(), sq.getPageSize(), passage);
+            return getCursor(sq, passage).getPage(sq.getPageNumber(), sq.getPageSize());
         }
         return results;
     }
 
+    @Override
+    public ResultCursor getCursor(final SearchQuery sq) {
+        if (sq.getSignature() == null) {
+            return null;
+        }
+
+        final ResultCursor cursor = this.cursors.get(getCursorKey(sq));
+        return cursor == null || cursor.isOlderThan(CURSOR_EXPIRY) ? null : cursor;
+    }
+
     /**
-     * @param pageNumber the page number, 1 indexed
-     * @param pageSize the size of the page
-     * @param passage the passage we want to trim down
-     * @return the new results
+     * The results are only walked on the first request for a page of them. Further pages of the same request are read
+     * from the cursor, as long as it has not expired or been evicted.
+     *
+     * @param sq      the search query, signed if its results can be paged through again, unless they are partial
+     * @param passage the results, already ranked if required
+     * @return the cursor over the results
      */
-    private Passage getPage(final int pageNumber, final int pageSize, final Passage passage) {
-        Passage results = (Passage) PassageKeyFactory.instance().createEmptyKeyList(passage.getVersification());
-        Iterator<Key> verses = passage.iterator();
-        
-        //page 1 = 1-60
-        //page 2 = 61-120
-        int from = (pageNumber-1) * pageSize + 1;
-        int to = from + pageSize - 1;
-        int currentCount = 1;
-        while(verses.hasNext()) {
-            final Key verse = verses.next();
-            if(currentCount >= from && currentCount <= to) {
-                results.addAll(verse);
-            }
-            currentCount++;
+    private ResultCursor getCursor(final SearchQuery sq, final Passage passage) {
+        if (sq.getSignature() == null || sq.isPartial()) {
+            return ResultCursor.fromPassage(passage);
         }
-        
-        return results;
+
+        final String key = getCursorKey(sq);
+        ResultCursor cursor = this.cursors.get(key);
+        if (cursor == null || cursor.isOlderThan(CURSOR_EXPIRY)) {
+            cursor = ResultCursor.fromPassage(passage);
+            this.cursors.put(key, cursor);
+        }
+        return cursor;
+    }
+
+    /**
+     * The signature covers the query, versions and sort of the request, but not its page, so that the cursor can be
+     * found before the search is run
+     *
+     * @param sq the search query, which has been signed
+     * @return the key of the cursor
+     */
+    private String getCursorKey(final SearchQuery sq) {
+        return sq.getSignature() + '-' + sq.isRanked();
     }
 
     /**
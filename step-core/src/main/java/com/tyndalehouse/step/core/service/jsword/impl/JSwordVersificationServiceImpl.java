@@ -49,6 +49,7 @@ import org.crosswire.jsword.versification.system.Versifications;
 import com.tyndalehouse.step.core.exceptions.TranslatedException;
 import com.tyndalehouse.step.core.service.helpers.VersionResolver;
 import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
+import com.tyndalehouse.step.core.utils.StepMetrics;
 
 /**
  * Deals with the versification
@@ -132,7 +133,11 @@ public class JSwordVersificationServiceImpl implements JSwordVersificationServic
 
     @Override
     public Book getBookSilently(final String version) {
-        return Books.installed().getBook(this.versionResolver.getLongName(version));
+        final Book book = Books.installed().getBook(this.versionResolver.getLongName(version));
+        if (book != null) {
+            StepMetrics.count(JSwordVersificationService.class, "book-lookups", book.getInitials());
+        }
+        return book;
     }
 
     @Override
@@ -0,0 +1,152 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.jsword.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.SAXResult;
+import javax.xml.transform.sax.SAXSource;
+
+import org.crosswire.common.xml.SAXEventProvider;
+import org.crosswire.common.xml.SAXEventProviderInputSource;
+import org.crosswire.common.xml.SAXEventProviderXMLReader;
+import org.crosswire.common.xml.XMLUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+import com.tyndalehouse.step.core.utils.StepMetrics;
+import com.tyndalehouse.step.core.xsl.XslConversionType;
+import com.yammer.metrics.core.TimerContext;
+
+/**
+ * Provides the SAX events of an XML document run through a compiled stylesheet. Unlike JSword's
+ * TransformingSAXEventProvider, the stylesheet is never re-resolved: a new {@link Transformer} is created from the
+ * shared {@link Templates} and only the parameters of this lookup are bound to it.
+ */
+public class TemplatesSAXEventProvider implements SAXEventProvider {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TemplatesSAXEventProvider.class);
+    private final XslTemplatesCache templatesCache;
+    private final XslConversionType type;
+    private final SAXEventProvider xmlsep;
+    private final Map<String, Object> parameters = new HashMap<String, Object>();
+    private Templates templates;
+
+    /**
+     * @param templatesCache the cache of compiled stylesheets
+     * @param type           the type of conversion
+     * @param xmlsep         the provider of the document to be transformed
+     */
+    public TemplatesSAXEventProvider(final XslTemplatesCache templatesCache, final XslConversionType type,
+                                     final SAXEventProvider xmlsep) {
+        this.templatesCache = templatesCache;
+        this.type = type;
+        this.templates = templatesCache.getTemplates(type);
+        this.xmlsep = xmlsep;
+    }
+
+    /**
+     * Transforms the document into a string. A translet that fails while running, for example in one of the
+     * extension functions, is run again by the interpreting processor. This cannot be done in
+     * {@link #provideSAXEvents(ContentHandler)}, since the handler may already have been given part of the output.
+     *
+     * @return the transformed document
+     * @throws SAXException the document could not be transformed
+     */
+    public String transformToString() throws SAXException {
+        try {
+            return XMLUtil.writeToString(this);
+        } catch (final SAXException e) {
+            final Templates interpreted = this.templatesCache.interpretInstead(this.type, this.templates);
+            if (interpreted == null) {
+                throw e;
+            }
+
+            LOGGER.warn("Unable to transform with [{}], trying again with the interpreting processor: [{}]",
+                    this.type.getFile(), e.getMessage());
+            this.templates = interpreted;
+            return XMLUtil.writeToString(this);
+        }
+    }
+
+    /**
+     * @param name  the name of the stylesheet parameter
+     * @param value the value of the parameter
+     */
+    public void setParameter(final String name, final Object value) {
+        this.parameters.put(name, value);
+    }
+
+    /**
+     * @param name the name of the stylesheet parameter
+     * @return the value of the parameter, or null if not set
+     */
+    public Object getParameter(final String name) {
+        return this.parameters.get(name);
+    }
+
+    @Override
+    public void provideSAXEvents(final ContentHandler handler) throws SAXException {
+        final TimerContext timer = StepMetrics.startTimer(TemplatesSAXEventProvider.class, "transform", null);
+        try {
+            final Transformer transformer = newTransformer();
+            final Source source = new SAXSource(new SAXEventProviderXMLReader(this.xmlsep),
+                    new SAXEventProviderInputSource());
+            transformer.transform(source, new SAXResult(handler));
+        } catch (final TransformerException e) {
+            throw new SAXException(e);
+        } finally {
+            StepMetrics.stopTimer(timer);
+        }
+    }
+
+    /**
+     * @return a transformer with all parameters bound
+     * @throws TransformerConfigurationException the stylesheet could not be instantiated
+     */
+    private Transformer newTransformer() throws TransformerConfigurationException {
+        final Transformer transformer = this.templates.newTransformer();
+        for (final Entry<String, Object> parameter : this.parameters.entrySet()) {
+            transformer.setParameter(parameter.getKey(), parameter.getValue());
+        }
+        return transformer;
+    }
+}
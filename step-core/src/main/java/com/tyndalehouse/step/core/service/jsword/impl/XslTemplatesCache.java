@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.jsword.impl;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tyndalehouse.step.core.exceptions.StepInternalException;
+import com.tyndalehouse.step.core.utils.StepMetrics;
+import com.tyndalehouse.step.core.xsl.XslConversionType;
+
+/**
+ * Holds the compiled form of each of the passage stylesheets, so that they are parsed once rather than on every
+ * lookup. {@link Templates} are thread-safe, so a single instance of each is shared across all requests, with only
+ * the parameters being bound per request.
+ * <p />
+ * The stylesheets can optionally be compiled to translets by XSLTC. Any stylesheet XSLTC fails to compile, or whose
+ * translet fails while running, is handed to the interpreting processor instead.
+ */
+@Singleton
+public class XslTemplatesCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(XslTemplatesCache.class);
+    private static final String XSLTC_FACTORY = "org.apache.xalan.xsltc.trax.TransformerFactoryImpl";
+    private final Map<XslConversionType, Templates> templates = new ConcurrentHashMap<XslConversionType, Templates>();
+    private final Set<XslConversionType> interpreted = Collections.newSetFromMap(
+            new ConcurrentHashMap<XslConversionType, Boolean>());
+    private final TransformerFactory interpretingFactory;
+    private final TransformerFactory compilingFactory;
+    private final boolean developmentMode;
+
+    /**
+     * Compiles all stylesheets up front, so that the first requests do not pay for it.
+     *
+     * @param compiled true to compile the stylesheets to translets with XSLTC
+     */
+    @Inject
+    public XslTemplatesCache(@Named("app.xsl.compiled") final boolean compiled) {
+        this.interpretingFactory = TransformerFactory.newInstance();
+        this.compilingFactory = compiled ? TransformerFactory.newInstance(XSLTC_FACTORY,
+                XslTemplatesCache.class.getClassLoader()) : null;
+        this.developmentMode = Boolean.getBoolean("step.development");
+
+        warmUp();
+    }
+
+    /**
+     * Compiles every stylesheet
+     */
+    private void warmUp() {
+        for (final XslConversionType type : XslConversionType.values()) {
+            final long start = System.currentTimeMillis();
+            getTemplates(type);
+            LOGGER.info("Compiled [{}] in [{}]ms", type.getFile(), System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * @param type the type of conversion
+     * @return the compiled stylesheet for the conversion
+     */
+    public Templates getTemplates(final XslConversionType type) {
+        if (this.developmentMode) {
+            // stylesheets are being edited, so pick up the changes
+            return compile(type);
+        }
+
+        Templates compiledStylesheet = this.templates.get(type);
+        StepMetrics.cacheLookup(XslTemplatesCache.class, "templates", compiledStylesheet != null);
+        if (compiledStylesheet == null) {
+            compiledStylesheet = compile(type);
+            this.templates.put(type, compiledStylesheet);
+        }
+        return compiledStylesheet;
+    }
+
+    /**
+     * Hands the stylesheet to the interpreting processor, after its translet failed while running. The stylesheet is
+     * then interpreted for all later requests.
+     *
+     * @param type   the type of conversion
+     * @param failed the stylesheet that failed
+     * @return the interpreted stylesheet, or null if the stylesheet that failed was already being interpreted
+     */
+    public synchronized Templates interpretInstead(final XslConversionType type, final Templates failed) {
+        if (this.compilingFactory == null) {
+            return null;
+        }
+
+        if (this.developmentMode) {
+            return interpret(type);
+        }
+
+        if (!this.interpreted.contains(type)) {
+            LOGGER.warn("The translet of [{}] failed, so it will be interpreted from now on", type.getFile());
+            this.templates.put(type, interpret(type));
+            this.interpreted.add(type);
+        }
+
+        final Templates interpretedStylesheet = this.templates.get(type);
+        return interpretedStylesheet == failed ? null : interpretedStylesheet;
+    }
+
+    /**
+     * Compiles the stylesheet. Transformer factories are not thread-safe, hence the synchronization.
+     *
+     * @param type the type of conversion
+     * @return the compiled stylesheet
+     */
+    private synchronized Templates compile(final XslConversionType type) {
+        if (this.compilingFactory != null && !this.interpreted.contains(type)) {
+            try {
+                return this.compilingFactory.newTemplates(getStylesheet(type));
+            } catch (final TransformerConfigurationException e) {
+                LOGGER.warn("Unable to compile [{}] to a translet, so it will be interpreted: [{}]",
+                        type.getFile(), e.getMessage());
+                this.interpreted.add(type);
+            }
+        }
+        return interpret(type);
+    }
+
+    /**
+     * @param type the type of conversion
+     * @return the stylesheet, loaded by the interpreting processor
+     */
+    private synchronized Templates interpret(final XslConversionType type) {
+        try {
+            return this.interpretingFactory.newTemplates(getStylesheet(type));
+        } catch (final TransformerConfigurationException e) {
+            throw new StepInternalException("Failed to load stylesheet " + type.getFile(), e);
+        }
+    }
+
+    /**
+     * @param type the type of conversion
+     * @return the source of the stylesheet
+     */
+    private Source getStylesheet(final XslConversionType type) {
+        final URL resource = XslTemplatesCache.class.getResource(type.getFile());
+        if (resource == null) {
+            throw new StepInternalException("Unable to find stylesheet " + type.getFile());
+        }
+        return new StreamSource(resource.toExternalForm());
+    }
+}
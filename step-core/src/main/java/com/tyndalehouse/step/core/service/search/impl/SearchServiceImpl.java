@@ -64,6 +64,7 @@ import com.tyndalehouse.step.core.service.SearchService;
 import com.tyndalehouse.step.core.service.StrongAugmentationService;
 import com.tyndalehouse.step.core.service.TimelineService;
 import com.tyndalehouse.step.core.service.helpers.GlossComparator;
+import com.tyndalehouse.step.core.service.helpers.VerseBitmap;
 import com.tyndalehouse.step.core.service.helpers.VersionResolver;
 import com.tyndalehouse.step.core.service.impl.AbortQueryException;
 import com.tyndalehouse.step.core.service.impl.IndividualSearch;
@@ -73,6 +74,7 @@ import com.tyndalehouse.step.core.service.jsword.JSwordMetadataService;
 import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
 import com.tyndalehouse.step.core.service.jsword.JSwordSearchService;
 import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
+import com.tyndalehouse.step.core.service.jsword.helpers.ResultCursor;
 import com.tyndalehouse.step.core.service.search.SubjectSearchService;
 import com.tyndalehouse.step.core.utils.StringConversionUtils;
 import com.tyndalehouse.step.core.utils.StringUtils;
@@ -94,6 +96,7 @@ import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -133,6 +136,8 @@ public class SearchServiceImpl implements SearchService {
     private static final String[] BASE_GREEK_VERSIONS = new String[]{"WHNU", "Byz", "LXX"};
     private static final String BASE_HEBREW_VERSION = "OSMHB";
     private static final Logger LOGGER = LoggerFactory.getLogger(SearchServiceImpl.class);
+    //beyond this many verses, a search is no more selective than the searches that cannot be counted
+    private static final int JOINING_ESTIMATE_CAP = 500;
     private static final String STRONG_QUERY = "strong:";
     private static final String NO_FILTER = "all";
     private final JSwordSearchService jswordSearch;
@@ -244,14 +249,18 @@ public class SearchServiceImpl implements SearchService {
 
         //second pass add all 
         final String aggregatedReferences = references.toString();
+        // without the original query, the signature would not tell searches apart
+        final String searchSignature = StringUtils.isBlank(originalItems) ? null :
+                getSignature(display, filter, sort, context, originalItems, true);
         final AbstractComplexSearch complexSearch = runCorrectSearch(
                 versions, aggregatedReferences,
                 options, StringUtils.isBlank(display) ? InterlinearMode.NONE.name() : display,
-                searchTokens, page, filter, sort, context);
+                searchTokens, page, filter, sort, context, searchSignature);
 
         aggregateTokenForPassageLookups(searchTokens, referenceTokens, complexSearch);
         enhanceSearchTokens(versions.get(0), searchTokens);
-        signRequest(complexSearch, display, filter, sort, context, originalItems);
+        complexSearch.setSignature(getSignature(display, filter, sort, context, originalItems,
+                complexSearch.getSearchType() != SearchType.PASSAGE));
         complexSearch.setSearchTokens(searchTokens);
         complexSearch.setTimeTookTotal(System.currentTimeMillis() - timeStart);
         return complexSearch;
@@ -282,28 +291,29 @@ public class SearchServiceImpl implements SearchService {
      * @param display       the type of display mode, e.g. interlinear, interleaved, etc.
      * @param filter        the filter to apply (or blank to retrieve just the particular search query.
      * @param originalItems the original query as given by the user
-     * @return the results from the search/passage lookup
-     */
-    private void signRequest(final AbstractComplexSearch result,
-                             final String display,
-                             final String filter,
-                             final String sort,
-                             int context,
-                             final String originalItems) {
+     * @param isSearch      true if the request is a search rather than a passage lookup
+     * @return the signature of the request
+     */
+    private String getSignature(final String display,
+                                final String filter,
+                                final String sort,
+                                int context,
+                                final String originalItems,
+                                final boolean isSearch) {
         StringBuilder key = new StringBuilder();
         key.append(StringUtils.getNonNullString(originalItems, ""));
         key.append('-');
         key.append(StringUtils.getNonNullString(display, "NONE"));
         key.append('-');
 
-        if (result.getSearchType() != SearchType.PASSAGE) {
+        if (isSearch) {
             key.append(StringUtils.getNonNullString(filter, ""));
             key.append('-');
             key.append(StringUtils.getNonNullString(sort, ""));
             key.append('-');
             key.append(context);
         }
-        result.setSignature(key.toString());
+        return key.toString();
     }
 
     /**
@@ -417,6 +427,7 @@ public class SearchServiceImpl implements SearchService {
      * @param sort        the sort to apply to the search
      * @param pageNumber  the page number of interest
      * @param context     amount of context to be used in searhc
+     * @param signature   the signature of the search, the same for all its pages, or null if it cannot be signed
      * @return the results
      */
     private AbstractComplexSearch runCorrectSearch(final List<String> versions, final String references,
@@ -425,7 +436,8 @@ public class SearchServiceImpl implements SearchService {
                                                    final int pageNumber,
                                                    final String filter,
                                                    final String sort,
-                                                   final int context) {
+                                                   final int context,
+                                                   final String signature) {
         final List<IndividualSearch> individualSearches = new ArrayList<IndividualSearch>(2);
         String[] filters = null;
         if (StringUtils.isNotBlank(filter)) {
@@ -465,7 +477,9 @@ public class SearchServiceImpl implements SearchService {
         }
         //we will prefer a word search to anything else...
         if (individualSearches.size() != 0) {
-            return this.search(new SearchQuery(pageNumber, context, displayMode, sort, individualSearches.toArray(new IndividualSearch[individualSearches.size()])));
+            final SearchQuery sq = new SearchQuery(pageNumber, context, displayMode, sort, individualSearches.toArray(new IndividualSearch[individualSearches.size()]));
+            sq.setSignature(signature);
+            return this.search(sq);
         }
         return this.bibleInfoService.getPassageText(
                 versions.get(0), references, options,
@@ -563,8 +577,11 @@ public class SearchServiceImpl implements SearchService {
         SearchResult result;
         // if we've only got one search, we want to retrieve the keys, the page, etc. all in one go
         try {
-
-            if (sq.isIndividualSearch()) {
+            result = getPageFromCursor(sq);
+            if (result != null) {
+                LOGGER.debug("Page [{}] of [{}] read from the results of an earlier page", sq.getPageNumber(),
+                        sq.getOriginalQuery());
+            } else if (sq.isIndividualSearch()) {
                 result = executeOneSearch(sq);
             } else {
                 result = executeJoiningSearches(sq);
@@ -585,6 +602,7 @@ public class SearchServiceImpl implements SearchService {
         result.setPageNumber(sq.getPageNumber());
         result.setTimeTookTotal(System.currentTimeMillis() - start);
         result.setQuery(sq.getOriginalQuery());
+        result.setPartial(sq.isPartial());
         setBestRestriction(sq, result);
         final String[] allVersions = sq.getCurrentSearch().getVersions();
         result.setMasterVersion(this.versionResolver.getShortName(allVersions[0]));
@@ -594,6 +612,34 @@ public class SearchServiceImpl implements SearchService {
         return result;
     }
 
+    /**
+     * Further pages of a search whose results are only verses are read from the cursor left by an earlier page, so
+     * that the search is neither run nor ranked again. Searches on strong numbers and subjects also return the
+     * definitions and headings they found, so are always run.
+     *
+     * @param sq the search query
+     * @return the page of results, or null if the search needs to be run
+     */
+    private SearchResult getPageFromCursor(final SearchQuery sq) {
+        if (sq.isIndividualSearch() && sq.getCurrentSearch().getType() != SearchType.TEXT
+                && sq.getCurrentSearch().getType() != SearchType.RELATED_VERSES) {
+            return null;
+        }
+
+        final ResultCursor cursor = this.jswordSearch.getCursor(sq);
+        if (cursor == null) {
+            return null;
+        }
+
+        //the results are extracted as per the last search
+        sq.selectSearch(sq.getSearches().length - 1);
+        final int total = cursor.size();
+        final SearchResult result = this.jswordSearch.getResultsFromTrimmedKeys(sq,
+                sq.getCurrentSearch().getVersions(), total, cursor.getPage(sq.getPageNumber(), sq.getPageSize()));
+        result.setTotal(total);
+        return result;
+    }
+
     private SearchType getBestSearchType(final SearchQuery sq) {
         IndividualSearch[] searches = sq.getSearches();
         for (IndividualSearch s : searches) {
@@ -879,55 +925,200 @@ public class SearchServiceImpl implements SearchService {
     }
 
     /**
-     * Runs each individual search and gives us a key that can be used to retrieve every passage
+     * Runs each individual search and gives us a key that can be used to retrieve every passage. Each search is
+     * first prepared in the order given, then the searches are run cheapest and most selective first, intersecting
+     * their verses as ordinals in the versification of the first version. Once nothing is left, the remaining
+     * searches are not run at all, so running the search that finds the fewest verses first is what saves the work.
      *
      * @param sq the search query
      * @return the key to all the results
      */
     private Key runJoiningSearches(final SearchQuery sq) {
-        Key results = null;
-        do {
-            switch (sq.getCurrentSearch().getType()) {
-                case TEXT:
-                    results = intersect(results, this.jswordSearch.searchKeys(sq));
-                    break;
-                case ORIGINAL_GREEK_FORMS:
-                case ORIGINAL_HEBREW_FORMS:
-                    adaptQueryForStrongSearch(sq);
-                    results = intersect(results, this.jswordSearch.searchKeys(sq));
-                    break;
-                case ORIGINAL_GREEK_RELATED:
-                case ORIGINAL_HEBREW_RELATED:
-                    Set<String> strongs = adaptQueryForRelatedStrongSearch(sq);
-                    results = intersect(results, this.runStrongTextSearchKeys(sq, strongs));
-                    break;
-                case ORIGINAL_MEANING:
-                    adaptQueryForMeaningSearch(sq);
-                    results = intersect(results, this.jswordSearch.searchKeys(sq));
-                    break;
-                case EXACT_FORM:
-                    results = intersect(results, getKeysFromOriginalText(sq));
-                    break;
-                case SUBJECT_SIMPLE:
-                case SUBJECT_EXTENDED:
-                case SUBJECT_FULL:
-                    sq.getCurrentSearch().setType(SearchType.SUBJECT_FULL);
-                    sq.getCurrentSearch().setQuery(sq.getCurrentSearch().getOriginalQuery());
-                    results = intersect(results, this.subjects.getKeys(sq));
-                    break;
-                case SUBJECT_RELATED:
-                    //no override for related topic searches
-                    results = intersect(results, this.subjects.getKeys(sq));
-                    break;
-                case RELATED_VERSES:
-                    results = intersect(results, this.relatedVerseService.getRelatedVerses(sq.getCurrentSearch().getVersions()[0], sq.getCurrentSearch().getQuery()));
-                    break;
-                default:
-                    throw new TranslatedException("refinement_not_supported", sq.getOriginalQuery(), sq
-                            .getCurrentSearch().getType().getLanguageKey());
+        final IndividualSearch[] searches = sq.getSearches();
+        if (searches.length == 1) {
+            return runJoiningSearch(sq, prepareJoiningSearch(sq));
+        }
+
+        //prepared in order, so that the definitions are those of the last search that looks them up
+        final List<Set<String>> strongs = new ArrayList<Set<String>>(searches.length);
+        for (int ii = 0; ii < searches.length; ii++) {
+            sq.selectSearch(ii);
+            strongs.add(prepareJoiningSearch(sq));
+        }
+
+        final Versification v11n = this.versificationService.getVersificationForVersion(searches[0].getVersions()[0]);
+        BitSet results = null;
+        for (final int index : getJoiningOrder(sq)) {
+            sq.selectSearch(index);
+            final BitSet searchOrdinals = toOrdinals(runJoiningSearch(sq, strongs.get(index)), v11n);
+            if (results == null) {
+                results = searchOrdinals;
+            } else {
+                results.and(searchOrdinals);
             }
-        } while (sq.hasMoreSearches());
-        return results;
+
+            if (results.isEmpty()) {
+                LOGGER.debug("No verses left after [{}], so the remaining searches are skipped", searches[index].getQuery());
+                break;
+            }
+        }
+
+        //the results are extracted as per the last search
+        sq.selectSearch(searches.length - 1);
+        return VerseBitmap.fromBitSet(results).toPassage(v11n);
+    }
+
+    /**
+     * Rewrites the current search into one that can be run against the indexes
+     *
+     * @param sq the search query
+     * @return the strong numbers of a related strong search, or null for all other searches
+     */
+    private Set<String> prepareJoiningSearch(final SearchQuery sq) {
+        switch (sq.getCurrentSearch().getType()) {
+            case TEXT:
+            case EXACT_FORM:
+            case SUBJECT_RELATED:
+            case RELATED_VERSES:
+                return null;
+            case ORIGINAL_GREEK_FORMS:
+            case ORIGINAL_HEBREW_FORMS:
+                adaptQueryForStrongSearch(sq);
+                return null;
+            case ORIGINAL_GREEK_RELATED:
+            case ORIGINAL_HEBREW_RELATED:
+                return adaptQueryForRelatedStrongSearch(sq);
+            case ORIGINAL_MEANING:
+                adaptQueryForMeaningSearch(sq);
+                return null;
+            case SUBJECT_SIMPLE:
+            case SUBJECT_EXTENDED:
+            case SUBJECT_FULL:
+                sq.getCurrentSearch().setType(SearchType.SUBJECT_FULL);
+                sq.getCurrentSearch().setQuery(sq.getCurrentSearch().getOriginalQuery());
+                return null;
+            default:
+                throw new TranslatedException("refinement_not_supported", sq.getOriginalQuery(), sq
+                        .getCurrentSearch().getType().getLanguageKey());
+        }
+    }
+
+    /**
+     * Runs the current search, once prepared
+     *
+     * @param sq      the search query
+     * @param strongs the strong numbers of a related strong search
+     * @return the verses found
+     */
+    private Key runJoiningSearch(final SearchQuery sq, final Set<String> strongs) {
+        switch (sq.getCurrentSearch().getType()) {
+            case TEXT:
+            case ORIGINAL_GREEK_FORMS:
+            case ORIGINAL_HEBREW_FORMS:
+            case ORIGINAL_MEANING:
+                return this.jswordSearch.searchKeys(sq);
+            case ORIGINAL_GREEK_RELATED:
+            case ORIGINAL_HEBREW_RELATED:
+                return this.runStrongTextSearchKeys(sq, strongs);
+            case EXACT_FORM:
+                return getKeysFromOriginalText(sq);
+            case SUBJECT_FULL:
+            case SUBJECT_RELATED:
+                return this.subjects.getKeys(sq);
+            case RELATED_VERSES:
+                return this.relatedVerseService.getRelatedVerses(sq.getCurrentSearch().getVersions()[0], sq.getCurrentSearch().getQuery());
+            default:
+                throw new TranslatedException("refinement_not_supported", sq.getOriginalQuery(), sq
+                        .getCurrentSearch().getType().getLanguageKey());
+        }
+    }
+
+    /**
+     * Orders the searches by how selective, and how cheap, they are expected to be. Topics and related verses are
+     * short lists read from the entity indexes, so are run first. The searches that are run straight against the
+     * bible indexes are counted from the index, and run fewest verses first. Related words and exact forms cannot be
+     * counted up front, so come next, followed by any counted search that matches too many verses to be worth
+     * counting in full.
+     *
+     * @param sq the search query, whose searches have been prepared
+     * @return the positions of the searches, in the order in which to run them
+     */
+    private Integer[] getJoiningOrder(final SearchQuery sq) {
+        final IndividualSearch[] searches = sq.getSearches();
+        final Integer[] order = new Integer[searches.length];
+        final int[] counts = new int[searches.length];
+        for (int ii = 0; ii < order.length; ii++) {
+            order[ii] = ii;
+            if (isCountedBeforeJoining(searches[ii].getType())) {
+                sq.selectSearch(ii);
+                counts[ii] = this.jswordSearch.estimateSearchResults(sq, JOINING_ESTIMATE_CAP);
+            }
+        }
+
+        //a stable sort, so that searches expected to be as selective as each other are run in the order given
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer o1, final Integer o2) {
+                final int cost = getJoiningCost(searches[o1].getType(), counts[o1])
+                        - getJoiningCost(searches[o2].getType(), counts[o2]);
+                return cost != 0 ? cost : counts[o1] - counts[o2];
+            }
+        });
+        return order;
+    }
+
+    /**
+     * @param type the type of search
+     * @return true if the search is run against the bible indexes, as it stands, so that its verses can be counted
+     */
+    private static boolean isCountedBeforeJoining(final SearchType type) {
+        switch (type) {
+            case TEXT:
+            case ORIGINAL_GREEK_FORMS:
+            case ORIGINAL_HEBREW_FORMS:
+            case ORIGINAL_MEANING:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @param type  the type of search
+     * @param count the number of verses the search was counted to find, if it was counted
+     * @return the relative cost of the search, lower being cheaper and more selective
+     */
+    private static int getJoiningCost(final SearchType type, final int count) {
+        switch (type) {
+            case SUBJECT_FULL:
+            case SUBJECT_RELATED:
+            case RELATED_VERSES:
+                return 0;
+            case ORIGINAL_GREEK_RELATED:
+            case ORIGINAL_HEBREW_RELATED:
+                return 2;
+            case EXACT_FORM:
+                return 3;
+            default:
+                return count > JOINING_ESTIMATE_CAP ? 4 : 1;
+        }
+    }
+
+    /**
+     * @param key  the verses, or null if there are none
+     * @param v11n the versification in which the results are intersected
+     * @return the ordinals of the verses in the versification
+     */
+    private BitSet toOrdinals(final Key key, final Versification v11n) {
+        if (key == null) {
+            return new BitSet();
+        }
+
+        Key versifiedKey = key;
+        if (key instanceof VerseKey && !v11n.equals(((VerseKey) key).getVersification())) {
+            versifiedKey = VersificationsMapper.instance().map(KeyUtil.getPassage(key), v11n);
+        }
+        return VerseBitmap.toBitSet(versifiedKey);
     }
 
     /**
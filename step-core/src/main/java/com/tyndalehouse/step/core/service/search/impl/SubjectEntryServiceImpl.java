@@ -35,12 +35,12 @@ package com.tyndalehouse.step.core.service.search.impl;
 import com.tyndalehouse.step.core.data.EntityDoc;
 import com.tyndalehouse.step.core.data.EntityIndexReader;
 import com.tyndalehouse.step.core.data.EntityManager;
-import com.tyndalehouse.step.core.exceptions.StepInternalException;
-import com.tyndalehouse.step.core.exceptions.TranslatedException;
 import com.tyndalehouse.step.core.models.InterlinearMode;
 import com.tyndalehouse.step.core.models.LookupOption;
 import com.tyndalehouse.step.core.models.OsisWrapper;
 import com.tyndalehouse.step.core.models.search.SubjectEntries;
+import com.tyndalehouse.step.core.service.helpers.NaveReferenceBitmaps;
+import com.tyndalehouse.step.core.service.helpers.VerseBitmap;
 import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
 import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
 import com.tyndalehouse.step.core.service.search.SubjectEntrySearchService;
@@ -51,10 +51,8 @@ import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.KeyUtil;
 import org.crosswire.jsword.passage.NoSuchKeyException;
 import org.crosswire.jsword.passage.Passage;
-import org.crosswire.jsword.passage.RangedPassage;
 import org.crosswire.jsword.passage.RestrictionType;
 import org.crosswire.jsword.passage.Verse;
-import org.crosswire.jsword.passage.VerseKey;
 import org.crosswire.jsword.passage.VerseRange;
 import org.crosswire.jsword.versification.Versification;
 import org.crosswire.jsword.versification.VersificationsMapper;
@@ -64,6 +62,7 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -88,11 +87,13 @@ public class SubjectEntryServiceImpl extends AbstractSubjectSearchServiceImpl im
      * @param entityManager        an entity manager providing access to all the different entities.
      * @param jsword               the jsword library
      * @param versificationService the versification service
+     * @param naveReferenceBitmaps the references of each nave entry
      */
     @Inject
     public SubjectEntryServiceImpl(final EntityManager entityManager, final JSwordPassageService jsword,
-                                   final JSwordVersificationService versificationService) {
-        super(versificationService);
+                                   final JSwordVersificationService versificationService,
+                                   final NaveReferenceBitmaps naveReferenceBitmaps) {
+        super(versificationService, naveReferenceBitmaps);
         this.jsword = jsword;
         this.versificationService = versificationService;
         this.naves = entityManager.getReader("nave");
@@ -145,9 +146,16 @@ public class SubjectEntryServiceImpl extends AbstractSubjectSearchServiceImpl im
                                                final String limitingScopeReference, final int context) {
         final List<OsisWrapper> verses = new ArrayList<OsisWrapper>(32);
         boolean masterVersionSwapped = false;
+
+        //the scope is the same for all results, so only work it out once
+        final BitSet scope = this.getCombinedScopeOrdinals(versions);
+        if (StringUtils.isNotBlank(limitingScopeReference)) {
+            scope.and(this.getInputReferenceOrdinals(versions[0], limitingScopeReference));
+        }
+
         for (final EntityDoc doc : results) {
-            final String references = doc.get("references");
-            masterVersionSwapped |= collectVersesFromReferences(verses, versions, references, limitingScopeReference, context);
+            final VerseBitmap references = this.getNaveReferenceBitmaps().get(doc.get(NaveReferenceBitmaps.NAVE_STORED_REFERENCES));
+            masterVersionSwapped |= collectVersesFromReferences(verses, versions, references.and(scope), context);
         }
         return new SubjectEntries(verses, masterVersionSwapped);
     }
@@ -155,29 +163,16 @@ public class SubjectEntryServiceImpl extends AbstractSubjectSearchServiceImpl im
     /**
      * Collects individual ranges
      *
-     * @param verses                 the verses
-     * @param inputVersions          the versions
-     * @param references             the list of resultsInKJV that form the results
-     * @param limitingScopeReference the limiting scope for the reference
-     * @param context                the context to expand with the reference
+     * @param verses        the verses
+     * @param inputVersions the versions
+     * @param references    the verses of the entry, restricted to the scope of the search, in the KJV versification
+     * @param context       the context to expand with the reference
      */
     private boolean collectVersesFromReferences(final List<OsisWrapper> verses, final String[] inputVersions,
-                                                final String references, final String limitingScopeReference,
-                                                final int context) {
+                                                final VerseBitmap references, final int context) {
 
         final String originalMaster = inputVersions[0];
-        Passage combinedScopeInKJVv11n = this.getCombinedBookScope(inputVersions);
-
-        //now let's retain the verses that are of interest in the selected books
-        Key resultsInKJV = null;
-        try {
-            resultsInKJV = this.versificationService.getBookFromVersion(JSwordPassageService.BEST_VERSIFICATION).getKey(references);
-        } catch (NoSuchKeyException e) {
-            throw new StepInternalException("Unable to parse resultsInKJV from Nave", e);
-        }
-        resultsInKJV.retainAll(combinedScopeInKJVv11n);
-
-        trimResultsToInputSearchRange(inputVersions[0], limitingScopeReference, resultsInKJV);
+        final Passage resultsInKJV = references.toPassage(this.getNaveReferenceBitmaps().getVersification());
 
         //then calculate what the best version order is
         GetBestVersionOrderAndKey getBestVersionOrderAndKey = new GetBestVersionOrderAndKey(inputVersions, resultsInKJV).invoke();
@@ -245,49 +240,6 @@ public class SubjectEntryServiceImpl extends AbstractSubjectSearchServiceImpl im
         return !getBestVersionOrderAndKey.versions[0].equals(originalMaster);
     }
 
-    /**
-     * Reduces the results so far to what is contained in the v11n
-     *
-     * @param inputVersion           input version
-     * @param limitingScopeReference the limiting scope
-     * @param resultsInKJV           the results retrieved so far.
-     */
-    private void trimResultsToInputSearchRange(final String inputVersion, final String limitingScopeReference, final Key resultsInKJV) {
-        if (StringUtils.isNotBlank(limitingScopeReference)) {
-            final Book limitingBook;
-            limitingBook = this.versificationService.getBookFromVersion(inputVersion);
-            try {
-                final Key key = KeyUtil.getPassage(limitingBook.getKey(limitingScopeReference));
-
-                //now map to the KJV versification
-                Passage p = VersificationsMapper.instance().map(KeyUtil.getPassage(key), ((VerseKey) resultsInKJV).getVersification());
-
-                //now convert retain against existing resultsInKJV
-                resultsInKJV.retainAll(p);
-            } catch (NoSuchKeyException ex) {
-                throw new TranslatedException(ex, "invalid_reference_in_book", limitingScopeReference, limitingBook.getInitials());
-            }
-        }
-    }
-
-    /**
-     * Gets a key in the KJV versification that represents the total combined key for all search resutls.
-     *
-     * @param inputVersions the input version the kjv versified keys
-     * @return
-     */
-    private Passage getCombinedBookScope(String[] inputVersions) {
-        final Versification bestVersification = this.versificationService.getVersificationForVersion(JSwordPassageService.BEST_VERSIFICATION);
-
-        Passage range = new RangedPassage(bestVersification);
-        for (final String v : inputVersions) {
-            final Book bookFromVersion = this.versificationService.getBookFromVersion(v);
-            final VerseKey scope = bookFromVersion.getBookMetaData().getScope();
-            range.addAll(VersificationsMapper.instance().map(KeyUtil.getPassage(scope), bestVersification));
-        }
-        return range;
-    }
-
     /**
      * @param av11n     the versification
      * @param range     the range/verse
@@ -37,14 +37,14 @@ import com.tyndalehouse.step.core.data.EntityDoc;
 import com.tyndalehouse.step.core.data.EntityIndexReader;
 import com.tyndalehouse.step.core.data.EntityManager;
 import com.tyndalehouse.step.core.exceptions.StepInternalException;
-import com.tyndalehouse.step.core.exceptions.TranslatedException;
 import com.tyndalehouse.step.core.models.InterlinearMode;
 import com.tyndalehouse.step.core.models.LookupOption;
-import com.tyndalehouse.step.core.models.StringAndCount;
 import com.tyndalehouse.step.core.models.search.ExpandableSubjectHeadingEntry;
 import com.tyndalehouse.step.core.models.search.SearchEntry;
 import com.tyndalehouse.step.core.models.search.SearchResult;
 import com.tyndalehouse.step.core.models.search.SubjectHeadingSearchEntry;
+import com.tyndalehouse.step.core.service.helpers.NaveReferenceBitmaps;
+import com.tyndalehouse.step.core.service.helpers.VerseBitmap;
 import com.tyndalehouse.step.core.service.impl.IndividualSearch;
 import com.tyndalehouse.step.core.service.impl.SearchQuery;
 import com.tyndalehouse.step.core.service.jsword.JSwordMetadataService;
@@ -57,9 +57,9 @@ import com.tyndalehouse.step.core.service.search.SubjectSearchService;
 import com.tyndalehouse.step.core.utils.StringUtils;
 import org.apache.lucene.queryParser.ParseException;
 import org.apache.lucene.queryParser.QueryParser;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
-import org.crosswire.jsword.book.Book;
 import org.crosswire.jsword.passage.Key;
 import org.crosswire.jsword.passage.KeyUtil;
 import org.crosswire.jsword.passage.Passage;
@@ -74,6 +74,7 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -107,14 +108,16 @@ public class SubjectSearchServiceImpl extends AbstractSubjectSearchServiceImpl i
      *
      * @param entityManager an entity manager providing access to all the different entities.
      * @param jswordSearch  the search service for text searching in jsword
+     * @param naveReferenceBitmaps the references of each nave entry
      */
     @Inject
     public SubjectSearchServiceImpl(final EntityManager entityManager,
                                     final JSwordSearchService jswordSearch,
                                     final JSwordMetadataService jSwordMetadataService,
                                     final JSwordModuleService jSwordModuleService,
-                                    final JSwordVersificationService jSwordVersificationService) {
-        super(jSwordVersificationService);
+                                    final JSwordVersificationService jSwordVersificationService,
+                                    final NaveReferenceBitmaps naveReferenceBitmaps) {
+        super(jSwordVersificationService, naveReferenceBitmaps);
         this.jswordSearch = jswordSearch;
         this.jSwordMetadataService = jSwordMetadataService;
         this.jSwordModuleService = jSwordModuleService;
@@ -125,14 +128,10 @@ public class SubjectSearchServiceImpl extends AbstractSubjectSearchServiceImpl i
 
     @Override
     public SearchResult searchByMultipleReferences(final String[] versions, final String references) {
-        final StringAndCount allReferencesAndCounts = this.getInputReferenceForNaveSearch(versions, references);
-        int count = allReferencesAndCounts.getCount();
-        if (count > JSwordPassageService.MAX_VERSES_RETRIEVED) {
-            throw new TranslatedException("subject_reference_search_too_big",
-                    Integer.valueOf(count).toString(),
-                    Integer.valueOf(JSwordPassageService.MAX_VERSES_RETRIEVED).toString());
-        }
-        return searchByReference(allReferencesAndCounts.getValue());
+        this.checkInputReferenceSize(versions[0], references);
+        final SearchResult sr = new SearchResult();
+        sr.setQuery("sr=" + references);
+        return getSubjectHeadings(sr, getDocsByScope(versions, references));
     }
 
     @Override
@@ -141,7 +140,15 @@ public class SubjectSearchServiceImpl extends AbstractSubjectSearchServiceImpl i
         sr.setQuery("sr=" + referenceQuerySyntax);
 
         //referenceQuerySyntax could be a full referenceQuerySyntax, or could be the start of a referenceQuerySyntax here
-        final EntityDoc[] results = getDocsByExpandedReferences(referenceQuerySyntax);
+        return getSubjectHeadings(sr, getDocsByExpandedReferences(referenceQuerySyntax));
+    }
+
+    /**
+     * @param sr      the search result to populate
+     * @param results the nave entries
+     * @return the search result, with an entry for each subject heading
+     */
+    private SearchResult getSubjectHeadings(final SearchResult sr, final EntityDoc[] results) {
         final List<SearchEntry> resultList = new ArrayList<SearchEntry>(results.length);
         for (final EntityDoc d : results) {
             final ExpandableSubjectHeadingEntry entry = new ExpandableSubjectHeadingEntry(d.get("root"),
@@ -162,6 +169,19 @@ public class SubjectSearchServiceImpl extends AbstractSubjectSearchServiceImpl i
         return this.naves.searchSingleColumn("expandedReferences", referenceQuerySyntax, NAVE_SORT);
     }
 
+    /**
+     * @param versions   the versions, the first of which is the master version
+     * @param references the references the entries should refer to
+     * @return all entries with references in the books of the versions and in the references
+     */
+    private EntityDoc[] getDocsByScope(final String[] versions, final String references) {
+        if (isBlank(references)) {
+            return new EntityDoc[0];
+        }
+        return this.naves.search(new MatchAllDocsQuery(), Integer.MAX_VALUE, NAVE_SORT,
+                this.getNaveScopeFilter(versions, references));
+    }
+
 
     @Override
     public SearchResult search(final SearchQuery sq) {
@@ -212,9 +232,8 @@ public class SubjectSearchServiceImpl extends AbstractSubjectSearchServiceImpl i
             case SUBJECT_FULL:
                 return naveDocsToReference(sq, this.getExtendedNaveDocs(sq));
             case SUBJECT_RELATED:
-                return naveDocsToReference(sq, getDocsByExpandedReferences(this.getInputReferenceForNaveSearch(
-                        sq.getCurrentSearch().getVersions(),
-                        sq.getCurrentSearch().getQuery()).getValue()));
+                return naveDocsToReference(sq, getDocsByScope(sq.getCurrentSearch().getVersions(),
+                        sq.getCurrentSearch().getQuery()));
             default:
                 throw new StepInternalException("Unrecognized subject search");
         }
@@ -227,37 +246,16 @@ public class SubjectSearchServiceImpl extends AbstractSubjectSearchServiceImpl i
      * @return
      */
     private Key naveDocsToReference(SearchQuery sq, EntityDoc[] extendedDocs) {
-        String mainVersion = sq.getCurrentSearch().getVersions()[0];
-        Book naveVersion = this.jSwordVersificationService.getBookFromVersion(JSwordPassageService.BEST_VERSIFICATION);
-        Book bookFromVersion = this.jSwordVersificationService.getBookFromVersion(mainVersion);
-        Key passageKey = null;
-        for (EntityDoc d : extendedDocs) {
-            String storedReferences = d.get(NAVE_STORED_REFERENCES);
-            final Key key;
-            try {
-                //NEEDS TO BE KJV
-                //NEEDS TO BE KJV
-                //NEEDS TO BE KJV
-                //NEEDS TO BE KJV
-                //NEEDS TO BE KJV
-                //NEEDS TO BE KJV
-                //NEEDS TO BE KJV
-                //NEEDS TO BE KJV
-
-
-                key = naveVersion.getKey(storedReferences);
-            } catch (Exception ex) {
-                throw new StepInternalException("Stored references are unparseable in nave module: " + storedReferences);
-            }
-
-            if (passageKey == null) {
-                passageKey = key;
-            } else {
-                passageKey.addAll(key);
-            }
+        if (extendedDocs.length == 0) {
+            return null;
         }
 
-        return passageKey;
+        final NaveReferenceBitmaps bitmaps = this.getNaveReferenceBitmaps();
+        final BitSet ordinals = new BitSet();
+        for (EntityDoc d : extendedDocs) {
+            bitmaps.get(d.get(NAVE_STORED_REFERENCES)).addTo(ordinals);
+        }
+        return VerseBitmap.fromBitSet(ordinals).toPassage(bitmaps.getVersification());
     }
 
     /**
@@ -430,11 +428,9 @@ public class SubjectSearchServiceImpl extends AbstractSubjectSearchServiceImpl i
         }
         sb.append(") ");
 
-        //construct query
-        sb.append(this.getInputReferenceForNaveSearch(sq.getCurrentSearch().getVersions(), sq.getCurrentSearch().getMainRange()).getValue());
-
         try {
-            return this.naves.search(this.naves.getQueryParser(false, true, "rootStem").parse(sb.toString()), Integer.MAX_VALUE, NAVE_SORT, null);
+            return this.naves.search(this.naves.getQueryParser(false, true, "rootStem").parse(sb.toString()), Integer.MAX_VALUE, NAVE_SORT,
+                    this.getNaveScopeFilter(sq.getCurrentSearch().getVersions(), sq.getCurrentSearch().getMainRange()));
         } catch (ParseException ex) {
             throw new StepInternalException("Unable to parse generated query.");
         }
@@ -458,10 +454,10 @@ public class SubjectSearchServiceImpl extends AbstractSubjectSearchServiceImpl i
         query.append(" fullHeaderAnalyzed:");
         query.append(queryBody);
         query.append(") ");
-        query.append(this.getInputReferenceForNaveSearch(sq.getCurrentSearch().getVersions(), sq.getCurrentSearch().getMainRange()).getValue());
 
         try {
-            return this.naves.search(this.naves.getQueryParser(false, true, "rootStem").parse(query.toString()), Integer.MAX_VALUE, NAVE_SORT, null);
+            return this.naves.search(this.naves.getQueryParser(false, true, "rootStem").parse(query.toString()), Integer.MAX_VALUE, NAVE_SORT,
+                    this.getNaveScopeFilter(sq.getCurrentSearch().getVersions(), sq.getCurrentSearch().getMainRange()));
         } catch (ParseException ex) {
             throw new StepInternalException("Unable to parse generated query.");
         }
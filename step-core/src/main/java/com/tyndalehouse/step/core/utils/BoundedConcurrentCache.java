@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe cache bounded both by its number of entries and by their total weight. Entries are spread over
+ * segments, each of which is locked separately and evicts its least recently used entries once it goes over its share
+ * of either bound. Hits, misses and evictions are counted, and also recorded through {@link StepMetrics}.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ */
+public class BoundedConcurrentCache<K, V> {
+    private static final int SEGMENTS = 16;
+    private final Segment[] segments;
+    private final Weigher<V> weigher;
+    private final Class<?> owner;
+    private final String name;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Works out how much a value costs to keep in the cache
+     *
+     * @param <V> the type of the values
+     */
+    public interface Weigher<V> {
+        /**
+         * @param value the value
+         * @return its weight, in whatever unit the maximum weight of the cache is expressed
+         */
+        int weigh(V value);
+    }
+
+    /**
+     * @param owner      the class holding the cache, used to name its metrics
+     * @param name       the name of the cache
+     * @param maxEntries the maximum number of entries
+     * @param maxWeight  the maximum total weight of the entries
+     * @param weigher    weighs each value
+     */
+    @SuppressWarnings("unchecked")
+    public BoundedConcurrentCache(final Class<?> owner, final String name, final int maxEntries,
+                                  final long maxWeight, final Weigher<V> weigher) {
+        this.owner = owner;
+        this.name = name;
+        this.weigher = weigher;
+        this.segments = new BoundedConcurrentCache.Segment[SEGMENTS];
+        for (int ii = 0; ii < SEGMENTS; ii++) {
+            this.segments[ii] = new Segment(Math.max(1, maxEntries / SEGMENTS), Math.max(1, maxWeight / SEGMENTS));
+        }
+    }
+
+    /**
+     * @param key the key
+     * @return the cached value, or null if there is none
+     */
+    public V get(final K key) {
+        final V value = segmentFor(key).get(key);
+        final boolean hit = value != null;
+        (hit ? this.hits : this.misses).incrementAndGet();
+        StepMetrics.cacheLookup(this.owner, this.name, hit);
+        return value;
+    }
+
+    /**
+     * @param key   the key
+     * @param value the value, which must not be null
+     */
+    public void put(final K key, final V value) {
+        final int evicted = segmentFor(key).put(key, value, this.weigher.weigh(value));
+        if (evicted != 0) {
+            this.evictions.addAndGet(evicted);
+            StepMetrics.count(this.owner, "evictions", this.name, evicted);
+        }
+    }
+
+    /**
+     * Empties the cache, leaving the statistics untouched
+     */
+    public void clear() {
+        for (final Segment segment : this.segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @return the number of entries currently held
+     */
+    public int size() {
+        int size = 0;
+        for (final Segment segment : this.segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of lookups that found a value
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return the number of lookups that found nothing
+     */
+    public long getMisses() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return the number of entries removed to stay within the bounds
+     */
+    public long getEvictions() {
+        return this.evictions.get();
+    }
+
+    /**
+     * @param key the key
+     * @return the segment holding the key
+     */
+    private Segment segmentFor(final K key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return this.segments[hash & (SEGMENTS - 1)];
+    }
+
+    /**
+     * An access-ordered part of the cache, guarded by its own lock
+     */
+    private final class Segment {
+        private final Map<K, Weighted<V>> entries = new LinkedHashMap<K, Weighted<V>>(16, 0.75f, true);
+        private final int maxEntries;
+        private final long maxWeight;
+        private long weight;
+
+        /**
+         * @param maxEntries the maximum number of entries in this segment
+         * @param maxWeight  the maximum weight of this segment
+         */
+        Segment(final int maxEntries, final long maxWeight) {
+            this.maxEntries = maxEntries;
+            this.maxWeight = maxWeight;
+        }
+
+        /**
+         * @param key the key
+         * @return the value, or null
+         */
+        synchronized V get(final K key) {
+            final Weighted<V> entry = this.entries.get(key);
+            return entry == null ? null : entry.value;
+        }
+
+        /**
+         * @param key         the key
+         * @param value       the value
+         * @param valueWeight the weight of the value
+         * @return the number of entries evicted to make room
+         */
+        synchronized int put(final K key, final V value, final int valueWeight) {
+            final Weighted<V> previous = this.entries.put(key, new Weighted<V>(value, valueWeight));
+            if (previous != null) {
+                this.weight -= previous.weight;
+            }
+            this.weight += valueWeight;
+
+            int evicted = 0;
+            final Iterator<Weighted<V>> eldest = this.entries.values().iterator();
+            while ((this.entries.size() > this.maxEntries || this.weight > this.maxWeight) && eldest.hasNext()) {
+                this.weight -= eldest.next().weight;
+                eldest.remove();
+                evicted++;
+            }
+            return evicted;
+        }
+
+        /**
+         * empties the segment
+         */
+        synchronized void clear() {
+            this.entries.clear();
+            this.weight = 0;
+        }
+
+        /**
+         * @return the number of entries
+         */
+        synchronized int size() {
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * A value with its weight, so that the weight is only worked out once
+     *
+     * @param <V> the type of the value
+     */
+    private static final class Weighted<V> {
+        private final V value;
+        private final int weight;
+
+        /**
+         * @param value  the value
+         * @param weight the weight of the value
+         */
+        Weighted(final V value, final int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermEnum;
+import org.tartarus.snowball.ext.PorterStemmer;
+
+import com.tyndalehouse.step.core.data.common.TermsAndMaxCount;
+import com.tyndalehouse.step.core.exceptions.StepInternalException;
+
+/**
+ * An immutable index of the terms of one or more fields, answering prefix lookups for the auto suggestions without
+ * going back to Lucene. The terms are kept sorted, so that the terms with a given prefix form a single range, along
+ * with the number of documents containing each term and the stem of each term.
+ * <p/>
+ * Completions are returned most popular first, keeping only the most popular term of each stem. The most popular
+ * completions of short prefixes, whose ranges are the largest, are worked out up front.
+ */
+public final class PrefixTermIndex {
+    private static final int SHORT_PREFIX = 3;
+    private static final int TOP_COMPLETIONS = 16;
+    private final String[] terms;
+    private final int[] weights;
+    private final String[] stems;
+    private final Map<String, int[]> topByShortPrefix;
+
+    /**
+     * @param weightsByTerm the number of documents containing each term
+     */
+    public PrefixTermIndex(final SortedMap<String, Integer> weightsByTerm) {
+        final int size = weightsByTerm.size();
+        this.terms = new String[size];
+        this.weights = new int[size];
+        this.stems = new String[size];
+
+        final PorterStemmer stemmer = new PorterStemmer();
+        int ii = 0;
+        for (final Map.Entry<String, Integer> term : weightsByTerm.entrySet()) {
+            this.terms[ii] = term.getKey();
+            this.weights[ii] = term.getValue();
+            this.stems[ii] = stem(stemmer, term.getKey());
+            ii++;
+        }
+        this.topByShortPrefix = buildTopCompletions();
+    }
+
+    /**
+     * Reads every term of the fields, adding up the number of documents of terms found in several fields
+     *
+     * @param reader     the reader of the index
+     * @param fieldNames the fields
+     * @return the prefix index
+     */
+    public static PrefixTermIndex build(final IndexReader reader, final String... fieldNames) {
+        final SortedMap<String, Integer> weightsByTerm = new TreeMap<String, Integer>();
+        for (final String fieldName : fieldNames) {
+            TermEnum termEnum = null;
+            try {
+                termEnum = reader.terms(new Term(fieldName, ""));
+                do {
+                    final Term term = termEnum.term();
+                    if (term == null || !fieldName.equals(term.field())) {
+                        break;
+                    }
+
+                    final Integer weight = weightsByTerm.get(term.text());
+                    weightsByTerm.put(term.text(), (weight == null ? 0 : weight) + termEnum.docFreq());
+                } while (termEnum.next());
+            } catch (final IOException ex) {
+                throw new StepInternalException("Unable to read the terms of " + fieldName, ex);
+            } finally {
+                IOUtils.closeQuietly(termEnum);
+            }
+        }
+        return new PrefixTermIndex(weightsByTerm);
+    }
+
+    /**
+     * Returns the terms starting with the last word of the search term. When inexact, the term the user has
+     * already typed is left out of both the terms and the total.
+     *
+     * @param exact      indicates we want the term itself only
+     * @param searchTerm the search term
+     * @param max        the maximum number of terms to return
+     * @return the most popular terms, along with the total number of terms matching
+     */
+    public TermsAndMaxCount<String> find(final boolean exact, final String searchTerm, final int max) {
+        final TermsAndMaxCount<String> termsAndMaxCount = new TermsAndMaxCount<String>();
+        final Set<String> found = new LinkedHashSet<String>();
+        termsAndMaxCount.setTerms(found);
+
+        final String lastTerm = getLastTerm(searchTerm);
+        if (StringUtils.isBlank(lastTerm)) {
+            return termsAndMaxCount;
+        }
+
+        if (exact) {
+            final int index = Arrays.binarySearch(this.terms, lastTerm);
+            if (index >= 0) {
+                if (max > 0) {
+                    found.add(this.terms[index]);
+                }
+                termsAndMaxCount.setTotalCount(1);
+            }
+            return termsAndMaxCount;
+        }
+
+        // when inexact, don't include the term the user has already typed
+        final int start = lowerBound(lastTerm);
+        final int end = lowerBound(lastTerm + Character.MAX_VALUE);
+        final int typed = Arrays.binarySearch(this.terms, start, end, searchTerm.toLowerCase());
+        termsAndMaxCount.setTotalCount(end - start - (typed >= 0 ? 1 : 0));
+
+        for (final int index : getTopCompletions(lastTerm, start, end, typed, max)) {
+            found.add(this.terms[index]);
+        }
+        return termsAndMaxCount;
+    }
+
+    /**
+     * @param stemmer a stemmer, used for terms that are not in the index, which callers stemming several terms
+     *                should create once and pass to each call, since it is not thread-safe
+     * @param term    a term
+     * @return its stem, as worked out when the index was built if the term is in the index
+     */
+    public String getStem(final PorterStemmer stemmer, final String term) {
+        final int index = Arrays.binarySearch(this.terms, term);
+        return index >= 0 ? this.stems[index] : stem(stemmer, term);
+    }
+
+    /**
+     * @return the number of terms in the index
+     */
+    public int size() {
+        return this.terms.length;
+    }
+
+    /**
+     * @param prefix   the prefix
+     * @param start    the first term with the prefix
+     * @param end      the first term after those with the prefix
+     * @param excluded a term to leave out, or a negative number
+     * @param max      the maximum number of terms to return
+     * @return the most popular terms of the range, one per stem
+     */
+    private List<Integer> getTopCompletions(final String prefix, final int start, final int end,
+                                            final int excluded, final int max) {
+        final List<Integer> completions = new ArrayList<Integer>(Math.max(0, Math.min(max, end - start)));
+        if (max <= 0 || start >= end) {
+            return completions;
+        }
+
+        final int[] top = prefix.length() <= SHORT_PREFIX && max < TOP_COMPLETIONS
+                ? this.topByShortPrefix.get(prefix) : null;
+        if (top != null) {
+            for (int ii = 0; ii < top.length && completions.size() < max; ii++) {
+                if (top[ii] != excluded) {
+                    completions.add(top[ii]);
+                }
+            }
+            return completions;
+        }
+
+        final Integer[] range = new Integer[end - start];
+        for (int ii = 0; ii < range.length; ii++) {
+            range[ii] = start + ii;
+        }
+        Arrays.sort(range, new ByWeight());
+
+        final Set<String> seenStems = new LinkedHashSet<String>();
+        for (int ii = 0; ii < range.length && completions.size() < max; ii++) {
+            if (range[ii] != excluded && seenStems.add(this.stems[range[ii]])) {
+                completions.add(range[ii]);
+            }
+        }
+        return completions;
+    }
+
+    /**
+     * @return the most popular terms of each short prefix, one per stem
+     */
+    private Map<String, int[]> buildTopCompletions() {
+        final Integer[] byWeight = new Integer[this.terms.length];
+        for (int ii = 0; ii < byWeight.length; ii++) {
+            byWeight[ii] = ii;
+        }
+        Arrays.sort(byWeight, new ByWeight());
+
+        final Map<String, List<Integer>> completions = new HashMap<String, List<Integer>>(4096);
+        for (final Integer index : byWeight) {
+            final String term = this.terms[index];
+            for (int length = 1; length <= SHORT_PREFIX && length <= term.length(); length++) {
+                final String prefix = term.substring(0, length);
+                List<Integer> top = completions.get(prefix);
+                if (top == null) {
+                    top = new ArrayList<Integer>(TOP_COMPLETIONS);
+                    completions.put(prefix, top);
+                }
+
+                if (top.size() < TOP_COMPLETIONS && !containsStem(top, this.stems[index])) {
+                    top.add(index);
+                }
+            }
+        }
+
+        final Map<String, int[]> topByPrefix = new HashMap<String, int[]>(completions.size() * 2);
+        for (final Map.Entry<String, List<Integer>> top : completions.entrySet()) {
+            final int[] indexes = new int[top.getValue().size()];
+            for (int ii = 0; ii < indexes.length; ii++) {
+                indexes[ii] = top.getValue().get(ii);
+            }
+            topByPrefix.put(top.getKey(), indexes);
+        }
+        return topByPrefix;
+    }
+
+    /**
+     * @param indexes the terms
+     * @param stem    a stem
+     * @return true if one of the terms has the stem
+     */
+    private boolean containsStem(final List<Integer> indexes, final String stem) {
+        for (final Integer index : indexes) {
+            if (this.stems[index].equals(stem)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param key the key
+     * @return the position of the first term not before the key
+     */
+    private int lowerBound(final String key) {
+        final int index = Arrays.binarySearch(this.terms, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * @param stemmer the stemmer, which is not thread-safe
+     * @param term    the term
+     * @return the stem of the term
+     */
+    private static String stem(final PorterStemmer stemmer, final String term) {
+        stemmer.setCurrent(term);
+        stemmer.stem();
+        return stemmer.getCurrent();
+    }
+
+    /**
+     * Obtains the last word in the list
+     *
+     * @param fullTerm the full term as entered by the user
+     * @return the last term in the input string
+     */
+    private static String getLastTerm(final String fullTerm) {
+        final String userEntry = fullTerm.toLowerCase();
+        final int lastWordStart = userEntry.lastIndexOf(' ');
+        return (lastWordStart != -1 ? userEntry.substring(lastWordStart + 1) : userEntry).trim();
+    }
+
+    /**
+     * Orders terms most popular first, and alphabetically amongst equally popular terms
+     */
+    private final class ByWeight implements Comparator<Integer> {
+        @Override
+        public int compare(final Integer o1, final Integer o2) {
+            final int weight = PrefixTermIndex.this.weights[o2] - PrefixTermIndex.this.weights[o1];
+            return weight != 0 ? weight : o1 - o2;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.utils;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.TimerContext;
+
+/**
+ * Records timings and counts into the default metrics registry, which is also the registry the @Timed annotations
+ * report to. Recording is only switched on with the metrics.enabled system property, so that in normal running each
+ * call costs no more than a check of a flag.
+ */
+public final class StepMetrics {
+    private static final boolean ENABLED = Boolean.getBoolean("metrics.enabled");
+    private static final Set<MetricName> RATIOS =
+            Collections.newSetFromMap(new ConcurrentHashMap<MetricName, Boolean>());
+
+    /**
+     * no op
+     */
+    private StepMetrics() {
+        // no op
+    }
+
+    /**
+     * @return true if metrics are being recorded
+     */
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * @param type  the class recording the timing
+     * @param name  the name of the timer
+     * @param scope what is being timed, e.g. the name of an index, or null
+     * @return the started timer, or null if metrics are not enabled
+     */
+    public static TimerContext startTimer(final Class<?> type, final String name, final String scope) {
+        if (!ENABLED) {
+            return null;
+        }
+        return Metrics.defaultRegistry().newTimer(type, name, scope, TimeUnit.MILLISECONDS, TimeUnit.SECONDS).time();
+    }
+
+    /**
+     * @param timer the timer returned by {@link #startTimer(Class, String, String)}, possibly null
+     */
+    public static void stopTimer(final TimerContext timer) {
+        if (timer != null) {
+            timer.stop();
+        }
+    }
+
+    /**
+     * @param type  the class recording the count
+     * @param name  the name of the counter
+     * @param scope what is being counted, or null
+     */
+    public static void count(final Class<?> type, final String name, final String scope) {
+        count(type, name, scope, 1);
+    }
+
+    /**
+     * @param type   the class recording the count
+     * @param name   the name of the counter
+     * @param scope  what is being counted, or null
+     * @param amount the amount by which to increase the count
+     */
+    public static void count(final Class<?> type, final String name, final String scope, final long amount) {
+        if (ENABLED) {
+            Metrics.defaultRegistry().newCounter(type, name, scope).inc(amount);
+        }
+    }
+
+    /**
+     * Counts a cache lookup, keeping a hit-ratio gauge alongside the hits and misses
+     *
+     * @param type      the class holding the cache
+     * @param cacheName the name of the cache
+     * @param hit       true if the value was found in the cache
+     */
+    public static void cacheLookup(final Class<?> type, final String cacheName, final boolean hit) {
+        if (!ENABLED) {
+            return;
+        }
+
+        final MetricsRegistry registry = Metrics.defaultRegistry();
+        final Counter hits = registry.newCounter(type, "hits", cacheName);
+        final Counter misses = registry.newCounter(type, "misses", cacheName);
+        (hit ? hits : misses).inc();
+
+        final MetricName ratioName = new MetricName(type, "hit-ratio", cacheName);
+        if (RATIOS.add(ratioName)) {
+            registry.newGauge(ratioName, new Gauge<Double>() {
+                @Override
+                public Double value() {
+                    final long lookups = hits.count() + misses.count();
+                    return lookups == 0 ? 0.0 : (double) hits.count() / lookups;
+                }
+            });
+        }
+    }
+}
@@ -36,14 +36,12 @@ package com.tyndalehouse.step.core.utils;
 import com.tyndalehouse.step.core.utils.language.GreekUtils;
 import com.tyndalehouse.step.core.utils.language.HebrewUtils;
 import com.tyndalehouse.step.core.utils.language.transliteration.TransliterationOption;
-import com.tyndalehouse.step.core.utils.language.transliteration.TransliterationRule;
+import com.tyndalehouse.step.core.utils.language.transliteration.TransliterationRules;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.text.Normalizer;
 import java.text.Normalizer.Form;
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
@@ -65,6 +63,26 @@ public final class StringConversionUtils {
     private static final int STRONG_PREFIX_LENGTH = STRONG_PREFIX.length();
     private static final int LANGUAGE_INDICATOR = STRONG_PREFIX_LENGTH;
     private static final int MAX_TRANSLITERATIONS = 512;
+    private static final int MAX_CACHED_TRANSLITERATIONS = 65536;
+    private static final long MAX_CACHED_TRANSLITERATION_CHARS = 2L * 1024 * 1024;
+    // the same lemmas and words are transliterated over and over, when loading and when rendering
+    private static final BoundedConcurrentCache<String, String> TRANSLITERATIONS =
+            new BoundedConcurrentCache<String, String>(StringConversionUtils.class, "transliterations",
+                    MAX_CACHED_TRANSLITERATIONS, MAX_CACHED_TRANSLITERATION_CHARS,
+                    new BoundedConcurrentCache.Weigher<String>() {
+                        @Override
+                        public int weigh(final String value) {
+                            return value.length();
+                        }
+                    });
+
+    /**
+     * The rules are compiled on first use, rather than when the class is loaded
+     */
+    private static final class CompiledRules {
+        private static final TransliterationRules GREEK = new TransliterationRules(GreekUtils.getTransliterationRules());
+        private static final TransliterationRules HEBREW = new TransliterationRules(HebrewUtils.getTransliterationRules());
+    }
 
     /**
      * hiding implementation
@@ -397,79 +415,42 @@ public final class StringConversionUtils {
     public static List<TransliterationOption> adaptTransliterationForQuerying(
             final String stepTransliteration, final boolean isGreek) {
         if (isGreek) {
-            return trimmedTranslits(multiplyTranslitOptions(removeGreekTranslitMarkUpForIndexing(stepTransliteration),
-                    GreekUtils.getTransliterationRules()));
+            return CompiledRules.GREEK.expand(removeGreekTranslitMarkUpForIndexing(stepTransliteration),
+                    MAX_TRANSLITERATIONS);
         }
 
         // otherwise hebrew, so run the pattern to remove everything...
-        return trimmedTranslits(multiplyTranslitOptions(removeHebrewTranslitMarkUpForIndexing(stepTransliteration),
-                HebrewUtils.getTransliterationRules()));
-    }
-
-    private static List<TransliterationOption> trimmedTranslits(final List<TransliterationOption> transliterationRules) {
-        return transliterationRules.subList(0, Math.min(transliterationRules.size(), MAX_TRANSLITERATIONS));
-
+        return CompiledRules.HEBREW.expand(removeHebrewTranslitMarkUpForIndexing(stepTransliteration),
+                MAX_TRANSLITERATIONS);
     }
 
     /**
-     * @param baseString           a transliteration without any mark-up
-     * @param transliterationRules the rules to apply
-     * @return all possible transliterations
+     * @param rawForm raw form of the word
+     * @return the transliteration of the word given
      */
-    public static List<TransliterationOption> multiplyTranslitOptions(final String baseString,
-                                                                      final List<TransliterationRule> transliterationRules) {
-        // it is important to remember that we strip out special characters here, so ensure that the rules
-        // below do not conflict with the stripping of the mark-up
-
-        // go letter by letter and apply rules
-        // run a rule, and that gives me, a new set of prefixes, keep on running rules iterating through
-        final StringBuilder base = new StringBuilder();
-
-        final List<TransliterationOption> options = new ArrayList<TransliterationOption>();
-        options.add(new TransliterationOption(0, base));
-
-        final char[] baseChars = baseString.toCharArray();
-        for (int ii = 0; ii < baseChars.length; ii++) {
-            for (final TransliterationRule r : transliterationRules) {
-                r.expand(options, baseChars, ii);
-            }
-
-            // update all options that are still on our current position, to bump them up
-            for (final TransliterationOption leftBehind : options) {
-                if (leftBehind.getNextValidPosition() == ii) {
-                    leftBehind.getOption().append(baseChars[ii]);
-                    leftBehind.setNextValidPosition(ii + 1);
-                }
-            }
+    public static String transliterate(final String rawForm) {
+        if (rawForm == null || rawForm.length() == 0) {
+            return "";
         }
 
-        //trim the empty options off
-        for (Iterator<TransliterationOption> iterator = options.iterator(); iterator.hasNext(); ) {
-            TransliterationOption option = iterator.next();
-            if (option.getOption().length() == 0) {
-                iterator.remove();
-            }
+        String transliteration = TRANSLITERATIONS.get(rawForm);
+        if (transliteration == null) {
+            transliteration = transliterateUncached(rawForm).intern();
+            TRANSLITERATIONS.put(rawForm, transliteration);
         }
-
-        return options;
+        return transliteration;
     }
 
     /**
-     * @param rawForm raw form of the word
+     * @param rawForm raw form of the word, not empty
      * @return the transliteration of the word given
      */
-    public static String transliterate(final String rawForm) {
-        // decompose characters from breathing and accents and store in StringBuilder
-
-        if (rawForm == null || rawForm.length() == 0) {
-            return "";
-        }
-
+    private static String transliterateUncached(final String rawForm) {
         if (HebrewUtils.isHebrewText(rawForm)) {
             return HebrewUtils.transliterateHebrew(rawForm);
         }
 
-        // then assume Greek
+        // then assume Greek, decomposing characters from breathing and accents
         return GreekUtils.transliterateGreek(Normalizer.normalize(rawForm.toLowerCase(Locale.ENGLISH),
                 Form.NFD));
     }
@@ -23,7 +23,8 @@ public class StringToStringRule implements TransliterationRule {
     }
 
     @Override
-    public void expand(final List<TransliterationOption> prefixes, final char[] word, final int position) {
+    public void expand(final List<TransliterationOption> prefixes, final char[] word, final int position,
+            final int maxOptions) {
         // do a string comparison, linearly
         if (!isMatched(word, position)) {
             return;
@@ -31,7 +32,7 @@ public class StringToStringRule implements TransliterationRule {
 
         final int nextPosition = position + this.s.length;
         final int size = prefixes.size();
-        for (int ii = 0; ii < size; ii++) {
+        for (int ii = 0; ii < size && prefixes.size() < maxOptions; ii++) {
             final TransliterationOption translitOption = prefixes.get(ii);
             if (translitOption.getNextValidPosition() != position) {
                 // pass rule doesn't apply to this case
@@ -40,7 +41,7 @@ public class StringToStringRule implements TransliterationRule {
 
             final StringBuilder currentPrefix = translitOption.getOption();
             // add an option to each prefix
-            for (int jj = 0; jj < this.options.length; jj++) {
+            for (int jj = 0; jj < this.options.length && prefixes.size() < maxOptions; jj++) {
                 // re-use the same string builder if it's the last one
                 prefixes.add(new TransliterationOption(nextPosition, new StringBuilder(currentPrefix)
                         .append(this.options[jj])));
@@ -48,6 +49,11 @@ public class StringToStringRule implements TransliterationRule {
         }
     }
 
+    @Override
+    public char getFirstCharacter() {
+        return this.s[0];
+    }
+
     /**
      * @param word the current word
      * @param position the position in the word we're at
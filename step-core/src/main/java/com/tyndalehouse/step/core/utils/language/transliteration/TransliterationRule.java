@@ -12,6 +12,12 @@ public interface TransliterationRule {
      * @param prefixes a list of existing prefixes to append to
      * @param word the word that is being examined
      * @param position our current position
+     * @param maxOptions the size the list of prefixes is not to grow beyond
      */
-    void expand(List<TransliterationOption> prefixes, char[] word, int position);
+    void expand(List<TransliterationOption> prefixes, char[] word, int position, int maxOptions);
+
+    /**
+     * @return the character the rule starts matching on, so that rules can be looked up by character
+     */
+    char getFirstCharacter();
 }
@@ -0,0 +1,97 @@
+package com.tyndalehouse.step.core.utils.language.transliteration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of rules compiled into a table keyed by the character each rule starts on, so that only the rules that can
+ * match are tried at each position of a word. Rules keep their relative order, so that the options come out in the
+ * same order as when every rule is tried in turn.
+ */
+public class TransliterationRules {
+    private static final int ASCII = 128;
+    private static final TransliterationRule[] NO_RULES = new TransliterationRule[0];
+    private final TransliterationRule[][] asciiRules = new TransliterationRule[ASCII][];
+    private final Map<Character, TransliterationRule[]> otherRules = new HashMap<Character, TransliterationRule[]>();
+
+    /**
+     * @param rules the rules, in the order in which they are to be applied
+     */
+    public TransliterationRules(final List<TransliterationRule> rules) {
+        final Map<Character, List<TransliterationRule>> rulesByCharacter = new HashMap<Character, List<TransliterationRule>>();
+        for (final TransliterationRule r : rules) {
+            List<TransliterationRule> sameCharacter = rulesByCharacter.get(r.getFirstCharacter());
+            if (sameCharacter == null) {
+                sameCharacter = new ArrayList<TransliterationRule>(2);
+                rulesByCharacter.put(r.getFirstCharacter(), sameCharacter);
+            }
+            sameCharacter.add(r);
+        }
+
+        for (final Map.Entry<Character, List<TransliterationRule>> entry : rulesByCharacter.entrySet()) {
+            final TransliterationRule[] sameCharacter = entry.getValue().toArray(NO_RULES);
+            final char c = entry.getKey();
+            if (c < ASCII) {
+                this.asciiRules[c] = sameCharacter;
+            } else {
+                this.otherRules.put(c, sameCharacter);
+            }
+        }
+    }
+
+    /**
+     * Expands a word into all its possible transliterations. Options are only ever added to the end of the list, so
+     * stopping once maxOptions have been created gives the same options as trimming the full list afterwards, without
+     * the cost of generating options that would be thrown away.
+     *
+     * @param baseString a transliteration without any mark-up
+     * @param maxOptions the maximum number of options to return
+     * @return the possible transliterations, at most maxOptions of them
+     */
+    public List<TransliterationOption> expand(final String baseString, final int maxOptions) {
+        // it is important to remember that we strip out special characters here, so ensure that the rules
+        // below do not conflict with the stripping of the mark-up
+
+        // go letter by letter and apply rules
+        // run a rule, and that gives me, a new set of prefixes, keep on running rules iterating through
+        final List<TransliterationOption> options = new ArrayList<TransliterationOption>();
+        options.add(new TransliterationOption(0, new StringBuilder(baseString.length())));
+
+        final char[] baseChars = baseString.toCharArray();
+        for (int ii = 0; ii < baseChars.length; ii++) {
+            for (final TransliterationRule r : getRules(baseChars[ii])) {
+                r.expand(options, baseChars, ii, maxOptions);
+            }
+
+            // update all options that are still on our current position, to bump them up
+            for (final TransliterationOption leftBehind : options) {
+                if (leftBehind.getNextValidPosition() == ii) {
+                    leftBehind.getOption().append(baseChars[ii]);
+                    leftBehind.setNextValidPosition(ii + 1);
+                }
+            }
+        }
+
+        //trim the empty options off
+        for (Iterator<TransliterationOption> iterator = options.iterator(); iterator.hasNext(); ) {
+            TransliterationOption option = iterator.next();
+            if (option.getOption().length() == 0) {
+                iterator.remove();
+            }
+        }
+
+        return options;
+    }
+
+    /**
+     * @param c the character at the current position
+     * @return the rules starting with that character
+     */
+    private TransliterationRule[] getRules(final char c) {
+        final TransliterationRule[] rules = c < ASCII ? this.asciiRules[c] : this.otherRules.get(c);
+        return rules == null ? NO_RULES : rules;
+    }
+}
@@ -34,6 +34,9 @@ package com.tyndalehouse.step.core.xsl.impl;
 
 import static com.tyndalehouse.step.core.utils.StringUtils.isBlank;
 
+import java.util.Collection;
+import java.util.Map;
+
 import javax.inject.Inject;
 
 import org.slf4j.Logger;
@@ -83,6 +86,7 @@ public class ColorCoderProviderImpl {
 
     // css classes
     private final EntityIndexReader morphology;
+    private final Map<String, EntityDoc> prefetchedMorphologies;
 
     /**
      * @param manager the manager from which to obtain an index reader for morphology information
@@ -90,6 +94,30 @@ public class ColorCoderProviderImpl {
     @Inject
     public ColorCoderProviderImpl(final EntityManager manager) {
         this.morphology = manager.getReader("morphology");
+        this.prefetchedMorphologies = null;
+    }
+
+    /**
+     * A color coder that answers from morphology that has already been looked up
+     *
+     * @param morphology             the reader used for any code that was not prefetched
+     * @param prefetchedMorphologies the morphology entries, keyed by code
+     */
+    private ColorCoderProviderImpl(final EntityIndexReader morphology,
+                                   final Map<String, EntityDoc> prefetchedMorphologies) {
+        this.morphology = morphology;
+        this.prefetchedMorphologies = prefetchedMorphologies;
+    }
+
+    /**
+     * Looks up all the codes of a passage in one go, so that colour coding the passage does not require an index
+     * lookup per word.
+     *
+     * @param codes the robinson codes found in the passage, without their prefix
+     * @return a color coder to be used for the transformation of that passage only
+     */
+    public ColorCoderProviderImpl prefetch(final Collection<String> codes) {
+        return new ColorCoderProviderImpl(this.morphology, this.morphology.lookupUniqueBySingleField("code", codes));
     }
 
     /**
@@ -115,9 +143,9 @@ public class ColorCoderProviderImpl {
                 code = morph.substring(length);
             }
 
-            final EntityDoc[] results = this.morphology.searchExactTermBySingleField("code", 1, code);
-            if (results.length > 0) {
-                classes = results[0].get("cssClasses");
+            final EntityDoc result = getMorphology(code);
+            if (result != null) {
+                classes = result.get("cssClasses");
             }
 
             if (isBlank(classes) && firstSpace != -1) {
@@ -127,4 +155,17 @@ public class ColorCoderProviderImpl {
         }
         return classes != null ? classes : "";
     }
+
+    /**
+     * @param code the code, without its robinson prefix
+     * @return the morphology entry, or null if there is none
+     */
+    private EntityDoc getMorphology(final String code) {
+        if (this.prefetchedMorphologies != null && this.prefetchedMorphologies.containsKey(code)) {
+            return this.prefetchedMorphologies.get(code);
+        }
+
+        final EntityDoc[] results = this.morphology.searchExactTermBySingleField("code", 1, code);
+        return results.length > 0 ? results[0] : null;
+    }
 }
@@ -272,6 +272,12 @@
         <p />
     </xsl:template>
 
+    <!-- A single result in a page of search results. The marker allows the page to be split back into results -->
+    <xsl:template match="div[@type='x-step-search-result']">
+        <span class="searchResultBoundary"></span>
+        <xsl:apply-templates/>
+    </xsl:template>
+
     <xsl:template match="div">
         <xsl:apply-templates/>
     </xsl:template>
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+
+/**
+ * Tests the compact representation of an entity document
+ */
+public class EntityDocTest {
+
+    /**
+     * Fields are read back as they would be from the document, and serialised straight to an object
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testFieldsAndSerialisation() throws IOException {
+        final Document document = new Document();
+        document.add(new Field("strongNumber", "G0001", Field.Store.YES, Field.Index.NOT_ANALYZED));
+        document.add(new Field("stepGloss", "alpha", Field.Store.YES, Field.Index.NO));
+        document.add(new Field("stepGloss", "first", Field.Store.YES, Field.Index.NO));
+
+        final EntityDoc doc = new EntityDoc(document);
+        assertEquals("G0001", doc.get("strongNumber"));
+        assertEquals("alpha", doc.get("stepGloss"));
+        assertNull(doc.get("translations"));
+        assertEquals("first", doc.getAllFields().get("stepGloss"));
+
+        assertEquals("{\"strongNumber\":\"G0001\",\"stepGloss\":\"first\"}",
+                new ObjectMapper().writeValueAsString(doc));
+    }
+}
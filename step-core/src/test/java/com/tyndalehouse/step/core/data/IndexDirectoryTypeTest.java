@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.data;
+
+import static org.apache.lucene.util.Version.LUCENE_30;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.tyndalehouse.step.core.exceptions.StepInternalException;
+
+/**
+ * Tests that each directory type opens the index in the way it is configured
+ */
+public class IndexDirectoryTypeTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Each type gives the matching directory, and the RAM copy holds the whole index
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testOpen() throws IOException {
+        final File path = this.folder.newFolder("morphology");
+        final Directory fsDirectory = FSDirectory.open(path);
+        final IndexWriter writer = new IndexWriter(fsDirectory, new StandardAnalyzer(LUCENE_30), true,
+                IndexWriter.MaxFieldLength.UNLIMITED);
+        final Document doc = new Document();
+        doc.add(new Field("code", "HNcmpa", Field.Store.YES, Field.Index.NOT_ANALYZED));
+        writer.addDocument(doc);
+        writer.close();
+        fsDirectory.close();
+
+        assertDirectory(MMapDirectory.class, IndexDirectoryType.MMAP.open(path));
+        assertDirectory(NIOFSDirectory.class, IndexDirectoryType.NIO.open(path));
+        assertDirectory(RAMDirectory.class, IndexDirectoryType.RAM.open(path));
+    }
+
+    /**
+     * Configured values are matched regardless of case
+     */
+    @Test
+    public void testFromProperty() {
+        assertEquals(IndexDirectoryType.MMAP, IndexDirectoryType.fromProperty("mmap"));
+        assertEquals(IndexDirectoryType.NIO, IndexDirectoryType.fromProperty(" NIO "));
+        assertEquals(IndexDirectoryType.RAM, IndexDirectoryType.fromProperty("ram"));
+    }
+
+    /**
+     * The replaced app.index.memoryMapped chooses between MMAP and NIO when it is set
+     */
+    @Test
+    public void testFromMemoryMapped() {
+        assertEquals(IndexDirectoryType.MMAP, IndexDirectoryType.fromProperties("ram", "true"));
+        assertEquals(IndexDirectoryType.NIO, IndexDirectoryType.fromProperties("mmap", "false"));
+        assertEquals(IndexDirectoryType.RAM, IndexDirectoryType.fromProperties("ram", null));
+        assertEquals(IndexDirectoryType.RAM, IndexDirectoryType.fromProperties("ram", " "));
+    }
+
+    /**
+     * Unknown values are rejected rather than silently ignored
+     */
+    @Test(expected = StepInternalException.class)
+    public void testUnknownProperty() {
+        IndexDirectoryType.fromProperty("memory");
+    }
+
+    /**
+     * @param expected the expected type of directory
+     * @param directory the directory that was opened
+     * @throws IOException uncaught exception
+     */
+    private void assertDirectory(final Class<? extends Directory> expected, final Directory directory)
+            throws IOException {
+        try {
+            assertTrue(expected.isInstance(directory));
+            final IndexReader reader = IndexReader.open(directory, true);
+            assertEquals(1, reader.numDocs());
+            reader.close();
+        } finally {
+            directory.close();
+        }
+    }
+}
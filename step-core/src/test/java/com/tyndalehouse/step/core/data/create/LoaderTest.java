@@ -57,8 +57,12 @@ import com.tyndalehouse.step.core.data.EntityIndexReader;
 import com.tyndalehouse.step.core.data.EntityManager;
 import com.tyndalehouse.step.core.data.entities.impl.TestEntityManager;
 import com.tyndalehouse.step.core.models.ClientSession;
+import com.tyndalehouse.step.core.service.helpers.AugmentedStrongTable;
+import com.tyndalehouse.step.core.service.helpers.NaveReferenceBitmaps;
 import com.tyndalehouse.step.core.service.helpers.VersionResolver;
 import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
+import com.tyndalehouse.step.core.service.jsword.helpers.ChapterStatsTables;
+import com.tyndalehouse.step.core.service.jsword.helpers.StrongFrequencyTables;
 import com.tyndalehouse.step.core.service.jsword.impl.JSwordPassageServiceImpl;
 import com.tyndalehouse.step.core.utils.TestUtils;
 
@@ -87,7 +91,7 @@ public class LoaderTest {
 
     @Test
     public void testLoaderProgress() {
-        Loader l = new Loader(null, null, new Properties(), null, null, null);
+        Loader l = new Loader(null, null, new Properties(), null, null, null, null, null, null, null);
         assertEquals(0, l.getTotalProgress());
 
         l.setTotalProgress(1);
@@ -242,8 +246,10 @@ public class LoaderTest {
         coreProperties.put(key, file);
         final JSwordVersificationService versificationService = TestUtils.mockVersificationService();
         return new Loader(new JSwordPassageServiceImpl(versificationService, null, null, null,
-                mock(VersionResolver.class), null), null, coreProperties, this.entityManager,
-                this.clientSessionProvider, mock(AppManagerService.class));
+                mock(VersionResolver.class), null, null), null, coreProperties, this.entityManager,
+                this.clientSessionProvider, mock(AppManagerService.class), mock(StrongFrequencyTables.class),
+                mock(AugmentedStrongTable.class), mock(ChapterStatsTables.class),
+                mock(NaveReferenceBitmaps.class));
     }
 
     /**
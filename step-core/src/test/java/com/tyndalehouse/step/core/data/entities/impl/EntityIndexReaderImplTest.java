@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.data.entities.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.lucene.analysis.WhitespaceAnalyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Version;
+import org.junit.Test;
+
+import com.tyndalehouse.step.core.data.EntityConfiguration;
+import com.tyndalehouse.step.core.data.EntityDoc;
+
+/**
+ * Tests that swapping the searcher of an entity leaves running searches on the searcher they started with, and
+ * that batches of values are looked up against the terms of the index
+ */
+public class EntityIndexReaderImplTest {
+
+    /**
+     * The previous searcher is only closed once the last search that was using it has finished
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testSearcherClosesAfterLastSearch() throws IOException {
+        final EntityIndexReaderImpl reader = new EntityIndexReaderImpl(mock(EntityConfiguration.class));
+        final IndexSearcher first = new IndexSearcher(createIndex(), true);
+        final IndexSearcher second = new IndexSearcher(createIndex(), true);
+        reader.setSearcher(first);
+        final long firstGeneration = reader.getGeneration();
+
+        // the swap happens while the search is part way through reading the first searcher
+        final boolean[] openDuringSearch = new boolean[1];
+        final Filter swapDuringSearch = new Filter() {
+            @Override
+            public DocIdSet getDocIdSet(final IndexReader indexReader) {
+                reader.setSearcher(second);
+                openDuringSearch[0] = first.getIndexReader().getRefCount() > 0;
+                return DocIdSet.EMPTY_DOCIDSET;
+            }
+        };
+        final BooleanQuery query = new BooleanQuery();
+        query.add(new MatchAllDocsQuery(), Occur.MUST);
+        reader.search(query, swapDuringSearch, TopFieldCollector.create(Sort.INDEXORDER, 1, false, false, false, false));
+
+        assertTrue(openDuringSearch[0]);
+        assertEquals(0, first.getIndexReader().getRefCount());
+        assertTrue(second.getIndexReader().getRefCount() > 0);
+        assertFalse(firstGeneration == reader.getGeneration());
+
+        reader.close();
+        assertEquals(0, second.getIndexReader().getRefCount());
+    }
+
+    /**
+     * Documents are keyed by the value that was looked up, even where the analyzer indexed a different form of the
+     * value that was stored
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testLookupKeyedByQueriedValue() throws IOException {
+        final Directory directory = new RAMDirectory();
+        final IndexWriter writer = new IndexWriter(directory, new StandardAnalyzer(Version.LUCENE_30), true,
+                IndexWriter.MaxFieldLength.UNLIMITED);
+        final Document doc = new Document();
+        doc.add(new Field("strongNumber", "G0001", Field.Store.YES, Field.Index.ANALYZED));
+        writer.addDocument(doc);
+        writer.close();
+
+        final EntityIndexReaderImpl reader = new EntityIndexReaderImpl(mock(EntityConfiguration.class));
+        reader.setSearcher(new IndexSearcher(directory, true));
+
+        final Map<String, EntityDoc> results = reader.lookupUniqueBySingleField("strongNumber", null,
+                Arrays.asList("g0001", "g0002"));
+        assertEquals(2, results.size());
+        assertEquals("G0001", results.get("g0001").get("strongNumber"));
+        assertTrue(results.containsKey("g0002"));
+        assertNull(results.get("g0002"));
+        assertFalse(results.containsKey("G0001"));
+
+        reader.close();
+    }
+
+    /**
+     * @return a directory holding an index of a single document
+     * @throws IOException uncaught exception
+     */
+    private Directory createIndex() throws IOException {
+        final Directory directory = new RAMDirectory();
+        final IndexWriter writer = new IndexWriter(directory, new WhitespaceAnalyzer(), true,
+                IndexWriter.MaxFieldLength.UNLIMITED);
+        final Document doc = new Document();
+        doc.add(new Field("name", "value", Field.Store.YES, Field.Index.NOT_ANALYZED));
+        writer.addDocument(doc);
+        writer.close();
+        return directory;
+    }
+}
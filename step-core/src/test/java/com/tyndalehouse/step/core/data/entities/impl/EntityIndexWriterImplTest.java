@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.data.entities.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.tyndalehouse.step.core.data.EntityConfiguration;
+import com.tyndalehouse.step.core.data.EntityManager;
+
+/**
+ * Tests the writing of entity indexes
+ */
+public class EntityIndexWriterImplTest {
+    private static final String ENTITY = "alternativeTranslations";
+    private static final int DOCUMENTS = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Documents indexed on the executor's threads end up in the index in the order in which they were saved
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testIndexingOnExecutorKeepsDocumentOrder() throws IOException {
+        final EntityConfiguration config = spy(new TestEntityManager().getConfig(ENTITY));
+        doReturn(this.folder.getRoot().toURI()).when(config).getLocation();
+        doReturn(null).when(config).getPostProcessorInstance();
+        final EntityManager manager = mock(EntityManager.class);
+        when(manager.getConfig(ENTITY)).thenReturn(config);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final EntityIndexWriterImpl writer = new EntityIndexWriterImpl(manager, ENTITY, executor);
+            for (int ii = 0; ii < DOCUMENTS; ii++) {
+                writer.addFieldToCurrentDocument("@Reference", "Gen.1." + ii);
+                writer.save();
+            }
+            assertEquals(DOCUMENTS, writer.close());
+        } finally {
+            executor.shutdown();
+        }
+        verify(manager).refresh(ENTITY);
+
+        final Directory directory = FSDirectory.open(IndexGenerations.getLatest(this.folder.getRoot()));
+        final IndexReader reader = IndexReader.open(directory, true);
+        try {
+            assertEquals(DOCUMENTS, reader.numDocs());
+            for (int ii = 0; ii < DOCUMENTS; ii++) {
+                assertEquals("Gen.1." + ii, reader.document(ii).get("reference"));
+            }
+        } finally {
+            reader.close();
+            directory.close();
+        }
+    }
+}
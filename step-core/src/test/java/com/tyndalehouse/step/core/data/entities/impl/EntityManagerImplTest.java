@@ -0,0 +1,78 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.data.entities.impl;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.tyndalehouse.step.core.data.EntityIndexReader;
+import com.tyndalehouse.step.core.data.EntityRefreshListener;
+
+/**
+ * Tests that the entity manager tells its listeners when an index is swapped for a newer one
+ */
+public class EntityManagerImplTest {
+
+    /**
+     * Listeners hear of refreshes that move onto a new generation, and not of those that keep the current one
+     */
+    @Test
+    public void testRefreshListeners() {
+        final EntityIndexReader reader = mock(EntityIndexReader.class);
+        final Map<String, EntityIndexReader> readers = new HashMap<String, EntityIndexReader>();
+        readers.put("definition", reader);
+        final EntityManagerImpl manager = new EntityManagerImpl("nio", "test/step/entities/", null);
+        manager.setIndexReaders(readers);
+        final EntityRefreshListener listener = mock(EntityRefreshListener.class);
+        manager.addRefreshListener(listener);
+
+        when(reader.getGeneration()).thenReturn(1L, 1L);
+        manager.refresh("definition");
+        verify(listener, never()).entityRefreshed("definition");
+
+        when(reader.getGeneration()).thenReturn(1L, 2L);
+        manager.refresh("definition");
+        verify(listener).entityRefreshed("definition");
+
+        // entities that have not been read yet have nothing to refresh
+        manager.refresh("timeline");
+        verify(listener, never()).entityRefreshed("timeline");
+    }
+}
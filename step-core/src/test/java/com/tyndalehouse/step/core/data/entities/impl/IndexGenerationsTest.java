@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.data.entities.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests that generations of an entity index are only visible once published, and are deleted once retired
+ */
+public class IndexGenerationsTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Readers only ever see complete generations, and old generations are removed once retired
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testGenerations() throws IOException {
+        final File entityRoot = this.folder.newFolder("nave");
+        assertEquals(entityRoot, IndexGenerations.getLatest(entityRoot));
+
+        final File firstPartial = IndexGenerations.createPartial(entityRoot);
+        assertEquals("gen-0.partial", firstPartial.getName());
+        assertEquals(entityRoot, IndexGenerations.getLatest(entityRoot));
+
+        final File first = IndexGenerations.publish(firstPartial);
+        assertEquals(first, IndexGenerations.getLatest(entityRoot));
+
+        final File second = IndexGenerations.publish(IndexGenerations.createPartial(entityRoot));
+        assertEquals("gen-1", second.getName());
+        assertEquals(second, IndexGenerations.getLatest(entityRoot));
+
+        IndexGenerations.deleteRetired(entityRoot, second);
+        assertTrue(second.exists());
+
+        IndexGenerations.deleteRetired(entityRoot, first);
+        assertFalse(first.exists());
+        assertEquals(second, IndexGenerations.getLatest(entityRoot));
+    }
+
+    /**
+     * A build that was abandoned part way through is cleared away by the next one
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testAbandonedPartialIsDiscarded() throws IOException {
+        final File entityRoot = this.folder.newFolder("definition");
+        final File abandoned = IndexGenerations.createPartial(entityRoot);
+
+        final File next = IndexGenerations.createPartial(entityRoot);
+        assertEquals(abandoned.getName(), next.getName());
+        assertTrue(next.exists());
+        assertEquals(1, entityRoot.list().length);
+    }
+}
@@ -96,6 +96,11 @@ public class MockJSwordPassageServiceImpl implements JSwordPassageService {
         return null;
     }
 
+    @Override
+    public List<OsisWrapper> peakOsisTexts(final String version, final List<Key> lookupKeys, final List<LookupOption> options, final String interlinearMode) {
+        return null;
+    }
+
     /**
      * Gets the osis text by verse numbers.
      * 
@@ -2,6 +2,7 @@ package com.tyndalehouse.step.core.data.entities.impl;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import com.google.inject.Binder;
 import com.google.inject.Guice;
@@ -22,7 +23,7 @@ public class TestEntityManager extends EntityManagerImpl {
      * constructs a memory mapped entity manager
      */
     public TestEntityManager() {
-        super(true, "test/step/entities/", Guice.createInjector(new Module() {
+        super("mmap", "test/step/entities/", Guice.createInjector(new Module() {
 
             @Override
             public void configure(final Binder binder) {
@@ -51,4 +52,16 @@ public class TestEntityManager extends EntityManagerImpl {
     public EntityIndexWriterImpl getNewWriter(final String entity) {
         return new TestEntityIndexWriterImpl(this, entity);
     }
+
+    /**
+     * Test indexes are kept in memory, so the executor is not used
+     *
+     * @param entity           the entity name
+     * @param indexingExecutor the executor on which the documents are indexed
+     * @return entity writer
+     */
+    @Override
+    public EntityIndexWriterImpl getNewWriter(final String entity, final ExecutorService indexingExecutor) {
+        return getNewWriter(entity);
+    }
 }
@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.helpers;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tyndalehouse.step.core.data.EntityDoc;
+import com.tyndalehouse.step.core.data.EntityManager;
+import com.tyndalehouse.step.core.data.entities.impl.EntityIndexWriterImpl;
+import com.tyndalehouse.step.core.data.entities.impl.TestEntityManager;
+import com.tyndalehouse.step.core.service.impl.StrongAugmentationServiceImpl;
+import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
+import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
+import com.tyndalehouse.step.core.utils.StringConversionUtils;
+import com.tyndalehouse.step.core.utils.TestUtils;
+
+/**
+ * Tests the augmentation of strong numbers from the table held in memory
+ */
+public class AugmentedStrongTableTest {
+    private EntityManager entityManager;
+    private JSwordVersificationService versificationService;
+    private AugmentedStrongTable table;
+
+    /**
+     * Indexes the same augmented strongs as the loader's sample data
+     */
+    @Before
+    public void setUp() {
+        this.entityManager = new TestEntityManager();
+        final EntityIndexWriterImpl writer = this.entityManager.getNewWriter("augmentedStrongs");
+        addAugmentedStrong(writer, "H0001a", "Gen.1.1 Gen.1.2");
+        addAugmentedStrong(writer, "H0001b", "Gen.1.3 Gen.1.4");
+        addAugmentedStrong(writer, "H0002a", "Gen.1.5");
+        writer.close();
+
+        this.versificationService = TestUtils.mockVersificationService();
+        this.table = new AugmentedStrongTable(this.entityManager, this.versificationService);
+    }
+
+    @Test
+    public void testParseStrongNumber() {
+        assertEquals(430, AugmentedStrongTable.parseStrongNumber("H0430"));
+        assertEquals(430, AugmentedStrongTable.parseStrongNumber("h430"));
+        assertEquals(-1, AugmentedStrongTable.parseStrongNumber("G0430"));
+        assertEquals(-1, AugmentedStrongTable.parseStrongNumber("H0430a"));
+        assertEquals(-1, AugmentedStrongTable.parseStrongNumber("H"));
+    }
+
+    @Test
+    public void testSuffix() {
+        assertEquals('a', this.table.getSuffix(1, getVerses("Gen.1.1")));
+        assertEquals('b', this.table.getSuffix(1, getVerses("Gen.1.4")));
+        assertEquals('a', this.table.getSuffix(2, getVerses("Gen.1.5")));
+
+        // over a range, the first verse in which the strong number is augmented decides
+        assertEquals('a', this.table.getSuffix(1, getVerses("Gen.1.2-Gen.1.3")));
+        assertEquals('b', this.table.getSuffix(1, getVerses("Gen.1.3-Gen.1.5")));
+
+        assertEquals(0, this.table.getSuffix(2, getVerses("Gen.1.1")));
+        assertEquals(0, this.table.getSuffix(3, getVerses("Gen.1.1")));
+        assertEquals(0, this.table.getSuffix(-1, getVerses("Gen.1.1")));
+    }
+
+    /**
+     * Verse by verse, augmenting from the table gives the same strong numbers as the query it replaced
+     */
+    @Test
+    public void testTableMatchesQuery() {
+        final StrongAugmentationServiceImpl augmentation = new StrongAugmentationServiceImpl(this.entityManager,
+                this.versificationService, this.table);
+        final String[] keys = new String[]{"H1", "H0002", "H3", "G16"};
+        for (int verse = 1; verse <= 6; verse++) {
+            final String reference = "Gen.1." + verse;
+            assertEquals(reference, new HashSet<String>(Arrays.asList(augmentByQuery(reference, keys))),
+                    new HashSet<String>(Arrays.asList(augmentation.augment(JSwordPassageService.OT_BOOK,
+                            reference, keys).getStrongList())));
+        }
+    }
+
+    /**
+     * Augments the strong numbers as they were before the table, by querying the index
+     *
+     * @param reference a single verse
+     * @param keys      the strong numbers
+     * @return the augmented strong numbers
+     */
+    private String[] augmentByQuery(final String reference, final String[] keys) {
+        final Map<String, String> augmented = new HashMap<String, String>();
+        final StringBuilder query = new StringBuilder("(");
+        for (final String key : keys) {
+            if (key.charAt(0) == 'H') {
+                query.append(StringConversionUtils.getStrongPaddedKey(key)).append("? ");
+            } else {
+                augmented.put(key, key);
+            }
+        }
+        query.append(") AND (references:").append(reference).append(')');
+
+        final EntityDoc[] docs = this.entityManager.getReader("augmentedStrongs").search("augmentedStrong",
+                query.toString());
+        for (final EntityDoc doc : docs) {
+            final String augmentedStrong = doc.get("augmentedStrong");
+            augmented.put(augmentedStrong.substring(0, augmentedStrong.length() - 1).toLowerCase(), augmentedStrong);
+        }
+
+        final Set<String> result = new HashSet<String>(augmented.values());
+        for (final String key : keys) {
+            if (!augmented.containsKey(StringConversionUtils.getStrongPaddedKey(key).toLowerCase())) {
+                result.add(key);
+            }
+        }
+        return result.toArray(new String[result.size()]);
+    }
+
+    /**
+     * @param reference the verses
+     * @return the verses, in the versification of the augmented strongs
+     */
+    private VerseBitmap getVerses(final String reference) {
+        try {
+            return VerseBitmap.fromKey(PassageKeyFactory.instance().getKey(
+                    this.versificationService.getVersificationForVersion(JSwordPassageService.OT_BOOK), reference));
+        } catch (final NoSuchKeyException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * @param writer          the writer of the augmented strongs index
+     * @param augmentedStrong the augmented strong number
+     * @param references      the verses in which it is used
+     */
+    private static void addAugmentedStrong(final EntityIndexWriterImpl writer, final String augmentedStrong,
+                                           final String references) {
+        writer.addFieldToCurrentDocument("@AugmentedStrong", augmentedStrong);
+        writer.addFieldToCurrentDocument("@References", references);
+        writer.save();
+    }
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.helpers;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.Test;
+
+import com.tyndalehouse.step.core.data.EntityDoc;
+
+/**
+ * Tests the window and passage lookups of the in-memory timeline
+ */
+public class TimelineIndexTest {
+    private final Versification v11n = Versifications.instance().getVersification(Versifications.DEFAULT_V11N);
+    private final TimelineIndex index = new TimelineIndex(new EntityDoc[]{
+            event("flood", 100L, 200L, "Gen.6-Gen.8"),
+            event("call", 300L, null, "Gen.12.1-Gen.12.3"),
+            event("exodus", 500L, 540L, "Exod.12-Exod.14"),
+            event("undated", null, null, "Gen.12.1"),
+            event("wandering", 540L, 1000L, "Num.14"),
+            event("covenant", 250L, null, "Gen.9.8-Gen.9.17 Gen.12.2")
+    }, this.v11n);
+
+    /**
+     * Point events are found within the window, inclusively, and durations when they overlap it
+     */
+    @Test
+    public void testWindows() {
+        assertNames("flood call covenant", this.index.getEventsInWindow(150, 300));
+        assertNames("exodus wandering", this.index.getEventsInWindow(520, 600));
+        assertNames("wandering", this.index.getEventsInWindow(540, 600));
+        assertNames("", this.index.getEventsInWindow(1000, 2000));
+        assertNames("", this.index.getEventsInWindow(0, 99));
+        assertNames("flood call exodus wandering covenant", this.index.getEventsInWindow(0, 2000));
+    }
+
+    /**
+     * Events referring to most verses come first, or come by date, the undated ones last
+     *
+     * @throws NoSuchKeyException uncaught exception
+     */
+    @Test
+    public void testPassages() throws NoSuchKeyException {
+        assertNames("call undated covenant", this.index.getEventsForPassage(
+                PassageKeyFactory.instance().getKey(this.v11n, "Gen.12")));
+        assertNames("covenant call undated", this.index.getEventsForPassageByDate(
+                PassageKeyFactory.instance().getKey(this.v11n, "Gen.12")));
+        assertNames("flood covenant", this.index.getEventsForPassageByDate(
+                PassageKeyFactory.instance().getKey(this.v11n, "Gen.8.1-Gen.9.10")));
+        assertNames("", this.index.getEventsForPassage(
+                PassageKeyFactory.instance().getKey(this.v11n, "Rev.1")));
+    }
+
+    /**
+     * @param expected the names of the expected events, space separated
+     * @param events   the events found
+     */
+    private static void assertNames(final String expected, final EntityDoc[] events) {
+        final StringBuilder names = new StringBuilder();
+        for (final EntityDoc e : events) {
+            if (names.length() > 0) {
+                names.append(' ');
+            }
+            names.append(e.get("name"));
+        }
+        assertEquals(expected, names.toString());
+    }
+
+    /**
+     * @param name       the name of the event
+     * @param from       the start, in minutes
+     * @param to         the end, in minutes, or null for a point in time
+     * @param references the references of the event
+     * @return the event
+     */
+    private static EntityDoc event(final String name, final Long from, final Long to, final String references) {
+        final Document document = new Document();
+        document.add(new Field("name", name, Field.Store.YES, Field.Index.NO));
+        if (from != null) {
+            document.add(new Field("fromDate", from.toString(), Field.Store.YES, Field.Index.NO));
+        }
+        if (to != null) {
+            document.add(new Field("toDate", to.toString(), Field.Store.YES, Field.Index.NO));
+        }
+        document.add(new Field("storedReferences", references, Field.Store.YES, Field.Index.NO));
+        return new EntityDoc(document);
+    }
+}
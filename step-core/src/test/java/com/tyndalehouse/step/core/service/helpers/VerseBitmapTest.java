@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+/**
+ * Tests the intersections and storage of verse bitmaps
+ */
+public class VerseBitmapTest {
+
+    /**
+     * Bitmaps only intersect ordinals that fall within one of their runs
+     */
+    @Test
+    public void testIntersects() {
+        final VerseBitmap bitmap = VerseBitmap.fromBitSet(getOrdinals(10, 20, 40, 45));
+
+        assertTrue(bitmap.intersects(getOrdinals(20, 25)));
+        assertTrue(bitmap.intersects(getOrdinals(30, 40)));
+        assertFalse(bitmap.intersects(getOrdinals(21, 39)));
+        assertFalse(bitmap.intersects(getOrdinals(46, 100)));
+        assertFalse(VerseBitmap.EMPTY.intersects(getOrdinals(0, 100)));
+    }
+
+    /**
+     * Retaining ordinals keeps only the verses in both
+     */
+    @Test
+    public void testAnd() {
+        final VerseBitmap bitmap = VerseBitmap.fromBitSet(getOrdinals(10, 20, 40, 45));
+        final VerseBitmap retained = bitmap.and(getOrdinals(15, 42));
+
+        assertEquals(17, bitmap.getCardinality());
+        assertEquals(9, retained.getCardinality());
+        assertTrue(bitmap.and(getOrdinals(21, 39)).isEmpty());
+    }
+
+    /**
+     * The first of a sorted list of ordinals that falls within one of the runs is found
+     */
+    @Test
+    public void testFirstIn() {
+        final VerseBitmap bitmap = VerseBitmap.fromBitSet(getOrdinals(10, 20, 40, 45));
+
+        assertEquals(1, bitmap.firstIn(new int[]{5, 12, 41}));
+        assertEquals(2, bitmap.firstIn(new int[]{5, 30, 45}));
+        assertEquals(-1, bitmap.firstIn(new int[]{5, 30, 46}));
+        assertEquals(-1, bitmap.firstIn(new int[0]));
+        assertEquals(-1, VerseBitmap.EMPTY.firstIn(new int[]{10}));
+    }
+
+    /**
+     * Bitmaps survive being written and read back
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testStorage() throws IOException {
+        final BitSet ordinals = getOrdinals(1, 1, 3, 7, 9, 9);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        VerseBitmap.fromBitSet(ordinals).write(new DataOutputStream(bytes));
+        final VerseBitmap read = VerseBitmap.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        final BitSet readOrdinals = new BitSet();
+        read.addTo(readOrdinals);
+        assertEquals(ordinals, readOrdinals);
+        assertEquals(7, read.getCardinality());
+    }
+
+    /**
+     * @param runs the first and last ordinal of each run
+     * @return the ordinals
+     */
+    private BitSet getOrdinals(final int... runs) {
+        final BitSet ordinals = new BitSet();
+        for (int ii = 0; ii < runs.length; ii += 2) {
+            ordinals.set(runs[ii], runs[ii + 1] + 1);
+        }
+        return ordinals;
+    }
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.impl;
+
+import static com.tyndalehouse.step.core.utils.ConversionUtils.epochMinutesStringToLocalDateTime;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+import javax.inject.Provider;
+
+import org.joda.time.LocalDateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.tyndalehouse.step.core.data.EntityDoc;
+import com.tyndalehouse.step.core.data.EntityManager;
+import com.tyndalehouse.step.core.data.create.Loader;
+import com.tyndalehouse.step.core.data.entities.aggregations.TimelineEventsAndDate;
+import com.tyndalehouse.step.core.data.entities.impl.TestEntityManager;
+import com.tyndalehouse.step.core.exceptions.TranslatedException;
+import com.tyndalehouse.step.core.models.ClientSession;
+import com.tyndalehouse.step.core.service.AppManagerService;
+import com.tyndalehouse.step.core.service.helpers.AugmentedStrongTable;
+import com.tyndalehouse.step.core.service.helpers.NaveReferenceBitmaps;
+import com.tyndalehouse.step.core.service.helpers.VersionResolver;
+import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
+import com.tyndalehouse.step.core.service.jsword.helpers.ChapterStatsTables;
+import com.tyndalehouse.step.core.service.jsword.helpers.StrongFrequencyTables;
+import com.tyndalehouse.step.core.service.jsword.impl.JSwordPassageServiceImpl;
+import com.tyndalehouse.step.core.utils.TestUtils;
+
+/**
+ * Tests the timeline service against the sample timeline, loaded as it would be on installation
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class TimelineServiceImplTest {
+    private static final String PROMISE_OF_JOHN = "Birth of John the Baptist promised";
+    private static final String YEARS_OF_PLENTY = "Seven years of plenty";
+    @Mock
+    private Provider<ClientSession> clientSessionProvider;
+    private TimelineServiceImpl timelineService;
+
+    /**
+     * loads the sample timeline and sets up the service over it
+     */
+    @Before
+    public void setUp() {
+        final ClientSession session = mock(ClientSession.class);
+        when(this.clientSessionProvider.get()).thenReturn(session);
+        when(session.getLocale()).thenReturn(Locale.ENGLISH);
+
+        final EntityManager entityManager = new TestEntityManager();
+        final JSwordVersificationService versificationService = TestUtils.mockVersificationService();
+        final Properties coreProperties = new Properties();
+        coreProperties.put("test.data.path.timeline.events.directory", "timeline.csv");
+        new Loader(new JSwordPassageServiceImpl(versificationService, null, null, null,
+                mock(VersionResolver.class), null, null), null, coreProperties, entityManager,
+                this.clientSessionProvider, mock(AppManagerService.class), mock(StrongFrequencyTables.class),
+                mock(AugmentedStrongTable.class), mock(ChapterStatsTables.class),
+                mock(NaveReferenceBitmaps.class)).loadTimeline();
+
+        this.timelineService = new TimelineServiceImpl(entityManager, null, versificationService);
+    }
+
+    /**
+     * events are found from any passage overlapping their references, and the date is that of the median event
+     */
+    @Test
+    public void testEventsFromScripture() {
+        final TimelineEventsAndDate eventsAndDate = this.timelineService.getEventsFromScripture("Luke.1");
+        final EntityDoc[] events = eventsAndDate.getEvents();
+
+        assertEquals(asSet(PROMISE_OF_JOHN), getNames(events));
+        assertEquals(epochMinutesStringToLocalDateTime(events[events.length / 2].get("fromDate")),
+                eventsAndDate.getDateTime());
+    }
+
+    /**
+     * a passage without any events gives no events and no date
+     */
+    @Test
+    public void testEventsFromScriptureWithoutEvents() {
+        final TimelineEventsAndDate eventsAndDate = this.timelineService.getEventsFromScripture("Rev.1");
+        assertEquals(0, eventsAndDate.getEvents().length);
+        assertNull(eventsAndDate.getDateTime());
+    }
+
+    /**
+     * a single verse within the references of an event finds the event, and blank references find nothing
+     */
+    @Test
+    public void testLookupEventsMatchingReference() {
+        assertEquals(asSet(YEARS_OF_PLENTY),
+                getNames(this.timelineService.lookupEventsMatchingReference("Gen.41.50")));
+        assertEquals(0, this.timelineService.lookupEventsMatchingReference("Rev.1").length);
+        assertEquals(0, this.timelineService.lookupEventsMatchingReference("").length);
+    }
+
+    /**
+     * a reference that does not exist in the reference book is reported to the user, as callers expect
+     */
+    @Test
+    public void testInvalidReference() {
+        try {
+            this.timelineService.lookupEventsMatchingReference("Xyz 1");
+            fail("An invalid reference should not be looked up");
+        } catch (final TranslatedException e) {
+            assertEquals("invalid_reference_in_book", e.getMessage());
+        }
+    }
+
+    /**
+     * events with a duration are found from a window overlapping them
+     */
+    @Test
+    public void testTimelineEventsInWindow() {
+        final Set<String> names = getNames(this.timelineService.getTimelineEvents(
+                new LocalDateTime(-1570, 1, 1, 0, 0), new LocalDateTime(-1560, 1, 1, 0, 0)));
+        assertTrue(names.contains(YEARS_OF_PLENTY));
+        assertTrue(!names.contains(PROMISE_OF_JOHN));
+    }
+
+    /**
+     * @param events the events
+     * @return the distinct names of the events, since the test index may hold the sample timeline more than once
+     */
+    private Set<String> getNames(final EntityDoc[] events) {
+        final Set<String> names = new HashSet<>();
+        for (final EntityDoc e : events) {
+            names.add(e.get("name"));
+        }
+        return names;
+    }
+
+    /**
+     * @param names the names
+     * @return the names as a set
+     */
+    private Set<String> asSet(final String... names) {
+        final Set<String> set = new HashSet<>();
+        for (final String name : names) {
+            set.add(name);
+        }
+        return set;
+    }
+}
@@ -1,13 +1,35 @@
 package com.tyndalehouse.step.core.service.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.tyndalehouse.step.core.data.EntityDoc;
+import com.tyndalehouse.step.core.data.EntityIndexReader;
+import com.tyndalehouse.step.core.data.EntityRefreshListener;
 import com.tyndalehouse.step.core.service.StrongAugmentationService;
+import com.tyndalehouse.step.core.service.VocabularyService;
 import com.tyndalehouse.step.core.service.jsword.JSwordSearchService;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
+import com.tyndalehouse.step.core.data.entities.impl.EntityIndexWriterImpl;
 import com.tyndalehouse.step.core.data.entities.impl.EntityManagerImpl;
+import com.tyndalehouse.step.core.data.entities.impl.TestEntityManager;
 
 /**
  * Tests {@link VocabularyServiceImpl}
@@ -39,4 +61,84 @@ public class VocabularyServiceImplTest {
 
     }
 
+    /**
+     * Definitions are cached until the definition index is reloaded
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDefinitionCacheClearedOnRefresh() {
+        final EntityManagerImpl manager = mock(EntityManagerImpl.class);
+        final EntityIndexReader definitions = mock(EntityIndexReader.class);
+        when(manager.getReader("definition")).thenReturn(definitions);
+        when(definitions.lookupUniqueBySingleField(eq("strongNumber"), any(FieldSelector.class), anyCollection()))
+                .thenReturn(Collections.singletonMap("G0016", new EntityDoc(new Document())));
+
+        final StrongAugmentationService augmentation = mock(StrongAugmentationService.class);
+        when(augmentation.augment(any(String.class), any(String.class), any(String[].class)))
+                .thenReturn(new StrongAugmentationService.AugmentedStrongs(new String[]{"G0016"}));
+
+        final VocabularyServiceImpl vocab = new VocabularyServiceImpl(manager, augmentation);
+        final ArgumentCaptor<EntityRefreshListener> listener = ArgumentCaptor.forClass(EntityRefreshListener.class);
+        verify(manager).addRefreshListener(listener.capture());
+
+        assertEquals(1, vocab.getLexiconDefinitions("strong:G16", "ESV-THE", "Gen.1.1").length);
+        assertEquals(1, vocab.getLexiconDefinitions("strong:G16", "ESV-THE", "Gen.1.1").length);
+        verify(definitions, times(1)).lookupUniqueBySingleField(eq("strongNumber"), any(FieldSelector.class),
+                anyCollection());
+
+        listener.getValue().entityRefreshed("timeline");
+        vocab.getLexiconDefinitions("strong:G16", "ESV-THE", "Gen.1.1");
+        verify(definitions, times(1)).lookupUniqueBySingleField(eq("strongNumber"), any(FieldSelector.class),
+                anyCollection());
+
+        listener.getValue().entityRefreshed("definition");
+        vocab.getLexiconDefinitions("strong:G16", "ESV-THE", "Gen.1.1");
+        verify(definitions, times(2)).lookupUniqueBySingleField(eq("strongNumber"), any(FieldSelector.class),
+                anyCollection());
+    }
+
+    /**
+     * Definitions prefetched for a passage are found against the vocabulary identifiers of each word, including
+     * those whose strong number is augmented for the reference
+     */
+    @Test
+    public void testPrefetchedDefinitions() {
+        final TestEntityManager manager = new TestEntityManager();
+        final EntityIndexWriterImpl writer = manager.getNewWriter("definition");
+        addDefinition(writer, "H9001a", "first");
+        addDefinition(writer, "G9002", "second");
+        writer.close();
+
+        final StrongAugmentationService augmentation = mock(StrongAugmentationService.class);
+        when(augmentation.augment(eq("ESV-THE"), eq("Gen.1.1"), any(String[].class)))
+                .thenReturn(new StrongAugmentationService.AugmentedStrongs(new String[]{"H9001a", "G9002"}));
+
+        final Map<String, Set<String>> vocabIdentifiersByReference = new HashMap<>();
+        vocabIdentifiersByReference.put("Gen.1.1", new HashSet<>(Arrays.asList("strong:H9001", "strong:G9002")));
+        final VocabularyService prefetched = new VocabularyServiceImpl(manager, augmentation)
+                .prefetch("ESV-THE", vocabIdentifiersByReference);
+
+        final EntityDoc[] augmented = prefetched.getLexiconDefinitions("strong:H9001", "ESV-THE", "Gen.1.1");
+        assertEquals(1, augmented.length);
+        assertEquals("first", augmented[0].get("stepGloss"));
+
+        final EntityDoc[] plain = prefetched.getLexiconDefinitions("strong:G9002", "ESV-THE", "Gen.1.1");
+        assertEquals(1, plain.length);
+        assertEquals("second", plain[0].get("stepGloss"));
+
+        // both words were answered from the prefetched definitions, without augmenting them again
+        verify(augmentation, times(1)).augment(any(String.class), any(String.class), any(String[].class));
+        manager.close();
+    }
+
+    /**
+     * @param writer the writer of the definition index
+     * @param strongNumber the strong number
+     * @param gloss the gloss of the definition
+     */
+    private void addDefinition(final EntityIndexWriterImpl writer, final String strongNumber, final String gloss) {
+        writer.addFieldToCurrentDocument("@StrNo", strongNumber);
+        writer.addFieldToCurrentDocument("@StepGloss", gloss);
+        writer.save();
+    }
 }
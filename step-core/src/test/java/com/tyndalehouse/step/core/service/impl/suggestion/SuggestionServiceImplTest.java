@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.impl.suggestion;
+
+import com.tyndalehouse.step.core.data.common.TermsAndMaxCount;
+import com.tyndalehouse.step.core.models.SearchToken;
+import com.tyndalehouse.step.core.models.SingleSuggestionsSummary;
+import com.tyndalehouse.step.core.models.SuggestionsSummary;
+import com.tyndalehouse.step.core.models.search.PopularSuggestion;
+import com.tyndalehouse.step.core.models.search.TextSuggestion;
+import com.tyndalehouse.step.core.service.helpers.SuggestionContext;
+import org.apache.lucene.search.TopFieldCollector;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests the grouping of the suggestion providers, and running the groups alongside each other
+ */
+public class SuggestionServiceImplTest {
+    private static final int EXACT_TERMS = 3;
+
+    /**
+     * The providers that depend on each other stay in one group, in the order in which they were declared
+     */
+    @Test
+    public void testGroupProviders() {
+        final List<List<String>> groups = createService(1, 0, null).groupProviders();
+
+        assertEquals(5, groups.size());
+        assertTrue(groups.contains(Arrays.asList(SearchToken.GREEK_MEANINGS, SearchToken.HEBREW_MEANINGS,
+                SearchToken.GREEK, SearchToken.HEBREW)));
+        assertTrue(groups.contains(Arrays.asList(SearchToken.REFERENCE)));
+        assertTrue(groups.contains(Arrays.asList(SearchToken.MEANINGS)));
+        assertTrue(groups.contains(Arrays.asList(SearchToken.SUBJECT_SEARCH)));
+        assertTrue(groups.contains(Arrays.asList(SearchToken.TEXT_SEARCH)));
+    }
+
+    /**
+     * Running the groups on several threads gives the same suggestions as running the providers one after the other
+     */
+    @Test
+    public void testConcurrentSuggestionsMatchSequential() {
+        final SuggestionServiceImpl sequential = createService(1, 0, null);
+        final SuggestionServiceImpl concurrent = createService(4, 0, null);
+        try {
+            final SuggestionsSummary expected = sequential.getTopSuggestions(getContext());
+            final SuggestionsSummary actual = concurrent.getTopSuggestions(getContext());
+
+            assertEquals(8, expected.getSuggestionsSummaries().size());
+            assertEquals(describe(expected), describe(actual));
+            assertFalse(expected.isPartial());
+            assertFalse(actual.isPartial());
+        } finally {
+            concurrent.close();
+        }
+    }
+
+    /**
+     * A group that has not finished by the deadline is left out, and the summary is marked as partial so that it is
+     * not cached
+     */
+    @Test
+    public void testDeadlineExpiry() {
+        final CountDownLatch release = new CountDownLatch(1);
+        final SuggestionServiceImpl service = createService(4, 200, release);
+        try {
+            final SuggestionsSummary summary = service.getTopSuggestions(getContext());
+
+            assertTrue(summary.isPartial());
+            final List<String> searchTypes = new ArrayList<String>();
+            for (final SingleSuggestionsSummary s : summary.getSuggestionsSummaries()) {
+                searchTypes.add(s.getSearchType());
+            }
+            assertEquals(Arrays.asList(SearchToken.REFERENCE, SearchToken.GREEK_MEANINGS,
+                    SearchToken.HEBREW_MEANINGS, SearchToken.GREEK, SearchToken.HEBREW, SearchToken.MEANINGS,
+                    SearchToken.SUBJECT_SEARCH), searchTypes);
+        } finally {
+            release.countDown();
+            service.close();
+        }
+    }
+
+    /**
+     * @param threads  the number of suggestion threads
+     * @param deadline the deadline, in ms
+     * @param textSearchRelease if not null, the text search provider waits for this before returning anything
+     * @return the service, backed by providers that each return a few suggestions
+     */
+    private SuggestionServiceImpl createService(final int threads, final long deadline,
+                                                final CountDownLatch textSearchRelease) {
+        return new SuggestionServiceImpl(
+                mock(HebrewAncientMeaningServiceImpl.class, new ProviderAnswer(SearchToken.HEBREW_MEANINGS, null)),
+                mock(GreekAncientMeaningServiceImpl.class, new ProviderAnswer(SearchToken.GREEK_MEANINGS, null)),
+                mock(HebrewAncientLanguageServiceImpl.class, new ProviderAnswer(SearchToken.HEBREW, null)),
+                mock(GreekAncientLanguageServiceImpl.class, new ProviderAnswer(SearchToken.GREEK, null)),
+                mock(MeaningSuggestionServiceImpl.class, new ProviderAnswer(SearchToken.MEANINGS, null)),
+                mock(SubjectSuggestionServiceImpl.class, new ProviderAnswer(SearchToken.SUBJECT_SEARCH, null)),
+                mock(ReferenceSuggestionServiceImpl.class, new ProviderAnswer(SearchToken.REFERENCE, null)),
+                mock(TextSuggestionServiceImpl.class,
+                        new ProviderAnswer(SearchToken.TEXT_SEARCH, textSearchRelease)),
+                threads, deadline);
+    }
+
+    private SuggestionContext getContext() {
+        final SuggestionContext context = new SuggestionContext();
+        context.setInput("lov");
+        return context;
+    }
+
+    /**
+     * @param summary the suggestions
+     * @return the suggestions of each provider, and their examples, as text
+     */
+    private List<String> describe(final SuggestionsSummary summary) {
+        final List<String> described = new ArrayList<String>();
+        for (final SingleSuggestionsSummary s : summary.getSuggestionsSummaries()) {
+            described.add(s.getSearchType() + ": " + describe(s.getPopularSuggestions())
+                    + " / " + describe(s.getExtraExamples()));
+        }
+        return described;
+    }
+
+    private List<String> describe(final List<? extends PopularSuggestion> suggestions) {
+        final List<String> described = new ArrayList<String>();
+        for (final PopularSuggestion p : suggestions) {
+            described.add(((TextSuggestion) p).getText());
+        }
+        return described;
+    }
+
+    /**
+     * Answers for a provider, whatever the types it works with: exact terms are returned up to the maximum asked for,
+     * so that a provider returns fewer when those it depends on have already filled the group.
+     */
+    private static final class ProviderAnswer implements Answer<Object> {
+        private final String searchType;
+        private final CountDownLatch release;
+
+        private ProviderAnswer(final String searchType, final CountDownLatch release) {
+            this.searchType = searchType;
+            this.release = release;
+        }
+
+        @Override
+        public Object answer(final InvocationOnMock invocation) throws Throwable {
+            final String method = invocation.getMethod().getName();
+            final Class<?> returnType = invocation.getMethod().getReturnType();
+            final Object[] args = invocation.getArguments();
+            if ("getExactTerms".equals(method)) {
+                if (this.release != null) {
+                    this.release.await();
+                }
+                return Array.newInstance(returnType.getComponentType(), Math.min((Integer) args[1], EXACT_TERMS));
+            } else if ("collectNonExactMatches".equals(method)) {
+                return Array.newInstance(returnType.getComponentType(), 0);
+            } else if ("getNewCollector".equals(method)) {
+                return returnType.isAssignableFrom(TermsAndMaxCount.class)
+                        ? new TermsAndMaxCount<Object>() : mock(TopFieldCollector.class);
+            } else if ("convertToSuggestions".equals(method)) {
+                final int docs = args[0] == null ? 0 : ((Object[]) args[0]).length;
+                final List<TextSuggestion> suggestions = new ArrayList<TextSuggestion>(docs);
+                for (int ii = 0; ii < docs; ii++) {
+                    final TextSuggestion suggestion = new TextSuggestion();
+                    suggestion.setText(this.searchType + ii);
+                    suggestions.add(suggestion);
+                }
+                return suggestions;
+            }
+            return null;
+        }
+    }
+}
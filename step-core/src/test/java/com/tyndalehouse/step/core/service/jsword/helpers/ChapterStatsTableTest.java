@@ -0,0 +1,126 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.jsword.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.crosswire.jsword.versification.BibleBook;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
+import org.junit.Test;
+
+import com.tyndalehouse.step.core.models.stats.PassageStat;
+
+/**
+ * Tests the sums and storage of the counts of each chapter
+ */
+public class ChapterStatsTableTest {
+    private static final ChapterStatsTable.WordFilter ALL_WORDS = new ChapterStatsTable.WordFilter() {
+        @Override
+        public boolean accept(final String word) {
+            return true;
+        }
+    };
+
+    /**
+     * Chapters are summed within and across books, and survive being written and read back
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testSumsAndStorage() throws IOException {
+        final Versification v11n = Versifications.instance().getVersification(Versifications.DEFAULT_V11N);
+        final Map<String, Integer> wordNumbers = new HashMap<String, Integer>();
+        final Map<String, int[][]> chaptersByBook = new HashMap<String, int[][]>();
+        chaptersByBook.put(BibleBook.MAL.getOSIS(), new int[][]{
+                new int[0], new int[0], new int[0], chapter(wordNumbers, "LORD", 2, "day", 1),
+                chapter(wordNumbers, "day", 3)});
+        chaptersByBook.put(BibleBook.MATT.getOSIS(), new int[][]{
+                new int[0], chapter(wordNumbers, "Jesus", 4, "LORD", 1)});
+
+        final String[] words = new String[wordNumbers.size()];
+        for (final Map.Entry<String, Integer> word : wordNumbers.entrySet()) {
+            words[word.getValue()] = word.getKey();
+        }
+        final ChapterStatsTable table = new ChapterStatsTable("1.2", words, chaptersByBook);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        table.write(new DataOutputStream(bytes));
+        final ChapterStatsTable read = ChapterStatsTable.read(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        for (final ChapterStatsTable t : new ChapterStatsTable[]{table, read}) {
+            assertEquals("1.2", t.getSourceVersion());
+
+            final Map<String, Integer> mal = t.getStats(v11n, BibleBook.MAL, 1, BibleBook.MAL, 4, ALL_WORDS)
+                    .getStats();
+            assertEquals(2, mal.size());
+            assertEquals(Integer.valueOf(2), mal.get("LORD"));
+            assertEquals(Integer.valueOf(4), mal.get("day"));
+
+            final PassageStat across = t.getStats(v11n, BibleBook.MAL, 4, BibleBook.MATT, 1,
+                    new ChapterStatsTable.WordFilter() {
+                        @Override
+                        public boolean accept(final String word) {
+                            return !"day".equals(word);
+                        }
+                    });
+            assertEquals(Integer.valueOf(1), across.getStats().get("LORD"));
+            assertEquals(Integer.valueOf(4), across.getStats().get("Jesus"));
+            assertNull(across.getStats().get("day"));
+        }
+    }
+
+    /**
+     * @param wordNumbers the numbers given to the words
+     * @param wordCounts  alternating words and counts
+     * @return the (word, count) pairs of the chapter
+     */
+    private int[] chapter(final Map<String, Integer> wordNumbers, final Object... wordCounts) {
+        final Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+        for (int ii = 0; ii < wordCounts.length; ii += 2) {
+            counts.put((String) wordCounts[ii], (Integer) wordCounts[ii + 1]);
+        }
+        return ChapterStatsTable.compress(counts, wordNumbers);
+    }
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.jsword.helpers;
+
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.BookData;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.tyndalehouse.step.core.service.StrongAugmentationService;
+import com.tyndalehouse.step.core.service.StrongAugmentationService.AugmentedStrongs;
+import com.tyndalehouse.step.core.service.jsword.JSwordPassageService;
+import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
+import com.tyndalehouse.step.core.utils.TestUtils;
+
+/**
+ * Tests the building of the tables of counts of each chapter
+ */
+public class ChapterStatsTablesTest {
+    /**
+     * Each strong number is augmented against its own verse, so a strong number with a different suffix in each verse
+     * is counted under both suffixes, where counting the range from the text would augment it once for the range
+     *
+     * @throws Exception uncaught exception
+     */
+    @Test
+    public void testStrongsAugmentedByVerse() throws Exception {
+        final StrongAugmentationService augmentation = mock(StrongAugmentationService.class);
+        when(augmentation.augment(anyString(), anyString(), anyString())).thenAnswer(new Answer<AugmentedStrongs>() {
+            @Override
+            public AugmentedStrongs answer(final InvocationOnMock invocation) {
+                // suffix 'a' in the first verse, 'b' in the second
+                final String verse = (String) invocation.getArguments()[1];
+                final char suffix = (char) ('a' + verse.charAt(verse.length() - 1) - '1');
+                return new AugmentedStrongs(new String[]{invocation.getArguments()[2] + Character.toString(suffix)});
+            }
+        });
+
+        final JSwordVersificationService versificationService = TestUtils.mockVersificationService();
+        final ChapterStatsTables tables = new ChapterStatsTables(versificationService, augmentation, "step/entities/");
+        final Book book = versificationService.getBookFromVersion(JSwordPassageService.REFERENCE_BOOK);
+        final Map<String, Integer> counts = new HashMap<String, Integer>();
+        tables.countStrongs(book.getInitials(), new BookData(book, book.getKey("Gen.1.1-Gen.1.2")), counts);
+
+        verify(augmentation, never()).augment(eq(book.getInitials()), eq("Gen.1.1-Gen.1.2"), anyString());
+        final Set<String> firstVerse = new HashSet<String>();
+        final Set<String> secondVerse = new HashSet<String>();
+        for (final String strong : counts.keySet()) {
+            final String unaugmented = strong.substring(0, strong.length() - 1);
+            (Character.toLowerCase(strong.charAt(strong.length() - 1)) == 'a' ? firstVerse : secondVerse).add(unaugmented);
+        }
+        assertFalse(firstVerse.isEmpty());
+        firstVerse.retainAll(secondVerse);
+        assertFalse("God is in both verses, so is counted with both suffixes", firstVerse.isEmpty());
+    }
+}
@@ -0,0 +1,93 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.jsword.helpers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests the lookups and storage of strong number counts
+ */
+public class StrongCountTableTest {
+
+    /**
+     * Only books with occurrences are kept
+     */
+    @Test
+    public void testCompress() {
+        assertArrayEquals(new int[]{7, 0, 3, 2, 4}, StrongCountTable.compress(new int[]{3, 0, 4}));
+        assertArrayEquals(new int[]{0}, StrongCountTable.compress(new int[]{0, 0, 0}));
+    }
+
+    /**
+     * Counts are looked up by book and for the whole Bible, and survive being written and read back
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testLookupsAndStorage() throws IOException {
+        final Map<String, int[]> counts = new HashMap<String, int[]>();
+        counts.put("H0430", StrongCountTable.compress(new int[]{32, 0, 11}));
+        counts.put("H0430a", StrongCountTable.compress(new int[]{2, 0, 0}));
+        final StrongCountTable table = new StrongCountTable(42L, new String[]{"Gen", "Exod", "Lev"}, counts);
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        table.write(new DataOutputStream(bytes));
+        final StrongCountTable read = StrongCountTable.read(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        for (final StrongCountTable t : new StrongCountTable[]{table, read}) {
+            assertEquals(42L, t.getIndexVersion());
+            assertTrue(t.contains("H0430a"));
+            assertFalse(t.contains("H0430b"));
+            assertEquals(43, t.getBibleCount("H0430"));
+            assertEquals(11, t.getBookCount("H0430", "Lev"));
+            assertEquals(0, t.getBookCount("H0430", "Exod"));
+            assertEquals(2, t.getBookCount("H0430a", "Gen"));
+            assertEquals(0, t.getBookCount("H0430", "Matt"));
+            assertEquals(0, t.getBibleCount("G2316"));
+        }
+    }
+}
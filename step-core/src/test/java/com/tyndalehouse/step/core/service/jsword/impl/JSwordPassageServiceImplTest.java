@@ -37,12 +37,14 @@ import com.tyndalehouse.step.core.models.InterlinearMode;
 import com.tyndalehouse.step.core.models.LookupOption;
 import com.tyndalehouse.step.core.models.OsisWrapper;
 import com.tyndalehouse.step.core.service.VocabularyService;
+import com.tyndalehouse.step.core.utils.StringUtils;
 import com.tyndalehouse.step.core.utils.TestUtils;
 import com.tyndalehouse.step.core.xsl.impl.ColorCoderProviderImpl;
 import org.crosswire.jsword.book.Book;
 import org.crosswire.jsword.book.BookData;
 import org.crosswire.jsword.book.BookException;
 import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.OSISUtil;
 import org.crosswire.jsword.passage.*;
 import org.crosswire.jsword.versification.BibleBook;
 import org.crosswire.jsword.versification.Versification;
@@ -50,6 +52,7 @@ import org.crosswire.jsword.versification.system.Versifications;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.JDOMException;
+import org.jdom2.filter.ElementFilter;
 import org.jdom2.input.SAXBuilder;
 import org.jdom2.output.Format;
 import org.jdom2.output.XMLOutputter;
@@ -65,7 +68,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyCollectionOf;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 /**
  * a service providing a wrapper around JSword
@@ -81,8 +86,10 @@ public class JSwordPassageServiceImplTest {
      */
     @Before
     public void setUp() {
+        final ColorCoderProviderImpl colorCoder = mock(ColorCoderProviderImpl.class);
+        when(colorCoder.prefetch(anyCollectionOf(String.class))).thenReturn(colorCoder);
         this.jsi = new JSwordPassageServiceImpl(TestUtils.mockVersificationService(), null, mock(VocabularyService.class),
-                mock(ColorCoderProviderImpl.class), TestUtils.mockVersionResolver(), null);
+                colorCoder, TestUtils.mockVersionResolver(), null, new XslTemplatesCache(false));
     }
 
     /**
@@ -127,6 +134,60 @@ public class JSwordPassageServiceImplTest {
         assertTrue(osisText.getValue().contains("In the beginning"));
     }
 
+    /**
+     * A batch of passages is split back into one document per passage, each with the batch's container
+     */
+    @Test
+    public void testSplitSearchResults() {
+        final String[] passages = this.jsi.splitSearchResults("<div class=\"passageContentHolder\">"
+                + "<span class=\"searchResultBoundary\"/>first"
+                + "<span class=\"searchResultBoundary\"></span>second</div>", 2);
+
+        assertEquals(2, passages.length);
+        assertEquals("<div class=\"passageContentHolder\">first</div>", passages[0]);
+        assertEquals("<div class=\"passageContentHolder\">second</div>", passages[1]);
+        assertNull(this.jsi.splitSearchResults("<div>first</div>", 2));
+    }
+
+    /**
+     * Passages read in one batch come out with the same headings and text as when each is read on its own
+     *
+     * @throws NoSuchKeyException uncaught exceptions
+     * @throws BookException      uncaught exceptions
+     */
+    @Test
+    public void testSearchResultDivsKeepHeadings() throws NoSuchKeyException, BookException {
+        final Book book = Books.installed().getBook("ESV-THE");
+        final String[] references = new String[]{"Gen.1.1-2", "John.3.1-2", "John.3.16", "John.3.16-17"};
+        final List<Key> keys = new ArrayList<Key>();
+        for (final String reference : references) {
+            keys.add(book.getKey(reference));
+        }
+        final Key allKeys = book.getKey(StringUtils.join(references, ';'));
+
+        final List<Element> divs = this.jsi.createSearchResultDivs(new BookData(book, allKeys).getOsisFragment(), keys);
+        assertEquals(keys.size(), divs.size());
+        for (int ii = 0; ii < keys.size(); ii++) {
+            final Element single = new BookData(book, keys.get(ii)).getOsisFragment();
+            assertEquals(references[ii], getHeadingsAndText(single), getHeadingsAndText(divs.get(ii)));
+        }
+        assertTrue(getHeadingsAndText(divs.get(0)).contains("In the beginning"));
+    }
+
+    /**
+     * @param fragment the osis fragment
+     * @return the headings, other than the generated ones, followed by the canonical text
+     */
+    private String getHeadingsAndText(final Element fragment) {
+        final StringBuilder headingsAndText = new StringBuilder();
+        for (final Element title : fragment.getDescendants(new ElementFilter(OSISUtil.OSIS_ELEMENT_TITLE))) {
+            if (!"x-gen".equals(title.getAttributeValue(OSISUtil.OSIS_ATTR_TYPE))) {
+                headingsAndText.append(title.getValue()).append('|');
+            }
+        }
+        return headingsAndText.append(OSISUtil.getCanonicalText(fragment)).toString();
+    }
+
     @Test
     public void readRev12FromNrsvEsv() {
         this.jsi.getOsisText("ESV-THE", "Rev.12.17-18");
@@ -1,5 +1,6 @@
 package com.tyndalehouse.step.core.service.jsword.impl;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
@@ -7,12 +8,21 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 import com.tyndalehouse.step.core.models.AvailableFeatures;
 import com.tyndalehouse.step.core.models.InterlinearMode;
 import com.tyndalehouse.step.core.service.PassageOptionsValidationService;
 import org.junit.Before;
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.index.IndexStatus;
+import org.crosswire.jsword.index.search.SearchRequest;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.VerseKey;
+import org.crosswire.jsword.versification.system.Versifications;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,7 +53,8 @@ public class JSwordSearchServiceImplTest {
         when(mockOptionsService.getAvailableFeaturesForVersion(any(String.class), any(List.class), any(String.class), any(InterlinearMode.class)))
                 .thenReturn(new AvailableFeatures());
         this.search = new JSwordSearchServiceImpl(mockVersificationService, null, new JSwordPassageServiceImpl(
-                mockVersificationService, null, null, null, TestUtils.mockVersionResolver(), mockOptionsService));
+                mockVersificationService, null, null, null, TestUtils.mockVersionResolver(), mockOptionsService,
+                new XslTemplatesCache(false)));
     }
 
     /**
@@ -54,6 +65,15 @@ public class JSwordSearchServiceImplTest {
         assertTrue(this.search.estimateSearchResults(new SearchQuery("John", new String[] {"ESV-THE"}, "false", 0, 0, 0, null)) > 100);
     }
 
+    /**
+     * tests that estimations stop counting once they pass the cap
+     */
+    @Test
+    public void testEstimationStopsAtCap() {
+        assertEquals(11, this.search.estimateSearchResults(
+                new SearchQuery("John", new String[] {"ESV-THE"}, "false", 0, 0, 0, null), 10));
+    }
+
     /**
      * Random tests
      */
@@ -94,6 +114,45 @@ public class JSwordSearchServiceImplTest {
         assertFalse(results.isEmpty());
     }
 
+    /**
+     * when no version returns in time, the search gives no results rather than no key, and is marked partial
+     *
+     * @throws Exception uncaught exception
+     */
+    @Test
+    public void testAllVersionsTimingOut() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final JSwordVersificationService versificationService = mock(JSwordVersificationService.class);
+        for (final String version : new String[] {"A", "B"}) {
+            final Book bible = mock(Book.class);
+            when(bible.getInitials()).thenReturn(version);
+            when(bible.getIndexStatus()).thenReturn(IndexStatus.DONE);
+            when(bible.find(any(SearchRequest.class))).thenAnswer(new Answer<Key>() {
+                @Override
+                public Key answer(final InvocationOnMock invocation) throws InterruptedException {
+                    release.await();
+                    return null;
+                }
+            });
+            when(versificationService.getBookFromVersion(version)).thenReturn(bible);
+            when(versificationService.getVersificationForVersion(bible)).thenReturn(
+                    Versifications.instance().getVersification("KJV"));
+        }
+
+        final JSwordSearchServiceImpl timingOut = new JSwordSearchServiceImpl(versificationService, null, null, 2, 50);
+        try {
+            final SearchQuery sq = new SearchQuery("John", new String[] {"A", "B"}, "false", 0, 1, 10, null);
+            final Key results = timingOut.searchKeys(sq);
+
+            assertEquals(0, results.getCardinality());
+            assertEquals("KJV", ((VerseKey) results).getVersification().getName());
+            assertTrue(sq.isPartial());
+        } finally {
+            release.countDown();
+            timingOut.close();
+        }
+    }
+
     // @Test
     // public void testRebuildIndex() {
     // final IndexManager indexManager = IndexManagerFactory.getIndexManager();
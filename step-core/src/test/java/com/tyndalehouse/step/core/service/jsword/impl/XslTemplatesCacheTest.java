@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.service.jsword.impl;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import javax.xml.transform.Result;
+import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+
+import org.crosswire.common.xml.JDOMSAXEventProvider;
+import org.crosswire.common.xml.SAXEventProvider;
+import org.jdom2.JDOMException;
+import org.jdom2.input.SAXBuilder;
+import org.junit.Test;
+
+import com.tyndalehouse.step.core.xsl.XslConversionType;
+
+/**
+ * Tests that each stylesheet renders through the cache, whether compiled to a translet or interpreted, and that a
+ * translet failing at run time is replaced by the interpreted stylesheet
+ */
+public class XslTemplatesCacheTest {
+    private static final String PASSAGE = "<osis><osisText><div><title>The Creation</title>"
+            + "<verse osisID=\"Gen.1.1\">In the beginning</verse></div></osisText></osis>";
+
+    /**
+     * every conversion type renders with the interpreting processor
+     *
+     * @throws Exception uncaught exception
+     */
+    @Test
+    public void testInterpretedConversions() throws Exception {
+        assertRendersEachConversion(new XslTemplatesCache(false));
+    }
+
+    /**
+     * every conversion type renders with XSLTC
+     *
+     * @throws Exception uncaught exception
+     */
+    @Test
+    public void testCompiledConversions() throws Exception {
+        assertRendersEachConversion(new XslTemplatesCache(true));
+    }
+
+    /**
+     * a translet failing while running is run again by the interpreting processor, which is kept from then on
+     *
+     * @throws Exception uncaught exception
+     */
+    @Test
+    public void testTransletFailingAtRunTimeIsInterpreted() throws Exception {
+        final Transformer failingTransformer = mock(Transformer.class);
+        doThrow(new TransformerException("extension function failed")).when(failingTransformer).transform(
+                any(Source.class), any(Result.class));
+        final Templates failing = mock(Templates.class);
+        when(failing.newTransformer()).thenReturn(failingTransformer);
+
+        final XslTemplatesCache cache = spy(new XslTemplatesCache(true));
+        doReturn(failing).when(cache).getTemplates(XslConversionType.DEFAULT);
+
+        final String html = new TemplatesSAXEventProvider(cache, XslConversionType.DEFAULT, getPassage())
+                .transformToString();
+        assertTrue(html, html.contains("In the beginning"));
+
+        final Templates interpreted = cache.interpretInstead(XslConversionType.DEFAULT, failing);
+        assertNotNull(interpreted);
+        assertNull(cache.interpretInstead(XslConversionType.DEFAULT, interpreted));
+    }
+
+    /**
+     * a stylesheet that fails when already interpreted has nothing to fall back to
+     */
+    @Test
+    public void testNoFallbackWhenInterpreting() {
+        final XslTemplatesCache cache = new XslTemplatesCache(false);
+        assertNull(cache.interpretInstead(XslConversionType.DEFAULT,
+                cache.getTemplates(XslConversionType.DEFAULT)));
+    }
+
+    /**
+     * @param cache the cache of stylesheets
+     * @throws Exception uncaught exception
+     */
+    private void assertRendersEachConversion(final XslTemplatesCache cache) throws Exception {
+        for (final XslConversionType type : XslConversionType.values()) {
+            final String html = new TemplatesSAXEventProvider(cache, type, getPassage()).transformToString();
+            assertTrue(type.name(), html.length() > 0);
+            if (type == XslConversionType.DEFAULT) {
+                assertTrue(html, html.contains("In the beginning"));
+            }
+        }
+    }
+
+    /**
+     * @return a short passage, as given to the stylesheets by JSword
+     * @throws JDOMException the passage is not well-formed
+     * @throws IOException   the passage could not be read
+     */
+    private SAXEventProvider getPassage() throws JDOMException, IOException {
+        return new JDOMSAXEventProvider(new SAXBuilder().build(new StringReader(PASSAGE)));
+    }
+}
@@ -2,36 +2,66 @@ package com.tyndalehouse.step.core.service.search.impl;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.tyndalehouse.step.core.models.AvailableFeatures;
 import com.tyndalehouse.step.core.models.InterlinearMode;
 import com.tyndalehouse.step.core.models.LookupOption;
 import com.tyndalehouse.step.core.service.PassageOptionsValidationService;
+import com.tyndalehouse.step.core.service.StrongAugmentationService;
+import com.tyndalehouse.step.core.service.impl.IndividualSearch;
 import com.tyndalehouse.step.core.service.impl.LexiconDefinitionServiceImpl;
 import com.tyndalehouse.step.core.service.impl.SearchQuery;
 import com.tyndalehouse.step.core.service.impl.TimelineServiceImpl;
 import com.tyndalehouse.step.core.service.jsword.JSwordMetadataService;
 import com.tyndalehouse.step.core.service.jsword.JSwordModuleService;
+import com.tyndalehouse.step.core.service.jsword.JSwordSearchService;
+import com.tyndalehouse.step.core.service.search.SubjectSearchService;
+import org.crosswire.jsword.passage.Key;
+import org.crosswire.jsword.passage.NoSuchKeyException;
+import org.crosswire.jsword.passage.NoSuchVerseException;
+import org.crosswire.jsword.passage.Passage;
+import org.crosswire.jsword.passage.PassageKeyFactory;
+import org.crosswire.jsword.passage.VerseFactory;
+import org.crosswire.jsword.versification.Versification;
+import org.crosswire.jsword.versification.system.Versifications;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.tyndalehouse.step.core.data.entities.impl.TestEntityManager;
+import com.tyndalehouse.step.core.exceptions.TranslatedException;
 import com.tyndalehouse.step.core.models.search.SearchEntry;
 import com.tyndalehouse.step.core.models.search.SearchResult;
 import com.tyndalehouse.step.core.models.search.SubjectHeadingSearchEntry;
 import com.tyndalehouse.step.core.models.search.TimelineEventSearchEntry;
 import com.tyndalehouse.step.core.models.search.VerseSearchEntry;
+import com.tyndalehouse.step.core.service.impl.SearchType;
+import com.tyndalehouse.step.core.service.helpers.NaveReferenceBitmaps;
 import com.tyndalehouse.step.core.service.helpers.VersionResolver;
 import com.tyndalehouse.step.core.service.jsword.JSwordVersificationService;
+import com.tyndalehouse.step.core.service.jsword.helpers.ResultCursor;
 import com.tyndalehouse.step.core.service.jsword.impl.JSwordPassageServiceImpl;
+import com.tyndalehouse.step.core.service.jsword.impl.XslTemplatesCache;
 import com.tyndalehouse.step.core.service.jsword.impl.JSwordSearchServiceImpl;
 import com.tyndalehouse.step.core.utils.TestUtils;
 
@@ -44,6 +74,7 @@ public class SearchServiceImplTest {
     private static final Logger LOGGER = LoggerFactory.getLogger(SearchServiceImplTest.class);
     private TestEntityManager entityManager;
     private SubjectSearchServiceImpl subjects;
+    private NaveReferenceBitmaps naveReferenceBitmaps;
     private SearchServiceImpl searchServiceUnderTest;
 
     @Before
@@ -81,28 +112,217 @@ public class SearchServiceImplTest {
     }
 
     @Test
-    public void testLuceneScope() {
-        System.out.println(this.subjects.getLuceneScopeFragment(new String[]{"OSMHB"}));
-        System.out.println(this.subjects.getLuceneScopeFragment(new String[]{"OSMHB", "ESV-THE"}));
-        final String luceneScopeFragment = this.subjects.getLuceneScopeFragment(new String[]{"OSMHB"});
+    public void testScopeOrdinals() {
+        final BitSet scope = this.subjects.getScopeOrdinals(new String[]{"OSMHB"});
 
-        assertTrue(luceneScopeFragment.contains("expandedReferences:Lev.*"));
-        assertTrue(luceneScopeFragment.contains("+("));
+        assertTrue(scope.get(getOrdinal("Lev.1.1")));
+        assertFalse(scope.get(getOrdinal("Matt.1.1")));
 
         //we should have 66 books here, so we're not restricting anything
-        assertEquals("", this.subjects.getLuceneScopeFragment(new String[]{"OSMHB", "ESV-THE"}));
+        assertNull(this.subjects.getScopeOrdinals(new String[]{"OSMHB", "ESV-THE"}));
     }
 
     @Test
-    public void testExpandingToLucene() {
-        assertEquals("+(expandedReferences:Matt.*)", this.subjects.getLuceneInputReferenceRestriction("ESV-THE", "Mat").getValue());
-        assertEquals("+(expandedReferences:Matt.1.*)", this.subjects.getLuceneInputReferenceRestriction("ESV-THE", "Mat 1").getValue());
-        assertEquals("+(expandedReferences:Matt.1.1)", this.subjects.getLuceneInputReferenceRestriction("ESV-THE", "Mat 1:1").getValue());
-        assertEquals("+(expandedReferences:Matt.1.2 expandedReferences:Matt.1.3)", this.subjects.getLuceneInputReferenceRestriction("ESV-THE", "Mat 1:2-3").getValue());
-        assertEquals("+(expandedReferences:Obad.*)", this.subjects.getLuceneInputReferenceRestriction("ESV-THE", "Obadiah").getValue());
-        assertEquals("+(expandedReferences:Obad.1.2)", this.subjects.getLuceneInputReferenceRestriction("ESV-THE", "Obadiah 2").getValue());
-        assertEquals("+(expandedReferences:Gen.* expandedReferences:Exod.* )", this.subjects.getLuceneInputReferenceRestriction("ESV-THE", "Gen-Exo").getValue());
-        assertEquals("+(expandedReferences:Gen.* expandedReferences:Exod.* expandedReferences:Lev.* expandedReferences:Mark.* )", this.subjects.getLuceneInputReferenceRestriction("ESV-THE", "Gen-Lev ; Mark").getValue());
+    public void testInputReferenceOrdinals() {
+        assertNull(this.subjects.getInputReferenceOrdinals("ESV-THE", ""));
+
+        final BitSet book = this.subjects.getInputReferenceOrdinals("ESV-THE", "Mat");
+        assertTrue(book.get(getOrdinal("Matt.28.20")));
+        assertFalse(book.get(getOrdinal("Mark.1.1")));
+
+        final BitSet verses = this.subjects.getInputReferenceOrdinals("ESV-THE", "Mat 1:2-3");
+        assertEquals(2, verses.cardinality());
+        assertTrue(verses.get(getOrdinal("Matt.1.2")));
+        assertTrue(verses.get(getOrdinal("Matt.1.3")));
+
+        final BitSet books = this.subjects.getInputReferenceOrdinals("ESV-THE", "Gen-Lev ; Mark");
+        assertTrue(books.get(getOrdinal("Exod.1.1")));
+        assertTrue(books.get(getOrdinal("Mark.1.1")));
+        assertFalse(books.get(getOrdinal("Num.1.1")));
+    }
+
+    @Test
+    public void testInputReferenceSize() {
+        //whole books and chapters are allowed, however long
+        this.subjects.checkInputReferenceSize("ESV-THE", "Gen-Deut");
+        this.subjects.checkInputReferenceSize("ESV-THE", "Ps 119");
+        this.subjects.checkInputReferenceSize("ESV-THE", "Mat 1:2-3");
+
+        try {
+            this.subjects.checkInputReferenceSize("ESV-THE", "Mat 1-10");
+            fail("Too many verses should have been rejected");
+        } catch (final TranslatedException e) {
+            assertEquals("subject_reference_search_too_big", e.getMessage());
+        }
+    }
+
+    /**
+     * Refining a text search by strong number or by subject keeps the verses found by both, whichever order the
+     * searches are given in
+     */
+    @Test
+    public void testJoiningSearches() {
+        final Versification v11n = TestUtils.mockVersificationService().getVersificationForVersion("ESV-THE");
+        final Map<String, Key> verses = new LinkedHashMap<String, Key>();
+        verses.put("love", getKey(v11n, "Gen.1.1-5"));
+        verses.put("strong:g0025", getKey(v11n, "Gen.1.3-8"));
+        verses.put("elijah", getKey(v11n, "Gen.1.4-10"));
+
+        assertEquals(getKey(v11n, "Gen.1.3-5").getOsisRef(),
+                runJoiningSearches(verses, new ArrayList<String>(), getTextSearch(), getStrongSearch()).getOsisRef());
+        assertEquals(getKey(v11n, "Gen.1.3-5").getOsisRef(),
+                runJoiningSearches(verses, new ArrayList<String>(), getStrongSearch(), getTextSearch()).getOsisRef());
+        assertEquals(getKey(v11n, "Gen.1.4-5").getOsisRef(),
+                runJoiningSearches(verses, new ArrayList<String>(), getTextSearch(), getSubjectSearch()).getOsisRef());
+        assertEquals(getKey(v11n, "Gen.1.4-5").getOsisRef(),
+                runJoiningSearches(verses, new ArrayList<String>(), getSubjectSearch(), getTextSearch()).getOsisRef());
+    }
+
+    /**
+     * Verses found in another versification are mapped to that of the first version before being intersected
+     */
+    @Test
+    public void testJoiningSearchesAcrossVersifications() {
+        final Versification v11n = TestUtils.mockVersificationService().getVersificationForVersion("ESV-THE");
+        final Versification leningrad = Versifications.instance().getVersification("Leningrad");
+        final Map<String, Key> verses = new LinkedHashMap<String, Key>();
+        verses.put("love", getKey(v11n, "Ps.3.1-3"));
+        //the title of the psalm is the first verse in the Leningrad versification
+        verses.put("elijah", getKey(leningrad, "Ps.3.2-3"));
+
+        final Key results = runJoiningSearches(verses, new ArrayList<String>(), getTextSearch(), getSubjectSearch());
+        assertEquals(getKey(v11n, "Ps.3.1-2").getOsisRef(), results.getOsisRef());
+    }
+
+    /**
+     * Searches are run most selective first, and once no verses are left the remaining searches are not run
+     */
+    @Test
+    public void testJoiningSearchesStopWhenEmpty() {
+        final Versification v11n = TestUtils.mockVersificationService().getVersificationForVersion("ESV-THE");
+        final Map<String, Key> verses = new LinkedHashMap<String, Key>();
+        verses.put("love", getKey(v11n, "Gen.1.1-3"));
+        verses.put("strong:g0025", getKey(v11n, "Exod.1.1"));
+        verses.put("elijah", getKey(v11n, "Gen.1.1"));
+
+        final List<String> run = new ArrayList<String>();
+        final Key results = runJoiningSearches(verses, run, getTextSearch(), getStrongSearch(), getSubjectSearch());
+        assertEquals(0, results.getCardinality());
+        assertEquals(Arrays.asList("elijah", "strong:g0025"), run);
+    }
+
+    /**
+     * Runs the searches against mocked indexes
+     *
+     * @param verses   the verses found by each query, which are also what each query is counted to find
+     * @param run      the queries that were run, in order
+     * @param searches the searches to join
+     * @return the verses passed on to be displayed
+     */
+    private Key runJoiningSearches(final Map<String, Key> verses, final List<String> run,
+                                   final IndividualSearch... searches) {
+        final JSwordSearchService jswordSearch = mock(JSwordSearchService.class);
+        final SubjectSearchService subjectSearch = mock(SubjectSearchService.class);
+        final Answer<Key> searchAnswer = new Answer<Key>() {
+            @Override
+            public Key answer(final InvocationOnMock invocation) {
+                final String query = ((SearchQuery) invocation.getArguments()[0]).getCurrentSearch().getQuery();
+                run.add(query);
+                return verses.get(query);
+            }
+        };
+        when(jswordSearch.searchKeys(any(SearchQuery.class))).thenAnswer(searchAnswer);
+        when(subjectSearch.getKeys(any(SearchQuery.class))).thenAnswer(searchAnswer);
+        when(jswordSearch.estimateSearchResults(any(SearchQuery.class), anyInt())).thenAnswer(new Answer<Integer>() {
+            @Override
+            public Integer answer(final InvocationOnMock invocation) {
+                final String query = ((SearchQuery) invocation.getArguments()[0]).getCurrentSearch().getQuery();
+                return verses.get(query).getCardinality();
+            }
+        });
+        getMockedSearchService(jswordSearch, subjectSearch).search(new SearchQuery(1, 0, null, null, searches));
+
+        final ArgumentCaptor<Key> results = ArgumentCaptor.forClass(Key.class);
+        verify(jswordSearch).rankAndTrimResults(any(SearchQuery.class), results.capture());
+        return results.getValue();
+    }
+
+    /**
+     * Further pages of the same request are read from the cursor left by the first, without searching again
+     */
+    @Test
+    public void testPageFromCursor() {
+        final Versification v11n = TestUtils.mockVersificationService().getVersificationForVersion("ESV-THE");
+        final JSwordSearchService jswordSearch = mock(JSwordSearchService.class);
+        final SubjectSearchService subjectSearch = mock(SubjectSearchService.class);
+        when(jswordSearch.getCursor(any(SearchQuery.class)))
+                .thenReturn(ResultCursor.fromPassage((Passage) getKey(v11n, "Gen.1.1-5")));
+
+        final SearchQuery sq = new SearchQuery("t=love", new String[]{"ESV-THE"}, "false", 0, 2, 2, null);
+        sq.setSignature("t=love");
+        final SearchResult result = getMockedSearchService(jswordSearch, subjectSearch).search(sq);
+        assertEquals(5, result.getTotal());
+
+        final ArgumentCaptor<Key> page = ArgumentCaptor.forClass(Key.class);
+        verify(jswordSearch).getResultsFromTrimmedKeys(any(SearchQuery.class), any(String[].class), anyInt(),
+                page.capture());
+        assertEquals(getKey(v11n, "Gen.1.3-4").getOsisRef(), page.getValue().getOsisRef());
+        verify(jswordSearch, never()).searchKeys(any(SearchQuery.class));
+        verify(jswordSearch, never()).search(any(SearchQuery.class), any(String.class));
+        verify(jswordSearch, never()).rankAndTrimResults(any(SearchQuery.class), any(Key.class));
+    }
+
+    /**
+     * @param jswordSearch  the mocked search of the bibles
+     * @param subjectSearch the mocked subject search
+     * @return the service to test
+     */
+    private SearchServiceImpl getMockedSearchService(final JSwordSearchService jswordSearch,
+                                                     final SubjectSearchService subjectSearch) {
+        when(jswordSearch.getResultsFromTrimmedKeys(any(SearchQuery.class), any(String[].class), anyInt(),
+                any(Key.class))).thenReturn(new SearchResult());
+
+        final StrongAugmentationService augmentation = mock(StrongAugmentationService.class);
+        return new SearchServiceImpl(jswordSearch, mock(JSwordMetadataService.class),
+                TestUtils.mockVersificationService(), subjectSearch, null, null, this.entityManager,
+                TestUtils.mockVersionResolver(), mock(LexiconDefinitionServiceImpl.class), null, augmentation);
+    }
+
+    private IndividualSearch getTextSearch() {
+        return new IndividualSearch(SearchType.TEXT, Arrays.asList("ESV-THE"), "love", null, null);
+    }
+
+    private IndividualSearch getStrongSearch() {
+        return new IndividualSearch(SearchType.ORIGINAL_GREEK_FORMS, Arrays.asList("ESV-THE"), "G0025", null, null);
+    }
+
+    private IndividualSearch getSubjectSearch() {
+        return new IndividualSearch(SearchType.SUBJECT_SIMPLE, Arrays.asList("ESV-THE"), "elijah", null, null);
+    }
+
+    /**
+     * @param v11n      the versification
+     * @param reference the reference
+     * @return the verses of the reference
+     */
+    private Key getKey(final Versification v11n, final String reference) {
+        try {
+            return PassageKeyFactory.instance().getKey(v11n, reference);
+        } catch (final NoSuchKeyException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * @param osisId the osis id of a verse
+     * @return the ordinal of the verse in the versification of the nave references
+     */
+    private int getOrdinal(final String osisId) {
+        try {
+            return VerseFactory.fromString(this.naveReferenceBitmaps.getVersification(), osisId).getOrdinal();
+        } catch (final NoSuchVerseException e) {
+            throw new AssertionError(e);
+        }
     }
 
     /**
@@ -114,7 +334,7 @@ public class SearchServiceImplTest {
         final JSwordVersificationService versificationService = TestUtils.mockVersificationService();
         final PassageOptionsValidationService optionsValidationService = mock(PassageOptionsValidationService.class);
         final JSwordPassageServiceImpl jsword = new JSwordPassageServiceImpl(versificationService, null,
-                null, null, TestUtils.mockVersionResolver(), optionsValidationService);
+                null, null, TestUtils.mockVersionResolver(), optionsValidationService, new XslTemplatesCache(false));
 
         when(optionsValidationService.getAvailableFeaturesForVersion(any(String.class), any(List.class), any(String.class), any(InterlinearMode.class)))
                 .thenReturn(new AvailableFeatures());
@@ -124,9 +344,10 @@ public class SearchServiceImplTest {
         when(meta.supportsFeature(any(String.class), any(LookupOption.class))).thenReturn(true);
 
         final JSwordSearchServiceImpl jswordSearch = new JSwordSearchServiceImpl(versificationService, null, jsword);
+        naveReferenceBitmaps = new NaveReferenceBitmaps(versificationService, entityManager, "step/entities/");
         subjects = new SubjectSearchServiceImpl(entityManager,
-                jswordSearch, meta, module, versificationService);
-        return new SearchServiceImpl(jswordSearch, meta, versificationService, subjects, new TimelineServiceImpl(entityManager, jsword), null, entityManager, TestUtils.mockVersionResolver(),
+                jswordSearch, meta, module, versificationService, naveReferenceBitmaps);
+        return new SearchServiceImpl(jswordSearch, meta, versificationService, subjects, new TimelineServiceImpl(entityManager, jsword, versificationService), null, entityManager, TestUtils.mockVersionResolver(),
                 mock(LexiconDefinitionServiceImpl.class), null, null
         );
     }
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the bounds and statistics of the cache
+ */
+public class BoundedConcurrentCacheTest {
+    private static final BoundedConcurrentCache.Weigher<String> LENGTH = new BoundedConcurrentCache.Weigher<String>() {
+        @Override
+        public int weigh(final String value) {
+            return value.length();
+        }
+    };
+
+    /**
+     * Lookups are counted as hits and misses
+     */
+    @Test
+    public void testHitsAndMisses() {
+        final BoundedConcurrentCache<String, String> cache = new BoundedConcurrentCache<String, String>(
+                BoundedConcurrentCacheTest.class, "test", 1024, 1024 * 1024, LENGTH);
+        cache.put("G0001", "alpha");
+
+        assertEquals("alpha", cache.get("G0001"));
+        assertNull(cache.get("G0002"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(0, cache.getEvictions());
+    }
+
+    /**
+     * The cache never holds more entries, or more weight, than it was given
+     */
+    @Test
+    public void testBounds() {
+        final BoundedConcurrentCache<String, String> byCount = new BoundedConcurrentCache<String, String>(
+                BoundedConcurrentCacheTest.class, "count", 32, Long.MAX_VALUE, LENGTH);
+        for (int ii = 0; ii < 1000; ii++) {
+            byCount.put("H" + ii, "x");
+        }
+        assertTrue(byCount.size() <= 32);
+        assertEquals(1000 - byCount.size(), byCount.getEvictions());
+
+        final BoundedConcurrentCache<String, String> byWeight = new BoundedConcurrentCache<String, String>(
+                BoundedConcurrentCacheTest.class, "weight", 1000, 160, LENGTH);
+        for (int ii = 0; ii < 1000; ii++) {
+            byWeight.put("G" + ii, "0123456789");
+        }
+        assertTrue(byWeight.size() <= 16);
+    }
+}
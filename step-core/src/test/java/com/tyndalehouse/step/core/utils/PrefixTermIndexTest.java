@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.core.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Test;
+import org.tartarus.snowball.ext.PorterStemmer;
+
+import com.tyndalehouse.step.core.data.common.TermsAndMaxCount;
+
+/**
+ * Tests the prefix lookups of the auto suggestions
+ */
+public class PrefixTermIndexTest {
+
+    /**
+     * Completions are the most popular terms with the prefix, one per stem, leaving out the term typed in
+     */
+    @Test
+    public void testCompletions() {
+        final SortedMap<String, Integer> weights = new TreeMap<String, Integer>();
+        weights.put("love", 50);
+        weights.put("loved", 70);
+        weights.put("lovely", 5);
+        weights.put("lord", 90);
+        weights.put("lot", 10);
+        weights.put("mercy", 20);
+        final PrefixTermIndex index = new PrefixTermIndex(weights);
+
+        // short prefixes are answered from the completions worked out up front
+        final TermsAndMaxCount<String> lo = index.find(false, "lo", 3);
+        assertEquals(Arrays.asList("lord", "loved", "lot"), new ArrayList<String>(lo.getTerms()));
+        assertEquals(5, lo.getTotalCount());
+
+        // longer prefixes look through the range of terms, where lovely shares its stem with loved
+        final TermsAndMaxCount<String> love = index.find(false, "love", 5);
+        assertEquals(Arrays.asList("loved"), new ArrayList<String>(love.getTerms()));
+        assertEquals(2, love.getTotalCount());
+
+        // only the last word typed in is completed
+        assertEquals(Arrays.asList("mercy"), new ArrayList<String>(index.find(false, "love and me", 5).getTerms()));
+    }
+
+    /**
+     * Exact lookups only find the term itself
+     */
+    @Test
+    public void testExact() {
+        final SortedMap<String, Integer> weights = new TreeMap<String, Integer>();
+        weights.put("lord", 90);
+        weights.put("lordship", 1);
+        final PrefixTermIndex index = new PrefixTermIndex(weights);
+
+        final TermsAndMaxCount<String> lord = index.find(true, "Lord", 3);
+        assertEquals(1, lord.getTotalCount());
+        assertTrue(lord.getTerms().contains("lord"));
+        assertEquals(0, index.find(true, "lor", 3).getTotalCount());
+        assertEquals(0, index.find(true, " ", 3).getTerms().size());
+    }
+
+    /**
+     * Stems are worked out once for the terms of the index, and on demand otherwise
+     */
+    @Test
+    public void testStems() {
+        final SortedMap<String, Integer> weights = new TreeMap<String, Integer>();
+        weights.put("running", 1);
+        final PrefixTermIndex index = new PrefixTermIndex(weights);
+
+        final PorterStemmer stemmer = new PorterStemmer();
+        assertEquals("run", index.getStem(stemmer, "running"));
+        assertEquals("jump", index.getStem(stemmer, "jumping"));
+        assertEquals("walk", index.getStem(stemmer, "walking"));
+    }
+}
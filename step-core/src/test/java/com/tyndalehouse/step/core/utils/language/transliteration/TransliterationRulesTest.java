@@ -0,0 +1,162 @@
+package com.tyndalehouse.step.core.utils.language.transliteration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.text.Normalizer;
+import java.text.Normalizer.Form;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tyndalehouse.step.core.utils.StringConversionUtils;
+import com.tyndalehouse.step.core.utils.language.GreekUtils;
+import com.tyndalehouse.step.core.utils.language.HebrewUtils;
+
+/**
+ * Checks that the compiled rules, the capped expansion and the cached transliterations give the same output as
+ * the original implementation, over every form of the lexicon.
+ */
+public class TransliterationRulesTest {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransliterationRulesTest.class);
+    private static final String FORMS = "/com/tyndalehouse/step/core/data/create/lexicon/specific_forms.txt";
+    private static final int MAX_TRANSLITERATIONS = 512;
+    // words expanding into more options than this are too slow to expand with the original implementation
+    private static final int MAX_REFERENCE_OPTIONS = 20000;
+
+    /**
+     * Every form is transliterated and expanded as before
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testGoldenOutputOverLexicon() throws IOException {
+        final List<String> forms = readForms();
+        assertTrue(forms.size() > 1000);
+
+        int compared = 0;
+        for (final String form : forms) {
+            final boolean isHebrew = HebrewUtils.isHebrewText(form);
+            final String expectedTransliteration = isHebrew ? HebrewUtils.transliterateHebrew(form)
+                    : GreekUtils.transliterateGreek(Normalizer.normalize(form.toLowerCase(Locale.ENGLISH), Form.NFD));
+
+            final String transliteration = StringConversionUtils.transliterate(form);
+            assertEquals(form, expectedTransliteration, transliteration);
+            assertEquals(form, expectedTransliteration, StringConversionUtils.transliterate(form));
+
+            final List<String> expectedOptions = referenceExpand(
+                    StringConversionUtils.adaptForTransliterationForIndexing(transliteration, !isHebrew),
+                    isHebrew ? HebrewUtils.getTransliterationRules() : GreekUtils.getTransliterationRules());
+            final List<TransliterationOption> options = StringConversionUtils.adaptTransliterationForQuerying(
+                    transliteration, !isHebrew);
+            if (expectedOptions != null) {
+                assertEquals(transliteration, expectedOptions, toStrings(options));
+                compared++;
+            }
+        }
+        LOGGER.info("Compared the options of [{}] of [{}] forms", compared, forms.size());
+    }
+
+    /**
+     * Capping while expanding gives the same options as trimming the full expansion
+     */
+    @Test
+    public void testCapIsSameAsTrimming() {
+        final List<TransliterationRule> rules = HebrewUtils.getTransliterationRules();
+        final String word = "shavsa";
+        final List<String> first = referenceExpand(word, rules);
+        assertNotNull(first);
+        assertEquals(MAX_TRANSLITERATIONS, first.size());
+
+        final TransliterationRules compiled = new TransliterationRules(rules);
+        assertEquals(960, compiled.expand(word, Integer.MAX_VALUE).size());
+        assertEquals(first, toStrings(compiled.expand(word, MAX_TRANSLITERATIONS)));
+        assertEquals(first.subList(0, 64), toStrings(compiled.expand(word, 64)));
+    }
+
+    /**
+     * The original expansion: every rule is tried at every position, and the options are trimmed afterwards
+     *
+     * @param baseString the transliteration without mark-up
+     * @param rules      the rules
+     * @return the first options, or null if the word expands into too many options to be worth comparing
+     */
+    private static List<String> referenceExpand(final String baseString, final List<TransliterationRule> rules) {
+        final List<TransliterationOption> options = new ArrayList<TransliterationOption>();
+        options.add(new TransliterationOption(0, new StringBuilder()));
+
+        final char[] baseChars = baseString.toCharArray();
+        for (int ii = 0; ii < baseChars.length; ii++) {
+            for (final TransliterationRule r : rules) {
+                r.expand(options, baseChars, ii, Integer.MAX_VALUE);
+            }
+
+            for (final TransliterationOption leftBehind : options) {
+                if (leftBehind.getNextValidPosition() == ii) {
+                    leftBehind.getOption().append(baseChars[ii]);
+                    leftBehind.setNextValidPosition(ii + 1);
+                }
+            }
+
+            if (options.size() > MAX_REFERENCE_OPTIONS) {
+                return null;
+            }
+        }
+
+        for (Iterator<TransliterationOption> iterator = options.iterator(); iterator.hasNext(); ) {
+            if (iterator.next().getOption().length() == 0) {
+                iterator.remove();
+            }
+        }
+        return toStrings(options.subList(0, Math.min(options.size(), MAX_TRANSLITERATIONS)));
+    }
+
+    /**
+     * @param options the options
+     * @return the options as strings
+     */
+    private static List<String> toStrings(final List<TransliterationOption> options) {
+        final List<String> strings = new ArrayList<String>(options.size());
+        for (final TransliterationOption o : options) {
+            strings.add(o.getOption().toString());
+        }
+        return strings;
+    }
+
+    /**
+     * @return the distinct forms of the lexicon
+     * @throws IOException uncaught exception
+     */
+    private static List<String> readForms() throws IOException {
+        final InputStream stream = TransliterationRulesTest.class.getResourceAsStream(FORMS);
+        assertNotNull(stream);
+        final Set<String> forms = new LinkedHashSet<String>();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(stream, Charset.forName("UTF-8")));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int comma = line.indexOf(',');
+                final String form = comma == -1 ? "" : line.substring(comma + 1).trim();
+                if (form.length() != 0) {
+                    forms.add(form);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new ArrayList<String>(forms);
+    }
+}
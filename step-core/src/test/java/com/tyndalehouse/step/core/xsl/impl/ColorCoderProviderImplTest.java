@@ -33,8 +33,17 @@
 package com.tyndalehouse.step.core.xsl.impl;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.anyVararg;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -107,4 +116,21 @@ public class ColorCoderProviderImplTest {
                 .getColorClass("robinson:def robinson:def");
         assertEquals("", colorClass);
     }
+
+    /**
+     * Prefetched codes, including misses, are answered without going back to the index
+     */
+    @Test
+    public void testColorCoderPrefetched() {
+        final Map<String, EntityDoc> prefetched = new HashMap<String, EntityDoc>();
+        prefetched.put("abc", this.mockDoc);
+        prefetched.put("def", null);
+        when(this.mockReader.lookupUniqueBySingleField("code", Arrays.asList("abc", "def"))).thenReturn(prefetched);
+
+        final ColorCoderProviderImpl colorCoder = new ColorCoderProviderImpl(this.mockManager)
+                .prefetch(Arrays.asList("abc", "def"));
+        assertEquals("css", colorCoder.getColorClass("robinson:def robinson:abc"));
+        assertEquals("", colorCoder.getColorClass("robinson:def"));
+        verify(this.mockReader, never()).searchExactTermBySingleField(anyString(), anyInt(), (String) anyVararg());
+    }
 }
@@ -42,13 +42,19 @@ import com.tyndalehouse.step.core.data.EntityManager;
 import com.tyndalehouse.step.core.data.create.Loader;
 import com.tyndalehouse.step.core.guice.StepCoreModule;
 import com.tyndalehouse.step.core.models.ClientSession;
+import com.tyndalehouse.step.core.service.SuggestionService;
+import com.tyndalehouse.step.core.service.jsword.JSwordSearchService;
+import com.tyndalehouse.step.core.utils.IOUtils;
+import com.tyndalehouse.step.core.utils.StepMetrics;
 import com.tyndalehouse.step.rest.controllers.ImageController;
 import com.tyndalehouse.step.rest.controllers.IndexRedirect;
 import com.tyndalehouse.step.rest.controllers.InternationalJsonController;
+import com.tyndalehouse.step.rest.controllers.MetricsController;
 import com.tyndalehouse.step.rest.controllers.SearchPageController;
 import com.tyndalehouse.step.rest.controllers.SetupPageController;
 import com.tyndalehouse.step.rest.controllers.SiteMapController;
 import com.tyndalehouse.step.rest.framework.FrontController;
+import com.yammer.metrics.guice.InstrumentationModule;
 import org.crosswire.common.util.CWProject;
 import org.crosswire.common.util.Reporter;
 import org.crosswire.common.util.ReporterEvent;
@@ -66,6 +72,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
+import java.io.Closeable;
 import java.util.Locale;
 
 /**
@@ -93,9 +100,9 @@ public class StepServletConfig extends GuiceServletContextListener {
                         serve("/").with(SearchPageController.class);
                         serve("/international/interactive.js").with(InternationalJsonController.class);
                         serve("/config.jsp").with(SetupPageController.class);
-//                        if (Boolean.getBoolean("metrics.enabled")) {
-//                            serve("/metrics/*").with(AdminServlet.class);
-//                        }
+                        if (StepMetrics.isEnabled()) {
+                            serve("/metrics").with(MetricsController.class);
+                        }
                         serve("/sitemap*").with(SiteMapController.class);
                         serve("/SITEMAP*").with(SiteMapController.class);
                         // filters
@@ -105,13 +112,14 @@ public class StepServletConfig extends GuiceServletContextListener {
                     }
                 };
 
-//                if (Boolean.getBoolean("metrics.enabled")) {
-//                    this.injector = Guice.createInjector(new StepCoreModule(), new StepWebModule(),
-//                            new InstrumentationModule(), servletModule);
-//                } else {
-                this.injector = Guice.createInjector(new StepCoreModule(), new StepWebModule(),
-                        servletModule);
-//                }
+                // the instrumentation module times the methods annotated with @Timed
+                if (StepMetrics.isEnabled()) {
+                    this.injector = Guice.createInjector(new StepCoreModule(), new StepWebModule(),
+                            new InstrumentationModule(), servletModule);
+                } else {
+                    this.injector = Guice.createInjector(new StepCoreModule(), new StepWebModule(),
+                            servletModule);
+                }
             }
         }
         return this.injector;
@@ -195,6 +203,10 @@ public class StepServletConfig extends GuiceServletContextListener {
     @Override
     public void contextDestroyed(final ServletContextEvent servletContextEvent) {
         final ServletContext sc = servletContextEvent.getServletContext();
+        // stop the threads that search and suggest in the background, before the indexes they read are closed
+        shutDown(getInjector().getInstance(JSwordSearchService.class));
+        shutDown(getInjector().getInstance(SuggestionService.class));
+
         // close some JSword things
         OpenFileStateManager.instance().shutDown();
         IndexManagerFactory.getIndexManager().closeAllIndexes();
@@ -204,4 +216,15 @@ public class StepServletConfig extends GuiceServletContextListener {
 
         super.contextDestroyed(servletContextEvent);
     }
+
+    /**
+     * Stops any threads a service runs in the background
+     *
+     * @param service the service
+     */
+    private void shutDown(final Object service) {
+        if (service instanceof Closeable) {
+            IOUtils.closeQuietly((Closeable) service);
+        }
+    }
 }
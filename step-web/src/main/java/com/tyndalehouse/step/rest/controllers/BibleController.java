@@ -65,6 +65,7 @@ import com.tyndalehouse.step.core.models.search.StrongCountsAndSubjects;
 import com.tyndalehouse.step.core.service.BibleInformationService;
 import com.tyndalehouse.step.core.utils.language.ContemporaryLanguageUtils;
 import com.tyndalehouse.step.models.ModulesForLanguageUser;
+import com.tyndalehouse.step.rest.framework.Cacheable;
 import com.yammer.metrics.annotation.Timed;
 
 /**
@@ -73,6 +74,7 @@ import com.yammer.metrics.annotation.Timed;
  * @author chrisburrell
  */
 @Singleton
+@Cacheable
 public class BibleController {
     private static final Logger LOGGER = LoggerFactory.getLogger(BibleController.class);
     private final BibleInformationService bibleInformation;
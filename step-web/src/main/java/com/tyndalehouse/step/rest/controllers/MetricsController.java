@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.rest.controllers;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+import com.tyndalehouse.step.rest.framework.ControllerDispatchTable;
+import com.tyndalehouse.step.rest.framework.ControllerRoute;
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.Metered;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.Sampling;
+import com.yammer.metrics.core.Summarizable;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.stats.Snapshot;
+
+/**
+ * Reports all the metrics recorded by the application, as JSON by default, or in the Prometheus text format when
+ * asked for with ?format=prometheus. Only served when the metrics.enabled system property is set.
+ */
+@Singleton
+public class MetricsController extends HttpServlet {
+    private static final long serialVersionUID = -2279416021432245412L;
+    private static final String PROMETHEUS_FORMAT = "prometheus";
+    private static final double[] QUANTILES = new double[]{0.5, 0.75, 0.95, 0.99};
+    private final transient ControllerDispatchTable dispatchTable;
+    private final transient ObjectMapper objectMapper;
+
+    /**
+     * @param dispatchTable the routes to the controllers, which count their invocations
+     * @param objectMapper  the object mapper used for the JSON output
+     */
+    @Inject
+    public MetricsController(final ControllerDispatchTable dispatchTable, final ObjectMapper objectMapper) {
+        this.dispatchTable = dispatchTable;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        response.setCharacterEncoding("UTF-8");
+        if (PROMETHEUS_FORMAT.equals(request.getParameter("format"))) {
+            response.setContentType("text/plain; version=0.0.4");
+            writePrometheus(response.getWriter());
+        } else {
+            response.setContentType("application/json");
+            this.objectMapper.writeValue(response.getOutputStream(), getJsonMetrics());
+        }
+    }
+
+    /**
+     * @return all the metrics, keyed by their full name
+     */
+    SortedMap<String, Object> getJsonMetrics() {
+        final SortedMap<String, Object> metrics = new TreeMap<String, Object>();
+        for (final Entry<MetricName, Metric> entry : Metrics.defaultRegistry().allMetrics().entrySet()) {
+            final MetricName name = entry.getKey();
+            final StringBuilder key = new StringBuilder(name.getType()).append('.').append(name.getName());
+            if (name.hasScope()) {
+                key.append('.').append(name.getScope());
+            }
+            metrics.put(key.toString(), getValues(entry.getValue()));
+        }
+
+        final SortedMap<String, Long> routes = new TreeMap<String, Long>();
+        for (final ControllerRoute route : this.dispatchTable.getRoutes()) {
+            if (route.getInvocations() != 0) {
+                routes.put(route.getName(), route.getInvocations());
+            }
+        }
+        metrics.put("routes.invocations", routes);
+        metrics.put("routes.rejected", this.dispatchTable.getRejected());
+        return metrics;
+    }
+
+    /**
+     * @param metric the metric
+     * @return the values held by the metric
+     */
+    private Object getValues(final Metric metric) {
+        if (metric instanceof Gauge) {
+            return ((Gauge<?>) metric).value();
+        }
+        if (metric instanceof Counter) {
+            return ((Counter) metric).count();
+        }
+
+        final SortedMap<String, Object> values = new TreeMap<String, Object>();
+        if (metric instanceof Metered) {
+            final Metered metered = (Metered) metric;
+            values.put("count", metered.count());
+            values.put("meanRate", metered.meanRate());
+            values.put("oneMinuteRate", metered.oneMinuteRate());
+            values.put("rateUnit", metered.rateUnit());
+        }
+        if (metric instanceof Histogram) {
+            values.put("count", ((Histogram) metric).count());
+        }
+        if (metric instanceof Summarizable) {
+            final Summarizable summary = (Summarizable) metric;
+            values.put("min", summary.min());
+            values.put("max", summary.max());
+            values.put("mean", summary.mean());
+        }
+        if (metric instanceof Sampling) {
+            final Snapshot snapshot = ((Sampling) metric).getSnapshot();
+            for (final double quantile : QUANTILES) {
+                values.put("p" + (int) (quantile * 100), snapshot.getValue(quantile));
+            }
+        }
+        if (metric instanceof Timer) {
+            values.put("durationUnit", ((Timer) metric).durationUnit());
+        }
+        return values;
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text format. Timers and histograms are written as summaries.
+     *
+     * @param writer the writer
+     */
+    void writePrometheus(final PrintWriter writer) {
+        // group the metrics by name, as Prometheus expects all the samples of a metric to be together
+        final SortedMap<String, SortedMap<String, Metric>> byName = new TreeMap<String, SortedMap<String, Metric>>();
+        for (final Entry<MetricName, Metric> entry : Metrics.defaultRegistry().allMetrics().entrySet()) {
+            final MetricName name = entry.getKey();
+            final String metricName = sanitize("step_" + name.getType() + "_" + name.getName());
+            SortedMap<String, Metric> scoped = byName.get(metricName);
+            if (scoped == null) {
+                scoped = new TreeMap<String, Metric>();
+                byName.put(metricName, scoped);
+            }
+            scoped.put(name.hasScope() ? name.getScope() : "", entry.getValue());
+        }
+
+        for (final Entry<String, SortedMap<String, Metric>> metric : byName.entrySet()) {
+            writePrometheusMetric(writer, metric.getKey(), metric.getValue());
+        }
+
+        println(writer, "# TYPE step_route_invocations_total counter");
+        for (final ControllerRoute route : this.dispatchTable.getRoutes()) {
+            println(writer, "step_route_invocations_total" + labels(route.getName(), null) + ' '
+                    + route.getInvocations());
+        }
+        println(writer, "# TYPE step_route_rejected_total counter");
+        println(writer, "step_route_rejected_total " + this.dispatchTable.getRejected());
+        writer.flush();
+    }
+
+    /**
+     * @param writer the writer
+     * @param name   the name of the metric
+     * @param scoped the metric, for each scope in which it was recorded
+     */
+    private void writePrometheusMetric(final PrintWriter writer, final String name,
+                                       final Map<String, Metric> scoped) {
+        final Metric first = scoped.values().iterator().next();
+        if (first instanceof Sampling) {
+            println(writer, "# TYPE " + name + " summary");
+        } else if (first instanceof Gauge) {
+            println(writer, "# TYPE " + name + " gauge");
+        } else {
+            println(writer, "# TYPE " + name + " counter");
+        }
+
+        for (final Entry<String, Metric> entry : scoped.entrySet()) {
+            final String scope = entry.getKey();
+            final Metric metric = entry.getValue();
+            if (metric instanceof Sampling && metric instanceof Summarizable) {
+                final Snapshot snapshot = ((Sampling) metric).getSnapshot();
+                for (final double quantile : QUANTILES) {
+                    println(writer, name + labels(scope, Double.toString(quantile)) + ' '
+                            + snapshot.getValue(quantile));
+                }
+                println(writer, name + "_sum" + labels(scope, null) + ' ' + ((Summarizable) metric).sum());
+                final long count = metric instanceof Timer ? ((Timer) metric).count() : ((Histogram) metric).count();
+                println(writer, name + "_count" + labels(scope, null) + ' ' + count);
+            } else if (metric instanceof Gauge) {
+                final Object value = ((Gauge<?>) metric).value();
+                if (value instanceof Number) {
+                    println(writer, name + labels(scope, null) + ' ' + value);
+                }
+            } else if (metric instanceof Counter) {
+                println(writer, name + labels(scope, null) + ' ' + ((Counter) metric).count());
+            } else if (metric instanceof Metered) {
+                println(writer, name + labels(scope, null) + ' ' + ((Metered) metric).count());
+            }
+        }
+    }
+
+    /**
+     * Prometheus expects lines to end with a line feed, whatever the platform
+     *
+     * @param writer the writer
+     * @param line   the line
+     */
+    private static void println(final PrintWriter writer, final String line) {
+        writer.print(line);
+        writer.print('\n');
+    }
+
+    /**
+     * @param scope    the scope of the metric, or empty
+     * @param quantile the quantile, or null
+     * @return the labels of the sample
+     */
+    private String labels(final String scope, final String quantile) {
+        final boolean hasScope = scope != null && !scope.isEmpty();
+        if (!hasScope && quantile == null) {
+            return "";
+        }
+
+        final StringBuilder labels = new StringBuilder(64).append('{');
+        if (hasScope) {
+            labels.append("scope=\"").append(scope.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        }
+        if (quantile != null) {
+            if (hasScope) {
+                labels.append(',');
+            }
+            labels.append("quantile=\"").append(quantile).append('"');
+        }
+        return labels.append('}').toString();
+    }
+
+    /**
+     * @param name a metric name
+     * @return the name, with any character Prometheus does not allow replaced
+     */
+    private static String sanitize(final String name) {
+        return name.replaceAll("[^a-zA-Z0-9_]", "_").toLowerCase(Locale.ENGLISH);
+    }
+}
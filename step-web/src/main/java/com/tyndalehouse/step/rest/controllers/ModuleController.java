@@ -45,6 +45,7 @@ import com.tyndalehouse.step.core.service.VocabularyService;
 import com.tyndalehouse.step.models.info.Info;
 import com.tyndalehouse.step.models.info.MorphInfo;
 import com.tyndalehouse.step.models.info.VocabInfo;
+import com.tyndalehouse.step.rest.framework.Cacheable;
 import com.yammer.metrics.annotation.Timed;
 import org.crosswire.jsword.book.BookCategory;
 import org.slf4j.Logger;
@@ -143,6 +144,7 @@ public class ModuleController {
      * @param reference        the reference in which this can be found
      * @return the definition(s) that can be resolved from the reference provided
      */
+    @Cacheable
     public Info getInfo(final String version, final String reference, final String vocabIdentifiers) {
         return this.getInfo(version, reference, vocabIdentifiers, null);
     }
@@ -156,6 +158,7 @@ public class ModuleController {
      * @param morphIdentifiers the morphology code to lookup
      * @return the definition(s) that can be resolved from the reference provided
      */
+    @Cacheable
     @Timed(name = "full-vocab", group = "analysis", rateUnit = TimeUnit.SECONDS, durationUnit = TimeUnit.MILLISECONDS)
     public Info getInfo(
             final String version,
@@ -182,6 +185,7 @@ public class ModuleController {
      * @param vocabIdentifiers the strong number
      * @return the definition(s) that can be resolved from the reference provided
      */
+    @Cacheable
     @Timed(name = "quick-vocab", group = "analysis", rateUnit = TimeUnit.SECONDS, durationUnit = TimeUnit.MILLISECONDS)
     public Info getQuickInfo(final String version, final String reference, final String vocabIdentifiers) {
         return getQuickInfo(version, reference, vocabIdentifiers, null);
@@ -196,6 +200,7 @@ public class ModuleController {
      * @return the definition(s) that can be resolved from the reference provided
      * @parma reference the verse in which the word is found
      */
+    @Cacheable
     @Timed(name = "quick-vocab", group = "analysis", rateUnit = TimeUnit.SECONDS, durationUnit = TimeUnit.MILLISECONDS)
     public Info getQuickInfo(final String version, final String reference, final String vocabIdentifiers, final String morphIdentifiers) {
         // notEmpty(strong, "A reference must be provided to obtain a definition", USER_MISSING_FIELD);
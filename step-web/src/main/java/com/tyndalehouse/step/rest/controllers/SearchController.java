@@ -6,6 +6,7 @@ import com.tyndalehouse.step.core.models.SearchToken;
 import com.tyndalehouse.step.core.models.SingleSuggestionsSummary;
 import com.tyndalehouse.step.core.models.SuggestionsSummary;
 import com.tyndalehouse.step.core.models.search.AutoSuggestion;
+import com.tyndalehouse.step.core.models.search.AutoSuggestions;
 import com.tyndalehouse.step.core.models.search.PopularSuggestion;
 import com.tyndalehouse.step.core.models.search.SubjectEntries;
 import com.tyndalehouse.step.core.models.search.SuggestionType;
@@ -18,6 +19,7 @@ import com.tyndalehouse.step.core.service.search.OriginalWordSuggestionService;
 import com.tyndalehouse.step.core.service.search.SubjectEntrySearchService;
 import com.tyndalehouse.step.core.utils.ConversionUtils;
 import com.tyndalehouse.step.core.utils.StringUtils;
+import com.tyndalehouse.step.rest.framework.Cacheable;
 import com.yammer.metrics.annotation.Timed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +41,7 @@ import static com.tyndalehouse.step.core.utils.ValidateUtils.notBlank;
  * @author chrisburrell
  */
 @Singleton
+@Cacheable
 public class SearchController {
     private static final Pattern SPLIT_TOKENS = Pattern.compile("\\|");
     private static final Logger LOGGER = LoggerFactory.getLogger(SearchController.class);
@@ -108,7 +111,7 @@ public class SearchController {
             return new ArrayList<AutoSuggestion>();
         }
 
-        final List<AutoSuggestion> autoSuggestions = new ArrayList<AutoSuggestion>(128);
+        final AutoSuggestions autoSuggestions = new AutoSuggestions(128);
         String bookContext = JSwordPassageService.REFERENCE_BOOK;
         String referenceContext = null;
         String limitType = null;
@@ -146,7 +149,7 @@ public class SearchController {
      * @param referenceBookContext the reference book (i..e master book) that has already been selected by the user.
      * @param exampleData          example data is requested
      */
-    private void addDefaultSuggestions(final String input, final List<AutoSuggestion> autoSuggestions, final String limitType, final String referenceBookContext, final boolean exampleData) {
+    private void addDefaultSuggestions(final String input, final AutoSuggestions autoSuggestions, final String limitType, final String referenceBookContext, final boolean exampleData) {
         SuggestionContext context = new SuggestionContext();
         context.setMasterBook(referenceBookContext);
         context.setInput(StringUtils.trim(input));
@@ -163,7 +166,9 @@ public class SearchController {
         }
     }
 
-    private void convert(final List<AutoSuggestion> autoSuggestions, final SuggestionsSummary topSuggestions) {
+    private void convert(final AutoSuggestions autoSuggestions, final SuggestionsSummary topSuggestions) {
+        // suggestions cut short by the deadline are marked, so that they are not cached
+        autoSuggestions.setPartial(topSuggestions.isPartial());
         for (SingleSuggestionsSummary summary : topSuggestions.getSuggestionsSummaries()) {
             //we render each option
             final List<? extends PopularSuggestion> popularSuggestions = summary.getPopularSuggestions();
@@ -54,6 +54,7 @@ import com.tyndalehouse.step.core.data.create.Loader;
 import com.tyndalehouse.step.core.models.ClientSession;
 import com.tyndalehouse.step.core.service.BibleInformationService;
 import com.tyndalehouse.step.core.utils.StringUtils;
+import com.tyndalehouse.step.rest.framework.ResponseCache;
 
 /**
  * The controller that will deal with any requests changing the behaviour of the application
@@ -68,6 +69,7 @@ public class SetupController {
     private final Loader loader;
     private final Provider<ClientSession> sessionProvider;
     private final InternationalJsonController internationalJsonController;
+    private final ResponseCache responseCache;
 
     /**
      * creates the controller
@@ -75,13 +77,16 @@ public class SetupController {
      * @param bibleInformationService the service that allows access to biblical material
      * @param loader service which is able to load the data into the database
      * @param sessionProvider the provider of the user session
+     * @param responseCache the cache of responses served by the front controller
      */
     @Inject
     public SetupController(final BibleInformationService bibleInformationService, 
                             final Loader loader,
                             final InternationalJsonController internationalJsonController,
-                            final Provider<ClientSession> sessionProvider) {
+                            final Provider<ClientSession> sessionProvider,
+                            final ResponseCache responseCache) {
         this.internationalJsonController = internationalJsonController;
+        this.responseCache = responseCache;
         notNull(bibleInformationService, "No bible information service was provided",
                 CONTROLLER_INITIALISATION_ERROR);
         notNull(loader, "No loader module was provided", CONTROLLER_INITIALISATION_ERROR);
@@ -231,12 +236,13 @@ public class SetupController {
     }
 
     /**
-     * Reloads the international JSON files
+     * Reloads the international JSON files and drops any cached responses
      *
      */
     public void invalidateCache() {
         validateSession(this.sessionProvider);
         internationalJsonController.resetCache();
+        this.responseCache.clear();
     }
 
     /**
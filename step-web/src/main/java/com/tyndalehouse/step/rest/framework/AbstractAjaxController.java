@@ -6,7 +6,9 @@ import com.tyndalehouse.step.core.exceptions.TranslatedException;
 import com.tyndalehouse.step.core.exceptions.ValidationException;
 import com.tyndalehouse.step.core.models.ClientSession;
 import com.tyndalehouse.step.core.service.AppManagerService;
+import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonGenerationException;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.JsonMappingException;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
@@ -48,10 +50,7 @@ public abstract class AbstractAjaxController extends HttpServlet {
     protected void doGet(final HttpServletRequest request, final HttpServletResponse response) {
         // CHECKSTYLE:ON
         try {
-            Object returnVal = executeRestMethod(request);
-            byte[] jsonEncoded = getEncodedJsonResponse(returnVal);
-            setupHeaders(response, jsonEncoded.length);
-            response.getOutputStream().write(jsonEncoded);
+            respond(request, response);
             // CHECKSTYLE:OFF We allow catching errors here, since we are at the top of the structure
         } catch (final Exception e) {
             // CHECKSTYLE:ON
@@ -64,7 +63,24 @@ public abstract class AbstractAjaxController extends HttpServlet {
         this.doGet(request, response);
     }
 
-    private Object executeRestMethod(final HttpServletRequest request) {
+    /**
+     * Executes the request and writes its result, any failure being handled by the caller
+     *
+     * @param request  the request
+     * @param response the response
+     * @throws IOException unable to write to the response
+     */
+    protected void respond(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        writeJsonResponse(response, executeRestMethod(request));
+    }
+
+    /**
+     * Executes the request, converting any failure to an issue the client can handle
+     *
+     * @param request the request
+     * @return the result of the request, or a {@link ClientHandledIssue}
+     */
+    protected Object executeRestMethod(final HttpServletRequest request) {
         Object returnVal;
         try {
             returnVal = invokeMethod(request);
@@ -96,7 +112,30 @@ public abstract class AbstractAjaxController extends HttpServlet {
     }
 
     /**
-     * Returns a json response that is encoded
+     * Serialises the response straight to the output stream, so that large responses are never held in memory as a
+     * whole. The length is not known in advance, so the response is sent chunked.
+     *
+     * @param response      the response
+     * @param responseValue the value that should be encoded
+     * @throws IOException unable to write to the response
+     */
+    void writeJsonResponse(final HttpServletResponse response, final Object responseValue) throws IOException {
+        LOGGER.debug("Streaming the following response [{}]", responseValue);
+
+        setupHeaders(response);
+        if (responseValue == null) {
+            response.setContentLength(0);
+            return;
+        }
+
+        final JsonGenerator generator = this.jsonMapper.getJsonFactory().createJsonGenerator(
+                response.getOutputStream(), JsonEncoding.UTF8);
+        this.jsonMapper.writeValue(generator, responseValue);
+        generator.flush();
+    }
+
+    /**
+     * Returns a json response that is encoded, for when the whole response needs to be kept, e.g. to be cached
      *
      * @param responseValue the value that should be encoded
      * @return the encoded form of the JSON response
@@ -129,11 +168,20 @@ public abstract class AbstractAjaxController extends HttpServlet {
      * @param length   the length of the message
      */
     void setupHeaders(final HttpServletResponse response, final int length) {
+        setupHeaders(response);
+        response.setContentLength(length);
+    }
+
+    /**
+     * sets up the headers of a message whose length is not known in advance
+     *
+     * @param response the response
+     */
+    void setupHeaders(final HttpServletResponse response) {
         // we ensure that headers are set up appropriately
         response.addDateHeader("Date", System.currentTimeMillis());
         response.setCharacterEncoding(FrontController.UTF_8_ENCODING);
         response.setContentType("application/json");
-        response.setContentLength(length);
         response.setHeader("step-language", this.clientSessionProvider.get().getLocale().getLanguage());
         response.setHeader("step-version", this.appManagerService.getAppVersion());
     }
@@ -146,12 +194,21 @@ public abstract class AbstractAjaxController extends HttpServlet {
      */
     void handleError(final HttpServletResponse response, final Throwable e, final HttpServletRequest request) {
         LOGGER.debug("Handling error...");
+        if (response.isCommitted()) {
+            // part of a streamed response has already gone out, so all we can do is record the failure
+            LOGGER.error("Unable to complete response for request " + request.getRequestURI(), e);
+            return;
+        }
+
         try {
             if (e != null) {
                 final ClientHandledIssue issue = new ClientHandledIssue(getExceptionMessageAndLog(e));
                 final byte[] errorMessage = this.getEncodedJsonResponse(issue);
-                response.getOutputStream().write(errorMessage);
+
+                // drop whatever part of a streamed response is still in the buffer, so the error is sent on its own
+                response.resetBuffer();
                 setupHeaders(response, errorMessage.length);
+                response.getOutputStream().write(errorMessage);
             }
             // CHECKSTYLE:OFF We allow catching errors here, since we are at the top of the structure
         } catch (final Exception unableToSendError) {
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.rest.framework;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import com.tyndalehouse.step.core.exceptions.StepInternalException;
+
+/**
+ * An encoded JSON response held in the {@link ResponseCache}, along with its gzipped form so that repeat requests
+ * are not compressed again.
+ */
+public class CachedResponse {
+    private static final int MIN_GZIP_LENGTH = 1024;
+    private final byte[] body;
+    private final byte[] gzippedBody;
+
+    /**
+     * @param body the encoded response
+     */
+    public CachedResponse(final byte[] body) {
+        this.body = body;
+        // small responses don't gain enough to be worth the header
+        this.gzippedBody = body.length < MIN_GZIP_LENGTH ? null : gzip(body);
+    }
+
+    /**
+     * @param body the encoded response
+     * @return the gzipped response
+     */
+    private static byte[] gzip(final byte[] body) {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try {
+            final GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            gzip.write(body);
+            gzip.close();
+        } catch (final IOException e) {
+            throw new StepInternalException("Unable to compress response", e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * @return the encoded response
+     */
+    public byte[] getBody() {
+        return this.body;
+    }
+
+    /**
+     * @return the gzipped response, or null if the response was too small to be compressed
+     */
+    public byte[] getGzippedBody() {
+        return this.gzippedBody;
+    }
+
+    /**
+     * @return the number of bytes held by this response
+     */
+    public int getSize() {
+        return this.body.length + (this.gzippedBody == null ? 0 : this.gzippedBody.length);
+    }
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.rest.framework;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tyndalehouse.step.rest.controllers.AlternativeTranslationsController;
+import com.tyndalehouse.step.rest.controllers.AnalysisController;
+import com.tyndalehouse.step.rest.controllers.BibleController;
+import com.tyndalehouse.step.rest.controllers.GeographyController;
+import com.tyndalehouse.step.rest.controllers.ModuleController;
+import com.tyndalehouse.step.rest.controllers.NotesController;
+import com.tyndalehouse.step.rest.controllers.SearchController;
+import com.tyndalehouse.step.rest.controllers.SetupController;
+import com.tyndalehouse.step.rest.controllers.SupportController;
+import com.tyndalehouse.step.rest.controllers.TimelineController;
+import com.tyndalehouse.step.rest.controllers.UserController;
+import com.tyndalehouse.step.rest.controllers.external.V1Controller;
+
+/**
+ * The routes served by the {@link FrontController}, worked out once on start-up. A route is keyed by the controller
+ * name as it appears in the URL, the method name and the number of arguments, so requests are dispatched with a
+ * single lookup, and requests for anything else are rejected without touching the controllers.
+ * <p/>
+ * New REST controllers must be added to the lists below.
+ */
+@Singleton
+public class ControllerDispatchTable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ControllerDispatchTable.class);
+    private static final String CONTROLLER_SUFFIX = "Controller";
+    private static final String EXTERNAL_PREFIX = "external/";
+    private static final List<Class<?>> CONTROLLERS = Arrays.<Class<?>>asList(
+            AlternativeTranslationsController.class, AnalysisController.class, BibleController.class,
+            GeographyController.class, ModuleController.class, NotesController.class, SearchController.class,
+            SetupController.class, SupportController.class, TimelineController.class, UserController.class);
+    private static final List<Class<?>> EXTERNAL_CONTROLLERS = Arrays.<Class<?>>asList(V1Controller.class);
+
+    private final Map<String, Class<?>> controllers;
+    private final Map<String, ControllerRoute> routes;
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Builds the table from the known controllers
+     */
+    public ControllerDispatchTable() {
+        final Map<String, Class<?>> controllerClasses = new HashMap<String, Class<?>>();
+        final Map<String, ControllerRoute> controllerRoutes = new HashMap<String, ControllerRoute>();
+        addControllers(CONTROLLERS, false, controllerClasses, controllerRoutes);
+        addControllers(EXTERNAL_CONTROLLERS, true, controllerClasses, controllerRoutes);
+
+        this.controllers = Collections.unmodifiableMap(controllerClasses);
+        this.routes = Collections.unmodifiableMap(controllerRoutes);
+        LOGGER.info("Dispatching [{}] routes to [{}] controllers", this.routes.size(), this.controllers.size());
+    }
+
+    /**
+     * Adds the controllers and all their public methods that take only strings
+     *
+     * @param controllerClasses the controllers to add
+     * @param isExternal        true if the controllers are reached through the external API
+     * @param classesByKey      the controllers added so far
+     * @param routesByKey       the routes added so far
+     */
+    private static void addControllers(final List<Class<?>> controllerClasses, final boolean isExternal,
+                                       final Map<String, Class<?>> classesByKey,
+                                       final Map<String, ControllerRoute> routesByKey) {
+        for (final Class<?> controllerClass : controllerClasses) {
+            final String simpleName = controllerClass.getSimpleName();
+            final String controllerKey = getControllerKey(
+                    simpleName.substring(0, simpleName.length() - CONTROLLER_SUFFIX.length()), isExternal);
+            classesByKey.put(controllerKey, controllerClass);
+
+            for (final Method method : controllerClass.getMethods()) {
+                if (isRoutable(method)) {
+                    final String routeKey = getRouteKey(controllerKey, method.getName(),
+                            method.getParameterTypes().length);
+                    routesByKey.put(routeKey, new ControllerRoute(routeKey, controllerKey, method));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param method a public method of a controller
+     * @return true if the method can be called with the arguments of a request
+     */
+    private static boolean isRoutable(final Method method) {
+        if (method.getDeclaringClass() == Object.class || Modifier.isStatic(method.getModifiers())
+                || method.isBridge()) {
+            return false;
+        }
+
+        for (final Class<?> parameterType : method.getParameterTypes()) {
+            if (parameterType != String.class) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param controllerName the name of the controller, as it appears in the URL
+     * @param isExternal     true if the controller is reached through the external API
+     * @return the key to the controller
+     */
+    private static String getControllerKey(final String controllerName, final boolean isExternal) {
+        final String key = controllerName.isEmpty() ? controllerName
+                : Character.toLowerCase(controllerName.charAt(0)) + controllerName.substring(1);
+        return isExternal ? EXTERNAL_PREFIX + key : key;
+    }
+
+    /**
+     * @param controllerKey the key to the controller
+     * @param methodName    the method name
+     * @param arity         the number of arguments
+     * @return the key to the route
+     */
+    private static String getRouteKey(final String controllerKey, final String methodName, final int arity) {
+        return controllerKey + '/' + methodName + '/' + arity;
+    }
+
+    /**
+     * @param controllerName the name of the controller, as it appears in the URL
+     * @param isExternal     true if the controller is reached through the external API
+     * @return the controller class, or null if there is no such controller
+     */
+    public Class<?> getControllerClass(final String controllerName, final boolean isExternal) {
+        return this.controllers.get(getControllerKey(controllerName, isExternal));
+    }
+
+    /**
+     * @param controllerName the name of the controller, as it appears in the URL
+     * @param isExternal     true if the controller is reached through the external API
+     * @param methodName     the method name
+     * @param arity          the number of arguments
+     * @return the route, or null if there is no such route
+     */
+    public ControllerRoute getRoute(final String controllerName, final boolean isExternal, final String methodName,
+                                    final int arity) {
+        final ControllerRoute route = this.routes.get(
+                getRouteKey(getControllerKey(controllerName, isExternal), methodName, arity));
+        if (route == null) {
+            this.rejected.incrementAndGet();
+        }
+        return route;
+    }
+
+    /**
+     * @return all the routes, with the number of times each has been invoked
+     */
+    public Collection<ControllerRoute> getRoutes() {
+        return this.routes.values();
+    }
+
+    /**
+     * @return the number of requests for which there was no route
+     */
+    public long getRejected() {
+        return this.rejected.get();
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.rest.framework;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.tyndalehouse.step.core.exceptions.StepInternalException;
+import com.tyndalehouse.step.core.utils.StepMetrics;
+import com.yammer.metrics.core.TimerContext;
+
+/**
+ * A controller method that can be reached through the {@link FrontController}, along with a count of the number of
+ * times it has been invoked.
+ */
+public class ControllerRoute {
+    private final String name;
+    private final String controllerKey;
+    private final Method method;
+    private final MethodHandle handle;
+    private final AtomicLong invocations = new AtomicLong();
+
+    /**
+     * @param name          the name of the route, e.g. bible/getAllFeatures/0
+     * @param controllerKey the key to the controller in the dispatch table
+     * @param method        the controller method, all of whose parameters are strings
+     */
+    public ControllerRoute(final String name, final String controllerKey, final Method method) {
+        this.name = name;
+        this.controllerKey = controllerKey;
+        this.method = method;
+
+        // adapt the method to take the controller and an array of arguments, so that it can be invoked exactly
+        final int arity = method.getParameterTypes().length;
+        try {
+            this.handle = MethodHandles.publicLookup().unreflect(method)
+                    .asType(MethodType.genericMethodType(arity + 1))
+                    .asSpreader(Object[].class, arity);
+        } catch (final IllegalAccessException e) {
+            throw new StepInternalException("Unable to access controller method " + name, e);
+        }
+    }
+
+    /**
+     * Invokes the method on the controller
+     *
+     * @param controller the controller instance
+     * @param args       the arguments, as many as the method takes
+     * @return the return value of the method, or null if it has none
+     * @throws InvocationTargetException wraps anything thrown by the method, as reflection would
+     */
+    public Object invoke(final Object controller, final String[] args) throws InvocationTargetException {
+        this.invocations.incrementAndGet();
+        final TimerContext timer = StepMetrics.startTimer(ControllerRoute.class, "latency", this.name);
+        try {
+            return (Object) this.handle.invokeExact(controller, (Object[]) args);
+            // CHECKSTYLE:OFF the handle declares Throwable
+        } catch (final Throwable e) {
+            // CHECKSTYLE:ON
+            throw new InvocationTargetException(e);
+        } finally {
+            StepMetrics.stopTimer(timer);
+        }
+    }
+
+    /**
+     * @return the name of the route, e.g. bible/getAllFeatures/0
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * @return the key to the controller in the dispatch table
+     */
+    public String getControllerKey() {
+        return this.controllerKey;
+    }
+
+    /**
+     * @return the controller method, e.g. to inspect its annotations
+     */
+    public Method getMethod() {
+        return this.method;
+    }
+
+    /**
+     * @return the number of times the route has been invoked
+     */
+    public long getInvocations() {
+        return this.invocations.get();
+    }
+}
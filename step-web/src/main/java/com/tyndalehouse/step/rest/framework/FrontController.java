@@ -37,6 +37,7 @@ import com.google.inject.Injector;
 import com.google.inject.Singleton;
 import com.tyndalehouse.step.core.exceptions.StepInternalException;
 import com.tyndalehouse.step.core.models.ClientSession;
+import com.tyndalehouse.step.core.models.PartialResult;
 import com.tyndalehouse.step.core.service.AppManagerService;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
@@ -45,10 +46,16 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Provider;
 import javax.servlet.annotation.MultipartConfig;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
-import java.util.Map;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static java.lang.String.format;
 
@@ -63,16 +70,15 @@ import static java.lang.String.format;
 @Singleton
 public class FrontController extends AbstractAjaxController {
     public static final String UTF_8_ENCODING = "UTF-8";
-    private static final String EXTERNAL_CONTROLLER_SUB_PACKAGE = "external";
     private static final Logger LOGGER = LoggerFactory.getLogger(FrontController.class);
-    private static final String CONTROLLER_PACKAGE = "com.tyndalehouse.step.rest.controllers";
-    private static final char PACKAGE_SEPARATOR = '.';
     private static final long serialVersionUID = 7898656504631346047L;
-    private static final String CONTROLLER_SUFFIX = "Controller";
+    private static final String STEP_REQUEST_ATTRIBUTE = "stepRequest";
     private final transient Injector guiceInjector;
-
-    private final transient Map<String, Method> methodNames = new HashMap<String, Method>();
-    private final transient Map<String, Object> controllers = new HashMap<String, Object>();
+    private final transient Provider<ClientSession> clientSessionProvider;
+    private final transient ResponseCache responseCache;
+    private final transient AppManagerService appManagerService;
+    private final transient ControllerDispatchTable dispatchTable;
+    private final transient ConcurrentMap<Class<?>, Object> controllers = new ConcurrentHashMap<Class<?>, Object>();
 
     /**
      * creates the front controller which will dispatch all the requests
@@ -81,136 +87,272 @@ public class FrontController extends AbstractAjaxController {
      * @param guiceInjector         the injector used to call the relevant controllers
      * @param errorResolver         the error resolver is the object that helps us translate errors for the client
      * @param clientSessionProvider the client session provider
+     * @param responseCache         the cache of responses from cacheable controller methods
+     * @param dispatchTable         the routes to the controller methods
      */
     @Inject
     public FrontController(final Injector guiceInjector,
                            final AppManagerService appManagerService,
                            final ClientErrorResolver errorResolver,
                            final Provider<ClientSession> clientSessionProvider,
-                           final Provider<ObjectMapper> objectMapperProvider) {
+                           final Provider<ObjectMapper> objectMapperProvider,
+                           final ResponseCache responseCache,
+                           final ControllerDispatchTable dispatchTable) {
         super(appManagerService, clientSessionProvider, errorResolver, objectMapperProvider);
         this.guiceInjector = guiceInjector;
+        this.clientSessionProvider = clientSessionProvider;
+        this.responseCache = responseCache;
+        this.appManagerService = appManagerService;
+        this.dispatchTable = dispatchTable;
     }
 
     /**
-     * Invokes the method on the controller instance and returns JSON-ed results
+     * Serves the response from the cache if the controller method allows it, otherwise invokes the method and caches
+     * its response for next time. Cached responses carry an ETag, so that clients which already hold the response
+     * are answered with a 304, and are sent gzipped to clients that accept it.
      *
-     * @return byte array representation of the return value
+     * @param request  the request
+     * @param response the response
+     * @throws IOException unable to write to the response
      */
     @Override
-    protected Object invokeMethod(HttpServletRequest servletRequest) throws Exception {
-        StepRequest sr = new StepRequest(servletRequest, UTF_8_ENCODING);
-        return invokeMethodWithStepRequest(sr);
+    protected void respond(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
+        final String resultsKey = getResultsKey(getStepRequest(request));
+        if (resultsKey == null) {
+            super.respond(request, response);
+            return;
+        }
+
+        final String etag = getETag(resultsKey);
+        if (matchesETag(request.getHeader("If-None-Match"), etag)) {
+            response.setHeader("ETag", etag);
+            response.setHeader("Vary", "Accept-Encoding");
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        CachedResponse cachedResponse = this.responseCache.get(resultsKey);
+        if (cachedResponse == null) {
+            final Object returnVal = executeRestMethod(request);
+
+            // failures and results cut short by a timeout may well be transient, so we neither keep them nor
+            // let the client keep them
+            if (returnVal instanceof ClientHandledIssue
+                    || returnVal instanceof PartialResult && ((PartialResult) returnVal).isPartial()) {
+                writeJsonResponse(response, returnVal);
+                return;
+            }
+
+            // the response is kept, so is encoded in full rather than streamed
+            cachedResponse = new CachedResponse(getEncodedJsonResponse(returnVal));
+            this.responseCache.put(resultsKey, cachedResponse);
+        } else {
+            LOGGER.debug("Serving [{}] from the cache", resultsKey);
+        }
+
+        writeCachedResponse(request, response, cachedResponse, etag);
     }
 
     /**
-     * @param sr allows to pass a StepRequest instead of the normal HttpServletRequest
-     * @return the object as a result of the call
-     * @throws IllegalAccessException
-     * @throws InvocationTargetException
+     * Writes the cached response, compressed if the client accepts it
+     *
+     * @param request        the request
+     * @param response       the response
+     * @param cachedResponse the cached response
+     * @param etag           the entity tag of the response
+     * @throws IOException unable to write to the response
      */
-    Object invokeMethodWithStepRequest(final StepRequest sr) throws IllegalAccessException, InvocationTargetException {
-        LOGGER.debug("The cache was missed so invoking method now...");
+    private void writeCachedResponse(final HttpServletRequest request, final HttpServletResponse response,
+                                     final CachedResponse cachedResponse, final String etag) throws IOException {
+        final String acceptEncoding = request.getHeader("Accept-Encoding");
+        final boolean gzip = cachedResponse.getGzippedBody() != null
+                && acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ENGLISH).contains("gzip");
+        final byte[] body = gzip ? cachedResponse.getGzippedBody() : cachedResponse.getBody();
 
-        // controller instance on which to call a method
-        final Object controllerInstance = getController(sr.getControllerName(), sr.isExternal());
+        setupHeaders(response, body.length);
+        response.setHeader("ETag", etag);
+        response.setHeader("Vary", "Accept-Encoding");
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        response.getOutputStream().write(body);
+    }
 
-        // resolve method
-        final Method controllerMethod = getControllerMethod(sr.getMethodName(), controllerInstance,
-                sr.getArgs(), sr.getCacheKey().getMethodKey());
+    /**
+     * @param ifNoneMatch the If-None-Match header sent by the client, possibly null
+     * @param etag        the entity tag of the current response
+     * @return true if the client already holds the current response
+     */
+    boolean matchesETag(final String ifNoneMatch, final String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
 
-        // invoke the three together
-        return controllerMethod.invoke(controllerInstance, (Object[]) sr.getArgs());
+        // If-None-Match uses the weak comparison, so only the opaque part of the tags is compared
+        final String opaqueTag = getOpaqueTag(etag);
+        for (final String candidate : ifNoneMatch.split(",")) {
+            final String tag = candidate.trim();
+            if ("*".equals(tag) || opaqueTag.equals(getOpaqueTag(tag))) {
+                return true;
+            }
+        }
+        return false;
     }
 
+    /**
+     * @param etag an entity tag, weak or strong
+     * @return the quoted part of the tag
+     */
+    private String getOpaqueTag(final String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
 
     /**
-     * Retrieves a controller, either from the cache, or from Guice.
+     * The tag changes whenever the application is upgraded, the installed modules change or an entity index is
+     * reloaded, as any of them can change the response to the same request. The same response is sent gzipped or not
+     * depending on the client, so the tag is weak: it identifies the content, rather than the bytes sent.
      *
-     * @param controllerName the name of the controller (used as the key for the cache)
-     * @param isExternal     indicates whether the request should be found in the external controllers
-     * @return the controller object
+     * @param resultsKey the key to the response in the cache
+     * @return the entity tag for the response
      */
-    Object getController(final String controllerName, final boolean isExternal) {
-        Object controllerInstance = this.controllers.get(controllerName);
+    String getETag(final String resultsKey) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update(String.valueOf(this.appManagerService.getAppVersion()).getBytes(UTF_8_ENCODING));
+            digest.update((byte) 0);
+            digest.update(this.responseCache.getModulesFingerprint().getBytes(UTF_8_ENCODING));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(this.responseCache.getIndexGeneration()).getBytes(UTF_8_ENCODING));
+            digest.update((byte) 0);
+            digest.update(resultsKey.getBytes(UTF_8_ENCODING));
 
-        // if retrieving yields null, get controller from Guice, and put in cache
-        if (controllerInstance == null) {
-            // make up the full class name
-            final String packageName = CONTROLLER_PACKAGE;
-            final StringBuilder className = new StringBuilder(packageName.length() + controllerName.length()
-                    + CONTROLLER_SUFFIX.length() + 1);
-
-            className.append(packageName);
-            className.append(PACKAGE_SEPARATOR);
-            if (isExternal) {
-                className.append(EXTERNAL_CONTROLLER_SUB_PACKAGE);
-                className.append(PACKAGE_SEPARATOR);
+            final StringBuilder etag = new StringBuilder(36).append("W/\"");
+            for (final byte b : digest.digest()) {
+                etag.append(Character.forDigit((b >> 4) & 0xF, 16));
+                etag.append(Character.forDigit(b & 0xF, 16));
             }
+            return etag.append('"').toString();
+        } catch (final NoSuchAlgorithmException e) {
+            throw new StepInternalException("Unable to compute an ETag", e);
+        } catch (final UnsupportedEncodingException e) {
+            throw new StepInternalException("Unable to compute an ETag", e);
+        }
+    }
 
-            className.append(Character.toUpperCase(controllerName.charAt(0)));
-            className.append(controllerName.substring(1));
-            className.append(CONTROLLER_SUFFIX);
+    /**
+     * @param sr the step request
+     * @return the key to the response in the cache, or null if the response should not be cached
+     */
+    String getResultsKey(final StepRequest sr) {
+        if (!this.responseCache.isEnabled()) {
+            return null;
+        }
 
-            try {
-                final Class<?> controllerClass = Class.forName(className.toString());
-                controllerInstance = this.guiceInjector.getInstance(controllerClass);
+        final Method controllerMethod;
+        try {
+            controllerMethod = getRoute(sr).getMethod();
+        } catch (final StepInternalException e) {
+            // let the normal invocation report the problem
+            LOGGER.trace("Unable to resolve the controller method", e);
+            return null;
+        }
 
-                // we use the controller name as it came in to key the map
-                this.controllers.put(controllerName, controllerInstance);
-            } catch (final ClassNotFoundException e) {
-                throw new StepInternalException("Unable to find a controller for " + className, e);
-            }
+        if (!isCacheable(controllerMethod)) {
+            return null;
         }
-        return controllerInstance;
+
+        // the same request yields different responses depending on the language of the user
+        return this.clientSessionProvider.get().getLocale() + ":" + sr.getCacheKey().getResultsKey();
     }
 
     /**
-     * Returns the method to be invoked upon the controller
-     *
-     * @param methodName         the method name
-     * @param controllerInstance the instance of the controller
-     * @param args               the list of arguments, required to resolve the correct method if they have arguments
-     * @param cacheKey           the key to retrieve in the cache
-     * @return the method to be invoked
+     * @param controllerMethod the controller method
+     * @return true if the method, or failing an annotation on the method, its controller, is marked {@link Cacheable}
      */
-    Method getControllerMethod(final String methodName, final Object controllerInstance, final Object[] args,
-                               final String cacheKey) {
-        final Class<?> controllerClass = controllerInstance.getClass();
-
-        // retrieve method from cache, or put in cache if not there
-        Method controllerMethod = this.methodNames.get(cacheKey);
-        if (controllerMethod == null) {
-            // resolve method
-
-            try {
-                final Class<?>[] classes = getClasses(args);
-                controllerMethod = controllerClass.getMethod(methodName, classes);
-                // put method in cache
-                this.methodNames.put(cacheKey, controllerMethod);
-            } catch (final NoSuchMethodException e) {
-                throw new StepInternalException("Unable to find matching method for " + methodName, e);
-            }
+    boolean isCacheable(final Method controllerMethod) {
+        Cacheable cacheable = controllerMethod.getAnnotation(Cacheable.class);
+        if (cacheable == null) {
+            cacheable = controllerMethod.getDeclaringClass().getAnnotation(Cacheable.class);
         }
+        return cacheable != null && cacheable.value();
+    }
 
-        return controllerMethod;
+    /**
+     * Invokes the method on the controller instance and returns JSON-ed results
+     *
+     * @return byte array representation of the return value
+     */
+    @Override
+    protected Object invokeMethod(HttpServletRequest servletRequest) throws Exception {
+        return invokeMethodWithStepRequest(getStepRequest(servletRequest));
     }
 
     /**
-     * @param args a number of arguments
-     * @return an array of classes matching the list of arguments passed in
+     * Parses the request once, keeping the result on the request for subsequent calls
+     *
+     * @param servletRequest the servlet request
+     * @return the step request
      */
-    Class<?>[] getClasses(final Object[] args) {
-        if (args == null) {
-            return new Class<?>[0];
+    private StepRequest getStepRequest(final HttpServletRequest servletRequest) {
+        StepRequest sr = (StepRequest) servletRequest.getAttribute(STEP_REQUEST_ATTRIBUTE);
+        if (sr == null) {
+            sr = new StepRequest(servletRequest, UTF_8_ENCODING);
+            servletRequest.setAttribute(STEP_REQUEST_ATTRIBUTE, sr);
         }
+        return sr;
+    }
 
-        final Class<?>[] classes = new Class<?>[args.length];
+    /**
+     * @param sr allows to pass a StepRequest instead of the normal HttpServletRequest
+     * @return the object as a result of the call
+     * @throws InvocationTargetException
+     */
+    Object invokeMethodWithStepRequest(final StepRequest sr) throws InvocationTargetException {
+        LOGGER.debug("Invoking method for [{}]", sr);
+
+        // resolve the route first, so that unknown requests never reach a controller
+        final ControllerRoute route = getRoute(sr);
 
-        for (int ii = 0; ii < classes.length; ii++) {
-            classes[ii] = args[ii].getClass();
+        // controller instance on which to call a method
+        final Object controllerInstance = getController(sr.getControllerName(), sr.isExternal());
+
+        // invoke the two together
+        return route.invoke(controllerInstance, sr.getArgs());
+    }
+
+    /**
+     * @param sr the step request
+     * @return the route to the controller method
+     */
+    ControllerRoute getRoute(final StepRequest sr) {
+        final ControllerRoute route = this.dispatchTable.getRoute(sr.getControllerName(), sr.isExternal(),
+                sr.getMethodName(), sr.getArgs().length);
+        if (route == null) {
+            throw new StepInternalException("Unable to find matching method for " + sr.getMethodName());
         }
+        return route;
+    }
 
-        return classes;
+    /**
+     * Retrieves a controller, either from the cache, or from Guice.
+     *
+     * @param controllerName the name of the controller (used as the key for the cache)
+     * @param isExternal     indicates whether the request should be found in the external controllers
+     * @return the controller object
+     */
+    Object getController(final String controllerName, final boolean isExternal) {
+        final Class<?> controllerClass = this.dispatchTable.getControllerClass(controllerName, isExternal);
+        if (controllerClass == null) {
+            throw new StepInternalException("Unable to find a controller for " + controllerName);
+        }
+
+        Object controllerInstance = this.controllers.get(controllerClass);
+
+        // if retrieving yields null, get controller from Guice, and put in cache
+        if (controllerInstance == null) {
+            controllerInstance = this.guiceInjector.getInstance(controllerClass);
+            this.controllers.putIfAbsent(controllerClass, controllerInstance);
+        }
+        return controllerInstance;
     }
 }
@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.rest.framework;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.crosswire.jsword.book.Book;
+import org.crosswire.jsword.book.Books;
+import org.crosswire.jsword.book.BooksEvent;
+import org.crosswire.jsword.book.BooksListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.tyndalehouse.step.core.data.EntityManager;
+import com.tyndalehouse.step.core.data.EntityRefreshListener;
+import com.tyndalehouse.step.core.utils.StepMetrics;
+
+/**
+ * Holds the encoded JSON responses of {@link Cacheable} controller methods, so that popular requests are served
+ * without going back to the services. The cache is bounded by the total number of bytes held and evicts the least
+ * recently used responses first. Installing or removing a module clears it, since that can change any response, and
+ * changes the fingerprint of the installed modules on which the ETags of responses are based. Reloading the index of
+ * an entity, such as the lexicon definitions, clears it too.
+ */
+@Singleton
+public class ResponseCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResponseCache.class);
+    private final LinkedHashMap<String, CachedResponse> responses =
+            new LinkedHashMap<String, CachedResponse>(256, 0.75f, true);
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private long currentBytes;
+    private volatile String modulesFingerprint;
+    // indexes can be rebuilt at start-up before anything reads them, so generations start from the start-up time
+    private volatile long indexGeneration = System.currentTimeMillis();
+
+    /**
+     * @param maxBytes      the maximum number of bytes held by the cache, 0 to disable caching
+     * @param maxEntryBytes the size above which responses are not cached
+     * @param entityManager the entity manager, which tells the cache when an entity's index is reloaded
+     */
+    @Inject
+    public ResponseCache(@Named("app.cache.responses.maxBytes") final long maxBytes,
+                         @Named("app.cache.responses.maxEntryBytes") final int maxEntryBytes,
+                         final EntityManager entityManager) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.modulesFingerprint = computeModulesFingerprint();
+
+        Books.installed().addBooksListener(new BooksListener() {
+            @Override
+            public void bookAdded(final BooksEvent ev) {
+                LOGGER.debug("Module [{}] was added, clearing the response cache", ev.getBook().getInitials());
+                onModulesChanged();
+            }
+
+            @Override
+            public void bookRemoved(final BooksEvent ev) {
+                LOGGER.debug("Module [{}] was removed, clearing the response cache", ev.getBook().getInitials());
+                onModulesChanged();
+            }
+        });
+
+        entityManager.addRefreshListener(new EntityRefreshListener() {
+            @Override
+            public void entityRefreshed(final String entityName) {
+                LOGGER.debug("Index of [{}] was reloaded, clearing the response cache", entityName);
+                onIndexReloaded();
+            }
+        });
+    }
+
+    /**
+     * Drops all responses, since any of them may have been produced from the modules that have changed
+     */
+    private void onModulesChanged() {
+        this.modulesFingerprint = computeModulesFingerprint();
+        clear();
+    }
+
+    /**
+     * Drops all responses, since any of them may have been produced from the index that has been reloaded
+     */
+    private synchronized void onIndexReloaded() {
+        this.indexGeneration++;
+        clear();
+    }
+
+    /**
+     * @return a value that changes whenever a module is installed, removed or upgraded
+     */
+    private String computeModulesFingerprint() {
+        final SortedSet<String> modules = new TreeSet<String>();
+        for (final Book book : Books.installed().getBooks()) {
+            modules.add(book.getInitials() + '-' + book.getBookMetaData().getProperty("Version"));
+        }
+        return Integer.toHexString(modules.hashCode());
+    }
+
+    /**
+     * @return a fingerprint of the installed modules and their versions
+     */
+    public String getModulesFingerprint() {
+        return this.modulesFingerprint;
+    }
+
+    /**
+     * @return a value that changes whenever an entity index is reloaded, and on every restart
+     */
+    public long getIndexGeneration() {
+        return this.indexGeneration;
+    }
+
+    /**
+     * @return true if responses are to be cached at all
+     */
+    public boolean isEnabled() {
+        return this.maxBytes > 0;
+    }
+
+    /**
+     * @param key the key to the response, which includes the locale of the request
+     * @return the response, or null if it is not in the cache
+     */
+    public synchronized CachedResponse get(final String key) {
+        final CachedResponse response = this.responses.get(key);
+        StepMetrics.cacheLookup(ResponseCache.class, "responses", response != null);
+        return response;
+    }
+
+    /**
+     * Caches a response, evicting the least recently used ones if the cache is full
+     *
+     * @param key      the key to the response, which includes the locale of the request
+     * @param response the response
+     */
+    public synchronized void put(final String key, final CachedResponse response) {
+        if (response.getBody().length > this.maxEntryBytes) {
+            LOGGER.debug("Response for [{}] is too large to be cached", key);
+            return;
+        }
+
+        final CachedResponse previous = this.responses.put(key, response);
+        this.currentBytes += response.getSize() - (previous == null ? 0 : previous.getSize());
+
+        final Iterator<Entry<String, CachedResponse>> eldest = this.responses.entrySet().iterator();
+        while (this.currentBytes > this.maxBytes && eldest.hasNext()) {
+            this.currentBytes -= eldest.next().getValue().getSize();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Removes all responses from the cache
+     */
+    public synchronized void clear() {
+        this.responses.clear();
+        this.currentBytes = 0;
+    }
+
+    /**
+     * @return the number of bytes currently held in the cache
+     */
+    public synchronized long getCurrentBytes() {
+        return this.currentBytes;
+    }
+}
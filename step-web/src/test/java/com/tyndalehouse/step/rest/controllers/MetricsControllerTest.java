@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.rest.controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+
+import com.tyndalehouse.step.rest.framework.ControllerDispatchTable;
+import com.yammer.metrics.Metrics;
+
+/**
+ * Tests the output of the metrics
+ */
+public class MetricsControllerTest {
+    private final MetricsController controller = new MetricsController(new ControllerDispatchTable(),
+            new ObjectMapper());
+
+    /**
+     * Counters are output with their scope as a label, alongside the route counts
+     */
+    @Test
+    public void testPrometheusFormat() {
+        Metrics.defaultRegistry().newCounter(MetricsControllerTest.class, "lookups", "ESV").inc();
+
+        final StringWriter output = new StringWriter();
+        this.controller.writePrometheus(new PrintWriter(output));
+
+        final String text = output.toString();
+        assertTrue(text, text.contains("# TYPE step_metricscontrollertest_lookups counter\n"));
+        assertTrue(text, text.contains("step_metricscontrollertest_lookups{scope=\"ESV\"} 1\n"));
+        assertTrue(text, text.contains("step_route_invocations_total{scope=\"bible/getAllFeatures/0\"} 0\n"));
+    }
+
+    /**
+     * Metrics are keyed by type, name and scope
+     */
+    @Test
+    public void testJsonFormat() {
+        Metrics.defaultRegistry().newCounter(MetricsControllerTest.class, "requests", "KJV").inc();
+
+        final Map<String, Object> metrics = this.controller.getJsonMetrics();
+        assertEquals(1L, metrics.get("MetricsControllerTest.requests.KJV"));
+        assertEquals(0L, metrics.get("routes.rejected"));
+    }
+}
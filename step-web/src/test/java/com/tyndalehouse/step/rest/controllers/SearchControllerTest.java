@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.rest.controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tyndalehouse.step.core.models.PartialResult;
+import com.tyndalehouse.step.core.models.SingleSuggestionsSummary;
+import com.tyndalehouse.step.core.models.SuggestionsSummary;
+import com.tyndalehouse.step.core.models.search.AutoSuggestion;
+import com.tyndalehouse.step.core.service.BibleInformationService;
+import com.tyndalehouse.step.core.service.SearchService;
+import com.tyndalehouse.step.core.service.SuggestionService;
+import com.tyndalehouse.step.core.service.helpers.SuggestionContext;
+import com.tyndalehouse.step.core.service.search.OriginalWordSuggestionService;
+import com.tyndalehouse.step.core.service.search.SubjectEntrySearchService;
+
+/**
+ * Tests the search controller
+ */
+public class SearchControllerTest {
+    private SuggestionService suggestionService;
+    private SearchController searchController;
+
+    /**
+     * sets up the controller with a mocked suggestion service
+     */
+    @Before
+    public void setUp() {
+        this.suggestionService = mock(SuggestionService.class);
+        this.searchController = new SearchController(mock(SearchService.class), this.suggestionService,
+                mock(OriginalWordSuggestionService.class), mock(SubjectEntrySearchService.class),
+                mock(BibleInformationService.class));
+    }
+
+    /**
+     * suggestions cut short by the deadline are flagged, so that they are not cached
+     */
+    @Test
+    public void testPartialSuggestions() {
+        when(this.suggestionService.getTopSuggestions(any(SuggestionContext.class))).thenReturn(getSummary(true));
+
+        final List<AutoSuggestion> suggestions = this.searchController.suggest("abc");
+        assertTrue(suggestions instanceof PartialResult);
+        assertTrue(((PartialResult) suggestions).isPartial());
+    }
+
+    /**
+     * suggestions found in full are not flagged
+     */
+    @Test
+    public void testCompleteSuggestions() {
+        when(this.suggestionService.getTopSuggestions(any(SuggestionContext.class))).thenReturn(getSummary(false));
+
+        final List<AutoSuggestion> suggestions = this.searchController.suggest("abc");
+        assertEquals(0, suggestions.size());
+        assertFalse(((PartialResult) suggestions).isPartial());
+    }
+
+    /**
+     * @param partial true if the suggestions were cut short
+     * @return a summary without any suggestions
+     */
+    private SuggestionsSummary getSummary(final boolean partial) {
+        final SuggestionsSummary summary = new SuggestionsSummary();
+        summary.setSuggestionsSummaries(new ArrayList<SingleSuggestionsSummary>());
+        summary.setPartial(partial);
+        return summary;
+    }
+}
@@ -32,25 +32,31 @@
  ******************************************************************************/
 package com.tyndalehouse.step.rest.framework;
 
-import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.Locale;
 
 import javax.inject.Provider;
 import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -61,11 +67,15 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
 
 import com.google.inject.Injector;
 import com.tyndalehouse.step.core.exceptions.StepInternalException;
 import com.tyndalehouse.step.core.models.ClientSession;
+import com.tyndalehouse.step.core.models.search.AutoSuggestions;
+import com.tyndalehouse.step.core.models.search.SearchResult;
 import com.tyndalehouse.step.core.service.BibleInformationService;
 import com.tyndalehouse.step.guice.providers.ClientSessionProvider;
 import com.tyndalehouse.step.rest.controllers.BibleController;
@@ -94,6 +104,9 @@ public class FrontControllerTest {
     @Mock
     private Provider<ObjectMapper> objectMapper;
 
+    @Mock
+    private ResponseCache responseCache;
+
     /**
      * Simply setting up the FrontController under test
      */
@@ -106,8 +119,9 @@ public class FrontControllerTest {
         when(mockMapper.writeValueAsString(any(Object.class))).thenReturn("Test");
         when(this.objectMapper.get()).thenReturn(mockMapper);
         
+        when(this.responseCache.isEnabled()).thenReturn(true);
         this.fcUnderTest = new FrontController(this.guiceInjector, mock(AppManagerService.class), this.errorResolver,
-                this.clientSessionProvider, objectMapper);
+                this.clientSessionProvider, objectMapper, this.responseCache, new ControllerDispatchTable());
     }
 
     /**
@@ -178,21 +192,30 @@ public class FrontControllerTest {
     /**
      * tests that resolving method works
      *
-     * @throws IllegalAccessException    uncaught exception
      * @throws InvocationTargetException uncaught exception
      */
     @Test
-    public void testGetControllerMethod() throws IllegalAccessException, InvocationTargetException {
+    public void testGetRoute() throws InvocationTargetException {
         final BibleInformationService bibleInfo = mock(BibleInformationService.class);
         final BibleController controllerInstance = new BibleController(bibleInfo, this.clientSessionProvider, null);
 
         // when
-        final Method controllerMethod = this.fcUnderTest.getControllerMethod("getAllFeatures",
-                controllerInstance, null, null);
+        final ControllerRoute route = this.fcUnderTest.getRoute(
+                new StepRequest("/rest/bible/getAllFeatures", "bible", "getAllFeatures", new String[]{}));
 
         // then
-        controllerMethod.invoke(controllerInstance);
+        route.invoke(controllerInstance, new String[0]);
         verify(bibleInfo).getAllFeatures();
+        assertEquals(1, route.getInvocations());
+    }
+
+    /**
+     * Requests for methods that don't exist, or with the wrong number of arguments, are rejected
+     */
+    @Test(expected = StepInternalException.class)
+    public void testGetRouteRejectsUnknownRoute() {
+        this.fcUnderTest.getRoute(
+                new StepRequest("/rest/bible/getAllFeatures/1", "bible", "getAllFeatures", new String[]{"1"}));
     }
 
     /**
@@ -211,18 +234,6 @@ public class FrontControllerTest {
         assertEquals(controller.getClass(), mockController.getClass());
     }
 
-    /**
-     * tests various combinations for getClasses
-     */
-    @Test
-    public void testGetClasses() {
-        assertEquals(0, this.fcUnderTest.getClasses(null).length);
-        assertEquals(0, this.fcUnderTest.getClasses(new Object[0]).length);
-        assertArrayEquals(new Class<?>[]{String.class, Integer.class},
-                this.fcUnderTest.getClasses(new Object[]{"hello", Integer.valueOf(1)}));
-
-    }
-
     /**
      * If an error was thrown, we should map it and output
      *
@@ -244,6 +255,32 @@ public class FrontControllerTest {
         verify(outputStream).write(any(byte[].class));
     }
 
+    /**
+     * An error raised part way through streaming a response that is still buffered replaces what was written so far
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testErrorReplacesPartlyWrittenResponse() throws IOException {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(streamTo(written));
+        when(response.isCommitted()).thenReturn(false);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(final InvocationOnMock invocation) {
+                written.reset();
+                return null;
+            }
+        }).when(response).resetBuffer();
+
+        written.write("{\"results\":[1,2".getBytes("UTF-8"));
+        this.fcUnderTest.handleError(response, new Exception(), mock(HttpServletRequest.class));
+
+        assertEquals("Test", written.toString("UTF-8"));
+        verify(response).setContentLength(4);
+    }
+
     /**
      * We check that invoke method calls the correct controller and method with the right arguments
      */
@@ -261,4 +298,156 @@ public class FrontControllerTest {
         // verify
         verify(testController).getAllFeatures();
     }
+
+    /**
+     * Cacheable methods are keyed by locale and request, others are not cached at all
+     */
+    @Test
+    public void testGetResultsKey() {
+        final FrontController fc = this.fcUnderTest;
+        assertEquals("en:/rest/bible/getAllFeatures", fc.getResultsKey(
+                new StepRequest("/rest/bible/getAllFeatures", "bible", "getAllFeatures", new String[]{})));
+        assertNull(fc.getResultsKey(new StepRequest("/rest/setup/indexAll", "setup", "indexAll", new String[]{})));
+    }
+
+    /**
+     * ETags are weak, since the same response may be sent gzipped or not, differ by request, by installed modules and
+     * by index generation, and are matched however the client lists them
+     */
+    @Test
+    public void testETags() {
+        when(this.responseCache.getModulesFingerprint()).thenReturn("1");
+        when(this.responseCache.getIndexGeneration()).thenReturn(1L);
+        final String etag = this.fcUnderTest.getETag("en:/rest/bible/getAllFeatures");
+        assertTrue(etag.startsWith("W/\""));
+        assertEquals(etag, this.fcUnderTest.getETag("en:/rest/bible/getAllFeatures"));
+        assertFalse(etag.equals(this.fcUnderTest.getETag("fr:/rest/bible/getAllFeatures")));
+
+        when(this.responseCache.getIndexGeneration()).thenReturn(2L);
+        assertFalse(etag.equals(this.fcUnderTest.getETag("en:/rest/bible/getAllFeatures")));
+        when(this.responseCache.getIndexGeneration()).thenReturn(1L);
+
+        when(this.responseCache.getModulesFingerprint()).thenReturn("2");
+        assertFalse(etag.equals(this.fcUnderTest.getETag("en:/rest/bible/getAllFeatures")));
+
+        assertTrue(this.fcUnderTest.matchesETag(etag, etag));
+        assertTrue(this.fcUnderTest.matchesETag("\"other\", " + etag.substring(2), etag));
+        assertTrue(this.fcUnderTest.matchesETag("*", etag));
+        assertFalse(this.fcUnderTest.matchesETag("\"other\"", etag));
+        assertFalse(this.fcUnderTest.matchesETag(null, etag));
+    }
+
+    /**
+     * Responses are written to the output stream as they are serialised, without a content length
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testWriteJsonResponseStreams() throws IOException {
+        final ObjectMapper realMapper = new ObjectMapper();
+        when(this.objectMapper.get()).thenReturn(realMapper);
+        final FrontController fc = new FrontController(this.guiceInjector, mock(AppManagerService.class),
+                this.errorResolver, this.clientSessionProvider, this.objectMapper, this.responseCache,
+                new ControllerDispatchTable());
+
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(streamTo(written));
+
+        fc.writeJsonResponse(response, new String[]{"a", "\u03b1"});
+
+        assertEquals("[\"a\",\"\u03b1\"]", written.toString("UTF-8"));
+        verify(response, never()).setContentLength(anyInt());
+    }
+
+    /**
+     * Results that are missing parts because of a timeout are sent to the client, but not cached
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testPartialResultsAreNotCached() throws IOException {
+        when(this.objectMapper.get()).thenReturn(new ObjectMapper());
+        when(this.responseCache.getModulesFingerprint()).thenReturn("1");
+        final FrontController fc = spy(new FrontController(this.guiceInjector, mock(AppManagerService.class),
+                this.errorResolver, this.clientSessionProvider, this.objectMapper, this.responseCache,
+                new ControllerDispatchTable()));
+
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getAttribute("stepRequest")).thenReturn(
+                new StepRequest("/rest/bible/getAllFeatures", "bible", "getAllFeatures", new String[]{}));
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(streamTo(written));
+
+        final SearchResult partial = new SearchResult();
+        partial.setPartial(true);
+        doReturn(partial).when(fc).executeRestMethod(request);
+        fc.doGet(request, response);
+
+        assertTrue(written.toString("UTF-8").contains("\"partial\":true"));
+        verify(response, never()).setHeader(eq("ETag"), any(String.class));
+        verify(this.responseCache, never()).put(any(String.class), any(CachedResponse.class));
+
+        doReturn(new SearchResult()).when(fc).executeRestMethod(request);
+        fc.doGet(request, response);
+        verify(this.responseCache).put(eq("en:/rest/bible/getAllFeatures"), any(CachedResponse.class));
+    }
+
+    /**
+     * Suggestions cut short by the deadline are sent to the client as a plain list, but not cached
+     *
+     * @throws IOException uncaught exception
+     */
+    @Test
+    public void testPartialSuggestionsAreNotCached() throws IOException {
+        when(this.objectMapper.get()).thenReturn(new ObjectMapper());
+        when(this.responseCache.getModulesFingerprint()).thenReturn("1");
+        final FrontController fc = spy(new FrontController(this.guiceInjector, mock(AppManagerService.class),
+                this.errorResolver, this.clientSessionProvider, this.objectMapper, this.responseCache,
+                new ControllerDispatchTable()));
+
+        final HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getAttribute("stepRequest")).thenReturn(
+                new StepRequest("/rest/search/suggest/abc", "search", "suggest", new String[]{"abc"}));
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        final HttpServletResponse response = mock(HttpServletResponse.class);
+        when(response.getOutputStream()).thenReturn(streamTo(written));
+
+        final AutoSuggestions partial = new AutoSuggestions(0);
+        partial.setPartial(true);
+        doReturn(partial).when(fc).executeRestMethod(request);
+        fc.doGet(request, response);
+
+        assertEquals("[]", written.toString("UTF-8"));
+        verify(response, never()).setHeader(eq("ETag"), any(String.class));
+        verify(this.responseCache, never()).put(any(String.class), any(CachedResponse.class));
+
+        doReturn(new AutoSuggestions(0)).when(fc).executeRestMethod(request);
+        fc.doGet(request, response);
+        verify(this.responseCache).put(eq("en:/rest/search/suggest/abc"), any(CachedResponse.class));
+    }
+
+    /**
+     * @param written the buffer to write to
+     * @return an output stream writing to the buffer
+     */
+    private ServletOutputStream streamTo(final ByteArrayOutputStream written) {
+        return new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener) {
+                // not needed for blocking writes
+            }
+
+            @Override
+            public void write(final int b) {
+                written.write(b);
+            }
+        };
+    }
 }
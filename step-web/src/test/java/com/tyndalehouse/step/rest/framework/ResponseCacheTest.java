@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2012, Directors of the Tyndale STEP Project
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions 
+ * are met:
+ * 
+ * Redistributions of source code must retain the above copyright 
+ * notice, this list of conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright 
+ * notice, this list of conditions and the following disclaimer in 
+ * the documentation and/or other materials provided with the 
+ * distribution.
+ * Neither the name of the Tyndale House, Cambridge (www.TyndaleHouse.com)  
+ * nor the names of its contributors may be used to endorse or promote 
+ * products derived from this software without specific prior written 
+ * permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS 
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT 
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS 
+ * FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE 
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, 
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, 
+ * BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER 
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT 
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING 
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+ * THE POSSIBILITY OF SUCH DAMAGE.
+ ******************************************************************************/
+package com.tyndalehouse.step.rest.framework;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.tyndalehouse.step.core.data.EntityManager;
+import com.tyndalehouse.step.core.data.EntityRefreshListener;
+
+/**
+ * Tests the bounds of the response cache
+ */
+public class ResponseCacheTest {
+
+    /**
+     * The least recently used responses are evicted once the cache holds too many bytes
+     */
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        final ResponseCache cache = new ResponseCache(10, 10, mock(EntityManager.class));
+        cache.put("a", new CachedResponse(new byte[4]));
+        cache.put("b", new CachedResponse(new byte[4]));
+        assertNotNull(cache.get("a"));
+
+        cache.put("c", new CachedResponse(new byte[4]));
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(8, cache.getCurrentBytes());
+    }
+
+    /**
+     * Responses above the entry limit are never kept
+     */
+    @Test
+    public void testLargeResponsesNotCached() {
+        final ResponseCache cache = new ResponseCache(100, 10, mock(EntityManager.class));
+        cache.put("a", new CachedResponse(new byte[11]));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getCurrentBytes());
+    }
+
+    /**
+     * Clearing the cache releases all the bytes held
+     */
+    @Test
+    public void testClear() {
+        final ResponseCache cache = new ResponseCache(100, 10, mock(EntityManager.class));
+        cache.put("a", new CachedResponse(new byte[5]));
+        cache.put("a", new CachedResponse(new byte[3]));
+        assertEquals(3, cache.getCurrentBytes());
+
+        cache.clear();
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getCurrentBytes());
+    }
+
+    /**
+     * Reloading the index of an entity clears the cache, since the responses may have been built from the old index
+     */
+    @Test
+    public void testClearedWhenEntityRefreshed() {
+        final EntityManager entityManager = mock(EntityManager.class);
+        final ResponseCache cache = new ResponseCache(100, 10, entityManager);
+        cache.put("a", new CachedResponse(new byte[5]));
+
+        final ArgumentCaptor<EntityRefreshListener> listener = ArgumentCaptor.forClass(EntityRefreshListener.class);
+        verify(entityManager).addRefreshListener(listener.capture());
+        listener.getValue().entityRefreshed("definition");
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getCurrentBytes());
+    }
+}